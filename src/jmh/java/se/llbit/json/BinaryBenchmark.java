@@ -0,0 +1,110 @@
+/* Copyright (c) 2017, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.json;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the binary JSON encoding to JSON text. The setup prints the
+ * total size of the corpus in both encodings.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BinaryBenchmark {
+  @Param({ "testfiles", "records", "messages", "wide", "deep", "numbers", "escapes" })
+  public String corpus;
+
+  private List<JsonValue> values;
+
+  /** The compact JSON text of each document, as UTF-8. */
+  private List<byte[]> texts;
+
+  private List<byte[]> encoded;
+
+  @Setup public void setup() throws IOException, JsonParser.SyntaxError {
+    values = Corpus.parse(Corpus.load(corpus));
+    texts = new ArrayList<>();
+    encoded = new ArrayList<>();
+    long textSize = 0;
+    long binarySize = 0;
+    for (JsonValue value : values) {
+      byte[] text = value.toCompactString().getBytes("UTF-8");
+      byte[] binary = BinaryJson.encode(value);
+      texts.add(text);
+      encoded.add(binary);
+      textSize += text.length;
+      binarySize += binary.length;
+    }
+    System.out.format("%n%s: %d bytes of compact text, %d bytes binary (%.1f%%)%n",
+        corpus, textSize, binarySize, 100.0 * binarySize / textSize);
+  }
+
+  @Benchmark public void encode(Blackhole blackhole) {
+    for (JsonValue value : values) {
+      blackhole.consume(BinaryJson.encode(value));
+    }
+  }
+
+  @Benchmark public void decode(Blackhole blackhole) throws IOException {
+    for (byte[] document : encoded) {
+      blackhole.consume(BinaryJson.decode(document));
+    }
+  }
+
+  /** Parses the compact text of the documents, for comparison with decode. */
+  @Benchmark public void parseText(Blackhole blackhole)
+      throws IOException, JsonParser.SyntaxError {
+    for (byte[] document : texts) {
+      try (Utf8JsonParser parser = new Utf8JsonParser(document)) {
+        blackhole.consume(parser.parse());
+      }
+    }
+  }
+}
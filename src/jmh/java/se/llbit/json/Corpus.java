@@ -0,0 +1,251 @@
+/* Copyright (c) 2017, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.json;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Benchmark input documents.
+ *
+ * <p>The {@code testfiles} corpus contains the documents from the testfiles
+ * directory. The other corpora are generated from a fixed random seed so that
+ * results are comparable between runs.
+ */
+public final class Corpus {
+  private Corpus() { }
+
+  private static final long SEED = 0x6a6f6a736f6eL;
+
+  /**
+   * Load the documents of the given corpus.
+   *
+   * @return the UTF-8 encoded documents of the corpus.
+   * @throws IllegalArgumentException if the corpus name is not recognized.
+   */
+  public static List<byte[]> load(String name) throws IOException {
+    switch (name) {
+      case "testfiles":
+        return testfiles();
+      case "records":
+        return single(records(10000));
+      case "messages":
+        return messages(10000);
+      case "wide":
+        return single(wideObject(5000));
+      case "deep":
+        return single(deepNesting(500));
+      case "numbers":
+        return single(numberArray(100000));
+      case "escapes":
+        return single(escapedStrings(5000));
+      default:
+        throw new IllegalArgumentException("Unknown corpus: " + name);
+    }
+  }
+
+  /** Parse all documents of a corpus. */
+  public static List<JsonValue> parse(List<byte[]> documents)
+      throws IOException, JsonParser.SyntaxError {
+    List<JsonValue> values = new ArrayList<>(documents.size());
+    for (byte[] document : documents) {
+      try (JsonParser parser = new JsonParser(new ByteArrayInputStream(document))) {
+        values.add(parser.parse());
+      }
+    }
+    return values;
+  }
+
+  private static List<byte[]> single(String document) {
+    return Arrays.asList(document.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static List<byte[]> testfiles() throws IOException {
+    File[] files = new File("testfiles").listFiles();
+    if (files == null) {
+      throw new IOException("Could not find the testfiles directory. "
+          + "Run the benchmarks from the project root directory.");
+    }
+    Arrays.sort(files);
+    List<byte[]> documents = new ArrayList<>();
+    for (File file : files) {
+      if (file.getName().endsWith(".json")) {
+        documents.add(readFile(file));
+      }
+    }
+    return documents;
+  }
+
+  private static byte[] readFile(File file) throws IOException {
+    byte[] data = new byte[(int) file.length()];
+    try (InputStream in = new FileInputStream(file)) {
+      int pos = 0;
+      while (pos < data.length) {
+        int n = in.read(data, pos, data.length - pos);
+        if (n < 0) {
+          break;
+        }
+        pos += n;
+      }
+      return pos == data.length ? data : Arrays.copyOf(data, pos);
+    }
+  }
+
+  /** An array of records with identical member names. */
+  static String records(int count) {
+    Random random = new Random(SEED);
+    StringBuilder sb = new StringBuilder();
+    sb.append('[');
+    for (int i = 0; i < count; ++i) {
+      if (i > 0) {
+        sb.append(',');
+      }
+      record(sb, i, random);
+    }
+    sb.append(']');
+    return sb.toString();
+  }
+
+  /** Many small documents, each holding one record. */
+  static List<byte[]> messages(int count) {
+    Random random = new Random(SEED);
+    List<byte[]> documents = new ArrayList<>(count);
+    for (int i = 0; i < count; ++i) {
+      StringBuilder sb = new StringBuilder();
+      record(sb, i, random);
+      documents.add(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+    return documents;
+  }
+
+  private static void record(StringBuilder sb, int id, Random random) {
+    sb.append("{\"id\":").append(id);
+    sb.append(",\"name\":\"user").append(random.nextInt(100000)).append('"');
+    sb.append(",\"active\":").append(random.nextBoolean());
+    sb.append(",\"score\":").append(random.nextDouble() * 100);
+    sb.append(",\"tags\":[\"a\",\"b\",\"c\"]");
+    sb.append(",\"parent\":null}");
+  }
+
+  /** An object with many members. */
+  static String wideObject(int members) {
+    Random random = new Random(SEED);
+    StringBuilder sb = new StringBuilder();
+    sb.append('{');
+    for (int i = 0; i < members; ++i) {
+      if (i > 0) {
+        sb.append(',');
+      }
+      sb.append("\"key").append(i).append("\":");
+      switch (i % 3) {
+        case 0:
+          sb.append(random.nextInt());
+          break;
+        case 1:
+          sb.append('"').append(Long.toHexString(random.nextLong())).append('"');
+          break;
+        default:
+          sb.append(random.nextBoolean());
+      }
+    }
+    sb.append('}');
+    return sb.toString();
+  }
+
+  /** Deeply nested objects and arrays. */
+  static String deepNesting(int depth) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < depth; ++i) {
+      sb.append((i & 1) == 0 ? "{\"child\":" : "[1,");
+    }
+    sb.append("null");
+    for (int i = depth - 1; i >= 0; --i) {
+      sb.append((i & 1) == 0 ? '}' : ']');
+    }
+    return sb.toString();
+  }
+
+  /** An array of integers and floating-point numbers. */
+  static String numberArray(int count) {
+    Random random = new Random(SEED);
+    StringBuilder sb = new StringBuilder();
+    sb.append('[');
+    for (int i = 0; i < count; ++i) {
+      if (i > 0) {
+        sb.append(',');
+      }
+      switch (i % 4) {
+        case 0:
+          sb.append(random.nextInt(1000));
+          break;
+        case 1:
+          sb.append(random.nextLong());
+          break;
+        case 2:
+          sb.append(random.nextDouble() * 1000);
+          break;
+        default:
+          sb.append(random.nextGaussian() * 1e-5);
+      }
+    }
+    sb.append(']');
+    return sb.toString();
+  }
+
+  /** An array of strings containing many escape sequences. */
+  static String escapedStrings(int count) {
+    Random random = new Random(SEED);
+    String[] fragments = {
+        "\\\"", "\\\\", "\\/", "\\n", "\\t", "\\r", "\\b", "\\f", "\\u00e5", "\\u2603", "text"
+    };
+    StringBuilder sb = new StringBuilder();
+    sb.append('[');
+    for (int i = 0; i < count; ++i) {
+      if (i > 0) {
+        sb.append(',');
+      }
+      sb.append('"');
+      for (int j = 0; j < 20; ++j) {
+        sb.append(fragments[random.nextInt(fragments.length)]);
+      }
+      sb.append('"');
+    }
+    sb.append(']');
+    return sb.toString();
+  }
+}
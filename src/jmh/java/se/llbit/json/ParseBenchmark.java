@@ -0,0 +1,160 @@
+/* Copyright (c) 2017, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.json;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Measures parsing throughput. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark {
+  @Param({ "testfiles", "records", "messages", "wide", "deep", "numbers", "escapes" })
+  public String corpus;
+
+  private List<byte[]> documents;
+
+  private final JsonParserPool pool = new JsonParserPool();
+
+  /** The documents written to temporary files. */
+  private List<Path> files;
+
+  @Setup public void setup() throws IOException {
+    documents = Corpus.load(corpus);
+    files = new ArrayList<>();
+    for (byte[] document : documents) {
+      Path file = Files.createTempFile("parse", ".json");
+      Files.write(file, document);
+      files.add(file);
+    }
+  }
+
+  @TearDown public void tearDown() throws IOException {
+    for (Path file : files) {
+      Files.delete(file);
+    }
+  }
+
+  @Benchmark public void parse(Blackhole blackhole) throws IOException, JsonParser.SyntaxError {
+    for (byte[] document : documents) {
+      try (JsonParser parser = new JsonParser(new ByteArrayInputStream(document))) {
+        blackhole.consume(parser.parse());
+      }
+    }
+  }
+
+  /** Parse with one parser that is reset onto each document. */
+  @Benchmark public void parseReset(Blackhole blackhole)
+      throws IOException, JsonParser.SyntaxError {
+    JsonParser parser = new JsonParser(new ByteArrayInputStream(new byte[0]));
+    for (byte[] document : documents) {
+      parser.reset(document);
+      blackhole.consume(parser.parse());
+    }
+  }
+
+  /** Parse each document into the tree of the previous document. */
+  @Benchmark public void parseInto(Blackhole blackhole)
+      throws IOException, JsonParser.SyntaxError {
+    JsonParser parser = new JsonParser(new ByteArrayInputStream(new byte[0]));
+    JsonValue tree = null;
+    for (byte[] document : documents) {
+      parser.reset(document);
+      tree = parser.parseInto(tree);
+      blackhole.consume(tree);
+    }
+  }
+
+  @Benchmark public void parsePooled(Blackhole blackhole)
+      throws IOException, JsonParser.SyntaxError {
+    for (byte[] document : documents) {
+      blackhole.consume(pool.parse(document));
+    }
+  }
+
+  @Benchmark public void parseUtf8(Blackhole blackhole) throws IOException, JsonParser.SyntaxError {
+    for (byte[] document : documents) {
+      try (Utf8JsonParser parser = new Utf8JsonParser(document)) {
+        blackhole.consume(parser.parse());
+      }
+    }
+  }
+
+  /** Parse memory mapped files. */
+  @Benchmark public void parseMapped(Blackhole blackhole)
+      throws IOException, JsonParser.SyntaxError {
+    for (Path file : files) {
+      try (Utf8JsonParser parser = new Utf8JsonParser(file)) {
+        blackhole.consume(parser.parse());
+      }
+    }
+  }
+
+  @Benchmark public void parseStructural(Blackhole blackhole) throws JsonParser.SyntaxError {
+    for (byte[] document : documents) {
+      blackhole.consume(new StructuralJsonParser(document).parse());
+    }
+  }
+
+  /** Parse with a symbol table shared between all documents. */
+  @Benchmark public void parseUtf8Symbols(Blackhole blackhole)
+      throws IOException, JsonParser.SyntaxError {
+    SymbolTable symbols = new SymbolTable();
+    for (byte[] document : documents) {
+      try (Utf8JsonParser parser = new Utf8JsonParser(document)) {
+        parser.setSymbolTable(symbols);
+        blackhole.consume(parser.parse());
+      }
+    }
+  }
+}
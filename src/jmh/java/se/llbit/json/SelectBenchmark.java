@@ -0,0 +1,118 @@
+/* Copyright (c) 2017, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.json;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares selective parsing, with JSON Pointers or ignored members, to
+ * parsing the whole document.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SelectBenchmark {
+  private byte[] document;
+
+  private List<JsonPointer> pointers;
+
+  private List<String> ignored;
+
+  @Setup public void setup() {
+    document = Corpus.records(10000).getBytes(StandardCharsets.UTF_8);
+    pointers = Arrays.asList(new JsonPointer("/100/name"), new JsonPointer("/9000/tags/1"));
+    ignored = Arrays.asList("name", "tags");
+  }
+
+  @Benchmark public void parseAndGet(Blackhole blackhole)
+      throws IOException, JsonParser.SyntaxError {
+    try (JsonParser parser = new JsonParser(new ByteArrayInputStream(document))) {
+      JsonArray array = parser.parse().array();
+      blackhole.consume(array.get(100).object().get("name"));
+      blackhole.consume(array.get(9000).object().get("tags").array().get(1));
+    }
+  }
+
+  @Benchmark public void select(Blackhole blackhole) throws IOException, JsonParser.SyntaxError {
+    try (JsonParser parser = new JsonParser(new ByteArrayInputStream(document))) {
+      blackhole.consume(parser.parse(pointers));
+    }
+  }
+
+  @Benchmark public void parseAndGetUtf8(Blackhole blackhole)
+      throws IOException, JsonParser.SyntaxError {
+    try (Utf8JsonParser parser = new Utf8JsonParser(document)) {
+      JsonArray array = parser.parse().array();
+      blackhole.consume(array.get(100).object().get("name"));
+      blackhole.consume(array.get(9000).object().get("tags").array().get(1));
+    }
+  }
+
+  @Benchmark public void selectUtf8(Blackhole blackhole)
+      throws IOException, JsonParser.SyntaxError {
+    try (Utf8JsonParser parser = new Utf8JsonParser(document)) {
+      blackhole.consume(parser.parse(pointers));
+    }
+  }
+
+  @Benchmark public void parse(Blackhole blackhole) throws IOException, JsonParser.SyntaxError {
+    try (JsonParser parser = new JsonParser(new ByteArrayInputStream(document))) {
+      blackhole.consume(parser.parse());
+    }
+  }
+
+  @Benchmark public void parseIgnoring(Blackhole blackhole)
+      throws IOException, JsonParser.SyntaxError {
+    try (JsonParser parser = new JsonParser(new ByteArrayInputStream(document))) {
+      parser.setIgnoredMembers(ignored);
+      blackhole.consume(parser.parse());
+    }
+  }
+}
@@ -0,0 +1,120 @@
+/* Copyright (c) 2017, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.json;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Measures compact and pretty-printed serialization throughput. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializeBenchmark {
+  @Param({ "testfiles", "records", "wide", "deep", "numbers", "escapes" })
+  public String corpus;
+
+  private List<JsonValue> values;
+
+  /** Discards all output. */
+  private final PrintStream nullStream = new PrintStream(new OutputStream() {
+    @Override public void write(int b) {
+    }
+
+    @Override public void write(byte[] b, int off, int len) {
+    }
+  });
+
+  /** Discards all output. */
+  private final Writer nullWriter = new Writer() {
+    @Override public void write(char[] buf, int off, int len) {
+    }
+
+    @Override public void flush() {
+    }
+
+    @Override public void close() {
+    }
+  };
+
+  @Setup public void setup() throws IOException, JsonParser.SyntaxError {
+    values = Corpus.parse(Corpus.load(corpus));
+  }
+
+  @Benchmark public void toCompactString(Blackhole blackhole) {
+    for (JsonValue value : values) {
+      blackhole.consume(value.toCompactString());
+    }
+  }
+
+  /** Writes each tree as UTF-8 with a streaming JsonWriter. */
+  @Benchmark public void writeUtf8() throws IOException {
+    for (JsonValue value : values) {
+      JsonWriter writer = new JsonWriter(nullStream);
+      writer.value(value);
+      writer.flush();
+    }
+  }
+
+  @Benchmark public void prettyPrint() {
+    for (JsonValue value : values) {
+      PrettyPrinter printer = new PrettyPrinter("  ", nullStream);
+      value.prettyPrint(printer);
+    }
+  }
+
+  /** Pretty prints through a buffered Writer target. */
+  @Benchmark public void prettyPrintWriter() {
+    for (JsonValue value : values) {
+      PrettyPrinter printer = new PrettyPrinter("  ", nullWriter);
+      value.prettyPrint(printer);
+      printer.flush();
+    }
+  }
+}
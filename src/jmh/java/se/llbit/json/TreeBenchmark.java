@@ -0,0 +1,168 @@
+/* Copyright (c) 2017, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.json;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Measures tree operations: deep copy, equality, hashing, and member lookup. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TreeBenchmark {
+  @Param({ "testfiles", "records", "wide", "deep", "numbers", "escapes" })
+  public String corpus;
+
+  private List<JsonValue> values;
+
+  /** Equal but not identical trees, to avoid identity short-cuts in equals(). */
+  private List<JsonValue> others;
+
+  /** Frozen trees, which cache their hash codes. */
+  private List<JsonValue> frozen;
+
+  /** Persistent versions of the trees. */
+  private List<JsonValue> persistent;
+
+  @Setup public void setup() throws IOException, JsonParser.SyntaxError {
+    List<byte[]> documents = Corpus.load(corpus);
+    values = Corpus.parse(documents);
+    others = Corpus.parse(documents);
+    frozen = Corpus.parse(documents);
+    for (JsonValue value : frozen) {
+      value.freeze();
+    }
+    persistent = new ArrayList<>();
+    for (JsonValue value : values) {
+      persistent.add(PersistentJsonObject.persistent(value));
+    }
+  }
+
+  @Benchmark public void copy(Blackhole blackhole) {
+    for (JsonValue value : values) {
+      blackhole.consume(value.copy());
+    }
+  }
+
+  @Benchmark public void equality(Blackhole blackhole) {
+    for (int i = 0; i < values.size(); ++i) {
+      blackhole.consume(values.get(i).equals(others.get(i)));
+    }
+  }
+
+  @Benchmark public void hashing(Blackhole blackhole) {
+    for (JsonValue value : values) {
+      blackhole.consume(value.hashCode());
+    }
+  }
+
+  @Benchmark public void hashingFrozen(Blackhole blackhole) {
+    for (JsonValue value : frozen) {
+      blackhole.consume(value.hashCode());
+    }
+  }
+
+  /** Changes the first member or element of a copy of each tree. */
+  @Benchmark public void editCopy(Blackhole blackhole) {
+    for (JsonValue value : values) {
+      if (value.isObject()) {
+        JsonObject copy = value.object().copy();
+        if (!copy.isEmpty()) {
+          copy.set(0, Json.NULL);
+        }
+        blackhole.consume(copy);
+      } else {
+        JsonArray copy = value.array().copy();
+        if (!copy.isEmpty()) {
+          copy.set(0, Json.NULL);
+        }
+        blackhole.consume(copy);
+      }
+    }
+  }
+
+  /** Creates a new version of each persistent tree with the first member or element changed. */
+  @Benchmark public void editPersistent(Blackhole blackhole) {
+    for (JsonValue value : persistent) {
+      if (value.isObject()) {
+        PersistentJsonObject object = (PersistentJsonObject) value;
+        if (!object.isEmpty()) {
+          object = object.with(object.get(0).name, Json.NULL);
+        }
+        blackhole.consume(object);
+      } else {
+        PersistentJsonArray array = (PersistentJsonArray) value;
+        if (!array.isEmpty()) {
+          array = array.with(0, Json.NULL);
+        }
+        blackhole.consume(array);
+      }
+    }
+  }
+
+  /** Looks up every member name of the top-level objects, and of objects in top-level arrays. */
+  @Benchmark public void lookup(Blackhole blackhole) {
+    for (JsonValue value : values) {
+      if (value.isObject()) {
+        lookupAll(value.object(), blackhole);
+      } else {
+        for (JsonValue element : value.array()) {
+          if (element.isObject()) {
+            lookupAll(element.object(), blackhole);
+          }
+        }
+      }
+    }
+  }
+
+  private static void lookupAll(JsonObject object, Blackhole blackhole) {
+    for (JsonMember member : object) {
+      blackhole.consume(object.get(member.name));
+    }
+  }
+}
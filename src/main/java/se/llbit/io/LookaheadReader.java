@@ -37,13 +37,13 @@ import java.io.Reader;
 
 public class LookaheadReader extends FilterReader {
 
-  /** Maximum read buffer size. */
-  private static final int BUFF_SIZE = 1024;
+  /** Default read buffer size. */
+  public static final int DEFAULT_BUFFER_SIZE = 1024;
 
   /** The current lookahead. */
   private final int lookahead;
 
-  private final char[] buffer = new char[BUFF_SIZE];
+  private final char[] buffer;
 
   /** Current position in the read buffer. */
   private int pos = 0;
@@ -52,17 +52,41 @@ public class LookaheadReader extends FilterReader {
   private int length = 0;
 
   public LookaheadReader(Reader in, int lookahead) {
+    this(in, lookahead, DEFAULT_BUFFER_SIZE);
+  }
+
+  /**
+   * @param in the reader to read from.
+   * @param lookahead the number of characters that can be peeked at.
+   * @param bufferSize the size of the read buffer, must be larger than the lookahead.
+   */
+  public LookaheadReader(Reader in, int lookahead, int bufferSize) {
     super(in);
     this.lookahead = lookahead;
-    if (this.lookahead >= BUFF_SIZE) {
+    if (this.lookahead >= bufferSize) {
       throw new IllegalArgumentException("Too large lookahead");
     }
+    buffer = new char[bufferSize];
   }
 
   public LookaheadReader(InputStream in, int lookahead) {
     this(new InputStreamReader(in), lookahead);
   }
 
+  public LookaheadReader(InputStream in, int lookahead, int bufferSize) {
+    this(new InputStreamReader(in), lookahead, bufferSize);
+  }
+
+  /**
+   * Start reading from a new reader. Buffered characters from the previous
+   * reader are discarded, and the previous reader is not closed.
+   */
+  public void setInput(Reader in) {
+    this.in = in;
+    pos = 0;
+    length = 0;
+  }
+
   @Override public long skip(long num) throws IOException {
     refill();
     long skipped = Math.min(num, length - pos);
@@ -113,6 +137,93 @@ public class LookaheadReader extends FilterReader {
     }
   }
 
+  /**
+   * Skip whitespace characters (space, tab, line feed, and carriage return).
+   */
+  public void skipWhitespace() throws IOException {
+    while (true) {
+      refill();
+      if (pos >= length) {
+        return;
+      }
+      char[] buffer = this.buffer;
+      int end = length;
+      int i = pos;
+      while (i < end) {
+        char c = buffer[i];
+        if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+          pos = i;
+          return;
+        }
+        i += 1;
+      }
+      pos = i;
+    }
+  }
+
+  /**
+   * Reads characters into the output buffer until one of the two stop
+   * characters is found. The stop character is not consumed.
+   *
+   * @param stop1 first stop character.
+   * @param stop2 second stop character.
+   * @param out the buffer to append the read characters to.
+   * @return the stop character that was found, or -1 if the end
+   * of the input was reached before finding a stop character.
+   */
+  public int scanUntil(char stop1, char stop2, StringBuilder out) throws IOException {
+    while (true) {
+      refill();
+      if (pos >= length) {
+        return -1;
+      }
+      char[] buffer = this.buffer;
+      int start = pos;
+      int end = length;
+      int i = start;
+      while (i < end) {
+        char c = buffer[i];
+        if (c == stop1 || c == stop2) {
+          out.append(buffer, start, i - start);
+          pos = i;
+          return c;
+        }
+        i += 1;
+      }
+      out.append(buffer, start, end - start);
+      pos = end;
+    }
+  }
+
+  /**
+   * Skips characters until one of the given stop characters is found.
+   * The stop character is not consumed.
+   *
+   * @param stops the stop characters.
+   * @return the stop character that was found, or -1 if the end
+   * of the input was reached before finding a stop character.
+   */
+  public int skipUntil(char[] stops) throws IOException {
+    while (true) {
+      refill();
+      if (pos >= length) {
+        return -1;
+      }
+      char[] buffer = this.buffer;
+      int end = length;
+      for (int i = pos; i < end; ++i) {
+        char c = buffer[i];
+        for (char stop : stops) {
+          if (c == stop) {
+            pos = i;
+            return c;
+          }
+        }
+      }
+      pos = end;
+    }
+  }
+
   /**
    * Refills the input buffer if it does not currently satisfy the required
    * lookahead.
@@ -127,7 +238,7 @@ public class LookaheadReader extends FilterReader {
         length = 0;
         pos = 0;
       }
-      int i = super.read(buffer, length, BUFF_SIZE - length);
+      int i = super.read(buffer, length, buffer.length - length);
       length += (i != -1) ? i : 0;
     }
   }
@@ -137,19 +248,19 @@ public class LookaheadReader extends FilterReader {
   }
 
   @Override public int read(char cbuf[], int offset, int len) throws IOException {
-    if (!ready()) {
-      return -1;
-    }
-
-    for (int i = 0; i < len; i++) {
-      int c = read();
-      if (c < 0) {
-        return i;
-      } else {
-        cbuf[offset + i] = (char) c;
+    int count = 0;
+    while (count < len) {
+      refill();
+      int available = length - pos;
+      if (available <= 0) {
+        break;
       }
+      int n = Math.min(available, len - count);
+      System.arraycopy(buffer, pos, cbuf, offset + count, n);
+      pos += n;
+      count += n;
     }
-    return len;
+    return (count == 0 && len > 0) ? -1 : count;
   }
 
   @Override public boolean ready() throws IOException {
@@ -157,4 +268,3 @@ public class LookaheadReader extends FilterReader {
   }
 
 }
-
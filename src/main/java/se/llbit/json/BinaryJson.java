@@ -0,0 +1,594 @@
+/* Copyright (c) 2017, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.json;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact binary encoding of JSON trees, which is faster to decode than
+ * JSON text.
+ *
+ * <p>An encoded document starts with the bytes {@code 'J' 'B'} and a
+ * format version, followed by a table of the member names in the document
+ * and then the root value. Each value starts with a tag byte:
+ *
+ * <ul>
+ * <li>null, false, true and the unknown literal have no payload.
+ * <li>Strings are stored as a length and the UTF-8 bytes of the string.
+ * Unpaired surrogate characters are encoded as three byte sequences, so
+ * that every Java string is decoded unchanged.
+ * <li>Integers are stored as ZigZag encoded variable-length integers, and
+ * decimal numbers as the eight bytes of the double value.
+ * <li>Numbers that keep their text, because it is not the shortest form of
+ * the number, are stored like strings.
+ * <li>Objects are stored as the member count followed by each member, as
+ * an index in the name table and the member value.
+ * <li>Arrays are stored as the element count followed by the elements.
+ * </ul>
+ *
+ * <p>Lengths, counts and name indexes are unsigned variable-length integers,
+ * with seven bits per byte and the high bit set on all but the last byte.
+ *
+ * <p>Decoding gives a tree equal to the encoded tree, which is written as
+ * the same JSON text. Arrays of numbers are packed like when parsed.
+ * Number text is accepted in the same lenient syntax as by the parsers.
+ *
+ * <p>Objects and arrays can be nested at most {@link #MAX_DEPTH} levels
+ * deep. The parsers have no such limit, so a tree they return may be too
+ * deep to encode.
+ */
+public final class BinaryJson {
+  private BinaryJson() { }
+
+  private static final byte MAGIC_1 = 'J';
+
+  private static final byte MAGIC_2 = 'B';
+
+  private static final byte VERSION = 1;
+
+  static final byte NULL = 0;
+  static final byte FALSE = 1;
+  static final byte TRUE = 2;
+  static final byte UNKNOWN = 3;
+  static final byte STRING = 4;
+  static final byte LONG = 5;
+  static final byte DOUBLE = 6;
+  static final byte NUMBER_TEXT = 7;
+  static final byte OBJECT = 8;
+  static final byte ARRAY = 9;
+
+  /** Maximum nesting depth of objects and arrays. */
+  static final int MAX_DEPTH = 1000;
+
+  /**
+   * Encode a JSON value. Unlike the parsers, the encoder limits the nesting
+   * depth of objects and arrays to {@link #MAX_DEPTH} levels.
+   *
+   * @throws IllegalArgumentException if the tree contains a value that is
+   * not a standard JSON value, number text that the parsers would not
+   * accept, or is nested more than {@link #MAX_DEPTH} levels deep.
+   */
+  public static byte[] encode(JsonValue value) {
+    Encoder encoder = new Encoder();
+    encoder.value(value);
+    return encoder.toByteArray();
+  }
+
+  /**
+   * Encode a JSON value to an output stream. The stream is not closed.
+   *
+   * @throws IllegalArgumentException if the tree contains a value that is
+   * not a standard JSON value, number text that the parsers would not
+   * accept, or is nested more than {@link #MAX_DEPTH} levels deep.
+   * @see #encode(JsonValue)
+   */
+  public static void encode(JsonValue value, OutputStream out) throws IOException {
+    out.write(encode(value));
+  }
+
+  /**
+   * Decode an encoded JSON value.
+   *
+   * @throws IOException if the data is not a valid encoded JSON value.
+   */
+  public static JsonValue decode(byte[] data) throws IOException {
+    return decode(data, 0, data.length);
+  }
+
+  /**
+   * Decode an encoded JSON value from a part of a byte array.
+   *
+   * @throws IOException if the data is not a valid encoded JSON value.
+   */
+  public static JsonValue decode(byte[] data, int offset, int length) throws IOException {
+    if (offset < 0 || length < 0 || offset + length > data.length) {
+      throw new IndexOutOfBoundsException();
+    }
+    return new Decoder(data, offset, offset + length).document();
+  }
+
+  /** Encodes the values of a document, and collects the member names. */
+  static final class Encoder {
+    /** The encoded values. */
+    private byte[] buf = new byte[256];
+
+    private int size = 0;
+
+    private final Map<String, Integer> nameIndex = new HashMap<>();
+
+    private final List<String> names = new ArrayList<>();
+
+    /** Nesting depth of the current value. */
+    private int depth = 0;
+
+    void value(JsonValue value) {
+      if (value instanceof JsonObject) {
+        JsonObject object = (JsonObject) value;
+        int count = object.size();
+        enter();
+        tag(OBJECT);
+        varint(count);
+        for (int i = 0; i < count; ++i) {
+          JsonMember member = object.member(i);
+          varint(name(member.name));
+          value(member.value);
+        }
+        depth -= 1;
+      } else if (value instanceof JsonArray) {
+        JsonArray array = (JsonArray) value;
+        int count = array.size();
+        enter();
+        tag(ARRAY);
+        varint(count);
+        if (array.isPacked()) {
+          array.writeTo(this);
+        } else {
+          for (int i = 0; i < count; ++i) {
+            value(array.element(i));
+          }
+        }
+        depth -= 1;
+      } else if (value instanceof JsonString) {
+        tag(STRING);
+        string(((JsonString) value).value);
+      } else if (value instanceof JsonNumber) {
+        ((JsonNumber) value).writeTo(this);
+      } else if (value == Json.NULL) {
+        tag(NULL);
+      } else if (value == Json.FALSE) {
+        tag(FALSE);
+      } else if (value == Json.TRUE) {
+        tag(TRUE);
+      } else if (value == Json.UNKNOWN) {
+        tag(UNKNOWN);
+      } else {
+        throw new IllegalArgumentException(
+            "Can not encode JSON value of type " + value.getClass().getName());
+      }
+    }
+
+    void longValue(long value) {
+      tag(LONG);
+      // ZigZag encoding, so that small negative numbers are short.
+      long bits = (value << 1) ^ (value >> 63);
+      ensureCapacity(10);
+      while ((bits & ~0x7FL) != 0) {
+        buf[size++] = (byte) ((bits & 0x7F) | 0x80);
+        bits >>>= 7;
+      }
+      buf[size++] = (byte) bits;
+    }
+
+    /** Write a decimal number given by {@link Double#doubleToLongBits(double)}. */
+    void doubleBits(long bits) {
+      tag(DOUBLE);
+      ensureCapacity(8);
+      for (int i = 0; i < 8; ++i) {
+        buf[size++] = (byte) bits;
+        bits >>>= 8;
+      }
+    }
+
+    private void enter() {
+      depth += 1;
+      if (depth > MAX_DEPTH) {
+        throw new IllegalArgumentException(
+            "JSON value nested deeper than " + MAX_DEPTH + " levels");
+      }
+    }
+
+    void numberText(String text) {
+      if (!isNumberLexeme(text.toCharArray(), text.length())) {
+        throw new IllegalArgumentException("Not a valid JSON number: " + text);
+      }
+      tag(NUMBER_TEXT);
+      string(text);
+    }
+
+    private int name(String name) {
+      Integer index = nameIndex.get(name);
+      if (index == null) {
+        index = names.size();
+        nameIndex.put(name, index);
+        names.add(name);
+      }
+      return index;
+    }
+
+    private void tag(byte tag) {
+      ensureCapacity(1);
+      buf[size++] = tag;
+    }
+
+    private void varint(int value) {
+      ensureCapacity(5);
+      while ((value & ~0x7F) != 0) {
+        buf[size++] = (byte) ((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      buf[size++] = (byte) value;
+    }
+
+    /** Write the length and UTF-8 bytes of a string. */
+    private void string(String string) {
+      int length = string.length();
+      int bytes = 0;
+      for (int i = 0; i < length; ++i) {
+        char c = string.charAt(i);
+        if (c < 0x80) {
+          bytes += 1;
+        } else if (c < 0x800) {
+          bytes += 2;
+        } else if (Character.isHighSurrogate(c) && i + 1 < length
+            && Character.isLowSurrogate(string.charAt(i + 1))) {
+          bytes += 4;
+          i += 1;
+        } else {
+          bytes += 3;
+        }
+      }
+      varint(bytes);
+      ensureCapacity(bytes);
+      byte[] buf = this.buf;
+      int pos = size;
+      for (int i = 0; i < length; ++i) {
+        char c = string.charAt(i);
+        if (c < 0x80) {
+          buf[pos++] = (byte) c;
+        } else if (c < 0x800) {
+          buf[pos++] = (byte) (0xC0 | (c >> 6));
+          buf[pos++] = (byte) (0x80 | (c & 0x3F));
+        } else if (Character.isHighSurrogate(c) && i + 1 < length
+            && Character.isLowSurrogate(string.charAt(i + 1))) {
+          int cp = Character.toCodePoint(c, string.charAt(i + 1));
+          buf[pos++] = (byte) (0xF0 | (cp >> 18));
+          buf[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+          buf[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+          buf[pos++] = (byte) (0x80 | (cp & 0x3F));
+          i += 1;
+        } else {
+          buf[pos++] = (byte) (0xE0 | (c >> 12));
+          buf[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+          buf[pos++] = (byte) (0x80 | (c & 0x3F));
+        }
+      }
+      size = pos;
+    }
+
+    private void ensureCapacity(int extra) {
+      if (size + extra > buf.length) {
+        buf = Arrays.copyOf(buf, Math.max(size + extra, buf.length * 2));
+      }
+    }
+
+    /** @return the complete document: the header, the name table and the values. */
+    byte[] toByteArray() {
+      byte[] values = buf;
+      int valuesSize = size;
+      buf = new byte[64];
+      size = 0;
+      ensureCapacity(3);
+      buf[size++] = MAGIC_1;
+      buf[size++] = MAGIC_2;
+      buf[size++] = VERSION;
+      varint(names.size());
+      for (String name : names) {
+        string(name);
+      }
+      byte[] document = Arrays.copyOf(buf, size + valuesSize);
+      System.arraycopy(values, 0, document, size, valuesSize);
+      return document;
+    }
+  }
+
+  /** Decodes a document. */
+  private static final class Decoder {
+    private final byte[] buf;
+
+    private int pos;
+
+    private final int end;
+
+    private String[] names;
+
+    private char[] chars = new char[64];
+
+    private final char[] numberScratch = new char[DoubleFormatter.MAX_CHARS];
+
+    /** Nesting depth of the current value. */
+    private int depth = 0;
+
+    Decoder(byte[] buf, int pos, int end) {
+      this.buf = buf;
+      this.pos = pos;
+      this.end = end;
+    }
+
+    JsonValue document() throws IOException {
+      if (end - pos < 3 || buf[pos] != MAGIC_1 || buf[pos + 1] != MAGIC_2) {
+        throw new IOException("not binary JSON");
+      }
+      if (buf[pos + 2] != VERSION) {
+        throw new IOException("unsupported binary JSON version " + buf[pos + 2]);
+      }
+      pos += 3;
+      int count = count();
+      names = new String[count];
+      for (int i = 0; i < count; ++i) {
+        names[i] = string();
+      }
+      JsonValue value = value();
+      if (pos != end) {
+        throw new IOException("garbage at end of binary JSON");
+      }
+      return value;
+    }
+
+    private JsonValue value() throws IOException {
+      byte tag = next();
+      switch (tag) {
+        case OBJECT: {
+          enter();
+          int count = count();
+          JsonObject object = new JsonObject(count);
+          for (int i = 0; i < count; ++i) {
+            int name = length();
+            if (name >= names.length) {
+              throw new IOException("invalid member name index " + name);
+            }
+            object.add(new JsonMember(names[name], value().owned()));
+          }
+          depth -= 1;
+          return object;
+        }
+        case ARRAY: {
+          enter();
+          int count = count();
+          JsonArray array = new JsonArray(count);
+          for (int i = 0; i < count; ++i) {
+            if (pos < end && buf[pos] == LONG) {
+              pos += 1;
+              array.add(zigzag());
+            } else if (pos < end && buf[pos] == DOUBLE) {
+              pos += 1;
+              array.add(Double.longBitsToDouble(doubleBits()));
+            } else if (pos < end && buf[pos] == NUMBER_TEXT) {
+              pos += 1;
+              int length = numberText();
+              array.addLexeme(chars, 0, length, numberScratch);
+            } else {
+              array.add(value().owned());
+            }
+          }
+          depth -= 1;
+          return array;
+        }
+        case STRING:
+          return new JsonString(string());
+        case LONG:
+          return JsonNumber.valueOf(zigzag());
+        case DOUBLE:
+          return new JsonNumber(Double.longBitsToDouble(doubleBits()));
+        case NUMBER_TEXT: {
+          int length = numberText();
+          return JsonNumber.fromLexeme(chars, 0, length, numberScratch);
+        }
+        case NULL:
+          return Json.NULL;
+        case FALSE:
+          return Json.FALSE;
+        case TRUE:
+          return Json.TRUE;
+        case UNKNOWN:
+          return Json.UNKNOWN;
+        default:
+          throw new IOException("invalid binary JSON tag " + tag);
+      }
+    }
+
+    private void enter() throws IOException {
+      depth += 1;
+      if (depth > MAX_DEPTH) {
+        throw new IOException("binary JSON nested deeper than " + MAX_DEPTH + " levels");
+      }
+    }
+
+    /** Reads number text into the character buffer, and checks that it is a number lexeme. */
+    private int numberText() throws IOException {
+      int length = chars();
+      if (!isNumberLexeme(chars, length)) {
+        throw new IOException("invalid number in binary JSON");
+      }
+      return length;
+    }
+
+    private byte next() throws IOException {
+      if (pos >= end) {
+        throw new IOException("unexpected end of binary JSON");
+      }
+      return buf[pos++];
+    }
+
+    /**
+     * Reads the number of following items. Each item takes at least one
+     * byte, so a larger count than the remaining bytes is invalid.
+     */
+    private int count() throws IOException {
+      int count = length();
+      if (count > end - pos) {
+        throw new IOException("unexpected end of binary JSON");
+      }
+      return count;
+    }
+
+    /** Reads an unsigned variable-length integer that fits in an int. */
+    private int length() throws IOException {
+      int value = 0;
+      for (int shift = 0; shift < 35; shift += 7) {
+        byte b = next();
+        value |= (b & 0x7F) << shift;
+        if (b >= 0) {
+          if (value < 0 || (shift == 28 && (b & 0x70) != 0)) {
+            break;
+          }
+          return value;
+        }
+      }
+      throw new IOException("invalid length in binary JSON");
+    }
+
+    private long zigzag() throws IOException {
+      long bits = 0;
+      for (int shift = 0; shift < 70; shift += 7) {
+        byte b = next();
+        bits |= (long) (b & 0x7F) << shift;
+        if (b >= 0) {
+          return (bits >>> 1) ^ -(bits & 1);
+        }
+      }
+      throw new IOException("invalid integer in binary JSON");
+    }
+
+    private long doubleBits() throws IOException {
+      if (end - pos < 8) {
+        throw new IOException("unexpected end of binary JSON");
+      }
+      long bits = 0;
+      for (int i = 7; i >= 0; --i) {
+        bits = (bits << 8) | (buf[pos + i] & 0xFF);
+      }
+      pos += 8;
+      return bits;
+    }
+
+    private String string() throws IOException {
+      int count = chars();
+      return new String(chars, 0, count);
+    }
+
+    /**
+     * Reads a string into the character buffer.
+     *
+     * @return the number of characters read.
+     */
+    private int chars() throws IOException {
+      int length = length();
+      if (end - pos < length) {
+        throw new IOException("unexpected end of binary JSON");
+      }
+      if (length > chars.length) {
+        chars = new char[Math.max(length, chars.length * 2)];
+      }
+      byte[] buf = this.buf;
+      char[] chars = this.chars;
+      int i = pos;
+      int stop = pos + length;
+      int count = 0;
+      while (i < stop) {
+        int b = buf[i];
+        if (b >= 0) {
+          chars[count++] = (char) b;
+          i += 1;
+        } else if ((b & 0xE0) == 0xC0 && i + 1 < stop) {
+          chars[count++] = (char) (((b & 0x1F) << 6) | (buf[i + 1] & 0x3F));
+          i += 2;
+        } else if ((b & 0xF0) == 0xE0 && i + 2 < stop) {
+          chars[count++] = (char) (((b & 0x0F) << 12) | ((buf[i + 1] & 0x3F) << 6)
+              | (buf[i + 2] & 0x3F));
+          i += 3;
+        } else if ((b & 0xF8) == 0xF0 && i + 3 < stop) {
+          int cp = ((b & 0x07) << 18) | ((buf[i + 1] & 0x3F) << 12)
+              | ((buf[i + 2] & 0x3F) << 6) | (buf[i + 3] & 0x3F);
+          if (cp < Character.MIN_SUPPLEMENTARY_CODE_POINT || cp > Character.MAX_CODE_POINT) {
+            throw new IOException("invalid string in binary JSON");
+          }
+          chars[count++] = Character.highSurrogate(cp);
+          chars[count++] = Character.lowSurrogate(cp);
+          i += 4;
+        } else {
+          throw new IOException("invalid string in binary JSON");
+        }
+      }
+      pos = stop;
+      return count;
+    }
+  }
+
+  /**
+   * Checks number text against the lexeme syntax of the parsers: a digit or
+   * sign, followed by digits, signs, decimal points and exponent markers.
+   * This is more lenient than the JSON number syntax, so that every number
+   * a parser returns can be encoded.
+   *
+   * @return {@code true} if the characters are a number lexeme.
+   */
+  static boolean isNumberLexeme(char[] chars, int length) {
+    if (length == 0) {
+      return false;
+    }
+    char first = chars[0];
+    if ((first < '0' || first > '9') && first != '-' && first != '+') {
+      return false;
+    }
+    for (int i = 1; i < length; ++i) {
+      char c = chars[i];
+      if ((c < '0' || c > '9') && c != '-' && c != '+' && c != '.' && c != 'e' && c != 'E') {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,288 @@
+/* Copyright (c) 2017, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.json;
+
+import java.math.BigInteger;
+
+/**
+ * Formats doubles as the shortest decimal that rounds to the same double.
+ *
+ * <p>The decimal is computed with the Schubfach algorithm, and laid out like
+ * {@link Double#toString(double)} in Java 19 and later: plain notation for
+ * magnitudes from 10^-3 up to 10^7, and computerized scientific notation
+ * otherwise. Older Java versions sometimes print more digits than needed.
+ *
+ * <p>See Raffaello Giulietti, "The Schubfach way to render doubles", 2020.
+ */
+final class DoubleFormatter {
+  private DoubleFormatter() { }
+
+  /** Maximum number of characters written by {@link #format}. */
+  static final int MAX_CHARS = 24;
+
+  private static final int P = 53;
+  private static final int Q_MIN = -1074;
+  private static final long C_MIN = 1L << (P - 1);
+  private static final long C_TINY = 3;
+  private static final int BQ_MASK = 0x7FF;
+  private static final long T_MASK = (1L << (P - 1)) - 1;
+  private static final long MASK_63 = (1L << 63) - 1;
+
+  /** Number of decimal digits needed for doubles. */
+  private static final int H = 17;
+
+  private static final int K_MIN = -324;
+  private static final int K_MAX = 292;
+
+  /**
+   * For each k from K_MIN to K_MAX, let 10^-k = b 2^r with 2^125 <= b < 2^126,
+   * and g = floor(b) + 1. Entry {@code 2*(k-K_MIN)} holds the high 63 bits of
+   * g and the next entry holds the low 63 bits.
+   */
+  private static final long[] G = new long[2 * (K_MAX - K_MIN + 1)];
+
+  private static final long[] POW10 = new long[H + 1];
+
+  static {
+    BigInteger ten = BigInteger.TEN;
+    for (int k = K_MIN; k <= K_MAX; ++k) {
+      BigInteger b;
+      if (k <= 0) {
+        BigInteger pow = ten.pow(-k);
+        int shift = pow.bitLength() - 126;
+        b = shift > 0 ? pow.shiftRight(shift) : pow.shiftLeft(-shift);
+      } else {
+        BigInteger pow = ten.pow(k);
+        b = BigInteger.ONE.shiftLeft(pow.bitLength() + 125).divide(pow);
+      }
+      BigInteger g = b.add(BigInteger.ONE);
+      int i = 2 * (k - K_MIN);
+      G[i] = g.shiftRight(63).longValue();
+      G[i + 1] = g.longValue() & MASK_63;
+    }
+    long pow = 1;
+    for (int i = 0; i <= H; ++i) {
+      POW10[i] = pow;
+      pow *= 10;
+    }
+  }
+
+  /** Format a double the same way as {@link #format(double, char[], int)}. */
+  static String toString(double v) {
+    char[] chars = new char[MAX_CHARS];
+    return new String(chars, 0, format(v, chars, 0));
+  }
+
+  /**
+   * Writes the shortest decimal representation of a double.
+   *
+   * @param out output buffer with room for at least {@link #MAX_CHARS} characters.
+   * @param offset position of the first character to write.
+   * @return the position after the last written character.
+   */
+  static int format(double v, char[] out, int offset) {
+    long bits = Double.doubleToRawLongBits(v);
+    long t = bits & T_MASK;
+    int bq = (int) (bits >>> (P - 1)) & BQ_MASK;
+    if (bq == BQ_MASK) {
+      if (t != 0) {
+        return append(out, offset, "NaN");
+      }
+      return append(out, offset, bits > 0 ? "Infinity" : "-Infinity");
+    }
+    int pos = offset;
+    if (bits < 0) {
+      out[pos++] = '-';
+    }
+    if (bq != 0) {
+      // Normal value.
+      int mq = -Q_MIN + 1 - bq;
+      long c = C_MIN | t;
+      if (0 < mq && mq < P) {
+        long f = c >> mq;
+        if (f << mq == c) {
+          // Integer value.
+          return layout(f, 0, out, pos);
+        }
+      }
+      return toDecimal(-mq, c, 0, out, pos);
+    }
+    if (t != 0) {
+      // Subnormal value.
+      return t < C_TINY
+          ? toDecimal(Q_MIN, 10 * t, -1, out, pos)
+          : toDecimal(Q_MIN, t, 0, out, pos);
+    }
+    return append(out, pos, "0.0");
+  }
+
+  /** Computes the shortest decimal for c 2^q and writes it. */
+  private static int toDecimal(int q, long c, int dk, char[] out, int pos) {
+    int odd = (int) c & 1;
+    long cb = c << 2;
+    long cbr = cb + 2;
+    long cbl;
+    int k;
+    if (c != C_MIN || q == Q_MIN) {
+      cbl = cb - 2;
+      k = flog10pow2(q);
+    } else {
+      cbl = cb - 1;
+      k = flog10threeQuartersPow2(q);
+    }
+    int h = q + flog2pow10(-k) + 2;
+    int index = 2 * (k - K_MIN);
+    long g1 = G[index];
+    long g0 = G[index + 1];
+    long vb = rop(g1, g0, cb << h);
+    long vbl = rop(g1, g0, cbl << h);
+    long vbr = rop(g1, g0, cbr << h);
+    long s = vb >> 2;
+    if (s >= 100) {
+      // Try a decimal with one digit less.
+      long sp10 = (s / 10) * 10;
+      long tp10 = sp10 + 10;
+      boolean upin = vbl + odd <= sp10 << 2;
+      boolean wpin = (tp10 << 2) + odd <= vbr;
+      if (upin != wpin) {
+        return layout(upin ? sp10 : tp10, k, out, pos);
+      }
+    }
+    long t = s + 1;
+    boolean uin = vbl + odd <= s << 2;
+    boolean win = (t << 2) + odd <= vbr;
+    if (uin != win) {
+      return layout(uin ? s : t, k + dk, out, pos);
+    }
+    long cmp = vb - ((s + t) << 1);
+    return layout(cmp < 0 || cmp == 0 && (s & 1) == 0 ? s : t, k + dk, out, pos);
+  }
+
+  /** Rounds to odd the product of g and cp, scaled by 2^-127. */
+  private static long rop(long g1, long g0, long cp) {
+    long x1 = DoubleParser.multiplyHigh(g0, cp);
+    long y0 = g1 * cp;
+    long y1 = DoubleParser.multiplyHigh(g1, cp);
+    long z = (y0 >>> 1) + x1;
+    long vbp = y1 + (z >>> 63);
+    return vbp | (((z & MASK_63) + MASK_63) >>> 63);
+  }
+
+  /** floor(log10(2^e)) */
+  private static int flog10pow2(int e) {
+    return (int) (e * 661971961083L >> 41);
+  }
+
+  /** floor(log10(3/4 2^e)) */
+  private static int flog10threeQuartersPow2(int e) {
+    return (int) (e * 661971961083L - 274743187321L >> 41);
+  }
+
+  /** floor(log2(10^e)) */
+  private static int flog2pow10(int e) {
+    return (int) (e * 913124641741L >> 38);
+  }
+
+  /** Writes the decimal f 10^e, for a positive f. */
+  private static int layout(long f, int e, char[] out, int pos) {
+    while (f % 10 == 0) {
+      f /= 10;
+      e += 1;
+    }
+    int len = 1;
+    while (len < H + 1 && f >= POW10[len]) {
+      len += 1;
+    }
+    // The value is 0.d1...dlen 10^exp.
+    int exp = e + len;
+    if (0 < exp && exp <= 7) {
+      // Plain notation, at least one integer digit.
+      if (len <= exp) {
+        pos = digits(f, len, out, pos);
+        for (int i = len; i < exp; ++i) {
+          out[pos++] = '0';
+        }
+        out[pos++] = '.';
+        out[pos++] = '0';
+      } else {
+        long pow = POW10[len - exp];
+        pos = digits(f / pow, exp, out, pos);
+        out[pos++] = '.';
+        pos = digits(f % pow, len - exp, out, pos);
+      }
+    } else if (-3 < exp && exp <= 0) {
+      // Plain notation, less than one.
+      out[pos++] = '0';
+      out[pos++] = '.';
+      for (int i = exp; i < 0; ++i) {
+        out[pos++] = '0';
+      }
+      pos = digits(f, len, out, pos);
+    } else {
+      // Scientific notation.
+      long pow = POW10[len - 1];
+      out[pos++] = (char) ('0' + f / pow);
+      out[pos++] = '.';
+      if (len > 1) {
+        pos = digits(f % pow, len - 1, out, pos);
+      } else {
+        out[pos++] = '0';
+      }
+      out[pos++] = 'E';
+      int x = exp - 1;
+      if (x < 0) {
+        out[pos++] = '-';
+        x = -x;
+      }
+      if (x >= 100) {
+        out[pos++] = (char) ('0' + x / 100);
+        out[pos++] = (char) ('0' + x / 10 % 10);
+      } else if (x >= 10) {
+        out[pos++] = (char) ('0' + x / 10);
+      }
+      out[pos++] = (char) ('0' + x % 10);
+    }
+    return pos;
+  }
+
+  /** Writes exactly {@code count} digits of {@code value}, with leading zeroes. */
+  private static int digits(long value, int count, char[] out, int pos) {
+    for (int i = pos + count - 1; i >= pos; --i) {
+      out[i] = (char) ('0' + value % 10);
+      value /= 10;
+    }
+    return pos + count;
+  }
+
+  private static int append(char[] out, int pos, String s) {
+    s.getChars(0, s.length(), out, pos);
+    return pos + s.length();
+  }
+}
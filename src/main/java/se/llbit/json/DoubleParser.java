@@ -0,0 +1,276 @@
+/* Copyright (c) 2017, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.json;
+
+import java.math.BigInteger;
+
+/**
+ * Converts decimal numbers in character buffers to correctly rounded doubles.
+ *
+ * <p>Numbers with a short significand and a small exponent are converted
+ * exactly with a single floating-point operation (Clinger's fast path).
+ * Other numbers use the Eisel-Lemire algorithm, which computes the result
+ * from a 128-bit approximation of the power of ten. In the rare cases where
+ * the approximation is not precise enough, the number is converted with
+ * {@link Double#parseDouble(String)}.
+ *
+ * <p>See Daniel Lemire, "Number Parsing at a Gigabyte per Second",
+ * Software: Practice and Experience 51 (8), 2021.
+ */
+final class DoubleParser {
+  private DoubleParser() { }
+
+  /** Returned by {@link #parse} if the input is not a valid number. */
+  static final long INVALID = Double.doubleToLongBits(Double.NaN);
+
+  /** Smallest power of ten in the table. */
+  private static final int MIN_EXP10 = -348;
+
+  /** Largest power of ten in the table. */
+  private static final int MAX_EXP10 = 347;
+
+  /**
+   * 128-bit approximations of the powers of ten from 10^MIN_EXP10 to
+   * 10^MAX_EXP10, rounded down. The most significant bit of each
+   * approximation is set. Entry {@code 2*i} holds the high 64 bits and
+   * entry {@code 2*i+1} the low 64 bits of the power 10^(i+MIN_EXP10).
+   */
+  private static final long[] POW10_128 = new long[2 * (MAX_EXP10 - MIN_EXP10 + 1)];
+
+  /** Powers of ten that are exactly representable as doubles. */
+  private static final double[] POW10 = {
+    1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+    1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+
+  static {
+    BigInteger ten = BigInteger.TEN;
+    for (int e = MIN_EXP10; e <= MAX_EXP10; ++e) {
+      BigInteger m;
+      if (e >= 0) {
+        BigInteger pow = ten.pow(e);
+        int shift = pow.bitLength() - 128;
+        m = shift > 0 ? pow.shiftRight(shift) : pow.shiftLeft(-shift);
+      } else {
+        BigInteger pow = ten.pow(-e);
+        m = BigInteger.ONE.shiftLeft(pow.bitLength() + 127).divide(pow);
+      }
+      int i = 2 * (e - MIN_EXP10);
+      POW10_128[i] = m.shiftRight(64).longValue();
+      POW10_128[i + 1] = m.longValue();
+    }
+  }
+
+  /**
+   * Converts a JSON number to a double.
+   *
+   * <p>The accepted syntax is an optional minus sign, one or more digits,
+   * an optional fraction, and an optional exponent. Leading zeroes are
+   * accepted.
+   *
+   * @return the bits of the double value, as given by
+   * {@link Double#doubleToLongBits(double)}, or {@link #INVALID} if the
+   * characters are not a valid number.
+   */
+  static long parse(char[] chars, int offset, int length) {
+    int i = offset;
+    int end = offset + length;
+    boolean negative = i < end && chars[i] == '-';
+    if (negative) {
+      i += 1;
+    }
+    long significand = 0; // Unsigned.
+    int digits = 0; // Significant digits in the significand.
+    int exp10 = 0;
+    boolean truncated = false;
+    int start = i;
+    while (i < end && chars[i] >= '0' && chars[i] <= '9') {
+      if (digits < 19) {
+        significand = significand * 10 + (chars[i] - '0');
+        if (significand != 0) {
+          digits += 1;
+        }
+      } else {
+        exp10 += 1;
+        truncated |= chars[i] != '0';
+      }
+      i += 1;
+    }
+    if (i == start) {
+      return INVALID;
+    }
+    if (i < end && chars[i] == '.') {
+      i += 1;
+      start = i;
+      while (i < end && chars[i] >= '0' && chars[i] <= '9') {
+        if (digits < 19) {
+          significand = significand * 10 + (chars[i] - '0');
+          if (significand != 0) {
+            digits += 1;
+          }
+          exp10 -= 1;
+        } else {
+          truncated |= chars[i] != '0';
+        }
+        i += 1;
+      }
+      if (i == start) {
+        return INVALID;
+      }
+    }
+    if (i < end && (chars[i] == 'e' || chars[i] == 'E')) {
+      i += 1;
+      boolean negativeExp = i < end && chars[i] == '-';
+      if (i < end && (chars[i] == '-' || chars[i] == '+')) {
+        i += 1;
+      }
+      start = i;
+      int exp = 0;
+      while (i < end && chars[i] >= '0' && chars[i] <= '9') {
+        if (exp < 100000) {
+          exp = exp * 10 + (chars[i] - '0');
+        }
+        i += 1;
+      }
+      if (i == start) {
+        return INVALID;
+      }
+      exp10 += negativeExp ? -exp : exp;
+    }
+    if (i != end) {
+      return INVALID;
+    }
+    if (significand == 0) {
+      return negative ? Double.doubleToLongBits(-0.0) : 0;
+    }
+    if (!truncated && exp10 >= -22 && exp10 <= 22 && significand >= 0
+        && significand <= (1L << 53)) {
+      // Clinger's fast path: both operands are exact.
+      double value = significand;
+      value = exp10 < 0 ? value / POW10[-exp10] : value * POW10[exp10];
+      return Double.doubleToLongBits(negative ? -value : value);
+    }
+    long bits = eiselLemire(significand, exp10, negative);
+    if (truncated && bits != INVALID) {
+      // The exact significand is between the truncated significand and the next
+      // integer. If both round to the same double, that is the correct result.
+      if (eiselLemire(significand + 1, exp10, negative) != bits) {
+        bits = INVALID;
+      }
+    }
+    if (bits != INVALID) {
+      return bits;
+    }
+    return Double.doubleToLongBits(Double.parseDouble(new String(chars, offset, length)));
+  }
+
+  /**
+   * Computes the double nearest to {@code significand * 10^exp10}.
+   *
+   * @param significand unsigned non-zero significand.
+   * @return the double bits, or {@link #INVALID} if the result could not
+   * be determined.
+   */
+  private static long eiselLemire(long significand, int exp10, boolean negative) {
+    if (exp10 < MIN_EXP10 || exp10 > MAX_EXP10) {
+      return INVALID;
+    }
+    // Normalize the significand.
+    int clz = Long.numberOfLeadingZeros(significand);
+    long man = significand << clz;
+    long exp2 = ((217706L * exp10) >> 16) + 64 + 1023 - clz;
+
+    // Multiply by the power of ten.
+    int index = 2 * (exp10 - MIN_EXP10);
+    long powHi = POW10_128[index];
+    long powLo = POW10_128[index + 1];
+    long xHi = multiplyHigh(man, powHi);
+    long xLo = man * powHi;
+
+    // Use a wider approximation if the result is close to a rounding boundary.
+    if ((xHi & 0x1FF) == 0x1FF && lessThanUnsigned(xLo + man, man)) {
+      long yHi = multiplyHigh(man, powLo);
+      long yLo = man * powLo;
+      long mergedHi = xHi;
+      long mergedLo = xLo + yHi;
+      if (lessThanUnsigned(mergedLo, xLo)) {
+        mergedHi += 1;
+      }
+      if ((mergedHi & 0x1FF) == 0x1FF && mergedLo + 1 == 0
+          && lessThanUnsigned(yLo + man, man)) {
+        return INVALID;
+      }
+      xHi = mergedHi;
+      xLo = mergedLo;
+    }
+
+    // Shift to 54 bits.
+    long msb = xHi >>> 63;
+    long mantissa = xHi >>> (msb + 9);
+    exp2 -= 1 ^ msb;
+
+    // Ambiguous halfway case.
+    if (xLo == 0 && (xHi & 0x1FF) == 0 && (mantissa & 3) == 1) {
+      return INVALID;
+    }
+
+    // Round to 53 bits.
+    mantissa += mantissa & 1;
+    mantissa >>>= 1;
+    if ((mantissa >>> 53) > 0) {
+      mantissa >>>= 1;
+      exp2 += 1;
+    }
+    if (exp2 <= 0 || exp2 >= 0x7FF) {
+      // Subnormal or infinite.
+      return INVALID;
+    }
+    long bits = (exp2 << 52) | (mantissa & 0x000FFFFFFFFFFFFFL);
+    return negative ? bits | Long.MIN_VALUE : bits;
+  }
+
+  /** @return the high 64 bits of the unsigned 128-bit product of a and b. */
+  static long multiplyHigh(long a, long b) {
+    long a0 = a & 0xFFFFFFFFL;
+    long a1 = a >>> 32;
+    long b0 = b & 0xFFFFFFFFL;
+    long b1 = b >>> 32;
+    long p00 = a0 * b0;
+    long p01 = a0 * b1;
+    long p10 = a1 * b0;
+    long p11 = a1 * b1;
+    long mid = (p00 >>> 32) + (p01 & 0xFFFFFFFFL) + (p10 & 0xFFFFFFFFL);
+    return p11 + (p01 >>> 32) + (p10 >>> 32) + (mid >>> 32);
+  }
+
+  private static boolean lessThanUnsigned(long a, long b) {
+    return (a + Long.MIN_VALUE) < (b + Long.MIN_VALUE);
+  }
+}
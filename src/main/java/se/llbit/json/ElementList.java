@@ -0,0 +1,543 @@
+/* Copyright (c) 2017, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.json;
+
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * The element list of a JSON array.
+ *
+ * <p>Numbers that are added as primitive values are stored packed in a
+ * {@code long} array: integers as their value and decimal numbers as their
+ * double bits, with a bit mask recording which elements are decimal numbers.
+ * Packed elements are boxed into new JsonNumber objects when they are
+ * accessed. When any other element is added, all elements are converted to
+ * JsonValue objects and the list stays unpacked, until it is cleared.
+ *
+ * <p>A frozen list can not be modified.
+ *
+ * <p>A copy made with {@link #lazyCopy()} shares the element arrays with the
+ * original list, like {@link MemberList#lazyCopy()}. Before a shared list is
+ * modified, or an element is returned by {@link #get(int)}, the list copies
+ * its arrays and replaces mutable object and array elements by lazy copies.
+ * {@link #element(int)} reads elements without copying. As in MemberList,
+ * exposed elements are never shared: the lazy copy gets its own copies.
+ */
+class ElementList extends AbstractList<JsonValue> implements RandomAccess {
+  private static final long[] EMPTY_BITS = new long[0];
+
+  private static final JsonValue[] EMPTY_VALUES = new JsonValue[0];
+
+  /** The element values, or {@code null} if the elements are packed. */
+  private JsonValue[] values = null;
+
+  /**
+   * Packed element values. Integers are stored as their value, and decimal
+   * numbers as given by {@link Double#doubleToLongBits(double)}.
+   */
+  private long[] bits;
+
+  /**
+   * Bit {@code i} is set if packed element {@code i} is a decimal number.
+   * This is {@code null} if no packed element is a decimal number.
+   */
+  private long[] doubleMask = null;
+
+  private int size = 0;
+
+  private boolean frozen = false;
+
+  /** True if the element arrays and element values may be shared with another list. */
+  private boolean shared = false;
+
+  /** True if some element may be exposed, see {@link JsonValue#isExposed()}. */
+  private boolean exposedValues = false;
+
+  ElementList() {
+    bits = EMPTY_BITS;
+  }
+
+  ElementList(int initialCapacity) {
+    if (initialCapacity < 0) {
+      throw new IllegalArgumentException("Illegal capacity: " + initialCapacity);
+    }
+    bits = initialCapacity == 0 ? EMPTY_BITS : new long[initialCapacity];
+  }
+
+  /** Creates a lazy copy of {@code other}. */
+  private ElementList(ElementList other) {
+    values = other.values;
+    bits = other.bits;
+    doubleMask = other.doubleMask;
+    size = other.size;
+    shared = true;
+    other.shared = true;
+  }
+
+  /** @return {@code true} if the elements are stored packed. */
+  boolean isPacked() {
+    return values == null;
+  }
+
+  /** Make this list unmodifiable. */
+  void freeze() {
+    if (shared) {
+      unshare();
+    }
+    frozen = true;
+  }
+
+  boolean isFrozen() {
+    return frozen;
+  }
+
+  /**
+   * Exposed elements are copied, and the other elements are shared until
+   * one of the lists is used.
+   *
+   * @return a copy of this list.
+   */
+  ElementList lazyCopy() {
+    ElementList copy = new ElementList(this);
+    if (exposedValues && values != null) {
+      JsonValue[] own = null;
+      for (int i = 0; i < size; ++i) {
+        JsonValue value = values[i];
+        if (value.isExposed()) {
+          if (own == null) {
+            own = Arrays.copyOf(values, values.length);
+          }
+          own[i] = value.copy().owned();
+        }
+      }
+      if (own != null) {
+        copy.values = own;
+      }
+    }
+    return copy;
+  }
+
+  @Override public JsonValue get(int i) {
+    checkIndex(i);
+    if (values != null) {
+      if (shared) {
+        unshare();
+      }
+      JsonValue value = values[i];
+      value.expose();
+      if (!exposedValues && value.isExposed()) {
+        exposedValues = true;
+      }
+      return value;
+    }
+    return number(i);
+  }
+
+  /**
+   * Read an element that may be modified by the caller, but is not exposed
+   * outside the array. This copies shared elements.
+   */
+  JsonValue ownElement(int i) {
+    checkIndex(i);
+    if (values != null) {
+      if (shared) {
+        unshare();
+      }
+      return values[i];
+    }
+    return number(i);
+  }
+
+  /**
+   * Read an element without copying shared elements. The element must not
+   * be modified, or exposed.
+   */
+  JsonValue element(int i) {
+    checkIndex(i);
+    return values != null ? values[i] : number(i);
+  }
+
+  @Override public int size() {
+    return size;
+  }
+
+  @Override public JsonValue set(int i, JsonValue value) {
+    checkMutable();
+    checkIndex(i);
+    checkValue(value);
+    if (shared) {
+      unshare();
+    }
+    unpack();
+    if (value.isExposed()) {
+      exposedValues = true;
+    }
+    JsonValue old = values[i];
+    values[i] = value;
+    return old;
+  }
+
+  @Override public boolean add(JsonValue value) {
+    checkMutable();
+    checkValue(value);
+    if (shared) {
+      unshare();
+    }
+    unpack();
+    if (value.isExposed()) {
+      exposedValues = true;
+    }
+    ensureCapacity(size + 1);
+    values[size] = value;
+    size += 1;
+    modCount += 1;
+    return true;
+  }
+
+  @Override public void add(int i, JsonValue value) {
+    checkMutable();
+    if (i < 0 || i > size) {
+      throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+    }
+    checkValue(value);
+    if (shared) {
+      unshare();
+    }
+    unpack();
+    if (value.isExposed()) {
+      exposedValues = true;
+    }
+    ensureCapacity(size + 1);
+    System.arraycopy(values, i, values, i + 1, size - i);
+    values[i] = value;
+    size += 1;
+    modCount += 1;
+  }
+
+  @Override public JsonValue remove(int i) {
+    checkMutable();
+    checkIndex(i);
+    if (shared) {
+      unshare();
+    }
+    JsonValue old;
+    if (values != null) {
+      old = values[i];
+      System.arraycopy(values, i + 1, values, i, size - i - 1);
+      values[size - 1] = null;
+    } else {
+      old = number(i);
+      System.arraycopy(bits, i + 1, bits, i, size - i - 1);
+      if (doubleMask != null) {
+        for (int j = i; j < size - 1; ++j) {
+          setDouble(j, isDouble(j + 1));
+        }
+        setDouble(size - 1, false);
+      }
+    }
+    size -= 1;
+    modCount += 1;
+    return old;
+  }
+
+  @Override public void clear() {
+    checkMutable();
+    shared = false;
+    values = null;
+    bits = EMPTY_BITS;
+    doubleMask = null;
+    size = 0;
+    modCount += 1;
+    exposedValues = false;
+  }
+
+  /** Remove the elements from index {@code newSize} onward, keeping the capacity. */
+  void truncate(int newSize) {
+    checkMutable();
+    if (newSize < size) {
+      if (shared) {
+        unshare();
+      }
+      if (values != null) {
+        Arrays.fill(values, newSize, size, null);
+      } else if (doubleMask != null) {
+        for (int i = newSize; i < size; ++i) {
+          setDouble(i, false);
+        }
+      }
+      size = newSize;
+      modCount += 1;
+    }
+  }
+
+  /** Appends an integer, packed if possible. */
+  void addLong(long value) {
+    checkMutable();
+    if (shared) {
+      unshare();
+    }
+    if (values != null) {
+      add(JsonNumber.valueOf(value));
+      return;
+    }
+    ensureCapacity(size + 1);
+    bits[size] = value;
+    size += 1;
+    modCount += 1;
+  }
+
+  /** Appends a decimal number, packed if possible. */
+  void addDouble(double value) {
+    checkMutable();
+    if (shared) {
+      unshare();
+    }
+    if (values != null) {
+      add(new JsonNumber(value));
+      return;
+    }
+    ensureCapacity(size + 1);
+    bits[size] = Double.doubleToLongBits(value);
+    if (doubleMask == null) {
+      doubleMask = new long[maskLength(bits.length)];
+    }
+    setDouble(size, true);
+    size += 1;
+    modCount += 1;
+  }
+
+  /**
+   * Appends the number in a character buffer. The number is packed if
+   * possible.
+   *
+   * @param scratch buffer with room for {@link DoubleFormatter#MAX_CHARS} characters.
+   */
+  void addLexeme(char[] chars, int offset, int length, char[] scratch) {
+    JsonNumber number = JsonNumber.fromLexeme(chars, offset, length, scratch, this);
+    if (number != null) {
+      add(number);
+    }
+  }
+
+  /**
+   * Copies the elements to a double array.
+   *
+   * @param undefined the value used for elements that are not numbers.
+   */
+  double[] toDoubleArray(double undefined) {
+    double[] result = new double[size];
+    if (values != null) {
+      for (int i = 0; i < size; ++i) {
+        result[i] = values[i].doubleValue(undefined);
+      }
+    } else {
+      for (int i = 0; i < size; ++i) {
+        result[i] = isDouble(i) ? Double.longBitsToDouble(bits[i]) : (double) bits[i];
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Copies the elements to a long array.
+   *
+   * @param undefined the value used for elements that are not numbers.
+   * @throws NumberFormatException if an element is a number that is not an integer.
+   */
+  long[] toLongArray(long undefined) {
+    long[] result = new long[size];
+    if (values != null) {
+      for (int i = 0; i < size; ++i) {
+        result[i] = values[i].longValue(undefined);
+      }
+    } else if (doubleMask == null) {
+      System.arraycopy(bits, 0, result, 0, size);
+    } else {
+      for (int i = 0; i < size; ++i) {
+        result[i] = isDouble(i) ? number(i).longValue(undefined) : bits[i];
+      }
+    }
+    return result;
+  }
+
+  /** Writes the packed elements to a binary JSON encoder. */
+  void writeTo(BinaryJson.Encoder out) {
+    for (int i = 0; i < size; ++i) {
+      if (isDouble(i)) {
+        out.doubleBits(bits[i]);
+      } else {
+        out.longValue(bits[i]);
+      }
+    }
+  }
+
+  /** Writes the elements, separated by commas, in compact form. */
+  void writeTo(Appendable out) throws IOException {
+    if (values != null) {
+      for (int i = 0; i < size; ++i) {
+        if (i > 0) {
+          out.append(',');
+        }
+        values[i].writeTo(out);
+      }
+    } else {
+      char[] scratch = null;
+      for (int i = 0; i < size; ++i) {
+        if (i > 0) {
+          out.append(',');
+        }
+        if (isDouble(i)) {
+          if (scratch == null) {
+            scratch = new char[DoubleFormatter.MAX_CHARS];
+          }
+          JsonNumber.writeDouble(Double.longBitsToDouble(bits[i]), out, scratch);
+        } else {
+          JsonNumber.writeLong(bits[i], out);
+        }
+      }
+    }
+  }
+
+  /** Writes the elements as values to a JSON writer. */
+  void writeElements(JsonWriter writer) throws IOException {
+    if (values != null) {
+      for (int i = 0; i < size; ++i) {
+        writer.value(values[i]);
+      }
+    } else {
+      for (int i = 0; i < size; ++i) {
+        if (isDouble(i)) {
+          writer.value(Double.longBitsToDouble(bits[i]));
+        } else {
+          writer.value(bits[i]);
+        }
+      }
+    }
+  }
+
+  /** Boxes the packed element at index {@code i}. */
+  private JsonNumber number(int i) {
+    if (isDouble(i)) {
+      return new JsonNumber(Double.longBitsToDouble(bits[i]));
+    }
+    return JsonNumber.valueOf(bits[i]);
+  }
+
+  /**
+   * Give this list its own arrays. Elements that are mutable and may be
+   * shared are replaced by lazy copies. Exposed elements are never shared,
+   * so they are kept.
+   */
+  private void unshare() {
+    if (values != null) {
+      JsonValue[] copy = new JsonValue[values.length];
+      for (int i = 0; i < size; ++i) {
+        JsonValue value = values[i];
+        if (value.isFrozen() || value.isExposed()) {
+          copy[i] = value;
+        } else {
+          copy[i] = value.copy().owned();
+        }
+      }
+      values = copy;
+    } else {
+      bits = bits.clone();
+      if (doubleMask != null) {
+        doubleMask = doubleMask.clone();
+      }
+    }
+    shared = false;
+  }
+
+  /** Converts the packed elements to JsonValue objects. */
+  private void unpack() {
+    if (values == null) {
+      JsonValue[] unpacked = bits.length == 0 ? EMPTY_VALUES : new JsonValue[bits.length];
+      for (int i = 0; i < size; ++i) {
+        unpacked[i] = number(i);
+      }
+      values = unpacked;
+      bits = null;
+      doubleMask = null;
+    }
+  }
+
+  private boolean isDouble(int i) {
+    return doubleMask != null && (doubleMask[i >> 6] & (1L << i)) != 0;
+  }
+
+  private void setDouble(int i, boolean isDouble) {
+    if (isDouble) {
+      doubleMask[i >> 6] |= 1L << i;
+    } else {
+      doubleMask[i >> 6] &= ~(1L << i);
+    }
+  }
+
+  private static int maskLength(int capacity) {
+    return (capacity + 63) >> 6;
+  }
+
+  private void ensureCapacity(int capacity) {
+    int length = values != null ? values.length : bits.length;
+    if (capacity > length) {
+      int newCapacity = Math.max(capacity, Math.max(10, length + (length >> 1)));
+      if (values != null) {
+        values = Arrays.copyOf(values, newCapacity);
+      } else {
+        bits = Arrays.copyOf(bits, newCapacity);
+        if (doubleMask != null) {
+          doubleMask = Arrays.copyOf(doubleMask, maskLength(newCapacity));
+        }
+      }
+    }
+  }
+
+  private void checkMutable() {
+    if (frozen) {
+      throw new UnsupportedOperationException("JSON array is frozen");
+    }
+  }
+
+  private void checkIndex(int i) {
+    if (i < 0 || i >= size) {
+      throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+    }
+  }
+
+  private static void checkValue(JsonValue value) {
+    if (value == null) {
+      throw new NullPointerException();
+    }
+  }
+}
@@ -0,0 +1,226 @@
+/* Copyright (c) 2017, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.json;
+
+/**
+ * A persistent weight-balanced binary tree of values ordered by position.
+ * Each node also has an integer key. The keys are not used for ordering,
+ * but if they are ascending in position order a node can be found by key
+ * with {@link #indexOf(IndexTree, int)}.
+ *
+ * <p>The empty tree is {@code null}. Updates return a new tree that shares
+ * all untouched nodes with the old tree. Access and updates by position
+ * take logarithmic time.
+ *
+ * <p>The tree is balanced as in Adams' weight-balanced trees, with the
+ * parameters delta = 3 and ratio = 2.
+ */
+final class IndexTree {
+  private static final int DELTA = 3;
+
+  private static final int RATIO = 2;
+
+  final IndexTree left;
+
+  final IndexTree right;
+
+  final int key;
+
+  final Object value;
+
+  /** Number of nodes in this tree. */
+  final int size;
+
+  private IndexTree(IndexTree left, int key, Object value, IndexTree right) {
+    this.left = left;
+    this.right = right;
+    this.key = key;
+    this.value = value;
+    this.size = size(left) + size(right) + 1;
+  }
+
+  static int size(IndexTree tree) {
+    return tree == null ? 0 : tree.size;
+  }
+
+  /** @return the node at position {@code i}. */
+  static IndexTree node(IndexTree tree, int i) {
+    while (true) {
+      int leftSize = size(tree.left);
+      if (i < leftSize) {
+        tree = tree.left;
+      } else if (i == leftSize) {
+        return tree;
+      } else {
+        i -= leftSize + 1;
+        tree = tree.right;
+      }
+    }
+  }
+
+  /** @return the value at position {@code i}. */
+  static Object get(IndexTree tree, int i) {
+    return node(tree, i).value;
+  }
+
+  /** @return a tree with the value at position {@code i} replaced. */
+  static IndexTree set(IndexTree tree, int i, Object value) {
+    int leftSize = size(tree.left);
+    if (i < leftSize) {
+      return new IndexTree(set(tree.left, i, value), tree.key, tree.value, tree.right);
+    } else if (i > leftSize) {
+      return new IndexTree(tree.left, tree.key, tree.value,
+          set(tree.right, i - leftSize - 1, value));
+    } else {
+      return new IndexTree(tree.left, tree.key, value, tree.right);
+    }
+  }
+
+  /** @return a tree with a new node inserted at position {@code i}. */
+  static IndexTree insert(IndexTree tree, int i, int key, Object value) {
+    if (tree == null) {
+      return new IndexTree(null, key, value, null);
+    }
+    int leftSize = size(tree.left);
+    if (i <= leftSize) {
+      return balance(insert(tree.left, i, key, value), tree.key, tree.value, tree.right);
+    } else {
+      return balance(tree.left, tree.key, tree.value,
+          insert(tree.right, i - leftSize - 1, key, value));
+    }
+  }
+
+  /** @return a tree without the node at position {@code i}. */
+  static IndexTree remove(IndexTree tree, int i) {
+    int leftSize = size(tree.left);
+    if (i < leftSize) {
+      return balance(remove(tree.left, i), tree.key, tree.value, tree.right);
+    } else if (i > leftSize) {
+      return balance(tree.left, tree.key, tree.value, remove(tree.right, i - leftSize - 1));
+    } else {
+      return glue(tree.left, tree.right);
+    }
+  }
+
+  /**
+   * Find a node by key. The keys in the tree must be ascending.
+   *
+   * @return the position of the node with the given key, or -1 if there is no such node.
+   */
+  static int indexOf(IndexTree tree, int key) {
+    int base = 0;
+    while (tree != null) {
+      if (key < tree.key) {
+        tree = tree.left;
+      } else if (key > tree.key) {
+        base += size(tree.left) + 1;
+        tree = tree.right;
+      } else {
+        return base + size(tree.left);
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Build a balanced tree of the given values. The key of each node is its
+   * position.
+   */
+  static IndexTree build(Object[] values, int start, int end) {
+    if (start >= end) {
+      return null;
+    }
+    int mid = (start + end) >>> 1;
+    return new IndexTree(build(values, start, mid), mid, values[mid], build(values, mid + 1, end));
+  }
+
+  /** @return the values of the tree, in position order. */
+  static Object[] values(IndexTree tree) {
+    Object[] values = new Object[size(tree)];
+    copyValues(tree, values, 0);
+    return values;
+  }
+
+  private static int copyValues(IndexTree tree, Object[] values, int offset) {
+    while (tree != null) {
+      offset = copyValues(tree.left, values, offset);
+      values[offset++] = tree.value;
+      tree = tree.right;
+    }
+    return offset;
+  }
+
+  /** Join two subtrees that were balanced with respect to each other. */
+  private static IndexTree glue(IndexTree left, IndexTree right) {
+    if (left == null) {
+      return right;
+    }
+    if (right == null) {
+      return left;
+    }
+    if (left.size > right.size) {
+      IndexTree last = node(left, left.size - 1);
+      return balance(remove(left, left.size - 1), last.key, last.value, right);
+    } else {
+      IndexTree first = node(right, 0);
+      return balance(left, first.key, first.value, remove(right, 0));
+    }
+  }
+
+  /**
+   * Create a node, with a rotation if the subtrees are out of balance. The
+   * subtrees must be at most one insertion or removal out of balance.
+   */
+  private static IndexTree balance(IndexTree left, int key, Object value, IndexTree right) {
+    int leftSize = size(left);
+    int rightSize = size(right);
+    if (leftSize + rightSize > 1) {
+      if (rightSize > DELTA * leftSize) {
+        IndexTree rl = right.left;
+        if (size(rl) < RATIO * size(right.right)) {
+          return new IndexTree(new IndexTree(left, key, value, rl), right.key, right.value,
+              right.right);
+        }
+        return new IndexTree(new IndexTree(left, key, value, rl.left), rl.key, rl.value,
+            new IndexTree(rl.right, right.key, right.value, right.right));
+      }
+      if (leftSize > DELTA * rightSize) {
+        IndexTree lr = left.right;
+        if (size(lr) < RATIO * size(left.left)) {
+          return new IndexTree(left.left, left.key, left.value,
+              new IndexTree(lr, key, value, right));
+        }
+        return new IndexTree(new IndexTree(left.left, left.key, left.value, lr.left), lr.key,
+            lr.value, new IndexTree(lr.right, key, value, right));
+      }
+    }
+    return new IndexTree(left, key, value, right);
+  }
+}
@@ -0,0 +1,157 @@
+/* Copyright (c) 2017, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Decodes an input stream or byte array to characters, like
+ * {@link java.io.InputStreamReader}, but can be reset onto new input. The
+ * byte buffer and decoder are kept between inputs, so that decoding does
+ * not allocate memory. Malformed input is replaced by the replacement
+ * character.
+ */
+final class InputDecoder extends Reader {
+  private final CharsetDecoder decoder;
+
+  /** Undecoded input bytes, between position and limit. */
+  private final ByteBuffer bytes;
+
+  /** Wraps the output array of the last read. */
+  private CharBuffer out = null;
+
+  private InputStream input = null;
+
+  /** The input array, or {@code null} if decoding an input stream. */
+  private byte[] array = null;
+
+  /** Position of the next byte to decode in the input array. */
+  private int arrayPos = 0;
+
+  /** Set when the end of the input stream has been reached. */
+  private boolean eof = false;
+
+  /** Set when the decoder has been flushed after the end of input. */
+  private boolean flushed = false;
+
+  InputDecoder(Charset charset, int bufferSize) {
+    decoder = charset.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    bytes = ByteBuffer.allocate(bufferSize);
+    bytes.flip();
+  }
+
+  /** Start decoding a new input stream. The previous stream is not closed. */
+  void reset(InputStream input) {
+    this.input = input;
+    array = null;
+    restart();
+  }
+
+  /** Start decoding a byte array. */
+  void reset(byte[] input) {
+    this.input = null;
+    array = input;
+    arrayPos = 0;
+    restart();
+  }
+
+  private void restart() {
+    decoder.reset();
+    bytes.clear();
+    bytes.flip();
+    eof = false;
+    flushed = false;
+  }
+
+  @Override public int read(char[] cbuf, int offset, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+    if (out == null || out.array() != cbuf) {
+      out = CharBuffer.wrap(cbuf);
+    }
+    out.limit(offset + len);
+    out.position(offset);
+    while (!flushed) {
+      CoderResult result = decoder.decode(bytes, out, eof);
+      if (out.position() > offset || result.isOverflow()) {
+        break;
+      }
+      if (eof) {
+        decoder.flush(out);
+        flushed = true;
+        break;
+      }
+      bytes.compact();
+      int count = array != null ? readArray() : input.read(bytes.array(), bytes.position(),
+          bytes.remaining());
+      if (count < 0) {
+        eof = true;
+      } else {
+        bytes.position(bytes.position() + count);
+      }
+      bytes.flip();
+    }
+    int count = out.position() - offset;
+    return count == 0 && eof ? -1 : count;
+  }
+
+  /** Copies bytes from the input array to the byte buffer. */
+  private int readArray() {
+    int count = Math.min(array.length - arrayPos, bytes.remaining());
+    if (count == 0 && arrayPos == array.length) {
+      return -1;
+    }
+    System.arraycopy(array, arrayPos, bytes.array(), bytes.position(), count);
+    arrayPos += count;
+    return count;
+  }
+
+  @Override public boolean ready() throws IOException {
+    return bytes.hasRemaining() || (array != null && arrayPos < array.length)
+        || (input != null && input.available() > 0);
+  }
+
+  @Override public void close() throws IOException {
+    if (input != null) {
+      input.close();
+    }
+  }
+}
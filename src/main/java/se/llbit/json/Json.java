@@ -29,6 +29,8 @@
  */
 package se.llbit.json;
 
+import java.io.IOException;
+
 /**
  * Provides constant JSON literals (true, false, null, unknown),
  * and helper functions to construct JSON literals from Java primitives.
@@ -46,6 +48,10 @@ public final class Json {
       return "true";
     }
 
+    @Override public void writeTo(Appendable out) throws IOException {
+      out.append("true");
+    }
+
     @Override public String toString() {
       return "true";
     }
@@ -73,6 +79,10 @@ public final class Json {
       return "false";
     }
 
+    @Override public void writeTo(Appendable out) throws IOException {
+      out.append("false");
+    }
+
     @Override public String toString() {
       return "false";
     }
@@ -100,6 +110,10 @@ public final class Json {
       return "\"<unknown>\"";
     }
 
+    @Override public void writeTo(Appendable out) throws IOException {
+      out.append("\"<unknown>\"");
+    }
+
     @Override public String toString() {
       return "\"<unknown>\"";
     }
@@ -123,6 +137,10 @@ public final class Json {
       return "null";
     }
 
+    @Override public void writeTo(Appendable out) throws IOException {
+      out.append("null");
+    }
+
     @Override public String toString() {
       return "null";
     }
@@ -142,7 +160,7 @@ public final class Json {
 
   /** Wraps a number in a JsonNumber object. */
   public static JsonNumber of(long value) {
-    return new JsonNumber(value);
+    return JsonNumber.valueOf(value);
   }
 
   /** Wraps a number in a JsonNumber object. */
@@ -29,7 +29,7 @@
  */
 package se.llbit.json;
 
-import java.util.ArrayList;
+import java.io.IOException;
 import java.util.Iterator;
 import java.util.List;
 
@@ -37,18 +37,40 @@ import java.util.List;
  * Represents a JSON array.
  *
  * <p>Elements are stored in a mutable list.
+ *
+ * <p>Numbers added with {@link #add(long)} or {@link #add(double)}, or parsed
+ * by the JSON parsers, are stored packed as primitive values as long as all
+ * elements in the array are such numbers. A packed array of numbers uses
+ * about eight bytes per element. Accessing a packed element creates a new
+ * JsonNumber. Adding or setting any JsonValue unpacks the array.
  */
 public class JsonArray extends JsonValue implements Iterable<JsonValue> {
   public final List<JsonValue> elements;
 
+  private final ElementList elementList;
+
+  /**
+   * False if this value is referenced only by the object or array that
+   * contains it. New values are exposed.
+   */
+  private boolean exposed = true;
+
+  /** The cached hash code of a frozen array, or zero if not computed. */
+  private int hash = 0;
+
   /** Create an array with default initial capacity. */
   public JsonArray() {
-    elements = new ArrayList<>();
+    elements = elementList = new ElementList();
   }
 
   /** Create an array with the specified initial capacity. */
   public JsonArray(int initialCapacity) {
-    elements = new ArrayList<>(initialCapacity);
+    elements = elementList = new ElementList(initialCapacity);
+  }
+
+  /** Create an array with the given element list. */
+  JsonArray(ElementList elementList) {
+    elements = this.elementList = elementList;
   }
 
   public void prettyPrint(PrettyPrinter out) {
@@ -56,14 +78,12 @@ public class JsonArray extends JsonValue implements Iterable<JsonValue> {
       out.print("[");
       out.println();
       out.indent(1);
-      boolean first = true;
-      for (PrettyPrintable p : elements) {
-        if (!first) {
+      for (int i = 0; i < elementList.size(); ++i) {
+        if (i > 0) {
           out.print(",");
           out.println();
         }
-        first = false;
-        out.print(p);
+        out.print(elementList.element(i));
       }
       out.println();
       out.print("]");
@@ -105,14 +125,24 @@ public class JsonArray extends JsonValue implements Iterable<JsonValue> {
    * Append a JSON number to this array.
    */
   public void add(long value) {
-    elements.add(new JsonNumber(value));
+    elementList.addLong(value);
   }
 
   /**
    * Append a JSON number to this array.
    */
   public void add(double value) {
-    elements.add(new JsonNumber(value));
+    elementList.addDouble(value);
+  }
+
+  /** Write the elements of this array to a JSON writer. */
+  void writeElements(JsonWriter writer) throws IOException {
+    elementList.writeElements(writer);
+  }
+
+  /** Append the number in a character buffer to this array. */
+  void addLexeme(char[] chars, int offset, int length, char[] scratch) {
+    elementList.addLexeme(chars, offset, length, scratch);
   }
 
   /**
@@ -142,30 +172,23 @@ public class JsonArray extends JsonValue implements Iterable<JsonValue> {
   }
 
   public String toCompactString() {
-    StringBuilder sb = new StringBuilder();
-    sb.append("[");
-    boolean first = true;
-    for (JsonValue element : elements) {
-      if (!first) {
-        sb.append(",");
-      }
-      first = false;
-      sb.append(element.toCompactString());
-    }
-    sb.append("]");
-    return sb.toString();
+    return writeToString();
+  }
+
+  @Override public void writeTo(Appendable out) throws IOException {
+    out.append('[');
+    elementList.writeTo(out);
+    out.append(']');
   }
 
   @Override public String toString() {
     StringBuilder sb = new StringBuilder();
     sb.append("[ ");
-    boolean first = true;
-    for (JsonValue element : this) {
-      if (!first) {
+    for (int i = 0; i < elementList.size(); ++i) {
+      if (i > 0) {
         sb.append(", ");
       }
-      first = false;
-      sb.append(element.toString());
+      sb.append(elementList.element(i).toString());
     }
     sb.append(" ]");
     return sb.toString();
@@ -200,12 +223,101 @@ public class JsonArray extends JsonValue implements Iterable<JsonValue> {
     return this;
   }
 
+  /**
+   * Copies the elements of this array to a double array.
+   *
+   * @param undefined the value used for elements that are not numbers.
+   * @throws NumberFormatException if an element is a number that can not be
+   * converted to a double.
+   */
+  public double[] toDoubleArray(double undefined) {
+    return elementList.toDoubleArray(undefined);
+  }
+
+  /**
+   * Copies the elements of this array to a long array.
+   *
+   * @param undefined the value used for elements that are not numbers.
+   * @throws NumberFormatException if an element is a number that is not
+   * an integer.
+   */
+  public long[] toLongArray(long undefined) {
+    return elementList.toLongArray(undefined);
+  }
+
+  @Override public JsonArray freeze() {
+    if (!elementList.isFrozen()) {
+      elementList.freeze();
+      if (!elementList.isPacked()) {
+        for (JsonValue element : elements) {
+          element.freeze();
+        }
+      }
+    }
+    return this;
+  }
+
+  @Override public boolean isFrozen() {
+    return elementList.isFrozen();
+  }
+
+  /**
+   * The copy must not be read from several threads, see
+   * {@link JsonValue#copy()}.
+   *
+   * @return a copy of this array, or this array if it is frozen.
+   */
   @Override public JsonArray copy() {
-    JsonArray copy = new JsonArray(elements.size());
-    for (JsonValue element : elements) {
-      copy.add(element.copy());
+    if (elementList.isFrozen()) {
+      return this;
+    }
+    return new JsonArray(elementList.lazyCopy());
+  }
+
+  @Override boolean isExposed() {
+    return exposed && !elementList.isFrozen();
+  }
+
+  @Override void expose() {
+    if (!exposed && !elementList.isFrozen()) {
+      exposed = true;
     }
-    return copy;
+  }
+
+  @Override JsonArray owned() {
+    exposed = false;
+    return this;
+  }
+
+  /**
+   * Get an element without copying it if this array shares its elements
+   * with a copy. The element must not be modified.
+   */
+  JsonValue element(int i) {
+    return elementList.element(i);
+  }
+
+  /**
+   * Get an element that may be modified, without exposing it. Shared
+   * elements are copied.
+   */
+  JsonValue ownElement(int i) {
+    return elementList.ownElement(i);
+  }
+
+  /** Remove the elements from index {@code size} onward, keeping the capacity. */
+  void truncate(int size) {
+    elementList.truncate(size);
+  }
+
+  /** @return {@code true} if the elements are stored packed. */
+  boolean isPacked() {
+    return elementList.isPacked();
+  }
+
+  /** Write the packed elements of this array to a binary JSON encoder. */
+  void writeTo(BinaryJson.Encoder out) {
+    elementList.writeTo(out);
   }
 
   public boolean isEmpty() {
@@ -217,10 +329,15 @@ public class JsonArray extends JsonValue implements Iterable<JsonValue> {
   }
 
   @Override public int hashCode() {
-    // XOR all element hash codes.
-    int hash = 0;
-    for (JsonValue element : elements) {
-      hash ^= element.hashCode();
+    int hash = this.hash;
+    if (hash == 0) {
+      // XOR all element hash codes.
+      for (int i = 0; i < elementList.size(); ++i) {
+        hash ^= elementList.element(i).hashCode();
+      }
+      if (elementList.isFrozen()) {
+        this.hash = hash;
+      }
     }
     return hash;
   }
@@ -234,11 +351,15 @@ public class JsonArray extends JsonValue implements Iterable<JsonValue> {
       return false;
     }
     JsonArray other = (JsonArray) obj;
-    if (size() != other.size()) {
+    if (this == other) {
+      return true;
+    }
+    if (size() != other.size()
+        || (hash != 0 && other.hash != 0 && hash != other.hash)) {
       return false;
     }
     for (int i = 0; i < size(); ++i) {
-      if (!get(i).equals(other.get(i))) {
+      if (!element(i).equals(other.element(i))) {
         return false;
       }
     }
@@ -0,0 +1,69 @@
+/* Copyright (c) 2017, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.json;
+
+/**
+ * Receives parse events from {@link JsonParser#parse(JsonHandler)}.
+ *
+ * <p>Each method returns {@code true} to continue parsing, or {@code false}
+ * to stop the parser.
+ */
+public interface JsonHandler {
+  /** Called at the start of a JSON object. */
+  boolean startObject();
+
+  /** Called at the end of a JSON object. */
+  boolean endObject();
+
+  /** Called at the start of a JSON array. */
+  boolean startArray();
+
+  /** Called at the end of a JSON array. */
+  boolean endArray();
+
+  /** Called for each member name in a JSON object, before the member value. */
+  boolean name(String name);
+
+  /** Called for a JSON string value. */
+  boolean stringValue(String value);
+
+  /**
+   * Called for a JSON number value.
+   *
+   * @param value the number as written in the input.
+   */
+  boolean numberValue(String value);
+
+  /** Called for a JSON true or false literal. */
+  boolean booleanValue(boolean value);
+
+  /** Called for a JSON null literal. */
+  boolean nullValue();
+}
@@ -0,0 +1,331 @@
+/* Copyright (c) 2017, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.json;
+
+import se.llbit.json.JsonParser.SyntaxError;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Parses newline-delimited JSON (JSON Lines) files in parallel.
+ *
+ * <p>Each line of the input file contains one JSON object or array. Blank
+ * lines are ignored. A value that spans several lines, or a line with more
+ * than one value, is a syntax error. The file is split into chunks of
+ * about {@link #CHUNK_SIZE} bytes, aligned on line boundaries, and the
+ * chunks are parsed in parallel by tasks in a {@link ForkJoinPool}. Each
+ * chunk is copied into a byte array with a positional read, and its lines
+ * are parsed by a {@link Utf8JsonParser}.
+ *
+ * <pre>
+ * JsonLinesParser parser = new JsonLinesParser(pool);
+ * parser.parse(file, new JsonLinesParser.RecordHandler() {
+ *   public void record(JsonValue record) {
+ *     ...
+ *   }
+ * });
+ * </pre>
+ *
+ * <p>Syntax errors report the byte offset in the file where the error
+ * was detected.
+ */
+public class JsonLinesParser {
+  /** Receives the records parsed from a JSON Lines file. */
+  public interface RecordHandler {
+    void record(JsonValue record);
+  }
+
+  /** Default chunk size in bytes. */
+  public static final int CHUNK_SIZE = 1 << 22;
+
+  private static final String SYNTAX_ERROR_PREFIX = "Syntax Error: ";
+
+  private final ForkJoinPool pool;
+
+  private final int chunkSize;
+
+  private SymbolTable symbols = null;
+
+  /** Parse files with tasks in the given pool. */
+  public JsonLinesParser(ForkJoinPool pool) {
+    this(pool, CHUNK_SIZE);
+  }
+
+  JsonLinesParser(ForkJoinPool pool, int chunkSize) {
+    if (pool == null) {
+      throw new NullPointerException();
+    }
+    if (chunkSize <= 0) {
+      throw new IllegalArgumentException("Illegal chunk size: " + chunkSize);
+    }
+    this.pool = pool;
+    this.chunkSize = chunkSize;
+  }
+
+  /**
+   * Use the given symbol table for member names in all chunks. The table
+   * is shared by the parsing tasks.
+   *
+   * @see Utf8JsonParser#setSymbolTable(SymbolTable)
+   */
+  public void setSymbolTable(SymbolTable symbols) {
+    this.symbols = symbols;
+  }
+
+  /**
+   * Parse all records in a file.
+   *
+   * @return the records, in file order.
+   */
+  public List<JsonValue> parse(Path file) throws IOException, SyntaxError {
+    final List<JsonValue> records = new ArrayList<>();
+    parse(file, new RecordHandler() {
+      @Override public void record(JsonValue record) {
+        records.add(record);
+      }
+    });
+    return records;
+  }
+
+  /**
+   * Parse all records in a file and pass them, in file order, to the
+   * handler. The handler is called from the calling thread while later
+   * chunks are parsed. Only a limited number of parsed chunks are kept
+   * waiting for the handler.
+   */
+  public void parse(Path file, RecordHandler handler) throws IOException, SyntaxError {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long[] bounds = chunkBounds(channel);
+      int window = 2 * pool.getParallelism();
+      ArrayDeque<Future<List<JsonValue>>> pending = new ArrayDeque<>();
+      int next = 0;
+      try {
+        while (next < bounds.length - 1 || !pending.isEmpty()) {
+          while (next < bounds.length - 1 && pending.size() < window) {
+            pending.add(pool.submit(new ChunkTask(channel, bounds[next], bounds[next + 1], null)));
+            next += 1;
+          }
+          for (JsonValue record : await(pending.remove())) {
+            handler.record(record);
+          }
+        }
+      } finally {
+        for (Future<?> task : pending) {
+          task.cancel(false);
+        }
+      }
+    }
+  }
+
+  /**
+   * Parse all records in a file and pass them to the handler as soon as
+   * they are parsed. The handler is called concurrently from the pool
+   * threads, in no particular order, so it must be thread safe. This
+   * method returns when all records have been handled.
+   */
+  public void parseUnordered(Path file, RecordHandler handler)
+      throws IOException, SyntaxError {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long[] bounds = chunkBounds(channel);
+      List<Future<List<JsonValue>>> tasks = new ArrayList<>(bounds.length);
+      try {
+        for (int i = 0; i < bounds.length - 1; ++i) {
+          tasks.add(pool.submit(new ChunkTask(channel, bounds[i], bounds[i + 1], handler)));
+        }
+        for (Future<List<JsonValue>> task : tasks) {
+          await(task);
+        }
+      } finally {
+        for (Future<?> task : tasks) {
+          task.cancel(false);
+        }
+      }
+    }
+  }
+
+  /**
+   * Split the file into chunks. Each chunk after the first starts at the
+   * beginning of a line.
+   *
+   * @return the chunk start offsets, followed by the file size.
+   */
+  long[] chunkBounds(FileChannel channel) throws IOException {
+    long size = channel.size();
+    List<Long> bounds = new ArrayList<>();
+    bounds.add(0L);
+    long start = 0;
+    ByteBuffer buffer = ByteBuffer.allocate(8192);
+    while (size - start > chunkSize) {
+      start = lineStart(channel, start + chunkSize, size, buffer);
+      if (start < size) {
+        bounds.add(start);
+      }
+    }
+    bounds.add(size);
+    long[] result = new long[bounds.size()];
+    for (int i = 0; i < result.length; ++i) {
+      result[i] = bounds.get(i);
+    }
+    return result;
+  }
+
+  /** @return the offset after the first newline at or after {@code offset}, or the file size. */
+  private static long lineStart(FileChannel channel, long offset, long size, ByteBuffer buffer)
+      throws IOException {
+    while (offset < size) {
+      buffer.clear();
+      int count = channel.read(buffer, offset);
+      if (count <= 0) {
+        break;
+      }
+      byte[] bytes = buffer.array();
+      for (int i = 0; i < count; ++i) {
+        if (bytes[i] == '\n') {
+          return offset + i + 1;
+        }
+      }
+      offset += count;
+    }
+    return size;
+  }
+
+  /** Wait for a chunk task and unwrap its exception. */
+  private static List<JsonValue> await(Future<List<JsonValue>> task)
+      throws IOException, SyntaxError {
+    try {
+      return task.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("interrupted while parsing JSON lines", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      // The pool wraps checked exceptions, and may rethrow a copy of the
+      // exception from the task thread wrapped in a RuntimeException.
+      while (cause != null && cause.getClass() == RuntimeException.class
+          && cause.getCause() != null) {
+        cause = cause.getCause();
+      }
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof SyntaxError) {
+        throw (SyntaxError) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IOException(cause);
+    }
+  }
+
+  private static boolean isWhitespace(byte b) {
+    return b == ' ' || b == '\t' || b == '\r';
+  }
+
+  private static SyntaxError syntaxError(String message, long offset) {
+    return new SyntaxError(String.format("%s (at byte offset %d)", message, offset));
+  }
+
+  /** Reads and parses one chunk, one line at a time. */
+  private class ChunkTask implements Callable<List<JsonValue>> {
+    private final FileChannel channel;
+    private final long start;
+    private final long end;
+
+    /** Receives the records, or {@code null} if the records are returned in a list. */
+    private final RecordHandler handler;
+
+    ChunkTask(FileChannel channel, long start, long end, RecordHandler handler) {
+      this.channel = channel;
+      this.start = start;
+      this.end = end;
+      this.handler = handler;
+    }
+
+    @Override public List<JsonValue> call() throws IOException, SyntaxError {
+      if (end - start > Integer.MAX_VALUE - 8) {
+        throw new IOException("JSON line too long at offset " + start);
+      }
+      byte[] bytes = new byte[(int) (end - start)];
+      ByteBuffer buffer = ByteBuffer.wrap(bytes);
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer, start + buffer.position()) < 0) {
+          throw new IOException("unexpected end of file at offset " + (start + buffer.position()));
+        }
+      }
+      List<JsonValue> records = handler == null ? new ArrayList<JsonValue>() : null;
+      Utf8JsonParser parser = new Utf8JsonParser(bytes);
+      parser.setSymbolTable(symbols);
+      int lineStart = 0;
+      while (lineStart < bytes.length) {
+        int lineEnd = lineStart;
+        while (lineEnd < bytes.length && bytes[lineEnd] != '\n') {
+          lineEnd += 1;
+        }
+        parser.setRange(lineStart, lineEnd - lineStart);
+        JsonValue record;
+        try {
+          record = parser.parseNext();
+        } catch (SyntaxError e) {
+          String message = e.getMessage();
+          if (message.startsWith(SYNTAX_ERROR_PREFIX)) {
+            message = message.substring(SYNTAX_ERROR_PREFIX.length());
+          }
+          throw syntaxError(message, start + parser.position());
+        }
+        if (record != null) {
+          for (int i = parser.position(); i < lineEnd; ++i) {
+            if (!isWhitespace(bytes[i])) {
+              throw syntaxError("more than one JSON value on a line", start + i);
+            }
+          }
+          if (handler != null) {
+            handler.record(record);
+          } else {
+            records.add(record);
+          }
+        }
+        lineStart = lineEnd + 1;
+      }
+      return records;
+    }
+  }
+}
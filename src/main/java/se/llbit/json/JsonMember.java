@@ -29,6 +29,8 @@
  */
 package se.llbit.json;
 
+import java.io.IOException;
+
 /** Represents a member of a JSON object. */
 public class JsonMember implements PrettyPrintable {
   public final String name;
@@ -47,7 +49,24 @@ public class JsonMember implements PrettyPrintable {
   }
 
   public String toCompactString() {
-    return "\"" + JsonString.escape(getName()) + "\":" + getValue().toCompactString();
+    StringBuilder sb = new StringBuilder();
+    try {
+      writeTo(sb);
+    } catch (IOException e) {
+      // StringBuilder does not throw IOException.
+      throw new Error(e);
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Append the compact string representation of this member to the given
+   * output. The output is the same as given by {@link #toCompactString()}.
+   */
+  public void writeTo(Appendable out) throws IOException {
+    JsonString.writeEscaped(getName(), out);
+    out.append(':');
+    getValue().writeTo(out);
   }
 
   @Override public String toString() {
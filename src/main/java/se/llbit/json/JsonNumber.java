@@ -29,83 +29,416 @@
  */
 package se.llbit.json;
 
-/** Stores a JSON number as a string. */
+import java.io.IOException;
+
+/**
+ * Represents a JSON number.
+ *
+ * <p>Integers are stored as {@code long} values, and decimal numbers as
+ * {@code double} values. The number text is kept only when it is needed to
+ * print the number exactly as it was parsed.
+ *
+ * <p>Doubles are printed with the shortest decimal representation that
+ * rounds to the same double.
+ *
+ * <p>JSON numbers are immutable, except for the numbers created by
+ * {@link JsonParser#parseInto(JsonValue)}, which are overwritten when the
+ * tree they are in is parsed into again. Such numbers are not frozen until
+ * {@link #freeze()} is called, and {@link #copy()} returns an immutable copy.
+ */
 public class JsonNumber extends JsonValue {
-  public final String value;
+  /** Number kind: integer stored in {@link #bits}. */
+  private static final byte LONG = 0;
+
+  /** Number kind: double stored in {@link #bits}. */
+  private static final byte DOUBLE = 1;
+
+  /** Number kind: only the number text is stored. */
+  private static final byte TEXT = 2;
+
+  private static final int CACHE_LOW = -128;
+
+  private static final int CACHE_HIGH = 1023;
+
+  /** Shared instances for small integers. */
+  private static final JsonNumber[] CACHE = new JsonNumber[CACHE_HIGH - CACHE_LOW + 1];
+
+  static {
+    for (int i = 0; i < CACHE.length; ++i) {
+      CACHE[i] = new JsonNumber(LONG, CACHE_LOW + i, null);
+    }
+  }
+
+  private byte kind;
+
+  /** The long value, or the double value as given by Double.doubleToLongBits(). */
+  private long bits;
+
+  /** The number text, or {@code null} if the text is given by the numeric value. */
+  private String text;
+
+  /** True if the parser may overwrite this number. */
+  private boolean refillable = false;
 
   public JsonNumber(long value) {
-    this.value = Long.toString(value);
+    this(LONG, value, null);
   }
 
   public JsonNumber(double value) {
-    this.value = Double.toString(value);
+    this(DOUBLE, Double.doubleToLongBits(value), null);
   }
 
   public JsonNumber(String value) {
-    this.value = value;
+    this(TEXT, 0, value);
+  }
+
+  private JsonNumber(byte kind, long bits, String text) {
+    this.kind = kind;
+    this.bits = bits;
+    this.text = text;
+  }
+
+  /**
+   * Returns a JSON number for the given integer. Small integers share
+   * the same instance.
+   */
+  public static JsonNumber valueOf(long value) {
+    if (value >= CACHE_LOW && value <= CACHE_HIGH) {
+      return CACHE[(int) value - CACHE_LOW];
+    }
+    return new JsonNumber(LONG, value, null);
+  }
+
+  /**
+   * Creates a JSON number from number text in a character buffer.
+   *
+   * <p>Integers in canonical form (no leading zeroes, no plus sign, no
+   * negative zero) that fit in a {@code long} are converted directly from
+   * the buffer, and the text is not stored. Decimal numbers are converted to
+   * {@code double}, and keep their text unless it is the shortest
+   * representation of the double.
+   *
+   * @param scratch buffer with room for {@link DoubleFormatter#MAX_CHARS} characters.
+   */
+  static JsonNumber fromLexeme(char[] chars, int offset, int length, char[] scratch) {
+    return fromLexeme(chars, offset, length, scratch, null);
+  }
+
+  /**
+   * Creates a JSON number from number text in a character buffer, like
+   * {@link #fromLexeme(char[], int, int, char[])}. If {@code list} is not
+   * null and the number text is not needed, the number is instead appended
+   * to the list as a primitive value.
+   *
+   * @return the new number, or {@code null} if it was appended to the list.
+   */
+  static JsonNumber fromLexeme(char[] chars, int offset, int length, char[] scratch,
+      ElementList list) {
+    return fromLexeme(chars, offset, length, scratch, list, null);
+  }
+
+  /**
+   * Creates a refillable JSON number from number text in a character buffer.
+   *
+   * @see #refill(char[], int, int, char[])
+   */
+  static JsonNumber refillable(char[] chars, int offset, int length, char[] scratch) {
+    JsonNumber number = new JsonNumber(LONG, 0, null);
+    number.refillable = true;
+    return fromLexeme(chars, offset, length, scratch, null, number);
+  }
+
+  /** @return {@code true} if this number can be overwritten by the parser. */
+  boolean isRefillable() {
+    return refillable;
+  }
+
+  /**
+   * Overwrite this refillable number with the number text in a character
+   * buffer. The number text is only stored if needed, and the previous text
+   * is kept if it is equal to the new text.
+   */
+  void refill(char[] chars, int offset, int length, char[] scratch) {
+    fromLexeme(chars, offset, length, scratch, null, this);
+  }
+
+  /**
+   * Converts number text like {@link #fromLexeme(char[], int, int, char[], ElementList)}.
+   * If {@code target} is not null, the number is stored in the target
+   * instead of a new number.
+   */
+  private static JsonNumber fromLexeme(char[] chars, int offset, int length, char[] scratch,
+      ElementList list, JsonNumber target) {
+    int i = offset;
+    int end = offset + length;
+    boolean negative = i < end && chars[i] == '-';
+    if (negative) {
+      i += 1;
+    }
+    int digits = end - i;
+    if (digits > 0 && digits <= 19 && (chars[i] != '0' || (digits == 1 && !negative))) {
+      // Accumulate the negated value, so that Long.MIN_VALUE can be represented.
+      long value = 0;
+      while (i < end) {
+        int digit = chars[i] - '0';
+        if (digit < 0 || digit > 9 || value < Long.MIN_VALUE / 10) {
+          break;
+        }
+        value *= 10;
+        if (value < Long.MIN_VALUE + digit) {
+          break;
+        }
+        value -= digit;
+        i += 1;
+      }
+      if (i == end && (negative || value != Long.MIN_VALUE)) {
+        if (!negative) {
+          value = -value;
+        }
+        if (list != null) {
+          list.addLong(value);
+          return null;
+        }
+        if (target != null) {
+          return target.set(LONG, value, null);
+        }
+        return valueOf(value);
+      }
+    }
+    long bits = DoubleParser.parse(chars, offset, length);
+    if (bits == DoubleParser.INVALID) {
+      if (target != null) {
+        return target.set(TEXT, 0, target.text(chars, offset, length));
+      }
+      return new JsonNumber(new String(chars, offset, length));
+    }
+    int formatted = DoubleFormatter.format(Double.longBitsToDouble(bits), scratch, 0);
+    if (formatted == length && regionMatches(scratch, chars, offset, length)) {
+      // The text is the same as the shortest representation of the double.
+      if (list != null) {
+        list.addDouble(Double.longBitsToDouble(bits));
+        return null;
+      }
+      if (target != null) {
+        return target.set(DOUBLE, bits, null);
+      }
+      return new JsonNumber(DOUBLE, bits, null);
+    }
+    if (target != null) {
+      return target.set(DOUBLE, bits, target.text(chars, offset, length));
+    }
+    return new JsonNumber(DOUBLE, bits, new String(chars, offset, length));
+  }
+
+  private JsonNumber set(byte kind, long bits, String text) {
+    this.kind = kind;
+    this.bits = bits;
+    this.text = text;
+    return this;
+  }
+
+  /** @return the current text of this number if it is equal to the given text, or a new string. */
+  private String text(char[] chars, int offset, int length) {
+    if (text != null && text.length() == length) {
+      int i = 0;
+      while (i < length && text.charAt(i) == chars[offset + i]) {
+        i += 1;
+      }
+      if (i == length) {
+        return text;
+      }
+    }
+    return new String(chars, offset, length);
+  }
+
+  private static boolean regionMatches(char[] a, char[] b, int offset, int length) {
+    for (int i = 0; i < length; ++i) {
+      if (a[i] != b[offset + i]) {
+        return false;
+      }
+    }
+    return true;
   }
 
   public void prettyPrint(PrettyPrinter out) {
-    out.print(value);
+    out.print(toString());
   }
 
   public String toCompactString() {
-    return value;
+    return toString();
+  }
+
+  @Override public void writeTo(Appendable out) throws IOException {
+    if (text != null) {
+      out.append(text);
+    } else if (kind == LONG) {
+      writeLong(bits, out);
+    } else {
+      writeDouble(Double.longBitsToDouble(bits), out, new char[DoubleFormatter.MAX_CHARS]);
+    }
+  }
+
+  /** Append the decimal representation of a long. */
+  static void writeLong(long value, Appendable out) throws IOException {
+    if (out instanceof StringBuilder) {
+      ((StringBuilder) out).append(value);
+    } else {
+      out.append(Long.toString(value));
+    }
+  }
+
+  /**
+   * Append the shortest representation of a double.
+   *
+   * @param scratch buffer with room for {@link DoubleFormatter#MAX_CHARS} characters.
+   */
+  static void writeDouble(double value, Appendable out, char[] scratch) throws IOException {
+    int length = DoubleFormatter.format(value, scratch, 0);
+    if (out instanceof StringBuilder) {
+      ((StringBuilder) out).append(scratch, 0, length);
+    } else {
+      out.append(new String(scratch, 0, length));
+    }
   }
 
   @Override public String toString() {
-    return value;
+    if (text != null) {
+      return text;
+    } else if (kind == LONG) {
+      return Long.toString(bits);
+    } else {
+      return DoubleFormatter.toString(Double.longBitsToDouble(bits));
+    }
+  }
+
+  /** Write this number to a JSON writer. */
+  void writeTo(JsonWriter writer) throws IOException {
+    if (text != null) {
+      writer.numberText(text);
+    } else if (kind == LONG) {
+      writer.value(bits);
+    } else {
+      writer.value(Double.longBitsToDouble(bits));
+    }
+  }
+
+  /** Write this number to a binary JSON encoder. */
+  void writeTo(BinaryJson.Encoder out) {
+    if (text != null) {
+      out.numberText(text);
+    } else if (kind == LONG) {
+      out.longValue(bits);
+    } else {
+      out.doubleBits(bits);
+    }
   }
 
   @Override public int intValue(int undefined) {
-    return Integer.valueOf(value);
+    if (kind == LONG && bits == (int) bits) {
+      return (int) bits;
+    }
+    return Integer.parseInt(toString());
   }
 
   @Override public int asInt(int undefined) {
-    return Integer.valueOf(value);
+    return intValue(undefined);
   }
 
   @Override public long longValue(long undefined) {
-    return Long.valueOf(value);
+    if (kind == LONG) {
+      return bits;
+    }
+    return Long.parseLong(toString());
   }
 
   @Override public long asLong(long undefined) {
-    return Long.valueOf(value);
+    return longValue(undefined);
   }
 
   @Override public float floatValue(float undefined) {
-    return Float.valueOf(value);
+    if (kind == LONG) {
+      return (float) bits;
+    }
+    return Float.parseFloat(toString());
   }
 
   @Override public float asFloat(float undefined) {
-    return Float.valueOf(value);
+    return floatValue(undefined);
   }
 
   @Override public double doubleValue(double undefined) {
-    return Double.valueOf(value);
+    switch (kind) {
+      case LONG:
+        return (double) bits;
+      case DOUBLE:
+        return Double.longBitsToDouble(bits);
+      default:
+        return Double.parseDouble(text);
+    }
   }
 
   @Override public double asDouble(double undefined) {
-    return Double.valueOf(value);
+    return doubleValue(undefined);
   }
 
-  @Override public JsonNumber copy() {
+  /** Stops the parser from overwriting this number. */
+  @Override public JsonNumber freeze() {
+    refillable = false;
     return this;
   }
 
+  @Override public boolean isFrozen() {
+    return !refillable;
+  }
+
+  /** @return this number, or an immutable copy of a refillable number. */
+  @Override public JsonNumber copy() {
+    return refillable ? new JsonNumber(kind, bits, text) : this;
+  }
+
+  /** The hash code is the hash code of the number text. */
   @Override public int hashCode() {
-    return value.hashCode();
+    if (text == null && kind == LONG) {
+      return longTextHash(bits);
+    }
+    return toString().hashCode();
+  }
+
+  /** Computes {@code Long.toString(value).hashCode()} without creating the string. */
+  private static int longTextHash(long value) {
+    int hash = 0;
+    if (value < 0) {
+      hash = '-';
+    } else {
+      value = -value;
+    }
+    // The value is now non-positive, so that Long.MIN_VALUE is handled.
+    long pow = 1;
+    while (value / pow <= -10) {
+      pow *= 10;
+    }
+    for (; pow > 0; pow /= 10) {
+      int digit = (int) -((value / pow) % 10);
+      hash = 31 * hash + '0' + digit;
+    }
+    return hash;
   }
 
   /**
    * @return {@code true} if the argument object is a JsonNumber with
-   * equal value string as this number.
+   * equal number text as this number.
    */
   @Override public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
     if (!(obj instanceof JsonNumber)) {
       return false;
     }
     JsonNumber other = (JsonNumber) obj;
-    return value == other.value || value.equals(other.value);
+    if (text == null && other.text == null && kind == other.kind) {
+      return bits == other.bits;
+    }
+    return toString().equals(other.toString());
   }
 }
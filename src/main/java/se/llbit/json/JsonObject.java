@@ -29,7 +29,7 @@
  */
 package se.llbit.json;
 
-import java.util.ArrayList;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -38,19 +38,37 @@ import java.util.Map;
 /**
  * Represents a JSON object.
  *
- * <p>Members are stored in a list.
+ * <p>Members are stored in a list. Objects with many members build a hash
+ * index on demand, so that members can be found by name in constant time.
  */
 public class JsonObject extends JsonValue implements Iterable<JsonMember> {
   public final List<JsonMember> members;
 
+  /** The member list, with name index. */
+  private final MemberList memberList;
+
+  /**
+   * False if this value is referenced only by the object or array that
+   * contains it. New values are exposed.
+   */
+  private boolean exposed = true;
+
+  /** The cached hash code of a frozen object, or zero if not computed. */
+  private int hash = 0;
+
   /** Create an object with default initial capacity. */
   public JsonObject() {
-    members = new ArrayList<>();
+    members = memberList = new MemberList();
   }
 
   /** Create an object with the specified initial capacity. */
   public JsonObject(int initialCapacity) {
-    members = new ArrayList<>(initialCapacity);
+    members = memberList = new MemberList(initialCapacity);
+  }
+
+  /** Create an object with the given member list. */
+  JsonObject(MemberList memberList) {
+    members = this.memberList = memberList;
   }
 
   public void prettyPrint(PrettyPrinter out) {
@@ -60,13 +78,13 @@ public class JsonObject extends JsonValue implements Iterable<JsonMember> {
       out.indent(1);
       {
         boolean first = true;
-        for (PrettyPrintable p : members) {
+        for (int i = 0; i < memberList.size(); ++i) {
           if (!first) {
             out.print(",");
             out.println();
           }
           first = false;
-          out.print(p);
+          out.print(memberList.member(i));
         }
       }
       out.println();
@@ -80,13 +98,12 @@ public class JsonObject extends JsonValue implements Iterable<JsonMember> {
    * Modify first member with the given name, or add a new member.
    */
   public void set(String name, JsonValue value) {
-    for (int i = 0; i < size(); ++i) {
-      if (get(i).getName().equals(name)) {
-        members.set(i, new JsonMember(name, value));
-        return;
-      }
+    int i = memberList.find(name);
+    if (i >= 0) {
+      members.set(i, new JsonMember(name, value));
+    } else {
+      add(name, value);
     }
-    add(name, value);
   }
 
   /**
@@ -95,7 +112,7 @@ public class JsonObject extends JsonValue implements Iterable<JsonMember> {
    * @throws IndexOutOfBoundsException if the index is not valid.
    */
   public void set(int i, JsonValue value) {
-    members.set(i, new JsonMember(members.get(i).name, value));
+    members.set(i, new JsonMember(memberList.member(i).name, value));
   }
 
   /**
@@ -115,7 +132,7 @@ public class JsonObject extends JsonValue implements Iterable<JsonMember> {
   }
 
   public void add(String name, long value) {
-    add(name, new JsonNumber(value));
+    add(name, JsonNumber.valueOf(value));
   }
 
   public void add(String name, double value) {
@@ -127,30 +144,28 @@ public class JsonObject extends JsonValue implements Iterable<JsonMember> {
   }
 
   public String toCompactString() {
-    StringBuilder sb = new StringBuilder();
-    sb.append("{");
-    boolean first = true;
-    for (JsonMember member : members) {
-      if (!first) {
-        sb.append(",");
+    return writeToString();
+  }
+
+  @Override public void writeTo(Appendable out) throws IOException {
+    out.append('{');
+    for (int i = 0; i < memberList.size(); ++i) {
+      if (i > 0) {
+        out.append(',');
       }
-      first = false;
-      sb.append(member.toCompactString());
+      memberList.member(i).writeTo(out);
     }
-    sb.append("}");
-    return sb.toString();
+    out.append('}');
   }
 
   @Override public String toString() {
     StringBuilder sb = new StringBuilder();
     sb.append("{ ");
-    boolean first = true;
-    for (JsonMember member : members) {
-      if (!first) {
+    for (int i = 0; i < memberList.size(); ++i) {
+      if (i > 0) {
         sb.append(", ");
       }
-      first = false;
-      sb.append(member.toString());
+      sb.append(memberList.member(i).toString());
     }
     sb.append(" }");
     return sb.toString();
@@ -192,12 +207,8 @@ public class JsonObject extends JsonValue implements Iterable<JsonMember> {
    * @return the removed member, or {@code null} if none was removed.
    */
   public JsonMember remove(String name) {
-    for (int i = 0; i < members.size(); ++i) {
-      if (members.get(i).name.equals(name)) {
-        return members.remove(i);
-      }
-    }
-    return null;
+    int i = memberList.find(name);
+    return i >= 0 ? members.remove(i) : null;
   }
 
   /**
@@ -246,12 +257,8 @@ public class JsonObject extends JsonValue implements Iterable<JsonMember> {
    * or the unknown JSON literal if no member has the given name.
    */
   public JsonValue get(String name) {
-    for (JsonMember member : members) {
-      if (member.getName().equals(name)) {
-        return member.getValue();
-      }
-    }
-    return Json.UNKNOWN;
+    int i = memberList.find(name);
+    return i >= 0 ? members.get(i).getValue() : Json.UNKNOWN;
   }
 
   public boolean isObject() {
@@ -266,12 +273,67 @@ public class JsonObject extends JsonValue implements Iterable<JsonMember> {
     return this;
   }
 
+  @Override public JsonObject freeze() {
+    if (!memberList.isFrozen()) {
+      memberList.freeze();
+      for (JsonMember member : members) {
+        member.value.freeze();
+      }
+    }
+    return this;
+  }
+
+  @Override public boolean isFrozen() {
+    return memberList.isFrozen();
+  }
+
+  /**
+   * The copy must not be read from several threads, see
+   * {@link JsonValue#copy()}.
+   *
+   * @return a copy of this object, or this object if it is frozen.
+   */
   @Override public JsonObject copy() {
-    JsonObject copy = new JsonObject(members.size());
-    for (JsonMember member : members) {
-      copy.add(member.copy());
+    if (memberList.isFrozen()) {
+      return this;
+    }
+    return new JsonObject(memberList.lazyCopy());
+  }
+
+  @Override boolean isExposed() {
+    return exposed && !memberList.isFrozen();
+  }
+
+  @Override void expose() {
+    if (!exposed && !memberList.isFrozen()) {
+      exposed = true;
     }
-    return copy;
+  }
+
+  @Override JsonObject owned() {
+    exposed = false;
+    return this;
+  }
+
+  /**
+   * Get a member without copying it if this object shares its members with
+   * a copy. The member must not be modified.
+   */
+  JsonMember member(int i) {
+    return memberList.member(i);
+  }
+
+  /**
+   * Get a member that may be modified, without exposing its value.
+   * Shared members are copied.
+   */
+  JsonMember ownMember(int i) {
+    return memberList.ownMember(i);
+  }
+
+  /** Remove the members from index {@code size} onward, keeping the capacity. */
+  void truncate(int size) {
+    memberList.truncate(size);
   }
 
   public boolean isEmpty() {
@@ -283,10 +345,15 @@ public class JsonObject extends JsonValue implements Iterable<JsonMember> {
   }
 
   @Override public int hashCode() {
-    // XOR all member hash codes.
-    int hash = 0;
-    for (JsonMember member : members) {
-      hash ^= member.hashCode();
+    int hash = this.hash;
+    if (hash == 0) {
+      // XOR all member hash codes.
+      for (int i = 0; i < memberList.size(); ++i) {
+        hash ^= memberList.member(i).hashCode();
+      }
+      if (memberList.isFrozen()) {
+        this.hash = hash;
+      }
     }
     return hash;
   }
@@ -300,11 +367,15 @@ public class JsonObject extends JsonValue implements Iterable<JsonMember> {
       return false;
     }
     JsonObject other = (JsonObject) obj;
-    if (size() != other.size()) {
+    if (this == other) {
+      return true;
+    }
+    if (size() != other.size()
+        || (hash != 0 && other.hash != 0 && hash != other.hash)) {
       return false;
     }
     for (int i = 0; i < size(); ++i) {
-      if (!get(i).equals(other.get(i))) {
+      if (!member(i).equals(other.member(i))) {
         return false;
       }
     }
@@ -33,12 +33,24 @@ import se.llbit.io.LookaheadReader;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
 
 /**
  * Parses JSON input.
+ *
+ * <p>A parser can be reset onto new input with one of the {@code reset}
+ * methods. The read buffers and scratch buffers, and the symbol table and
+ * ignored members, are kept. Use {@link JsonParserPool} to reuse parsers
+ * across threads.
  */
 public class JsonParser implements AutoCloseable {
-  private static final int EOF = -1;
+  static final int EOF = -1;
 
   interface Literal {
     char BEGIN_OBJECT = '{';
@@ -61,15 +73,141 @@ public class JsonParser implements AutoCloseable {
     }
   }
 
+  /**
+   * Thrown by the iterator returned by {@link #values()} when the input
+   * can not be read or parsed. The cause is the original exception.
+   */
+  public static class UncheckedParseException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public UncheckedParseException(Exception cause) {
+      super(cause.getMessage(), cause);
+    }
+  }
+
+  /** Returned by parseMember() for members that are skipped. */
+  private static final JsonMember SKIPPED_MEMBER = new JsonMember("", Json.UNKNOWN);
+
+  /** Characters that change the nesting level of skipped values. */
+  private static final char[] STRUCTURE_CHARS = {
+    Literal.QUOTE_MARK, Literal.BEGIN_OBJECT, Literal.END_OBJECT,
+    Literal.BEGIN_ARRAY, Literal.END_ARRAY
+  };
+
+  /** Characters that end a run of plain characters in a skipped string. */
+  private static final char[] STRING_STOP_CHARS = { Literal.QUOTE_MARK, Literal.ESCAPE };
+
+  /** Size of the character buffer used for reading input. */
+  private static final int BUFFER_SIZE = 8192;
+
   private final LookaheadReader in;
 
+  /** Decodes input streams, or {@code null} if the parser has only read from readers. */
+  private InputDecoder decoder = null;
+
+  /** Buffer for the characters of the current string. */
+  private final StringBuilder chars = new StringBuilder();
+
+  /** Buffer for the characters of the current number. */
+  private char[] number = new char[32];
+
+  /** Scratch buffer for number conversion. */
+  private final char[] numberScratch = new char[DoubleFormatter.MAX_CHARS];
+
+  /** Symbol table for member names, or {@code null} if names are not shared. */
+  private SymbolTable symbols = null;
+
+  /** Names of the members to skip, or {@code null} if no members are skipped. */
+  private NameSet ignoredMembers = null;
+
+  /** Strings and members reused by {@link #parseInto(JsonValue)}. */
+  private ValueCache cache = null;
+
   /**
    * Parse the JSON object from the given input.
    *
    * <p>The input stream is not closed after being used.
    */
   public JsonParser(InputStream input) {
-    in = new LookaheadReader(input, 8);
+    decoder = new InputDecoder(Charset.defaultCharset(), BUFFER_SIZE);
+    decoder.reset(input);
+    in = new LookaheadReader(decoder, 8, BUFFER_SIZE);
+  }
+
+  /**
+   * Parse the JSON object from the given input.
+   *
+   * <p>The reader is not closed after being used.
+   */
+  public JsonParser(Reader input) {
+    in = new LookaheadReader(input, 8, BUFFER_SIZE);
+  }
+
+  /**
+   * Start parsing new input. Any input buffered from the previous input is
+   * discarded, and the previous input is not closed.
+   */
+  public void reset(InputStream input) {
+    if (decoder == null) {
+      decoder = new InputDecoder(Charset.defaultCharset(), BUFFER_SIZE);
+    }
+    decoder.reset(input);
+    in.setInput(decoder);
+  }
+
+  /**
+   * Start parsing new input. Any input buffered from the previous input is
+   * discarded, and the previous input is not closed.
+   */
+  public void reset(Reader input) {
+    in.setInput(input);
+  }
+
+  /** Start parsing the bytes of the given array. */
+  public void reset(byte[] input) {
+    if (decoder == null) {
+      decoder = new InputDecoder(Charset.defaultCharset(), BUFFER_SIZE);
+    }
+    decoder.reset(input);
+    in.setInput(decoder);
+  }
+
+  /**
+   * Use the given symbol table for member names. Equal member names are
+   * then represented by the same string, within a document and across all
+   * documents parsed with the same symbol table.
+   *
+   * @param symbols the symbol table to use, or {@code null} to not share names.
+   */
+  public void setSymbolTable(SymbolTable symbols) {
+    this.symbols = symbols;
+  }
+
+  /**
+   * Skip object members with the given names. The values of skipped members
+   * are not built, and the members are left out of the parsed objects. A
+   * {@link JsonHandler} is not notified of skipped members.
+   * For skipped objects and arrays, only the balance of brackets and string
+   * quotes is checked.
+   *
+   * @param names the names of the members to skip, or {@code null} to
+   * parse all members.
+   */
+  public void setIgnoredMembers(Collection<String> names) {
+    ignoredMembers = names == null || names.isEmpty() ? null : new NameSet(names);
+  }
+
+  /**
+   * Parses a JSON object or array from a UTF-8 encoded file.
+   *
+   * <p>The file is memory mapped and parsed with {@link Utf8JsonParser}.
+   *
+   * @return either a JsonObject or JsonArray, not null.
+   */
+  public static JsonValue parse(Path file) throws IOException, SyntaxError {
+    try (Utf8JsonParser parser = new Utf8JsonParser(file)) {
+      return parser.parse();
+    }
   }
 
   /**
@@ -78,14 +216,53 @@ public class JsonParser implements AutoCloseable {
    * @return either a JsonObject or JsonArray, not null.
    */
   public JsonValue parse() throws IOException, SyntaxError {
-    JsonValue value;
+    JsonValue value = parseNext();
+    if (value == null) {
+      throw new SyntaxError("expected JSON object or array");
+    }
+    skipWhitespace();
+    if (in.peek() != EOF) {
+      throw new SyntaxError(
+          String.format("garbage at end of input (unexpected '%c')", (char) in.peek()));
+    }
+    return value;
+  }
+
+  /**
+   * Parses a JSON object or array into an existing tree, reusing the
+   * objects, arrays and values in the tree where possible. This is intended
+   * for parsing a stream of documents with the same shape, for example
+   * after {@link #reset(byte[])}, without allocating a new tree for each
+   * document.
+   *
+   * <p>The members and elements of the tree are overwritten in order.
+   * Members are reused if their names match, and object and array values
+   * are refilled recursively. Numbers created by this method are
+   * overwritten in place, and strings and members with string values are
+   * shared between documents. Once the shape and the string values of the
+   * documents have been seen, parsing allocates no memory. Strings longer
+   * than 64 characters, and number text that changes and must be kept
+   * because it is not the shortest form of the number, still allocate.
+   *
+   * <p>Values from the tree that are kept between parses must be copied,
+   * because they are overwritten by the next parse. Frozen values are
+   * never overwritten.
+   *
+   * @param tree the tree to parse into, or {@code null} to create a new tree.
+   * @return the parsed value. This is {@code tree} if the document is of the
+   * same type as {@code tree} and the tree is not frozen, otherwise a new
+   * JsonObject or JsonArray.
+   */
+  public JsonValue parseInto(JsonValue tree) throws IOException, SyntaxError {
+    if (cache == null) {
+      cache = new ValueCache();
+    }
     skipWhitespace();
+    JsonValue value;
     switch (in.peek()) {
       case Literal.BEGIN_OBJECT:
-        value = parseObject();
-        break;
       case Literal.BEGIN_ARRAY:
-        value = parseArray();
+        value = refillValue(tree);
         break;
       default:
         throw new SyntaxError("expected JSON object or array");
@@ -98,11 +275,458 @@ public class JsonParser implements AutoCloseable {
     return value;
   }
 
-  private JsonArray parseArray() throws IOException, SyntaxError {
+  /**
+   * Parses the next JSON object or array from input that holds a sequence
+   * of values. The values can be separated by whitespace, for example one
+   * value per line as in JSON Lines, or be directly concatenated.
+   *
+   * <p>No input after the end of the parsed value is consumed, except what
+   * is buffered by the parser.
+   *
+   * @return the next JsonObject or JsonArray, or {@code null} at the end
+   * of the input.
+   */
+  public JsonValue parseNext() throws IOException, SyntaxError {
+    skipWhitespace();
+    switch (in.peek()) {
+      case Literal.BEGIN_OBJECT:
+        return parseObject();
+      case Literal.BEGIN_ARRAY:
+        return parseArray();
+      case EOF:
+        return null;
+      default:
+        throw new SyntaxError("expected JSON object or array");
+    }
+  }
+
+  /**
+   * Skips the next JSON object or array from input that holds a sequence
+   * of values, like {@link #parseNext()} but without building the value.
+   * Only the balance of brackets and string quotes in the skipped value
+   * is checked.
+   *
+   * @return {@code false} at the end of the input.
+   */
+  public boolean skipNext() throws IOException, SyntaxError {
+    skipWhitespace();
+    switch (in.peek()) {
+      case Literal.BEGIN_OBJECT:
+      case Literal.BEGIN_ARRAY:
+        skipStructure();
+        return true;
+      case EOF:
+        return false;
+      default:
+        throw new SyntaxError("expected JSON object or array");
+    }
+  }
+
+  /**
+   * Iterates over the sequence of JSON objects and arrays in the input,
+   * using {@link #parseNext()}. Each value is parsed when
+   * {@code hasNext()} is called.
+   *
+   * <p>Errors are thrown from {@code hasNext()} and {@code next()} as an
+   * {@link UncheckedParseException} with the {@link IOException} or
+   * {@link SyntaxError} as cause. The iteration ends after an error.
+   */
+  public Iterator<JsonValue> values() {
+    return new Iterator<JsonValue>() {
+      private JsonValue next = null;
+      private boolean done = false;
+
+      @Override public boolean hasNext() {
+        if (next == null && !done) {
+          try {
+            next = parseNext();
+          } catch (IOException | SyntaxError e) {
+            done = true;
+            throw new UncheckedParseException(e);
+          }
+          done = next == null;
+        }
+        return next != null;
+      }
+
+      @Override public JsonValue next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        JsonValue value = next;
+        next = null;
+        return value;
+      }
+
+      @Override public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  /**
+   * Parses only the values selected by the given JSON Pointers.
+   *
+   * <p>Only the selected values are built. Other values are skipped: for
+   * skipped objects and arrays the parser only checks that brackets and
+   * string quotes are balanced. Parsing stops when all pointers have been
+   * resolved, and the rest of the input is then not read.
+   *
+   * <p>For objects with duplicate member names, the first member is used,
+   * like in {@link JsonPointer#get(JsonValue)}.
+   *
+   * @return the selected values, in the same order as the pointers. The
+   * unknown JSON literal is returned for pointers that do not match a value.
+   */
+  public List<JsonValue> parse(List<JsonPointer> pointers) throws IOException, SyntaxError {
+    PointerSelection selection = new PointerSelection(pointers);
+    skipWhitespace();
+    int next = in.peek();
+    if (next != Literal.BEGIN_OBJECT && next != Literal.BEGIN_ARRAY) {
+      throw new SyntaxError("expected JSON object or array");
+    }
+    PointerSelection.Node root = selection.root;
+    boolean complete;
+    if (root.isSelected()) {
+      selection.select(root, parseValue());
+      complete = true;
+    } else if (next == Literal.BEGIN_OBJECT) {
+      complete = selectObject(selection, root);
+    } else {
+      complete = selectArray(selection, root);
+    }
+    if (complete) {
+      skipWhitespace();
+      if (in.peek() != EOF) {
+        throw new SyntaxError(
+            String.format("garbage at end of input (unexpected '%c')", (char) in.peek()));
+      }
+    }
+    return selection.values();
+  }
+
+  /**
+   * Parses a JSON object or array and reports the parsed structure to the
+   * given handler. No JSON values are created.
+   *
+   * <p>Parsing stops early if one of the handler methods returns {@code false}.
+   * The rest of the input is then not read.
+   *
+   * @return {@code true} if the whole input was parsed, {@code false}
+   * if the handler stopped the parsing.
+   */
+  public boolean parse(JsonHandler handler) throws IOException, SyntaxError {
+    skipWhitespace();
+    int next = in.peek();
+    if (next != Literal.BEGIN_OBJECT && next != Literal.BEGIN_ARRAY) {
+      throw new SyntaxError("expected JSON object or array");
+    }
+    if (!handleValue(handler)) {
+      return false;
+    }
+    skipWhitespace();
+    if (in.peek() != EOF) {
+      throw new SyntaxError(
+          String.format("garbage at end of input (unexpected '%c')", (char) in.peek()));
+    }
+    return true;
+  }
+
+  private boolean handleObject(JsonHandler handler) throws IOException, SyntaxError {
+    accept(Literal.BEGIN_OBJECT);
+    if (!handler.startObject()) {
+      return false;
+    }
+    do {
+      skipWhitespace();
+      if (in.peek() != Literal.QUOTE_MARK) {
+        int next = in.peek();
+        if (next != EOF && next != Literal.END_OBJECT) { // EOF is handled by accept().
+          throw new SyntaxError("missing member in object.");
+        }
+        break;
+      }
+      scanString();
+      if (ignoredMembers != null && ignoredMembers.contains(chars)) {
+        skipMemberValue();
+        skipWhitespace();
+        continue;
+      }
+      if (!handler.name(name())) {
+        return false;
+      }
+      skipWhitespace();
+      accept(Literal.NAME_SEPARATOR);
+      skipWhitespace();
+      if (!isValueStart(in.peek())) {
+        throw new SyntaxError("missing value for object member");
+      }
+      if (!handleValue(handler)) {
+        return false;
+      }
+      skipWhitespace();
+    } while (skip(Literal.VALUE_SEPARATOR));
+    accept(Literal.END_OBJECT);
+    return handler.endObject();
+  }
+
+  private boolean handleArray(JsonHandler handler) throws IOException, SyntaxError {
+    accept(Literal.BEGIN_ARRAY);
+    if (!handler.startArray()) {
+      return false;
+    }
+    boolean empty = true;
+    do {
+      skipWhitespace();
+      if (!isValueStart(in.peek())) {
+        if (!empty || in.peek() == Literal.VALUE_SEPARATOR) {
+          throw new SyntaxError("missing element in array");
+        }
+        break;
+      }
+      empty = false;
+      if (!handleValue(handler)) {
+        return false;
+      }
+      skipWhitespace();
+    } while (skip(Literal.VALUE_SEPARATOR));
+    accept(Literal.END_ARRAY);
+    return handler.endArray();
+  }
+
+  /**
+   * Parses a value and reports it to the handler. The caller must check
+   * that the next input character starts a JSON value.
+   */
+  private boolean handleValue(JsonHandler handler) throws IOException, SyntaxError {
+    switch (in.peek()) {
+      case Literal.BEGIN_OBJECT:
+        return handleObject(handler);
+      case Literal.BEGIN_ARRAY:
+        return handleArray(handler);
+      case Literal.QUOTE_MARK:
+        return handler.stringValue(parseString());
+      case 't':
+        acceptLiteral(Literal.TRUE);
+        return handler.booleanValue(true);
+      case 'f':
+        acceptLiteral(Literal.FALSE);
+        return handler.booleanValue(false);
+      case 'n':
+        acceptLiteral(Literal.NULL);
+        return handler.nullValue();
+      default:
+        int length = scanNumber();
+        return handler.numberValue(new String(number, 0, length));
+    }
+  }
+
+  /**
+   * Parses the next value if it is selected, walks into it if it contains
+   * selected values, and otherwise skips it. The caller must check that
+   * the next input character starts a JSON value.
+   *
+   * @param node the pointer tree node for the value, or {@code null}.
+   * @return {@code false} if parsing stopped because all pointers were resolved.
+   */
+  private boolean select(PointerSelection selection, PointerSelection.Node node)
+      throws IOException, SyntaxError {
+    if (node == null) {
+      skipValue();
+      return true;
+    }
+    if (node.isSelected()) {
+      selection.select(node, parseValue());
+      return !selection.isDone();
+    }
+    switch (in.peek()) {
+      case Literal.BEGIN_OBJECT:
+        if (!selectObject(selection, node)) {
+          return false;
+        }
+        break;
+      case Literal.BEGIN_ARRAY:
+        if (!selectArray(selection, node)) {
+          return false;
+        }
+        break;
+      default:
+        skipValue();
+    }
+    selection.finish(node);
+    return !selection.isDone();
+  }
+
+  private boolean selectObject(PointerSelection selection, PointerSelection.Node node)
+      throws IOException, SyntaxError {
+    accept(Literal.BEGIN_OBJECT);
+    do {
+      skipWhitespace();
+      int next = in.peek();
+      if (next != Literal.QUOTE_MARK) {
+        if (next != EOF && next != Literal.END_OBJECT) { // EOF is handled by accept().
+          throw new SyntaxError("missing member in object.");
+        }
+        break;
+      }
+      scanString(); // The name is matched in the character buffer.
+      PointerSelection.Node child = node.member(chars);
+      skipWhitespace();
+      accept(Literal.NAME_SEPARATOR);
+      skipWhitespace();
+      if (!isValueStart(in.peek())) {
+        throw new SyntaxError("missing value for object member");
+      }
+      if (!select(selection, child)) {
+        return false;
+      }
+      skipWhitespace();
+    } while (skip(Literal.VALUE_SEPARATOR));
+    accept(Literal.END_OBJECT);
+    return true;
+  }
+
+  private boolean selectArray(PointerSelection selection, PointerSelection.Node node)
+      throws IOException, SyntaxError {
     accept(Literal.BEGIN_ARRAY);
+    int index = 0;
+    do {
+      skipWhitespace();
+      if (!isValueStart(in.peek())) {
+        if (index > 0 || in.peek() == Literal.VALUE_SEPARATOR) {
+          throw new SyntaxError("missing element in array");
+        }
+        break;
+      }
+      if (!select(selection, node.element(index))) {
+        return false;
+      }
+      index += 1;
+      skipWhitespace();
+    } while (skip(Literal.VALUE_SEPARATOR));
+    accept(Literal.END_ARRAY);
+    return true;
+  }
+
+  /**
+   * Skips the next value without building it. For objects and arrays, only
+   * the balance of brackets and string quotes is checked. The caller must
+   * check that the next input character starts a JSON value.
+   */
+  void skipValue() throws IOException, SyntaxError {
+    switch (in.peek()) {
+      case Literal.BEGIN_OBJECT:
+      case Literal.BEGIN_ARRAY:
+        skipStructure();
+        break;
+      case Literal.QUOTE_MARK:
+        skipString();
+        break;
+      case 't':
+        acceptLiteral(Literal.TRUE);
+        break;
+      case 'f':
+        acceptLiteral(Literal.FALSE);
+        break;
+      case 'n':
+        acceptLiteral(Literal.NULL);
+        break;
+      default:
+        scanNumber();
+    }
+  }
+
+  /** Skips the name separator and value of an object member, after the member name. */
+  private void skipMemberValue() throws IOException, SyntaxError {
+    skipWhitespace();
+    accept(Literal.NAME_SEPARATOR);
+    skipWhitespace();
+    if (!isValueStart(in.peek())) {
+      throw new SyntaxError("missing value for object member");
+    }
+    skipValue();
+  }
+
+  /** Skips an object or array by counting brackets. */
+  private void skipStructure() throws IOException, SyntaxError {
+    char close = in.peek() == Literal.BEGIN_OBJECT ? Literal.END_OBJECT : Literal.END_ARRAY;
+    int depth = 0;
+    while (true) {
+      int next = in.skipUntil(STRUCTURE_CHARS);
+      switch (next) {
+        case EOF:
+          throw new SyntaxError(String.format("unexpected end of input (expected '%c')", close));
+        case Literal.QUOTE_MARK:
+          skipString();
+          break;
+        case Literal.BEGIN_OBJECT:
+        case Literal.BEGIN_ARRAY:
+          in.pop();
+          depth += 1;
+          break;
+        default:
+          in.pop();
+          depth -= 1;
+          if (depth == 0) {
+            return;
+          }
+      }
+    }
+  }
+
+  /** Skips a JSON string without decoding it. */
+  private void skipString() throws IOException, SyntaxError {
+    accept(Literal.QUOTE_MARK);
+    while (true) {
+      int next = in.skipUntil(STRING_STOP_CHARS);
+      if (next == EOF) {
+        throw new SyntaxError("end of input while parsing JSON string (expected '\"')");
+      }
+      in.pop();
+      if (next == Literal.QUOTE_MARK) {
+        return;
+      }
+      if (in.pop() == EOF) {
+        throw new SyntaxError("end of input in JSON string escape sequence.");
+      }
+    }
+  }
+
+  /** Test if a character can start a JSON value. */
+  static boolean isValueStart(int c) {
+    switch (c) {
+      case Literal.BEGIN_OBJECT:
+      case Literal.BEGIN_ARRAY:
+      case Literal.QUOTE_MARK:
+      case 't':
+      case 'f':
+      case 'n':
+      case '-':
+      case '+':
+        return true;
+      default:
+        return c >= '0' && c <= '9';
+    }
+  }
+
+  JsonArray parseArray() throws IOException, SyntaxError {
     JsonArray array = new JsonArray();
+    parseElements(array);
+    return array;
+  }
+
+  /** Parses an array and appends its elements to the given array. */
+  private void parseElements(JsonArray array) throws IOException, SyntaxError {
+    accept(Literal.BEGIN_ARRAY);
     do {
       skipWhitespace();
+      if (isNumberStart(in.peek())) {
+        // Numbers are added directly, so that they can be packed.
+        int length = scanNumber();
+        array.addLexeme(number, 0, length, numberScratch);
+        skipWhitespace();
+        continue;
+      }
       JsonValue value = parseValue();
       if (value == null) {
         if (!array.isEmpty() || in.peek() == Literal.VALUE_SEPARATOR) {
@@ -110,14 +734,140 @@ public class JsonParser implements AutoCloseable {
         }
         break;
       }
-      array.add(value);
+      array.add(value.owned());
       skipWhitespace();
     } while (skip(Literal.VALUE_SEPARATOR));
     accept(Literal.END_ARRAY);
-    return array;
   }
 
-  private JsonValue parseValue() throws IOException, SyntaxError {
+  /**
+   * Parses a value, reusing the previous value at the same position in the
+   * tree if possible.
+   *
+   * @param old the previous value, or {@code null}.
+   * @return the parsed value, {@code old} if it was reused, or {@code null}
+   * if there is no value at the current position.
+   */
+  private JsonValue refillValue(JsonValue old) throws IOException, SyntaxError {
+    switch (in.peek()) {
+      case Literal.BEGIN_OBJECT:
+        if (old instanceof JsonObject && !old.isFrozen()) {
+          refillObject((JsonObject) old);
+          return old;
+        }
+        JsonObject object = new JsonObject();
+        refillObject(object);
+        return object;
+      case Literal.BEGIN_ARRAY:
+        if (old instanceof JsonArray && !old.isFrozen()) {
+          refillArray((JsonArray) old);
+          return old;
+        }
+        JsonArray array = new JsonArray();
+        refillArray(array);
+        return array;
+      case Literal.QUOTE_MARK:
+        scanString();
+        if (old instanceof JsonString && ((JsonString) old).value.contentEquals(chars)) {
+          return old;
+        }
+        return cache.string(chars);
+      default:
+        if (isNumberStart(in.peek())) {
+          int length = scanNumber();
+          if (old instanceof JsonNumber && ((JsonNumber) old).isRefillable()) {
+            ((JsonNumber) old).refill(number, 0, length, numberScratch);
+            return old;
+          }
+          return JsonNumber.refillable(number, 0, length, numberScratch);
+        }
+        return parseValue();
+    }
+  }
+
+  /** Parses an object into an existing object, overwriting its members in order. */
+  private void refillObject(JsonObject object) throws IOException, SyntaxError {
+    accept(Literal.BEGIN_OBJECT);
+    List<JsonMember> members = object.members;
+    int size = 0;
+    do {
+      skipWhitespace();
+      if (in.peek() != Literal.QUOTE_MARK) {
+        int next = in.peek();
+        if (next != EOF && (next == Literal.VALUE_SEPARATOR || next != Literal.END_OBJECT)) {
+          throw new SyntaxError("missing member in object.");
+        }
+        break;
+      }
+      scanString();
+      if (ignoredMembers != null && ignoredMembers.contains(chars)) {
+        skipMemberValue();
+      } else {
+        JsonMember old = size < members.size() ? object.ownMember(size) : null;
+        String name = old != null && old.name.contentEquals(chars) ? old.name : name();
+        skipWhitespace();
+        accept(Literal.NAME_SEPARATOR);
+        skipWhitespace();
+        JsonValue value = refillValue(old != null ? old.value : null);
+        if (value == null) {
+          throw new SyntaxError("missing value for object member");
+        }
+        if (old == null) {
+          members.add(cache.member(name, value.owned()));
+        } else if (old.value != value) {
+          members.set(size, cache.member(name, value.owned()));
+        } else if (old.name != name) {
+          members.set(size, cache.member(name, value));
+        }
+        size += 1;
+      }
+      skipWhitespace();
+    } while (skip(Literal.VALUE_SEPARATOR));
+    accept(Literal.END_OBJECT);
+    object.truncate(size);
+  }
+
+  /**
+   * Parses an array into an existing array. Packed arrays are refilled
+   * with primitive numbers, and other arrays are overwritten element by
+   * element.
+   */
+  private void refillArray(JsonArray array) throws IOException, SyntaxError {
+    if (array.isPacked()) {
+      array.truncate(0);
+      parseElements(array);
+      return;
+    }
+    accept(Literal.BEGIN_ARRAY);
+    List<JsonValue> elements = array.elements;
+    int size = 0;
+    do {
+      skipWhitespace();
+      JsonValue old = size < elements.size() ? array.ownElement(size) : null;
+      JsonValue value = refillValue(old);
+      if (value == null) {
+        if (size > 0 || in.peek() == Literal.VALUE_SEPARATOR) {
+          throw new SyntaxError("missing element in array");
+        }
+        break;
+      }
+      if (old == null) {
+        elements.add(value.owned());
+      } else if (old != value) {
+        elements.set(size, value.owned());
+      }
+      size += 1;
+      skipWhitespace();
+    } while (skip(Literal.VALUE_SEPARATOR));
+    accept(Literal.END_ARRAY);
+    array.truncate(size);
+  }
+
+  private static boolean isNumberStart(int c) {
+    return (c >= '0' && c <= '9') || c == '-' || c == '+';
+  }
+
+  JsonValue parseValue() throws IOException, SyntaxError {
     switch (in.peek()) {
       case Literal.BEGIN_OBJECT:
         return parseObject();
@@ -153,22 +903,41 @@ public class JsonParser implements AutoCloseable {
     }
   }
 
-  private String parseString() throws IOException, SyntaxError {
+  String parseString() throws IOException, SyntaxError {
+    scanString();
+    return chars.toString();
+  }
+
+  /**
+   * Parses a member name. The name is looked up in the symbol table, if
+   * there is one.
+   */
+  String parseName() throws IOException, SyntaxError {
+    scanString();
+    return name();
+  }
+
+  /** @return the member name in the character buffer. */
+  private String name() {
+    return symbols != null ? symbols.lookup(chars) : chars.toString();
+  }
+
+  /** Reads a JSON string into the character buffer. */
+  private void scanString() throws IOException, SyntaxError {
     accept(Literal.QUOTE_MARK);
-    StringBuilder sb = new StringBuilder();
+    StringBuilder sb = chars;
+    sb.setLength(0);
     while (true) {
-      int next = in.pop();
+      int next = in.scanUntil(Literal.QUOTE_MARK, Literal.ESCAPE, sb);
       if (next == EOF) {
         throw new SyntaxError("end of input while parsing JSON string (expected '\"')");
-      } else if (next == Literal.ESCAPE) {
-        sb.append(unescapeStringChar());
-      } else if (next == Literal.QUOTE_MARK) {
+      }
+      in.pop();
+      if (next == Literal.QUOTE_MARK) {
         break;
-      } else {
-        sb.append((char) next);
       }
+      sb.append(unescapeStringChar());
     }
-    return sb.toString();
   }
 
   private char unescapeStringChar() throws IOException, SyntaxError {
@@ -221,8 +990,18 @@ public class JsonParser implements AutoCloseable {
         (char) next));
   }
 
-  private JsonValue parseNumber() throws IOException, SyntaxError {
-    StringBuilder sb = new StringBuilder();
+  JsonValue parseNumber() throws IOException, SyntaxError {
+    int length = scanNumber();
+    return JsonNumber.fromLexeme(number, 0, length, numberScratch);
+  }
+
+  /**
+   * Reads the characters of a JSON number into the number buffer.
+   *
+   * @return the number of characters read.
+   */
+  private int scanNumber() throws IOException, SyntaxError {
+    int length = 0;
     while (true) {
       switch (in.peek()) {
         case EOF:
@@ -242,25 +1021,31 @@ public class JsonParser implements AutoCloseable {
         case '.':
         case 'e':
         case 'E':
-          sb.append((char) in.pop());
+          if (length == number.length) {
+            char[] copy = new char[number.length * 2];
+            System.arraycopy(number, 0, copy, 0, length);
+            number = copy;
+          }
+          number[length++] = (char) in.pop();
           break;
         default:
-          return new JsonNumber(sb.toString());
+          return length;
       }
     }
   }
 
-  private void skipWhitespace() throws IOException {
-    while (isWhitespace(in.peek())) {
-      in.pop();
-    }
+  void skipWhitespace() throws IOException {
+    in.skipWhitespace();
   }
 
-  private boolean isWhitespace(int chr) {
-    return chr == 0x20 || chr == 0x09 || chr == 0x0A || chr == 0x0D;
+  /**
+   * @return the next input character, or -1 if the end of the input has been reached.
+   */
+  int peek() throws IOException {
+    return in.peek();
   }
 
-  private void acceptLiteral(char[] literal) throws IOException, SyntaxError {
+  void acceptLiteral(char[] literal) throws IOException, SyntaxError {
     for (char c : literal) {
       if (in.pop() != c) {
         throw new SyntaxError("encountered invalid JSON literal");
@@ -268,7 +1053,7 @@ public class JsonParser implements AutoCloseable {
     }
   }
 
-  private JsonObject parseObject() throws IOException, SyntaxError {
+  JsonObject parseObject() throws IOException, SyntaxError {
     accept(Literal.BEGIN_OBJECT);
     JsonObject object = new JsonObject();
     do {
@@ -282,14 +1067,17 @@ public class JsonParser implements AutoCloseable {
         }
         break;
       }
-      object.add(member);
+      if (member != SKIPPED_MEMBER) {
+        member.value.owned();
+        object.add(member);
+      }
       skipWhitespace();
     } while (skip(Literal.VALUE_SEPARATOR));
     accept(Literal.END_OBJECT);
     return object;
   }
 
-  private boolean skip(char c) throws IOException, SyntaxError {
+  boolean skip(char c) throws IOException, SyntaxError {
     boolean skip = in.peek() == c;
     if (skip) {
       in.pop();
@@ -297,7 +1085,7 @@ public class JsonParser implements AutoCloseable {
     return skip;
   }
 
-  private void accept(char c) throws IOException, SyntaxError {
+  void accept(char c) throws IOException, SyntaxError {
     int next = in.pop();
     if (next == EOF) {
       throw new SyntaxError(String.format("unexpected end of input (expected '%c')", c));
@@ -308,9 +1096,20 @@ public class JsonParser implements AutoCloseable {
     }
   }
 
+  /**
+   * Parses an object member.
+   *
+   * @return the member, {@link #SKIPPED_MEMBER} if the member was skipped,
+   * or {@code null} if there is no member at the current position.
+   */
   private JsonMember parseMember() throws IOException, SyntaxError {
     if (in.peek() == Literal.QUOTE_MARK) {
-      String name = parseString();
+      scanString();
+      if (ignoredMembers != null && ignoredMembers.contains(chars)) {
+        skipMemberValue();
+        return SKIPPED_MEMBER;
+      }
+      String name = name();
       skipWhitespace();
       accept(Literal.NAME_SEPARATOR);
       skipWhitespace();
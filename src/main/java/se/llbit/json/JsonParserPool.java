@@ -0,0 +1,130 @@
+package se.llbit.json;
+
+import se.llbit.json.JsonParser.SyntaxError;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Keeps one {@link JsonParser} per thread, for services that parse many
+ * small documents. Each parse resets the parser of the calling thread onto
+ * the new input, so that its buffers are reused.
+ *
+ * <pre>
+ * JsonParserPool pool = new JsonParserPool();
+ * pool.setSymbolTable(new SymbolTable());
+ * ...
+ * JsonValue message = pool.parse(bytes);
+ * </pre>
+ *
+ * <p>The pool is thread safe. The symbol table, if any, is shared by the
+ * parsers of all threads.
+ */
+public class JsonParserPool {
+  private static final byte[] NO_INPUT = new byte[0];
+
+  private final SymbolTable symbols;
+
+  private final List<String> ignoredMembers;
+
+  private final ThreadLocal<JsonParser> parsers = new ThreadLocal<JsonParser>() {
+    @Override protected JsonParser initialValue() {
+      JsonParser parser = new JsonParser(new ByteArrayInputStream(NO_INPUT));
+      parser.setSymbolTable(symbols);
+      parser.setIgnoredMembers(ignoredMembers);
+      return parser;
+    }
+  };
+
+  /** Create a pool of parsers without a symbol table. */
+  public JsonParserPool() {
+    this(null, null);
+  }
+
+  /**
+   * Create a pool of parsers with the given settings.
+   *
+   * @param symbols the symbol table to use, or {@code null} to not share names.
+   * @param ignoredMembers the names of the members to skip, or {@code null}
+   * to parse all members.
+   * @see JsonParser#setSymbolTable(SymbolTable)
+   * @see JsonParser#setIgnoredMembers(Collection)
+   */
+  public JsonParserPool(SymbolTable symbols, Collection<String> ignoredMembers) {
+    this.symbols = symbols;
+    this.ignoredMembers = ignoredMembers == null ? null : new ArrayList<>(ignoredMembers);
+  }
+
+  /**
+   * Get the parser of the calling thread, reset onto the given input.
+   *
+   * <p>The parser is returned again by the next call from the same thread,
+   * so it must not be used after that call. The parser must not be closed,
+   * instead close the input when done.
+   *
+   * <p>The parser keeps a reference to the input until the next call from
+   * the same thread. Call {@link #release()} when done to let the input be
+   * garbage collected.
+   */
+  public JsonParser parser(InputStream input) {
+    JsonParser parser = parsers.get();
+    parser.reset(input);
+    return parser;
+  }
+
+  /**
+   * Get the parser of the calling thread, reset onto the given input.
+   *
+   * @see #parser(InputStream)
+   */
+  public JsonParser parser(Reader input) {
+    JsonParser parser = parsers.get();
+    parser.reset(input);
+    return parser;
+  }
+
+  /**
+   * Parses a JSON object or array with the parser of the calling thread.
+   * The input stream is not closed.
+   *
+   * @return either a JsonObject or JsonArray, not null.
+   */
+  public JsonValue parse(InputStream input) throws IOException, SyntaxError {
+    JsonParser parser = parser(input);
+    try {
+      return parser.parse();
+    } finally {
+      parser.reset(NO_INPUT);
+    }
+  }
+
+  /**
+   * Parses a JSON object or array from a byte array with the parser of the
+   * calling thread.
+   *
+   * @return either a JsonObject or JsonArray, not null.
+   */
+  public JsonValue parse(byte[] input) throws IOException, SyntaxError {
+    JsonParser parser = parsers.get();
+    parser.reset(input);
+    try {
+      return parser.parse();
+    } finally {
+      parser.reset(NO_INPUT);
+    }
+  }
+
+  /**
+   * Drop the reference from the parser of the calling thread to the last
+   * input given to {@link #parser(InputStream)} or {@link #parser(Reader)}.
+   * The parse methods do this themselves.
+   */
+  public void release() {
+    parsers.get().reset(NO_INPUT);
+  }
+}
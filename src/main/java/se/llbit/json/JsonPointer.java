@@ -0,0 +1,183 @@
+/* Copyright (c) 2017, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.json;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A JSON Pointer (RFC 6901), which identifies a value in a JSON document.
+ *
+ * <p>A pointer is a sequence of reference tokens, each prefixed by a
+ * slash. In a token, {@code ~0} stands for a tilde and {@code ~1} for a
+ * slash. The empty pointer refers to the whole document. For example,
+ * the pointer {@code /items/0/name} refers to the value of the
+ * {@code name} member of the first element of the {@code items} array.
+ *
+ * <p>Pointers can be evaluated on JSON trees with {@link #get(JsonValue)},
+ * or passed to {@link JsonParser#parse(List)} to only parse the selected
+ * values of a document.
+ */
+public final class JsonPointer {
+  private final String pointer;
+
+  private final String[] tokens;
+
+  /**
+   * Array indexes of the tokens, or -1 for tokens that are not valid
+   * array indexes.
+   */
+  private final int[] indexes;
+
+  /**
+   * Parse a JSON Pointer.
+   *
+   * @throws IllegalArgumentException if the pointer is not valid.
+   */
+  public JsonPointer(String pointer) {
+    if (!pointer.isEmpty() && pointer.charAt(0) != '/') {
+      throw new IllegalArgumentException("JSON Pointer must start with '/': " + pointer);
+    }
+    List<String> tokens = new ArrayList<>();
+    int start = 1;
+    while (start <= pointer.length()) {
+      int end = pointer.indexOf('/', start);
+      if (end < 0) {
+        end = pointer.length();
+      }
+      tokens.add(unescape(pointer, start, end));
+      start = end + 1;
+    }
+    this.pointer = pointer;
+    this.tokens = tokens.toArray(new String[tokens.size()]);
+    indexes = new int[this.tokens.length];
+    for (int i = 0; i < indexes.length; ++i) {
+      indexes[i] = arrayIndex(this.tokens[i]);
+    }
+  }
+
+  private static String unescape(String pointer, int start, int end) {
+    int tilde = pointer.indexOf('~', start);
+    if (tilde < 0 || tilde >= end) {
+      return pointer.substring(start, end);
+    }
+    StringBuilder token = new StringBuilder(end - start);
+    for (int i = start; i < end; ++i) {
+      char c = pointer.charAt(i);
+      if (c == '~') {
+        char next = i + 1 < end ? pointer.charAt(i + 1) : 0;
+        if (next == '0') {
+          token.append('~');
+        } else if (next == '1') {
+          token.append('/');
+        } else {
+          throw new IllegalArgumentException("Invalid escape in JSON Pointer: " + pointer);
+        }
+        i += 1;
+      } else {
+        token.append(c);
+      }
+    }
+    return token.toString();
+  }
+
+  /** @return the array index of a token, or -1 if the token is not an array index. */
+  private static int arrayIndex(String token) {
+    if (token.isEmpty() || token.length() > 9
+        || (token.charAt(0) == '0' && token.length() > 1)) {
+      return -1;
+    }
+    int index = 0;
+    for (int i = 0; i < token.length(); ++i) {
+      char c = token.charAt(i);
+      if (c < '0' || c > '9') {
+        return -1;
+      }
+      index = index * 10 + (c - '0');
+    }
+    return index;
+  }
+
+  /** @return the number of reference tokens in this pointer. */
+  public int size() {
+    return tokens.length;
+  }
+
+  /** @return the unescaped reference token at the given position. */
+  public String token(int i) {
+    return tokens[i];
+  }
+
+  /** @return the array index of a token, or -1 if the token is not an array index. */
+  int index(int i) {
+    return indexes[i];
+  }
+
+  /**
+   * Find the value this pointer refers to in a JSON document.
+   * For objects with duplicate member names, the first member is used.
+   *
+   * @return the value, or the unknown JSON literal if there is no such value.
+   */
+  public JsonValue get(JsonValue document) {
+    return get(document, 0);
+  }
+
+  /** Finds the value that the tokens from {@code start} refer to. */
+  JsonValue get(JsonValue value, int start) {
+    for (int i = start; i < tokens.length; ++i) {
+      if (value.isObject()) {
+        value = value.object().get(tokens[i]);
+      } else if (value.isArray()) {
+        JsonArray array = value.array();
+        if (indexes[i] < 0 || indexes[i] >= array.size()) {
+          return Json.UNKNOWN;
+        }
+        value = array.get(indexes[i]);
+      } else {
+        return Json.UNKNOWN;
+      }
+    }
+    return value;
+  }
+
+  @Override public boolean equals(Object obj) {
+    return obj instanceof JsonPointer && pointer.equals(((JsonPointer) obj).pointer);
+  }
+
+  @Override public int hashCode() {
+    return pointer.hashCode();
+  }
+
+  /** @return the pointer in its escaped string form. */
+  @Override public String toString() {
+    return pointer;
+  }
+}
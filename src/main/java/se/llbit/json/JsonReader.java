@@ -0,0 +1,407 @@
+/* Copyright (c) 2017, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.json;
+
+import se.llbit.json.JsonParser.Literal;
+import se.llbit.json.JsonParser.SyntaxError;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Streaming pull parser for JSON input.
+ *
+ * <p>Each call to {@link #next()} reads the next token from the input.
+ * Only the nesting stack is stored, so documents of any size can be read
+ * with constant memory. The subtree at the current position can be
+ * materialized as a JSON value with {@link #readValue()}:
+ *
+ * <pre>
+ * try (JsonReader reader = new JsonReader(input)) {
+ *   reader.next(); // START_ARRAY
+ *   while (reader.next() == JsonToken.START_OBJECT) {
+ *     JsonObject record = reader.readValue().object();
+ *     ...
+ *   }
+ * }
+ * </pre>
+ *
+ * <p>The reader accepts the same syntax as {@link JsonParser}: the input
+ * must contain a single JSON object or array.
+ */
+public class JsonReader implements AutoCloseable {
+  /** Context: object, before the first member. */
+  private static final byte OBJECT_START = 0;
+
+  /** Context: object, after a member name. */
+  private static final byte OBJECT_NAME = 1;
+
+  /** Context: object, after a member value. */
+  private static final byte OBJECT_VALUE = 2;
+
+  /** Context: array, before the first element. */
+  private static final byte ARRAY_START = 3;
+
+  /** Context: array, after an element. */
+  private static final byte ARRAY_VALUE = 4;
+
+  /** Context: top level, before the document. */
+  private static final byte DOCUMENT_START = 5;
+
+  /** Context: top level, after the document. */
+  private static final byte DOCUMENT_END = 6;
+
+  private final JsonParser parser;
+
+  /** Context stack. The bottom entry is the top-level context. */
+  private byte[] stack = new byte[32];
+
+  private int depth = 0;
+
+  private JsonToken token = null;
+
+  /**
+   * True if the current token is the start of an object or array that has
+   * not been consumed from the input yet.
+   */
+  private boolean pending = false;
+
+  private String name = null;
+
+  private JsonValue value = null;
+
+  /**
+   * Read JSON tokens from the given input.
+   *
+   * <p>The input stream is not closed after being used.
+   */
+  public JsonReader(InputStream input) {
+    parser = new JsonParser(input);
+    stack[0] = DOCUMENT_START;
+  }
+
+  /**
+   * Use the given symbol table for member names.
+   *
+   * @see JsonParser#setSymbolTable(SymbolTable)
+   */
+  public void setSymbolTable(SymbolTable symbols) {
+    parser.setSymbolTable(symbols);
+  }
+
+  /**
+   * Read the next token.
+   *
+   * <p>If the current token is {@code START_OBJECT} or {@code START_ARRAY} the
+   * reader steps into the object or array. After the end of the document
+   * has been reached, {@code END_DOCUMENT} is returned.
+   */
+  public JsonToken next() throws IOException, SyntaxError {
+    if (pending) {
+      pending = false;
+      if (token == JsonToken.START_OBJECT) {
+        parser.accept(Literal.BEGIN_OBJECT);
+        push(OBJECT_START);
+      } else {
+        parser.accept(Literal.BEGIN_ARRAY);
+        push(ARRAY_START);
+      }
+    }
+    value = null;
+    parser.skipWhitespace();
+    int next = parser.peek();
+    switch (stack[depth]) {
+      case DOCUMENT_START:
+        if (next != Literal.BEGIN_OBJECT && next != Literal.BEGIN_ARRAY) {
+          throw new SyntaxError("expected JSON object or array");
+        }
+        stack[depth] = DOCUMENT_END;
+        return readValueToken();
+      case DOCUMENT_END:
+        if (next != JsonParser.EOF) {
+          throw new SyntaxError(
+              String.format("garbage at end of input (unexpected '%c')", (char) next));
+        }
+        return token = JsonToken.END_DOCUMENT;
+      case OBJECT_START:
+        if (next == Literal.END_OBJECT) {
+          return endObject();
+        }
+        return readName();
+      case OBJECT_NAME:
+        stack[depth] = OBJECT_VALUE;
+        if (readValueToken() == null) {
+          throw new SyntaxError("missing value for object member");
+        }
+        return token;
+      case OBJECT_VALUE:
+        if (parser.skip(Literal.VALUE_SEPARATOR)) {
+          parser.skipWhitespace();
+          if (parser.peek() == Literal.END_OBJECT) {
+            // A trailing separator is accepted, like in JsonParser.
+            return endObject();
+          }
+          return readName();
+        }
+        return endObject();
+      case ARRAY_START:
+        if (next == Literal.END_ARRAY) {
+          return endArray();
+        }
+        stack[depth] = ARRAY_VALUE;
+        if (readValueToken() == null) {
+          if (next == Literal.VALUE_SEPARATOR) {
+            throw new SyntaxError("missing element in array");
+          }
+          return endArray();
+        }
+        return token;
+      case ARRAY_VALUE:
+      default:
+        if (parser.skip(Literal.VALUE_SEPARATOR)) {
+          parser.skipWhitespace();
+          if (readValueToken() == null) {
+            throw new SyntaxError("missing element in array");
+          }
+          return token;
+        }
+        return endArray();
+    }
+  }
+
+  private JsonToken readName() throws IOException, SyntaxError {
+    int next = parser.peek();
+    if (next != Literal.QUOTE_MARK) {
+      if (next == JsonParser.EOF) {
+        parser.accept(Literal.END_OBJECT); // Throws unexpected end of input error.
+      }
+      throw new SyntaxError("missing member in object.");
+    }
+    name = parser.parseName();
+    parser.skipWhitespace();
+    parser.accept(Literal.NAME_SEPARATOR);
+    stack[depth] = OBJECT_NAME;
+    return token = JsonToken.FIELD_NAME;
+  }
+
+  private JsonToken endObject() throws IOException, SyntaxError {
+    parser.accept(Literal.END_OBJECT);
+    depth -= 1;
+    return token = JsonToken.END_OBJECT;
+  }
+
+  private JsonToken endArray() throws IOException, SyntaxError {
+    parser.accept(Literal.END_ARRAY);
+    depth -= 1;
+    return token = JsonToken.END_ARRAY;
+  }
+
+  /**
+   * Read a value token at the current position.
+   *
+   * @return the token, or {@code null} if there is no JSON value at the current position.
+   */
+  private JsonToken readValueToken() throws IOException, SyntaxError {
+    switch (parser.peek()) {
+      case Literal.BEGIN_OBJECT:
+        pending = true;
+        return token = JsonToken.START_OBJECT;
+      case Literal.BEGIN_ARRAY:
+        pending = true;
+        return token = JsonToken.START_ARRAY;
+      case '0':
+      case '1':
+      case '2':
+      case '3':
+      case '4':
+      case '5':
+      case '6':
+      case '7':
+      case '8':
+      case '9':
+      case '-':
+      case '+':
+        value = parser.parseNumber();
+        return token = JsonToken.NUMBER;
+      case Literal.QUOTE_MARK:
+        value = new JsonString(parser.parseString());
+        return token = JsonToken.STRING;
+      case 't':
+        parser.acceptLiteral(Literal.TRUE);
+        value = Json.TRUE;
+        return token = JsonToken.TRUE;
+      case 'f':
+        parser.acceptLiteral(Literal.FALSE);
+        value = Json.FALSE;
+        return token = JsonToken.FALSE;
+      case 'n':
+        parser.acceptLiteral(Literal.NULL);
+        value = Json.NULL;
+        return token = JsonToken.NULL;
+      default:
+        return null;
+    }
+  }
+
+  private void push(byte context) {
+    depth += 1;
+    if (depth == stack.length) {
+      byte[] copy = new byte[stack.length * 2];
+      System.arraycopy(stack, 0, copy, 0, stack.length);
+      stack = copy;
+    }
+    stack[depth] = context;
+  }
+
+  /**
+   * Materialize the value at the current position.
+   *
+   * <p>If the current token is {@code START_OBJECT} or {@code START_ARRAY},
+   * the whole object or array is read and returned. The following call to
+   * {@link #next()} then returns the token after the end of the object or array.
+   *
+   * <p>If the current token is {@code FIELD_NAME} the member value is read.
+   *
+   * @return the value at the current position.
+   * @throws IllegalStateException if the current token is not the start of a value.
+   */
+  public JsonValue readValue() throws IOException, SyntaxError {
+    if (pending) {
+      pending = false;
+      value = parser.parseValue();
+      return value;
+    }
+    if (token == JsonToken.FIELD_NAME) {
+      next();
+      return readValue();
+    }
+    if (value == null) {
+      throw new IllegalStateException("No JSON value at the current position");
+    }
+    return value;
+  }
+
+  /**
+   * Skip the value at the current position without building it.
+   *
+   * <p>If the current token is {@code START_OBJECT} or {@code START_ARRAY},
+   * the reader skips to the end of the object or array, only checking the
+   * balance of brackets and string quotes. The following call to
+   * {@link #next()} then returns the token after the end of the object or
+   * array.
+   *
+   * <p>If the current token is {@code FIELD_NAME} the member value is
+   * skipped, and {@link #currentToken()} returns {@code null} until
+   * {@link #next()} is called. For other value tokens this does nothing.
+   *
+   * @throws IllegalStateException if the current token is not the start of a value.
+   */
+  public void skipValue() throws IOException, SyntaxError {
+    if (pending) {
+      pending = false;
+      parser.skipValue();
+      return;
+    }
+    if (token == JsonToken.FIELD_NAME) {
+      parser.skipWhitespace();
+      if (!JsonParser.isValueStart(parser.peek())) {
+        throw new SyntaxError("missing value for object member");
+      }
+      parser.skipValue();
+      stack[depth] = OBJECT_VALUE;
+      token = null;
+      return;
+    }
+    if (value == null) {
+      throw new IllegalStateException("No JSON value at the current position");
+    }
+  }
+
+  /**
+   * @return the current token, or {@code null} if {@link #next()} has not been called.
+   */
+  public JsonToken currentToken() {
+    return token;
+  }
+
+  /**
+   * @return the most recently read member name, or {@code null} if no
+   * member name has been read.
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * @return the value of the current {@code STRING} token.
+   * @throws IllegalStateException if the current token is not a string.
+   */
+  public String getString() {
+    if (token != JsonToken.STRING) {
+      throw new IllegalStateException("Current token is not a string: " + token);
+    }
+    return value.stringValue(null);
+  }
+
+  /**
+   * @return the value of the current {@code NUMBER} token.
+   * @throws IllegalStateException if the current token is not a number.
+   */
+  public JsonNumber getNumber() {
+    if (token != JsonToken.NUMBER) {
+      throw new IllegalStateException("Current token is not a number: " + token);
+    }
+    return (JsonNumber) value;
+  }
+
+  /**
+   * @return the value of the current {@code TRUE} or {@code FALSE} token.
+   * @throws IllegalStateException if the current token is not a boolean.
+   */
+  public boolean getBoolean() {
+    if (token != JsonToken.TRUE && token != JsonToken.FALSE) {
+      throw new IllegalStateException("Current token is not a boolean: " + token);
+    }
+    return token == JsonToken.TRUE;
+  }
+
+  /**
+   * Gives the current nesting depth. The depth is zero at the top level and
+   * increases by one after reading past a {@code START_OBJECT} or
+   * {@code START_ARRAY} token.
+   */
+  public int getDepth() {
+    return pending ? depth + 1 : depth;
+  }
+
+  @Override public void close() throws IOException {
+    parser.close();
+  }
+}
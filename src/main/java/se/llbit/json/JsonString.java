@@ -29,6 +29,8 @@
  */
 package se.llbit.json;
 
+import java.io.IOException;
+
 /** Stores a JSON string literal. */
 public class JsonString extends JsonValue {
   public final String value;
@@ -44,7 +46,11 @@ public class JsonString extends JsonValue {
   }
 
   public String toCompactString() {
-    return "\"" + escaped() + "\"";
+    return writeToString();
+  }
+
+  @Override public void writeTo(Appendable out) throws IOException {
+    writeEscaped(value, out);
   }
 
   @Override public String toString() {
@@ -67,24 +73,61 @@ public class JsonString extends JsonValue {
     return escape(value);
   }
 
+  /**
+   * @return the escape sequence for the character, or {@code null} if the
+   * character is written as is.
+   */
+  static String escapeSequence(char c) {
+    switch (c) {
+      case '"':
+        return "\\\"";
+      case '\\':
+        return "\\\\";
+      case '\n':
+        return "\\n";
+      case '\r':
+        return "\\r";
+      case '\t':
+        return "\\t";
+      case '\b':
+        return "\\b";
+      case '\f':
+        return "\\f";
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * Append a quoted version of the input string where special chars are
+   * escaped with reverse solidus. Runs of characters that do not need
+   * escaping are appended in bulk.
+   */
+  static void writeEscaped(String string, Appendable out) throws IOException {
+    out.append('"');
+    int start = 0;
+    int length = string.length();
+    for (int i = 0; i < length; ++i) {
+      String escape = escapeSequence(string.charAt(i));
+      if (escape != null) {
+        out.append(string, start, i);
+        out.append(escape);
+        start = i + 1;
+      }
+    }
+    out.append(string, start, length);
+    out.append('"');
+  }
+
   /**
    * @return an escaped version of the input string where
    * special chars are escaped with reverse solidus.
    */
   protected static String escape(String string) {
-    for (int i = 0; i < string.length(); ) {
-      int cp = string.codePointAt(i);
-      i += Character.charCount(cp);
-      switch (cp) {
-        case '"':
-        case '\\':
-        case '\n':
-        case '\r':
-        case '\t':
-        case '\b':
-        case '\f':
-          // These characters should be escaped.
-          return doStringEscape(string);
+    for (int i = 0; i < string.length(); ++i) {
+      if (escapeSequence(string.charAt(i)) != null) {
+        // This character should be escaped.
+        return doStringEscape(string);
       }
     }
     // Found no character that needs escaping.
@@ -97,33 +140,13 @@ public class JsonString extends JsonValue {
    */
   protected static String doStringEscape(String string) {
     StringBuilder sb = new StringBuilder();
-    for (int i = 0; i < string.length(); ) {
-      int cp = string.codePointAt(i);
-      i += Character.charCount(cp);
-      switch (cp) {
-        case '"':
-          sb.append("\\\"");
-          break;
-        case '\\':
-          sb.append("\\\\");
-          break;
-        case '\n':
-          sb.append("\\n");
-          break;
-        case '\r':
-          sb.append("\\r");
-          break;
-        case '\t':
-          sb.append("\\t");
-          break;
-        case '\b':
-          sb.append("\\b");
-          break;
-        case '\f':
-          sb.append("\\f");
-          break;
-        default:
-          sb.appendCodePoint(cp);
+    for (int i = 0; i < string.length(); ++i) {
+      char c = string.charAt(i);
+      String escape = escapeSequence(c);
+      if (escape != null) {
+        sb.append(escape);
+      } else {
+        sb.append(c);
       }
     }
     return sb.toString();
@@ -29,6 +29,8 @@
  */
 package se.llbit.json;
 
+import java.io.IOException;
+
 /** Abstract base class for all JSON values. */
 public abstract class JsonValue implements PrettyPrintable {
   protected JsonValue() { }
@@ -40,6 +42,26 @@ public abstract class JsonValue implements PrettyPrintable {
    */
   public abstract String toCompactString();
 
+  /**
+   * Append the compact string representation of this JSON value to the
+   * given output. The output is the same as given by {@link #toCompactString()}.
+   */
+  public void writeTo(Appendable out) throws IOException {
+    out.append(toCompactString());
+  }
+
+  /** Builds the compact string representation with {@link #writeTo(Appendable)}. */
+  String writeToString() {
+    StringBuilder sb = new StringBuilder();
+    try {
+      writeTo(sb);
+    } catch (IOException e) {
+      // StringBuilder does not throw IOException.
+      throw new Error(e);
+    }
+    return sb.toString();
+  }
+
   public boolean isUnknown() {
     return false;
   }
@@ -178,11 +200,65 @@ public abstract class JsonValue implements PrettyPrintable {
     return undefined;
   }
 
+  /**
+   * Makes this JSON value, and all values it contains, immutable. Frozen
+   * values can be shared between threads without copying.
+   *
+   * <p>Methods that would modify a frozen object or array, or its member or
+   * element list, throw {@link UnsupportedOperationException}. The hash code
+   * of a frozen object or array is computed once and cached. Strings,
+   * numbers and literals are always immutable.
+   *
+   * @return this value.
+   */
+  public JsonValue freeze() {
+    return this;
+  }
+
+  /** @return {@code true} if this JSON value can not be modified. */
+  public boolean isFrozen() {
+    return true;
+  }
+
   /**
    * Creates an independent copy of this JSON value.
    *
    * <p>If this JSON value is immutable, then this object is returned.
    * Otherwise, a fresh object containing the same data is created and returned.
+   *
+   * <p>An object or array copy shares its contents with this value until
+   * either of them is modified or read with {@code get()}. Reading may
+   * therefore modify the value, so neither this value nor the copy can be
+   * read from several threads at the same time. Call {@link #freeze()} on
+   * a value that is to be shared between threads.
    */
   public abstract JsonValue copy();
+
+  /**
+   * An object or array is exposed if it may be referenced from outside the
+   * object or array that contains it. Exposed values are never shared
+   * between lazy copies, see {@link MemberList#lazyCopy()}.
+   *
+   * @return {@code true} if this value is mutable and may be exposed.
+   */
+  boolean isExposed() {
+    return false;
+  }
+
+  /**
+   * Mark this value as exposed. Values that are frozen or already exposed
+   * are not modified, so that reading them has no side effects.
+   */
+  void expose() {
+  }
+
+  /**
+   * Mark this value as referenced only by the object or array that
+   * contains it.
+   *
+   * @return this value.
+   */
+  JsonValue owned() {
+    return this;
+  }
 }
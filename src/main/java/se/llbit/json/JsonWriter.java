@@ -0,0 +1,551 @@
+/* Copyright (c) 2017, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.json;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * Streaming JSON generator.
+ *
+ * <p>Writes a JSON document one token at a time, without building a tree.
+ * Output is collected in an internal buffer and written to the target
+ * writer or output stream when the buffer is full, on {@link #flush()}, and
+ * on {@link #close()}:
+ *
+ * <pre>
+ * try (JsonWriter writer = new JsonWriter(output)) {
+ *   writer.beginArray();
+ *   for (Record record : records) {
+ *     writer.beginObject();
+ *     writer.name("id").value(record.id);
+ *     writer.name("name").value(record.name);
+ *     writer.endObject();
+ *   }
+ *   writer.endArray();
+ * }
+ * </pre>
+ *
+ * <p>The nesting of objects and arrays is validated: calls that would
+ * produce malformed JSON throw {@link IllegalStateException}. Like the JSON
+ * parsers, the writer requires the document to be a single JSON object or
+ * array.
+ *
+ * <p>The output is compact by default. With {@link #setIndentation(String)}
+ * the output has the same layout as {@link PrettyPrinter}.
+ */
+public class JsonWriter implements AutoCloseable, Flushable {
+  /** Context: object, before the first member. */
+  private static final byte OBJECT_START = 0;
+
+  /** Context: object, after a member name. */
+  private static final byte OBJECT_NAME = 1;
+
+  /** Context: object, after a member value. */
+  private static final byte OBJECT_VALUE = 2;
+
+  /** Context: array, before the first element. */
+  private static final byte ARRAY_START = 3;
+
+  /** Context: array, after an element. */
+  private static final byte ARRAY_VALUE = 4;
+
+  /** Context: top level, before the document. */
+  private static final byte DOCUMENT_START = 5;
+
+  /** Context: top level, after the document. */
+  private static final byte DOCUMENT_END = 6;
+
+  static final int BUFFER_SIZE = 8192;
+
+  private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+  /** The target writer, or {@code null} if writing to an output stream. */
+  private final Writer writer;
+
+  /** The target output stream, or {@code null} if writing to a writer. */
+  private final OutputStream output;
+
+  private final char[] buf = new char[BUFFER_SIZE];
+
+  private int pos = 0;
+
+  /** UTF-8 output buffer. This is {@code null} if writing to a writer. */
+  private final byte[] bytes;
+
+  /** A high surrogate at the end of the previous chunk of UTF-8 output, or 0. */
+  private char pendingSurrogate = 0;
+
+  /** Context stack. The bottom entry is the top-level context. */
+  private byte[] stack = new byte[32];
+
+  private int depth = 0;
+
+  /** Indentation string for pretty printing, or {@code null} for compact output. */
+  private String indentation = null;
+
+  /**
+   * Write JSON to the given writer.
+   *
+   * <p>The writer is closed when this JSON writer is closed.
+   */
+  public JsonWriter(Writer writer) {
+    if (writer == null) {
+      throw new NullPointerException();
+    }
+    this.writer = writer;
+    this.output = null;
+    this.bytes = null;
+    stack[0] = DOCUMENT_START;
+  }
+
+  /**
+   * Write UTF-8 encoded JSON to the given output stream.
+   *
+   * <p>The output stream is closed when this JSON writer is closed.
+   */
+  public JsonWriter(OutputStream output) {
+    if (output == null) {
+      throw new NullPointerException();
+    }
+    this.writer = null;
+    this.output = output;
+    // Room for three bytes per character, and a pending surrogate pair.
+    this.bytes = new byte[BUFFER_SIZE * 3 + 4];
+    stack[0] = DOCUMENT_START;
+  }
+
+  /**
+   * Enable pretty printing. Each nesting level is indented by the given
+   * string. A {@code null} indentation gives compact output.
+   */
+  public void setIndentation(String indentation) {
+    this.indentation = indentation;
+  }
+
+  /** Start a JSON object. */
+  public JsonWriter beginObject() throws IOException {
+    beforeValue(true);
+    write('{');
+    push(OBJECT_START);
+    return this;
+  }
+
+  /**
+   * End the current JSON object.
+   *
+   * @throws IllegalStateException if the current context is not an object,
+   * or if the last member has no value.
+   */
+  public JsonWriter endObject() throws IOException {
+    byte context = stack[depth];
+    if (context == OBJECT_NAME) {
+      throw new IllegalStateException("missing value for object member");
+    }
+    if (context != OBJECT_START && context != OBJECT_VALUE) {
+      throw new IllegalStateException("not in a JSON object");
+    }
+    depth -= 1;
+    if (context == OBJECT_VALUE) {
+      newline();
+    }
+    write('}');
+    return this;
+  }
+
+  /** Start a JSON array. */
+  public JsonWriter beginArray() throws IOException {
+    beforeValue(true);
+    write('[');
+    push(ARRAY_START);
+    return this;
+  }
+
+  /**
+   * End the current JSON array.
+   *
+   * @throws IllegalStateException if the current context is not an array.
+   */
+  public JsonWriter endArray() throws IOException {
+    byte context = stack[depth];
+    if (context != ARRAY_START && context != ARRAY_VALUE) {
+      throw new IllegalStateException("not in a JSON array");
+    }
+    depth -= 1;
+    if (context == ARRAY_VALUE) {
+      newline();
+    }
+    write(']');
+    return this;
+  }
+
+  /**
+   * Write an object member name. The name must be followed by a value.
+   *
+   * @throws IllegalStateException if the current context is not an object,
+   * or if the previous member has no value.
+   */
+  public JsonWriter name(String name) throws IOException {
+    if (name == null) {
+      throw new NullPointerException();
+    }
+    byte context = stack[depth];
+    if (context == OBJECT_VALUE) {
+      write(',');
+    } else if (context != OBJECT_START) {
+      throw new IllegalStateException(context == OBJECT_NAME
+          ? "missing value for object member"
+          : "member name outside of JSON object");
+    }
+    newline();
+    writeString(name);
+    write(':');
+    if (indentation != null) {
+      write(' ');
+    }
+    stack[depth] = OBJECT_NAME;
+    return this;
+  }
+
+  /** Write a string value. A {@code null} string is written as JSON null. */
+  public JsonWriter value(String value) throws IOException {
+    if (value == null) {
+      return nullValue();
+    }
+    beforeValue(false);
+    writeString(value);
+    return this;
+  }
+
+  /** Write a number value. */
+  public JsonWriter value(long value) throws IOException {
+    beforeValue(false);
+    if (value == Long.MIN_VALUE) {
+      write("-9223372036854775808");
+      return this;
+    }
+    ensureSpace(20);
+    if (value < 0) {
+      buf[pos++] = '-';
+      value = -value;
+    }
+    int end = pos + digitCount(value);
+    for (int i = end - 1; i >= pos; --i) {
+      buf[i] = (char) ('0' + value % 10);
+      value /= 10;
+    }
+    pos = end;
+    return this;
+  }
+
+  /**
+   * Write a number value.
+   *
+   * @throws IllegalArgumentException if the value is NaN or infinite.
+   */
+  public JsonWriter value(double value) throws IOException {
+    if (Double.isNaN(value) || Double.isInfinite(value)) {
+      throw new IllegalArgumentException("JSON numbers must be finite: " + value);
+    }
+    beforeValue(false);
+    ensureSpace(DoubleFormatter.MAX_CHARS);
+    pos = DoubleFormatter.format(value, buf, pos);
+    return this;
+  }
+
+  /** Write the text of a parsed number as it is. */
+  void numberText(String text) throws IOException {
+    beforeValue(false);
+    write(text);
+  }
+
+  /** Write a boolean value. */
+  public JsonWriter value(boolean value) throws IOException {
+    beforeValue(false);
+    write(value ? "true" : "false");
+    return this;
+  }
+
+  /** Write a null value. */
+  public JsonWriter nullValue() throws IOException {
+    beforeValue(false);
+    write("null");
+    return this;
+  }
+
+  /**
+   * Write a JSON value. Objects and arrays are written recursively, using
+   * the same layout as values written with the other writer methods.
+   *
+   * @throws IllegalArgumentException if the value contains a NaN or
+   * infinite number.
+   */
+  public JsonWriter value(JsonValue value) throws IOException {
+    if (value instanceof JsonObject) {
+      beginObject();
+      JsonObject object = value.object();
+      for (int i = 0; i < object.size(); ++i) {
+        JsonMember member = object.member(i);
+        name(member.name);
+        value(member.value);
+      }
+      endObject();
+    } else if (value instanceof JsonArray) {
+      beginArray();
+      value.array().writeElements(this);
+      endArray();
+    } else if (value instanceof JsonString) {
+      value(((JsonString) value).value);
+    } else if (value instanceof JsonNumber) {
+      ((JsonNumber) value).writeTo(this);
+    } else {
+      beforeValue(false);
+      write(value.toCompactString());
+    }
+    return this;
+  }
+
+  /**
+   * Write buffered output to the target, and flush the target.
+   */
+  @Override public void flush() throws IOException {
+    flushBuffer();
+    if (writer != null) {
+      writer.flush();
+    } else {
+      output.flush();
+    }
+  }
+
+  /**
+   * Write buffered output and close the target.
+   *
+   * @throws IllegalStateException if the document is incomplete. The target
+   * is closed before the exception is thrown.
+   */
+  @Override public void close() throws IOException {
+    try {
+      flushBuffer();
+      if (pendingSurrogate != 0) {
+        // Unpaired high surrogate at the end of the output.
+        output.write('?');
+        pendingSurrogate = 0;
+      }
+    } finally {
+      if (writer != null) {
+        writer.close();
+      } else {
+        output.close();
+      }
+    }
+    if (depth > 0 || stack[0] != DOCUMENT_END) {
+      throw new IllegalStateException("incomplete JSON document");
+    }
+  }
+
+  /**
+   * Check that a value can be written in the current context, and write
+   * the separator before the value.
+   *
+   * @param structure {@code true} if the value is an object or array.
+   */
+  private void beforeValue(boolean structure) throws IOException {
+    switch (stack[depth]) {
+      case OBJECT_NAME:
+        stack[depth] = OBJECT_VALUE;
+        break;
+      case ARRAY_START:
+        stack[depth] = ARRAY_VALUE;
+        newline();
+        break;
+      case ARRAY_VALUE:
+        write(',');
+        newline();
+        break;
+      case DOCUMENT_START:
+        if (!structure) {
+          throw new IllegalStateException("expected JSON object or array");
+        }
+        stack[depth] = DOCUMENT_END;
+        break;
+      case DOCUMENT_END:
+        throw new IllegalStateException("JSON document already complete");
+      default:
+        throw new IllegalStateException("missing name for object member");
+    }
+  }
+
+  private void push(byte context) {
+    depth += 1;
+    if (depth == stack.length) {
+      byte[] copy = new byte[stack.length * 2];
+      System.arraycopy(stack, 0, copy, 0, stack.length);
+      stack = copy;
+    }
+    stack[depth] = context;
+  }
+
+  /** Start a new line and indent it to the current depth, if pretty printing. */
+  private void newline() throws IOException {
+    if (indentation != null) {
+      write(LINE_SEPARATOR);
+      for (int i = 0; i < depth; ++i) {
+        write(indentation);
+      }
+    }
+  }
+
+  /** Write a quoted and escaped string. */
+  private void writeString(String value) throws IOException {
+    write('"');
+    int start = 0;
+    int length = value.length();
+    for (int i = 0; i < length; ++i) {
+      String escape = JsonString.escapeSequence(value.charAt(i));
+      if (escape != null) {
+        write(value, start, i);
+        write(escape);
+        start = i + 1;
+      }
+    }
+    write(value, start, length);
+    write('"');
+  }
+
+  private void write(char c) throws IOException {
+    if (pos == buf.length) {
+      flushBuffer();
+    }
+    buf[pos++] = c;
+  }
+
+  private void write(String s) throws IOException {
+    write(s, 0, s.length());
+  }
+
+  /** Write the characters of {@code s} from {@code start} up to {@code end}. */
+  private void write(String s, int start, int end) throws IOException {
+    while (start < end) {
+      if (pos == buf.length) {
+        flushBuffer();
+      }
+      int count = Math.min(end - start, buf.length - pos);
+      s.getChars(start, start + count, buf, pos);
+      pos += count;
+      start += count;
+    }
+  }
+
+  private void ensureSpace(int count) throws IOException {
+    if (buf.length - pos < count) {
+      flushBuffer();
+    }
+  }
+
+  private static int digitCount(long value) {
+    int count = 1;
+    while (value >= 10) {
+      value /= 10;
+      count += 1;
+    }
+    return count;
+  }
+
+  /** Write the character buffer to the target. */
+  private void flushBuffer() throws IOException {
+    if (writer != null) {
+      writer.write(buf, 0, pos);
+    } else {
+      output.write(bytes, 0, encodeUtf8());
+    }
+    pos = 0;
+  }
+
+  /**
+   * Encode the character buffer as UTF-8. A high surrogate at the end of
+   * the buffer is kept until the next call. Unpaired surrogates are
+   * encoded as question marks.
+   *
+   * @return the number of encoded bytes.
+   */
+  private int encodeUtf8() {
+    byte[] bytes = this.bytes;
+    char[] buf = this.buf;
+    int length = 0;
+    int i = 0;
+    if (pendingSurrogate != 0 && pos > 0) {
+      length = encodeSurrogate(pendingSurrogate, buf[0], length);
+      if (Character.isLowSurrogate(buf[0])) {
+        i = 1;
+      }
+      pendingSurrogate = 0;
+    }
+    for (; i < pos; ++i) {
+      char c = buf[i];
+      if (c < 0x80) {
+        bytes[length++] = (byte) c;
+      } else if (c < 0x800) {
+        bytes[length++] = (byte) (0xC0 | (c >> 6));
+        bytes[length++] = (byte) (0x80 | (c & 0x3F));
+      } else if (Character.isSurrogate(c)) {
+        if (i + 1 == pos && Character.isHighSurrogate(c)) {
+          pendingSurrogate = c;
+        } else {
+          length = encodeSurrogate(c, buf[i + 1 < pos ? i + 1 : i], length);
+          if (Character.isHighSurrogate(c) && i + 1 < pos
+              && Character.isLowSurrogate(buf[i + 1])) {
+            i += 1;
+          }
+        }
+      } else {
+        bytes[length++] = (byte) (0xE0 | (c >> 12));
+        bytes[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+        bytes[length++] = (byte) (0x80 | (c & 0x3F));
+      }
+    }
+    return length;
+  }
+
+  /** Encode a surrogate pair, or a question mark if the pair is not valid. */
+  private int encodeSurrogate(char high, char low, int length) {
+    if (Character.isHighSurrogate(high) && Character.isLowSurrogate(low)) {
+      int cp = Character.toCodePoint(high, low);
+      bytes[length++] = (byte) (0xF0 | (cp >> 18));
+      bytes[length++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+      bytes[length++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+      bytes[length++] = (byte) (0x80 | (cp & 0x3F));
+    } else {
+      bytes[length++] = '?';
+    }
+    return length;
+  }
+}
@@ -0,0 +1,440 @@
+/* Copyright (c) 2017, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.json;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * The member list of a JSON object.
+ *
+ * <p>When the list has at least {@link #INDEX_THRESHOLD} members, name
+ * lookups use a hash index mapping each name to the index of its first
+ * occurrence. Appending members updates the index in place, other
+ * modifications rebuild it. Lookups never modify the list, so an object
+ * that is not modified can be read from several threads.
+ *
+ * <p>A frozen list can not be modified.
+ *
+ * <p>A copy made with {@link #lazyCopy()} shares the member array, and the
+ * member values, with the original list. Both lists are then marked as
+ * shared. Before a shared list is modified, or a member is returned by
+ * {@link #get(int)}, the list copies its member array and replaces mutable
+ * object and array values by lazy copies, so that changes are never seen
+ * by the other list. {@link #member(int)} reads members without copying.
+ * A list that is shared can therefore not be read from several threads.
+ *
+ * <p>Member values that may be referenced from outside the list, because
+ * they were returned by {@link #get(int)} or added while exposed, are never
+ * shared. The lazy copy gets its own copies of them instead, so that
+ * modifying them through an outside reference only changes this list.
+ */
+class MemberList extends AbstractList<JsonMember> implements RandomAccess {
+  /** Objects with fewer members than this are searched linearly. */
+  static final int INDEX_THRESHOLD = 8;
+
+  private static final JsonMember[] EMPTY = new JsonMember[0];
+
+  private JsonMember[] data;
+
+  private int size = 0;
+
+  /**
+   * Open addressing hash table of member indexes, offset by one so that
+   * zero marks an empty slot. The table length is a power of two.
+   * This is {@code null} when the list has fewer than
+   * {@link #INDEX_THRESHOLD} members.
+   */
+  private int[] index = null;
+
+  /** Number of names in the index. */
+  private int indexed = 0;
+
+  private boolean frozen = false;
+
+  /** True if the member array and member values may be shared with another list. */
+  private boolean shared = false;
+
+  /** True if some member value may be exposed, see {@link JsonValue#isExposed()}. */
+  private boolean exposedValues = false;
+
+  MemberList() {
+    data = EMPTY;
+  }
+
+  MemberList(int initialCapacity) {
+    if (initialCapacity < 0) {
+      throw new IllegalArgumentException("Illegal capacity: " + initialCapacity);
+    }
+    data = initialCapacity == 0 ? EMPTY : new JsonMember[initialCapacity];
+  }
+
+  /** Creates a lazy copy of {@code other}. */
+  private MemberList(MemberList other) {
+    data = other.data;
+    size = other.size;
+    index = other.index;
+    indexed = other.indexed;
+    shared = true;
+    other.shared = true;
+  }
+
+  /**
+   * Exposed member values are copied, and the other members are shared
+   * until one of the lists is used.
+   *
+   * @return a copy of this list.
+   */
+  MemberList lazyCopy() {
+    MemberList copy = new MemberList(this);
+    if (exposedValues) {
+      JsonMember[] own = null;
+      for (int i = 0; i < size; ++i) {
+        JsonMember member = data[i];
+        if (member.value.isExposed()) {
+          if (own == null) {
+            own = Arrays.copyOf(data, data.length);
+          }
+          own[i] = new JsonMember(member.name, member.value.copy().owned());
+        }
+      }
+      if (own != null) {
+        copy.data = own;
+      }
+    }
+    return copy;
+  }
+
+  @Override public JsonMember get(int i) {
+    checkIndex(i);
+    if (shared) {
+      unshare();
+    }
+    JsonMember member = data[i];
+    member.value.expose();
+    if (!exposedValues && member.value.isExposed()) {
+      exposedValues = true;
+    }
+    return member;
+  }
+
+  /**
+   * Read a member that may be modified by the caller, but is not exposed
+   * outside the object. This copies shared members.
+   */
+  JsonMember ownMember(int i) {
+    checkIndex(i);
+    if (shared) {
+      unshare();
+    }
+    return data[i];
+  }
+
+  /**
+   * Read a member without copying shared members. The member value must
+   * not be modified, or exposed.
+   */
+  JsonMember member(int i) {
+    checkIndex(i);
+    return data[i];
+  }
+
+  @Override public int size() {
+    return size;
+  }
+
+  @Override public JsonMember set(int i, JsonMember member) {
+    checkMutable();
+    checkIndex(i);
+    checkMember(member);
+    if (shared) {
+      unshare();
+    }
+    if (member.value.isExposed()) {
+      exposedValues = true;
+    }
+    JsonMember old = data[i];
+    data[i] = member;
+    if (index != null && !sameName(old.name, member.name)) {
+      reindex();
+    }
+    return old;
+  }
+
+  @Override public boolean add(JsonMember member) {
+    checkMutable();
+    checkMember(member);
+    if (shared) {
+      unshare();
+    }
+    if (member.value.isExposed()) {
+      exposedValues = true;
+    }
+    ensureCapacity(size + 1);
+    data[size] = member;
+    size += 1;
+    modCount += 1;
+    if (index != null) {
+      // The new member is the last one, so it is only indexed if no
+      // earlier member has the same name.
+      addToIndex(size - 1);
+    } else if (size >= INDEX_THRESHOLD) {
+      buildIndex();
+    }
+    return true;
+  }
+
+  @Override public void add(int i, JsonMember member) {
+    checkMutable();
+    if (i < 0 || i > size) {
+      throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+    }
+    if (i == size) {
+      add(member);
+      return;
+    }
+    checkMember(member);
+    if (shared) {
+      unshare();
+    }
+    if (member.value.isExposed()) {
+      exposedValues = true;
+    }
+    ensureCapacity(size + 1);
+    System.arraycopy(data, i, data, i + 1, size - i);
+    data[i] = member;
+    size += 1;
+    modCount += 1;
+    reindex();
+  }
+
+  @Override public JsonMember remove(int i) {
+    checkMutable();
+    checkIndex(i);
+    if (shared) {
+      unshare();
+    }
+    JsonMember old = data[i];
+    System.arraycopy(data, i + 1, data, i, size - i - 1);
+    size -= 1;
+    data[size] = null;
+    modCount += 1;
+    reindex();
+    return old;
+  }
+
+  @Override public void clear() {
+    checkMutable();
+    if (shared) {
+      data = EMPTY;
+      shared = false;
+    } else {
+      Arrays.fill(data, 0, size, null);
+    }
+    size = 0;
+    modCount += 1;
+    index = null;
+    indexed = 0;
+    exposedValues = false;
+  }
+
+  /** Remove the members from index {@code newSize} onward, keeping the capacity. */
+  void truncate(int newSize) {
+    checkMutable();
+    if (newSize < size) {
+      if (shared) {
+        unshare();
+      }
+      Arrays.fill(data, newSize, size, null);
+      size = newSize;
+      modCount += 1;
+      reindex();
+    }
+  }
+
+  /**
+   * Give this list its own member array. Member values that are mutable
+   * and may be shared are replaced by lazy copies. Exposed values are
+   * never shared, so they are kept.
+   */
+  private void unshare() {
+    JsonMember[] copy = new JsonMember[data.length];
+    for (int i = 0; i < size; ++i) {
+      JsonMember member = data[i];
+      if (member.value.isFrozen() || member.value.isExposed()) {
+        copy[i] = member;
+      } else {
+        copy[i] = new JsonMember(member.name, member.value.copy().owned());
+      }
+    }
+    data = copy;
+    if (index != null) {
+      index = index.clone();
+    }
+    shared = false;
+  }
+
+  /** Make this list unmodifiable. */
+  void freeze() {
+    if (!frozen) {
+      if (shared) {
+        unshare();
+      }
+      frozen = true;
+    }
+  }
+
+  boolean isFrozen() {
+    return frozen;
+  }
+
+  /**
+   * Find the first member with the given name.
+   *
+   * @return the index of the first member with the given name,
+   * or -1 if there is no such member.
+   */
+  int find(String name) {
+    int[] index = this.index;
+    if (index == null) {
+      for (int i = 0; i < size; ++i) {
+        if (sameName(data[i].name, name)) {
+          return i;
+        }
+      }
+      return -1;
+    }
+    int mask = index.length - 1;
+    int slot = hash(name) & mask;
+    while (index[slot] != 0) {
+      int i = index[slot] - 1;
+      if (sameName(data[i].name, name)) {
+        return i;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return -1;
+  }
+
+  /** Rebuild the index after a modification, or drop it if the list is small. */
+  private void reindex() {
+    if (size >= INDEX_THRESHOLD) {
+      buildIndex();
+    } else {
+      index = null;
+      indexed = 0;
+    }
+  }
+
+  /** Build a new index. It is only stored once it is complete. */
+  private void buildIndex() {
+    int capacity = INDEX_THRESHOLD * 2;
+    while (capacity < size * 2) {
+      capacity *= 2;
+    }
+    int[] table = new int[capacity];
+    int count = 0;
+    for (int i = 0; i < size; ++i) {
+      if (insert(table, i)) {
+        count += 1;
+      }
+    }
+    index = table;
+    indexed = count;
+  }
+
+  /** Add the member at index {@code i} to the index, unless its name is already indexed. */
+  private void addToIndex(int i) {
+    if (insert(index, i)) {
+      indexed += 1;
+      if (indexed * 2 > index.length) {
+        // Keep the load factor at most 1/2.
+        buildIndex();
+      }
+    }
+  }
+
+  /**
+   * Add the member at index {@code i} to a hash table, unless its name is
+   * already in the table.
+   *
+   * @return {@code true} if the member was added.
+   */
+  private boolean insert(int[] table, int i) {
+    String name = data[i].name;
+    int mask = table.length - 1;
+    int slot = hash(name) & mask;
+    while (table[slot] != 0) {
+      if (sameName(data[table[slot] - 1].name, name)) {
+        return false;
+      }
+      slot = (slot + 1) & mask;
+    }
+    table[slot] = i + 1;
+    return true;
+  }
+
+  private static int hash(String name) {
+    if (name == null) {
+      return 0;
+    }
+    return NameHash.spread(name.hashCode());
+  }
+
+  private static boolean sameName(String a, String b) {
+    return a == b || (a != null && a.equals(b));
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity > data.length) {
+      int newCapacity = Math.max(capacity, Math.max(10, data.length + (data.length >> 1)));
+      data = Arrays.copyOf(data, newCapacity);
+    }
+  }
+
+  private void checkMutable() {
+    if (frozen) {
+      throw new UnsupportedOperationException("JSON object is frozen");
+    }
+  }
+
+  private void checkIndex(int i) {
+    if (i < 0 || i >= size) {
+      throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+    }
+  }
+
+  private static void checkMember(JsonMember member) {
+    if (member == null) {
+      throw new NullPointerException();
+    }
+  }
+}
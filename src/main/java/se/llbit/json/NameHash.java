@@ -0,0 +1,116 @@
+/* Copyright (c) 2017, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.json;
+
+/**
+ * Hashing and probing for the open addressing tables of names, used by
+ * SymbolTable, NameSet and the member name index of MemberList.
+ *
+ * <p>Names hash like {@link String#hashCode()}, so that names can be
+ * looked up directly from character buffers. Tables have a power of two
+ * length and are probed linearly from the spread hash code.
+ */
+final class NameHash {
+  private NameHash() { }
+
+  /** @return the hash code of the characters, equal to the hash code of their string. */
+  static int hash(char[] chars, int offset, int length) {
+    int hash = 0;
+    for (int i = offset; i < offset + length; ++i) {
+      hash = 31 * hash + chars[i];
+    }
+    return hash;
+  }
+
+  /** @return the hash code of the characters, equal to the hash code of their string. */
+  static int hash(CharSequence chars) {
+    int hash = 0;
+    for (int i = 0; i < chars.length(); ++i) {
+      hash = 31 * hash + chars.charAt(i);
+    }
+    return hash;
+  }
+
+  /** Mixes the high bits of a hash code into the low bits that select a slot. */
+  static int spread(int hash) {
+    return hash ^ (hash >>> 16);
+  }
+
+  /**
+   * Find the slot of the string with the given characters in a table.
+   *
+   * @return the slot holding an equal string, or the empty slot where the
+   * characters belong, or -1 if the table is full.
+   */
+  static int slot(String[] table, char[] chars, int offset, int length) {
+    return slot(table, hash(chars, offset, length), chars, offset, length, null);
+  }
+
+  /**
+   * Find the slot of the string with the given characters in a table.
+   *
+   * @return the slot holding an equal string, or the empty slot where the
+   * characters belong, or -1 if the table is full.
+   */
+  static int slot(String[] table, CharSequence chars) {
+    return slot(table, hash(chars), null, 0, chars.length(), chars);
+  }
+
+  /**
+   * Probe for the characters given by either {@code chars}, {@code offset}
+   * and {@code length}, or by {@code sequence} if it is not null.
+   */
+  private static int slot(String[] table, int hash, char[] chars, int offset, int length,
+      CharSequence sequence) {
+    int mask = table.length - 1;
+    int slot = spread(hash) & mask;
+    for (int probe = 0; probe < table.length; ++probe) {
+      String name = table[slot];
+      if (name == null) {
+        return slot;
+      }
+      if (name.hashCode() == hash && name.length() == length
+          && (sequence != null ? name.contentEquals(sequence) : matches(name, chars, offset))) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return -1;
+  }
+
+  private static boolean matches(String name, char[] chars, int offset) {
+    for (int i = 0; i < name.length(); ++i) {
+      if (name.charAt(i) != chars[offset + i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,62 @@
+/* Copyright (c) 2017, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.json;
+
+import java.util.Collection;
+
+/**
+ * An immutable set of member names. Names can be looked up directly from
+ * the character buffers of the parsers, without creating strings.
+ */
+final class NameSet {
+  /** Open addressing hash table. The length is a power of two. */
+  private final String[] table;
+
+  NameSet(Collection<String> names) {
+    int length = 8;
+    while (length < names.size() * 2) {
+      length *= 2;
+    }
+    table = new String[length];
+    for (String name : names) {
+      table[NameHash.slot(table, name)] = name;
+    }
+  }
+
+  /** @return {@code true} if the first {@code length} characters are a name in the set. */
+  boolean contains(char[] chars, int length) {
+    return table[NameHash.slot(table, chars, 0, length)] != null;
+  }
+
+  /** @return {@code true} if the characters are a name in the set. */
+  boolean contains(CharSequence chars) {
+    return table[NameHash.slot(table, chars)] != null;
+  }
+}
@@ -0,0 +1,277 @@
+/* Copyright (c) 2017, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.json;
+
+/**
+ * A persistent hash array mapped trie from member names to integers.
+ *
+ * <p>Each trie node has up to 32 slots, indexed by five bits of the name
+ * hash code, and a bitmap of the slots that are in use. A slot holds either
+ * a name and its value, or a child node for the next five bits. Names with
+ * equal hash codes are stored in collision nodes.
+ *
+ * <p>Updates return a new trie that shares all untouched nodes with the old
+ * trie.
+ */
+final class NameTrie {
+  static final NameTrie EMPTY = new NameTrie(null, 0);
+
+  private static final int BITS = 5;
+
+  private static final int MASK = (1 << BITS) - 1;
+
+  private final Node root;
+
+  private final int size;
+
+  private NameTrie(Node root, int size) {
+    this.root = root;
+    this.size = size;
+  }
+
+  int size() {
+    return size;
+  }
+
+  /** @return the value for the name, or -1 if the name is not in the trie. */
+  int get(String name) {
+    return root == null ? -1 : root.get(name, name.hashCode(), 0);
+  }
+
+  /** @return a trie where the name maps to the given value. */
+  NameTrie put(String name, int value) {
+    boolean[] added = { false };
+    Node node = root == null ? BitmapNode.EMPTY : root;
+    Node newRoot = node.put(name, name.hashCode(), 0, value, added);
+    return newRoot == root ? this : new NameTrie(newRoot, added[0] ? size + 1 : size);
+  }
+
+  /** @return a trie without the name. */
+  NameTrie remove(String name) {
+    if (root == null) {
+      return this;
+    }
+    Node newRoot = root.remove(name, name.hashCode(), 0);
+    return newRoot == root ? this : new NameTrie(newRoot, size - 1);
+  }
+
+  private abstract static class Node {
+    abstract int get(String name, int hash, int shift);
+
+    /** @param added set to {@code true} if the name was not already in the node. */
+    abstract Node put(String name, int hash, int shift, int value, boolean[] added);
+
+    /** @return the node without the name, or {@code null} if the node is then empty. */
+    abstract Node remove(String name, int hash, int shift);
+  }
+
+  private static int bit(int hash, int shift) {
+    return 1 << ((hash >>> shift) & MASK);
+  }
+
+  private static final class BitmapNode extends Node {
+    static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+    private final int bitmap;
+
+    /**
+     * Two entries for each used slot: a name and its Integer value, or
+     * {@code null} and a child node.
+     */
+    private final Object[] array;
+
+    BitmapNode(int bitmap, Object[] array) {
+      this.bitmap = bitmap;
+      this.array = array;
+    }
+
+    private int index(int bit) {
+      return 2 * Integer.bitCount(bitmap & (bit - 1));
+    }
+
+    @Override int get(String name, int hash, int shift) {
+      int bit = bit(hash, shift);
+      if ((bitmap & bit) == 0) {
+        return -1;
+      }
+      int i = index(bit);
+      Object key = array[i];
+      if (key == null) {
+        return ((Node) array[i + 1]).get(name, hash, shift + BITS);
+      }
+      return name.equals(key) ? (Integer) array[i + 1] : -1;
+    }
+
+    @Override Node put(String name, int hash, int shift, int value, boolean[] added) {
+      int bit = bit(hash, shift);
+      int i = index(bit);
+      if ((bitmap & bit) == 0) {
+        Object[] copy = new Object[array.length + 2];
+        System.arraycopy(array, 0, copy, 0, i);
+        copy[i] = name;
+        copy[i + 1] = value;
+        System.arraycopy(array, i, copy, i + 2, array.length - i);
+        added[0] = true;
+        return new BitmapNode(bitmap | bit, copy);
+      }
+      Object key = array[i];
+      if (key == null) {
+        Node child = (Node) array[i + 1];
+        Node newChild = child.put(name, hash, shift + BITS, value, added);
+        return newChild == child ? this : with(i, null, newChild);
+      }
+      if (name.equals(key)) {
+        return (Integer) array[i + 1] == value ? this : with(i, key, value);
+      }
+      added[0] = true;
+      return with(i, null, pair(shift + BITS, (String) key, (Integer) array[i + 1],
+          name, hash, value));
+    }
+
+    @Override Node remove(String name, int hash, int shift) {
+      int bit = bit(hash, shift);
+      if ((bitmap & bit) == 0) {
+        return this;
+      }
+      int i = index(bit);
+      Object key = array[i];
+      if (key == null) {
+        Node child = (Node) array[i + 1];
+        Node newChild = child.remove(name, hash, shift + BITS);
+        if (newChild == child) {
+          return this;
+        }
+        if (newChild != null) {
+          return with(i, null, newChild);
+        }
+      } else if (!name.equals(key)) {
+        return this;
+      }
+      if (bitmap == bit) {
+        return null;
+      }
+      Object[] copy = new Object[array.length - 2];
+      System.arraycopy(array, 0, copy, 0, i);
+      System.arraycopy(array, i + 2, copy, i, array.length - i - 2);
+      return new BitmapNode(bitmap & ~bit, copy);
+    }
+
+    private BitmapNode with(int i, Object key, Object value) {
+      Object[] copy = array.clone();
+      copy[i] = key;
+      copy[i + 1] = value;
+      return new BitmapNode(bitmap, copy);
+    }
+
+    /** @return a node with two names. */
+    private static Node pair(int shift, String name1, int value1, String name2, int hash2,
+        int value2) {
+      int hash1 = name1.hashCode();
+      if (hash1 == hash2) {
+        return new CollisionNode(hash1, new String[] { name1, name2 },
+            new int[] { value1, value2 });
+      }
+      boolean[] added = { false };
+      return EMPTY.put(name1, hash1, shift, value1, added)
+          .put(name2, hash2, shift, value2, added);
+    }
+  }
+
+  /** Names with the same hash code. */
+  private static final class CollisionNode extends Node {
+    private final int hash;
+
+    private final String[] names;
+
+    private final int[] values;
+
+    CollisionNode(int hash, String[] names, int[] values) {
+      this.hash = hash;
+      this.names = names;
+      this.values = values;
+    }
+
+    private int find(String name) {
+      for (int i = 0; i < names.length; ++i) {
+        if (names[i].equals(name)) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    @Override int get(String name, int hash, int shift) {
+      int i = hash == this.hash ? find(name) : -1;
+      return i >= 0 ? values[i] : -1;
+    }
+
+    @Override Node put(String name, int hash, int shift, int value, boolean[] added) {
+      if (hash != this.hash) {
+        // Nest this node in a bitmap node, to separate it from the new name.
+        return new BitmapNode(bit(this.hash, shift), new Object[] { null, this })
+            .put(name, hash, shift, value, added);
+      }
+      int i = find(name);
+      if (i >= 0) {
+        if (values[i] == value) {
+          return this;
+        }
+        int[] newValues = values.clone();
+        newValues[i] = value;
+        return new CollisionNode(hash, names, newValues);
+      }
+      String[] newNames = new String[names.length + 1];
+      System.arraycopy(names, 0, newNames, 0, names.length);
+      newNames[names.length] = name;
+      int[] newValues = new int[values.length + 1];
+      System.arraycopy(values, 0, newValues, 0, values.length);
+      newValues[values.length] = value;
+      added[0] = true;
+      return new CollisionNode(hash, newNames, newValues);
+    }
+
+    @Override Node remove(String name, int hash, int shift) {
+      int i = hash == this.hash ? find(name) : -1;
+      if (i < 0) {
+        return this;
+      }
+      if (names.length == 1) {
+        return null;
+      }
+      String[] newNames = new String[names.length - 1];
+      int[] newValues = new int[values.length - 1];
+      System.arraycopy(names, 0, newNames, 0, i);
+      System.arraycopy(names, i + 1, newNames, i, names.length - i - 1);
+      System.arraycopy(values, 0, newValues, 0, i);
+      System.arraycopy(values, i + 1, newValues, i, values.length - i - 1);
+      return new CollisionNode(hash, newNames, newValues);
+    }
+  }
+}
@@ -0,0 +1,235 @@
+/* Copyright (c) 2017, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.json;
+
+import java.io.IOException;
+
+/**
+ * A persistent JSON array: an immutable array where updates return a new
+ * version of the array.
+ *
+ * <p>The elements are stored in a weight-balanced tree, so that
+ * {@link #with(JsonValue)}, {@link #with(int, JsonValue)},
+ * {@link #withInserted(int, JsonValue)} and {@link #without(int)} take
+ * logarithmic time and share all untouched structure with the old version.
+ *
+ * <p>Persistent arrays can be used anywhere a JsonArray can be read or
+ * serialized. The inherited methods that modify an array throw
+ * {@link UnsupportedOperationException}. Objects and arrays that are added
+ * to a persistent array are converted to persistent objects and arrays.
+ *
+ * @see PersistentJsonObject
+ */
+public final class PersistentJsonArray extends JsonArray {
+  private static final PersistentJsonArray EMPTY = new PersistentJsonArray(new Elements(null));
+
+  /** The elements of a persistent array. */
+  private static final class Elements extends ElementList {
+    final IndexTree tree;
+
+    Elements(IndexTree tree) {
+      this.tree = tree;
+    }
+
+    @Override public JsonValue get(int i) {
+      checkIndex(i);
+      return (JsonValue) IndexTree.get(tree, i);
+    }
+
+    @Override public int size() {
+      return IndexTree.size(tree);
+    }
+
+    @Override public JsonValue set(int i, JsonValue value) {
+      throw unsupported();
+    }
+
+    @Override public boolean add(JsonValue value) {
+      throw unsupported();
+    }
+
+    @Override public void add(int i, JsonValue value) {
+      throw unsupported();
+    }
+
+    @Override public JsonValue remove(int i) {
+      throw unsupported();
+    }
+
+    @Override public void clear() {
+      throw unsupported();
+    }
+
+    @Override void addLong(long value) {
+      throw unsupported();
+    }
+
+    @Override void addDouble(double value) {
+      throw unsupported();
+    }
+
+    @Override void addLexeme(char[] chars, int offset, int length, char[] scratch) {
+      throw unsupported();
+    }
+
+    @Override boolean isPacked() {
+      return false;
+    }
+
+    @Override JsonValue element(int i) {
+      return get(i);
+    }
+
+    @Override void freeze() {
+    }
+
+    @Override boolean isFrozen() {
+      return true;
+    }
+
+    @Override double[] toDoubleArray(double undefined) {
+      Object[] values = IndexTree.values(tree);
+      double[] result = new double[values.length];
+      for (int i = 0; i < values.length; ++i) {
+        result[i] = ((JsonValue) values[i]).doubleValue(undefined);
+      }
+      return result;
+    }
+
+    @Override long[] toLongArray(long undefined) {
+      Object[] values = IndexTree.values(tree);
+      long[] result = new long[values.length];
+      for (int i = 0; i < values.length; ++i) {
+        result[i] = ((JsonValue) values[i]).longValue(undefined);
+      }
+      return result;
+    }
+
+    @Override void writeTo(Appendable out) throws IOException {
+      Object[] values = IndexTree.values(tree);
+      for (int i = 0; i < values.length; ++i) {
+        if (i > 0) {
+          out.append(',');
+        }
+        ((JsonValue) values[i]).writeTo(out);
+      }
+    }
+
+    @Override void writeElements(JsonWriter writer) throws IOException {
+      for (Object value : IndexTree.values(tree)) {
+        writer.value((JsonValue) value);
+      }
+    }
+
+    private void checkIndex(int i) {
+      if (i < 0 || i >= size()) {
+        throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size());
+      }
+    }
+
+    private static UnsupportedOperationException unsupported() {
+      return new UnsupportedOperationException("persistent JSON array can not be modified");
+    }
+  }
+
+  private final Elements list;
+
+  private PersistentJsonArray(Elements list) {
+    super(list);
+    this.list = list;
+  }
+
+  /** @return the empty persistent array. */
+  public static PersistentJsonArray empty() {
+    return EMPTY;
+  }
+
+  /**
+   * Create a persistent array with the elements of the given array. Nested
+   * objects and arrays are converted to persistent objects and arrays.
+   *
+   * @return the array itself if it is already persistent.
+   */
+  public static PersistentJsonArray from(JsonArray array) {
+    if (array instanceof PersistentJsonArray) {
+      return (PersistentJsonArray) array;
+    }
+    Object[] elements = new Object[array.size()];
+    for (int i = 0; i < elements.length; ++i) {
+      elements[i] = PersistentJsonObject.persistent(array.get(i));
+    }
+    return new PersistentJsonArray(new Elements(IndexTree.build(elements, 0, elements.length)));
+  }
+
+  /** @return a version of this array with the value added last. */
+  public PersistentJsonArray with(JsonValue value) {
+    return withInserted(size(), value);
+  }
+
+  /**
+   * @return a version of this array with the element at index {@code i}
+   * replaced by the given value.
+   * @throws IndexOutOfBoundsException if the index is not valid.
+   */
+  public PersistentJsonArray with(int i, JsonValue value) {
+    list.checkIndex(i);
+    value = PersistentJsonObject.persistent(value);
+    if (list.get(i) == value) {
+      return this;
+    }
+    return new PersistentJsonArray(new Elements(IndexTree.set(list.tree, i, value)));
+  }
+
+  /**
+   * @return a version of this array with the given value inserted at index
+   * {@code i}. The following elements are shifted back.
+   * @throws IndexOutOfBoundsException if the index is not valid.
+   */
+  public PersistentJsonArray withInserted(int i, JsonValue value) {
+    if (i < 0 || i > size()) {
+      throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size());
+    }
+    value = PersistentJsonObject.persistent(value);
+    return new PersistentJsonArray(new Elements(IndexTree.insert(list.tree, i, 0, value)));
+  }
+
+  /**
+   * @return a version of this array without the element at index {@code i}.
+   * The following elements are shifted forward.
+   * @throws IndexOutOfBoundsException if the index is not valid.
+   */
+  public PersistentJsonArray without(int i) {
+    list.checkIndex(i);
+    if (size() == 1) {
+      return EMPTY;
+    }
+    return new PersistentJsonArray(new Elements(IndexTree.remove(list.tree, i)));
+  }
+}
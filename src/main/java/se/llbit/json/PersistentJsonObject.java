@@ -0,0 +1,262 @@
+/* Copyright (c) 2017, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.json;
+
+/**
+ * A persistent JSON object: an immutable object where updates return a new
+ * version of the object.
+ *
+ * <p>{@link #with(String, JsonValue)} and {@link #without(String)} take
+ * logarithmic time and share all untouched structure with the old version.
+ * The members are kept in insertion order in a weight-balanced tree, and
+ * a hash array mapped trie maps member names to their entries in the tree.
+ * Member names are unique.
+ *
+ * <p>Persistent objects can be used anywhere a JsonObject can be read or
+ * serialized. The inherited methods that modify an object throw
+ * {@link UnsupportedOperationException}. Objects and arrays that are added
+ * to a persistent object are converted to persistent objects and arrays.
+ *
+ * <pre>
+ * PersistentJsonObject v1 = PersistentJsonObject.from(config);
+ * PersistentJsonObject v2 = v1.with("timeout", Json.of(30));
+ * </pre>
+ */
+public final class PersistentJsonObject extends JsonObject {
+  private static final PersistentJsonObject EMPTY =
+      new PersistentJsonObject(new Members(NameTrie.EMPTY, null, 0));
+
+  /** The members of a persistent object. */
+  private static final class Members extends MemberList {
+    /** Maps member names to member keys. */
+    final NameTrie names;
+
+    /** The members in insertion order, with ascending member keys. */
+    final IndexTree tree;
+
+    /** Key for the next added member. */
+    final int nextKey;
+
+    Members(NameTrie names, IndexTree tree, int nextKey) {
+      this.names = names;
+      this.tree = tree;
+      this.nextKey = nextKey;
+    }
+
+    @Override public JsonMember get(int i) {
+      if (i < 0 || i >= size()) {
+        throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size());
+      }
+      return (JsonMember) IndexTree.get(tree, i);
+    }
+
+    @Override JsonMember member(int i) {
+      return get(i);
+    }
+
+    @Override public int size() {
+      return IndexTree.size(tree);
+    }
+
+    @Override public JsonMember set(int i, JsonMember member) {
+      throw unsupported();
+    }
+
+    @Override public boolean add(JsonMember member) {
+      throw unsupported();
+    }
+
+    @Override public void add(int i, JsonMember member) {
+      throw unsupported();
+    }
+
+    @Override public JsonMember remove(int i) {
+      throw unsupported();
+    }
+
+    @Override public void clear() {
+      throw unsupported();
+    }
+
+    @Override int find(String name) {
+      if (name == null) {
+        return -1;
+      }
+      int key = names.get(name);
+      return key < 0 ? -1 : IndexTree.indexOf(tree, key);
+    }
+
+    @Override void freeze() {
+    }
+
+    @Override boolean isFrozen() {
+      return true;
+    }
+
+    private static UnsupportedOperationException unsupported() {
+      return new UnsupportedOperationException("persistent JSON object can not be modified");
+    }
+  }
+
+  private final Members list;
+
+  private PersistentJsonObject(Members list) {
+    super(list);
+    this.list = list;
+  }
+
+  /** @return the empty persistent object. */
+  public static PersistentJsonObject empty() {
+    return EMPTY;
+  }
+
+  /**
+   * Create a persistent object with the members of the given object. Nested
+   * objects and arrays are converted to persistent objects and arrays. For
+   * duplicate member names only the first member is kept.
+   *
+   * @return the object itself if it is already persistent.
+   */
+  public static PersistentJsonObject from(JsonObject object) {
+    if (object instanceof PersistentJsonObject) {
+      return (PersistentJsonObject) object;
+    }
+    NameTrie names = NameTrie.EMPTY;
+    Object[] members = new Object[object.size()];
+    int size = 0;
+    for (JsonMember member : object) {
+      if (member.name == null) {
+        throw new NullPointerException("member name is null");
+      }
+      if (names.get(member.name) < 0) {
+        names = names.put(member.name, size);
+        members[size++] = new JsonMember(member.name, persistent(member.value));
+      }
+    }
+    return new PersistentJsonObject(new Members(names, IndexTree.build(members, 0, size), size));
+  }
+
+  /**
+   * Convert a value to a persistent value. Objects and arrays are converted
+   * to persistent objects and arrays, and other values to immutable copies.
+   */
+  static JsonValue persistent(JsonValue value) {
+    if (value == null) {
+      throw new NullPointerException();
+    }
+    if (value instanceof PersistentJsonObject || value instanceof PersistentJsonArray) {
+      return value;
+    } else if (value.isObject()) {
+      return from(value.object());
+    } else if (value.isArray()) {
+      return PersistentJsonArray.from(value.array());
+    } else {
+      return value.copy();
+    }
+  }
+
+  /**
+   * Find the value of the member with the given name.
+   *
+   * @return the member value, or the unknown JSON literal if no member has
+   * the given name.
+   */
+  @Override public JsonValue get(String name) {
+    int i = list.find(name);
+    return i >= 0 ? list.get(i).value : Json.UNKNOWN;
+  }
+
+  /**
+   * @return a version of this object where the member with the given name
+   * has the given value. A new member is added last.
+   */
+  public PersistentJsonObject with(String name, JsonValue value) {
+    if (name == null) {
+      throw new NullPointerException();
+    }
+    value = persistent(value);
+    int i = list.find(name);
+    if (i >= 0) {
+      if (list.get(i).value == value) {
+        return this;
+      }
+      return new PersistentJsonObject(new Members(list.names,
+          IndexTree.set(list.tree, i, new JsonMember(name, value)), list.nextKey));
+    }
+    Members members = list;
+    if (members.nextKey == Integer.MAX_VALUE) {
+      members = renumbered();
+    }
+    return new PersistentJsonObject(new Members(
+        members.names.put(name, members.nextKey),
+        IndexTree.insert(members.tree, members.size(), members.nextKey,
+            new JsonMember(name, value)),
+        members.nextKey + 1));
+  }
+
+  public PersistentJsonObject with(String name, String value) {
+    return with(name, new JsonString(value));
+  }
+
+  public PersistentJsonObject with(String name, long value) {
+    return with(name, JsonNumber.valueOf(value));
+  }
+
+  public PersistentJsonObject with(String name, double value) {
+    return with(name, new JsonNumber(value));
+  }
+
+  public PersistentJsonObject with(String name, boolean value) {
+    return with(name, value ? Json.TRUE : Json.FALSE);
+  }
+
+  /** @return a version of this object without the member with the given name. */
+  public PersistentJsonObject without(String name) {
+    int i = list.find(name);
+    if (i < 0) {
+      return this;
+    }
+    if (list.size() == 1) {
+      return EMPTY;
+    }
+    return new PersistentJsonObject(new Members(list.names.remove(name),
+        IndexTree.remove(list.tree, i), list.nextKey));
+  }
+
+  /** @return the members with new keys starting from zero. */
+  private Members renumbered() {
+    Object[] members = IndexTree.values(list.tree);
+    NameTrie names = NameTrie.EMPTY;
+    for (int i = 0; i < members.length; ++i) {
+      names = names.put(((JsonMember) members[i]).name, i);
+    }
+    return new Members(names, IndexTree.build(members, 0, members.length), members.length);
+  }
+}
@@ -0,0 +1,202 @@
+/* Copyright (c) 2017, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.json;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The state of a selective parse: a tree of the reference tokens of a set
+ * of JSON Pointers, and the values found so far.
+ *
+ * <p>The parsers walk the document and the tree together. Values that have
+ * no node in the tree are skipped, and values whose node ends a pointer are
+ * parsed.
+ */
+final class PointerSelection {
+  /** A node in the pointer tree. */
+  static final class Node {
+    /** Number of tokens from the root. */
+    final int depth;
+
+    /** Member names, matched against object members. */
+    private String[] names = new String[0];
+
+    private Node[] nameChildren = new Node[0];
+
+    /** Array indexes, matched against array elements. */
+    private int[] indexes = new int[0];
+
+    private Node[] indexChildren = new Node[0];
+
+    /** The pointers that end at this node. */
+    private final List<Integer> ends = new ArrayList<>();
+
+    /** The pointers that end at this node or one of its descendants. */
+    private final List<Integer> pointers = new ArrayList<>();
+
+    Node(int depth) {
+      this.depth = depth;
+    }
+
+    /** @return {@code true} if the value at this node should be parsed. */
+    boolean isSelected() {
+      return !ends.isEmpty();
+    }
+
+    /** @return the child for the member name in the buffer, or {@code null}. */
+    Node member(char[] chars, int length) {
+      for (int i = 0; i < names.length; ++i) {
+        String name = names[i];
+        if (name.length() == length) {
+          int j = 0;
+          while (j < length && name.charAt(j) == chars[j]) {
+            j += 1;
+          }
+          if (j == length) {
+            return nameChildren[i];
+          }
+        }
+      }
+      return null;
+    }
+
+    /** @return the child for the member name in the buffer, or {@code null}. */
+    Node member(CharSequence chars) {
+      for (int i = 0; i < names.length; ++i) {
+        if (names[i].contentEquals(chars)) {
+          return nameChildren[i];
+        }
+      }
+      return null;
+    }
+
+    /** @return the child for the array element at the given index, or {@code null}. */
+    Node element(int index) {
+      for (int i = 0; i < indexes.length; ++i) {
+        if (indexes[i] == index) {
+          return indexChildren[i];
+        }
+      }
+      return null;
+    }
+
+    /** @return the child node for a token, added if it does not exist. */
+    private Node child(String name, int index) {
+      for (int i = 0; i < names.length; ++i) {
+        if (names[i].equals(name)) {
+          return nameChildren[i];
+        }
+      }
+      Node child = new Node(depth + 1);
+      names = Arrays.copyOf(names, names.length + 1);
+      names[names.length - 1] = name;
+      nameChildren = Arrays.copyOf(nameChildren, nameChildren.length + 1);
+      nameChildren[nameChildren.length - 1] = child;
+      if (index >= 0) {
+        indexes = Arrays.copyOf(indexes, indexes.length + 1);
+        indexes[indexes.length - 1] = index;
+        indexChildren = Arrays.copyOf(indexChildren, indexChildren.length + 1);
+        indexChildren[indexChildren.length - 1] = child;
+      }
+      return child;
+    }
+  }
+
+  final Node root = new Node(0);
+
+  private final List<JsonPointer> pointers;
+
+  private final JsonValue[] values;
+
+  /** Number of pointers that have not been resolved. */
+  private int remaining;
+
+  PointerSelection(List<JsonPointer> pointers) {
+    this.pointers = pointers;
+    values = new JsonValue[pointers.size()];
+    remaining = values.length;
+    for (int p = 0; p < values.length; ++p) {
+      JsonPointer pointer = pointers.get(p);
+      Node node = root;
+      node.pointers.add(p);
+      for (int i = 0; i < pointer.size(); ++i) {
+        node = node.child(pointer.token(i), pointer.index(i));
+        node.pointers.add(p);
+      }
+      node.ends.add(p);
+    }
+  }
+
+  /**
+   * Resolves the pointers that end at or below the node, given the value
+   * at the node. Only the first value found for a pointer is used.
+   */
+  void select(Node node, JsonValue value) {
+    for (int p : node.pointers) {
+      if (values[p] == null) {
+        values[p] = pointers.get(p).get(value, node.depth);
+        remaining -= 1;
+      }
+    }
+  }
+
+  /**
+   * Resolves the remaining pointers that end at or below the node as not
+   * matching. This is called when the value at the node has been parsed
+   * without resolving them.
+   */
+  void finish(Node node) {
+    for (int p : node.pointers) {
+      if (values[p] == null) {
+        values[p] = Json.UNKNOWN;
+        remaining -= 1;
+      }
+    }
+  }
+
+  /** @return {@code true} if all pointers have been resolved. */
+  boolean isDone() {
+    return remaining == 0;
+  }
+
+  /**
+   * @return the values for each pointer, in the order of the pointers. The
+   * unknown JSON literal is used for pointers that did not match a value.
+   */
+  List<JsonValue> values() {
+    List<JsonValue> result = new ArrayList<>(values.length);
+    for (JsonValue value : values) {
+      result.add(value != null ? value : Json.UNKNOWN);
+    }
+    return result;
+  }
+}
@@ -29,58 +29,131 @@
  */
 package se.llbit.json;
 
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
 import java.io.PrintStream;
-import java.util.ArrayList;
-import java.util.Stack;
+import java.io.Writer;
+import java.nio.CharBuffer;
 
 /**
  * JSON output serializer.
  * The output is not minified.
+ *
+ * <p>A printer created with an {@link Appendable} target, such as a
+ * {@link Writer}, collects the output in an internal buffer which is written
+ * to the target when it is full, on {@link #flush()}, and on
+ * {@link #close()}. A printer created with a {@link PrintStream} target
+ * writes each printed string to the stream immediately.
+ *
+ * <p>Like {@link PrintStream}, the printer does not throw
+ * {@link IOException}. Use {@link #checkError()} to test if an
+ * error occurred while writing to the target.
  */
-public class PrettyPrinter implements AutoCloseable {
+public class PrettyPrinter implements AutoCloseable, Flushable {
+  static final int BUFFER_SIZE = 8192;
+
+  private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
   private final String indentation;
-  private final java.util.List<String> ind = new ArrayList<>(32);
 
-  {
-    ind.add("");
-  }
+  /** The indentation string repeated for the deepest indentation level so far. */
+  private char[] indentChars = new char[0];
 
-  private final Stack<Integer> indentStack = new Stack<>();
+  /** Indentation levels of the enclosing nodes. The bottom entry is zero. */
+  private int[] indentStack = new int[32];
 
-  {
-    indentStack.push(0);
-  }
+  private int stackSize = 1;
 
   private int currentIndent = 0;
 
-  private final PrintStream out;
+  private final Appendable out;
+
+  /** The target stream, if printing directly to a PrintStream. */
+  private final PrintStream stream;
+
+  /** Indentation strings, by level, for printing to a PrintStream. */
+  private String[] indentStrings = new String[0];
+
+  private final char[] buf = new char[BUFFER_SIZE];
+
+  private int pos = 0;
+
   private boolean newline = false;
 
+  private boolean error = false;
+
   /**
+   * Print to a PrintStream. Output is written to the stream immediately.
+   *
    * @param ind indentation level.
    */
   public PrettyPrinter(String ind, PrintStream target) {
+    this(ind, target, target);
+  }
+
+  /**
+   * Print to any Appendable target, through an internal buffer. The
+   * printer must be flushed or closed to write all output to the target.
+   *
+   * @param ind indentation string for each indentation level.
+   */
+  public PrettyPrinter(String ind, Appendable target) {
+    this(ind, target, null);
+  }
+
+  private PrettyPrinter(String ind, Appendable target, PrintStream stream) {
+    if (target == null) {
+      throw new NullPointerException();
+    }
     this.indentation = ind;
     this.out = target;
+    this.stream = stream;
   }
 
   /**
    * Compute indentation string for the given indentation level.
    */
   public String getIndentation(int level) {
-    while (ind.size() < (level + 1)) {
-      ind.add(ind.get(ind.size() - 1) + indentation);
+    if (level >= indentStrings.length) {
+      String[] strings = new String[Math.max(level + 1, indentStrings.length * 2)];
+      System.arraycopy(indentStrings, 0, strings, 0, indentStrings.length);
+      indentStrings = strings;
     }
-    return ind.get(level);
+    if (indentStrings[level] == null) {
+      indentStrings[level] = new String(indentChars(level), 0, level * indentation.length());
+    }
+    return indentStrings[level];
+  }
+
+  /** @return a buffer starting with the indentation for the given level. */
+  private char[] indentChars(int level) {
+    int length = level * indentation.length();
+    if (indentChars.length < length) {
+      char[] chars = new char[Math.max(length, indentChars.length * 2)];
+      for (int i = 0; i + indentation.length() <= chars.length; i += indentation.length()) {
+        indentation.getChars(0, indentation.length(), chars, i);
+      }
+      indentChars = chars;
+    }
+    return indentChars;
   }
 
   public void print(String str) {
     indentNewline();
-    out.print(str);
+    if (stream != null) {
+      stream.print(str);
+    } else {
+      write(str);
+    }
   }
 
   public void println() {
-    out.println();
+    if (stream != null) {
+      stream.println();
+    } else {
+      write(LINE_SEPARATOR);
+    }
     newline = true;
   }
 
@@ -93,27 +166,124 @@ public class PrettyPrinter implements AutoCloseable {
   public void indent(int level) {
     indentNewline();
     currentIndent = level;
-    out.print(getIndentation(level));
+    writeIndentation(level);
   }
 
   private void pushIndentation() {
-    indentStack.push(currentIndent + indentStack.peek());
+    if (stackSize == indentStack.length) {
+      int[] copy = new int[indentStack.length * 2];
+      System.arraycopy(indentStack, 0, copy, 0, stackSize);
+      indentStack = copy;
+    }
+    indentStack[stackSize] = currentIndent + indentStack[stackSize - 1];
+    stackSize += 1;
     currentIndent = 0;
   }
 
   private void popIndentation() {
-    currentIndent = indentStack.pop();
-    currentIndent -= indentStack.peek();
+    stackSize -= 1;
+    currentIndent = indentStack[stackSize] - indentStack[stackSize - 1];
   }
 
   private void indentNewline() {
     if (newline) {
-      out.print(getIndentation(indentStack.peek()));
+      writeIndentation(indentStack[stackSize - 1]);
       newline = false;
     }
   }
 
+  private void writeIndentation(int level) {
+    if (stream != null) {
+      stream.print(getIndentation(level));
+      return;
+    }
+    char[] chars = indentChars(level);
+    int length = level * indentation.length();
+    int offset = 0;
+    while (offset < length) {
+      if (pos == buf.length) {
+        flushBuffer();
+      }
+      int count = Math.min(length - offset, buf.length - pos);
+      System.arraycopy(chars, offset, buf, pos, count);
+      pos += count;
+      offset += count;
+    }
+  }
+
+  private void write(String str) {
+    int length = str.length();
+    int offset = 0;
+    while (offset < length) {
+      if (pos == buf.length) {
+        flushBuffer();
+      }
+      int count = Math.min(length - offset, buf.length - pos);
+      str.getChars(offset, offset + count, buf, pos);
+      pos += count;
+      offset += count;
+    }
+  }
+
+  /** Write the buffered output to the target. */
+  private void flushBuffer() {
+    if (pos == 0) {
+      return;
+    }
+    try {
+      if (out instanceof Writer) {
+        ((Writer) out).write(buf, 0, pos);
+      } else if (out instanceof StringBuilder) {
+        ((StringBuilder) out).append(buf, 0, pos);
+      } else {
+        out.append(CharBuffer.wrap(buf, 0, pos));
+      }
+    } catch (IOException e) {
+      error = true;
+    }
+    pos = 0;
+  }
+
+  /**
+   * Write buffered output to the target, and flush the target if it is
+   * {@link Flushable}.
+   */
+  @Override public void flush() {
+    flushBuffer();
+    if (out instanceof Flushable) {
+      try {
+        ((Flushable) out).flush();
+      } catch (IOException e) {
+        error = true;
+      }
+    }
+  }
+
+  /**
+   * Flush the output and check the error state.
+   *
+   * @return {@code true} if an error occurred while writing to the target.
+   */
+  public boolean checkError() {
+    flush();
+    if (out instanceof PrintStream) {
+      error |= ((PrintStream) out).checkError();
+    }
+    return error;
+  }
+
+  /**
+   * Write buffered output to the target, and close the target if it is
+   * {@link Closeable}.
+   */
   @Override public void close() {
-    out.close();
+    flushBuffer();
+    if (out instanceof Closeable) {
+      try {
+        ((Closeable) out).close();
+      } catch (IOException e) {
+        error = true;
+      }
+    }
   }
 }
@@ -0,0 +1,485 @@
+/* Copyright (c) 2017, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.json;
+
+import se.llbit.json.JsonParser.Literal;
+import se.llbit.json.JsonParser.SyntaxError;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Parses UTF-8 encoded JSON in two stages, for large in-memory documents.
+ *
+ * <p>The first stage scans the input 64 bytes at a time and builds an
+ * index of the positions of all structural characters ({@code {}[]:,}),
+ * the opening quotes of strings, and the first characters of numbers and
+ * literals. The scan uses bit-parallel operations on {@code long} words
+ * to classify eight bytes at once, and computes which characters are
+ * escaped or inside strings with carry-less bit tricks instead of
+ * branching on each byte.
+ *
+ * <p>The second stage walks the index to build the JSON tree. Strings are
+ * decoded with the same code as {@link Utf8JsonParser}, and the parser
+ * accepts the same syntax and produces the same trees as
+ * {@link JsonParser}.
+ *
+ * <p>See Geoff Langdale and Daniel Lemire, "Parsing Gigabytes of JSON per
+ * Second", The VLDB Journal 28 (6), 2019.
+ */
+public class StructuralJsonParser {
+  private static final int EOF = -1;
+
+  /** Number of bytes classified per step of the first stage. */
+  static final int BLOCK_SIZE = 64;
+
+  private static final long ONES = 0x0101010101010101L;
+  private static final long HIGH_BITS = 0x8080808080808080L;
+  private static final long LOW_BITS = 0x7F7F7F7F7F7F7F7FL;
+  private static final long ODD_BITS = 0xAAAAAAAAAAAAAAAAL;
+
+  /** Moves the high bit of each byte to one of the eight top bits of a word. */
+  private static final long GATHER = 0x0102040810204080L;
+
+  private static final long QUOTES = Literal.QUOTE_MARK * ONES;
+  private static final long BACKSLASHES = Literal.ESCAPE * ONES;
+  private static final long LOWER_CASE = 0x20 * ONES;
+  private static final long LEFT_BRACES = Literal.BEGIN_OBJECT * ONES;
+  private static final long RIGHT_BRACES = Literal.END_OBJECT * ONES;
+  private static final long COLONS = Literal.NAME_SEPARATOR * ONES;
+  private static final long COMMAS = Literal.VALUE_SEPARATOR * ONES;
+  private static final long SPACES = ' ' * ONES;
+  private static final long TABS = '\t' * ONES;
+  private static final long LINE_FEEDS = '\n' * ONES;
+  private static final long CARRIAGE_RETURNS = '\r' * ONES;
+
+  /** Sets the high bit of the bytes that are at least 0x20, when added to the low bits. */
+  private static final long LESS_THAN_SPACE = 0x60 * ONES;
+
+  private final byte[] buf;
+  private final int offset;
+  private final int limit;
+
+  /** Decodes strings in the input. */
+  private final Utf8JsonParser strings;
+
+  /** Positions of the structural characters, in input order. */
+  private int[] index = null;
+
+  private int indexSize = 0;
+
+  /** Position in the index of the next structural character. */
+  private int cursor = 0;
+
+  /** Buffer for the characters of the current number. */
+  private char[] number = new char[32];
+
+  /** Scratch buffer for number conversion. */
+  private final char[] numberScratch = new char[DoubleFormatter.MAX_CHARS];
+
+  /** Parse JSON from the given UTF-8 encoded bytes. */
+  public StructuralJsonParser(byte[] input) {
+    this(input, 0, input.length);
+  }
+
+  /**
+   * Parse JSON from a range in the given byte array.
+   *
+   * @param input UTF-8 encoded input.
+   * @param offset index of the first input byte.
+   * @param length number of input bytes.
+   * @throws IndexOutOfBoundsException if the range is not valid.
+   */
+  public StructuralJsonParser(byte[] input, int offset, int length) {
+    strings = new Utf8JsonParser(input, offset, length);
+    buf = input;
+    this.offset = offset;
+    limit = offset + length;
+  }
+
+  /**
+   * Use the given symbol table for member names.
+   *
+   * @see JsonParser#setSymbolTable(SymbolTable)
+   */
+  public void setSymbolTable(SymbolTable symbols) {
+    strings.setSymbolTable(symbols);
+  }
+
+  /**
+   * Parses a JSON object or array.
+   *
+   * @return either a JsonObject or JsonArray, not null.
+   */
+  public JsonValue parse() throws SyntaxError {
+    if (index == null) {
+      buildIndex();
+    }
+    cursor = 0;
+    int next = peek();
+    if (next != Literal.BEGIN_OBJECT && next != Literal.BEGIN_ARRAY) {
+      throw new SyntaxError("expected JSON object or array");
+    }
+    JsonValue value;
+    try {
+      value = next == Literal.BEGIN_OBJECT ? parseObject() : parseArray();
+    } catch (IOException e) {
+      throw new Error(e); // Not thrown for byte array input.
+    }
+    if (cursor < indexSize) {
+      throw new SyntaxError(
+          String.format("garbage at end of input (unexpected '%c')", (char) peek()));
+    }
+    return value;
+  }
+
+  /** @return the number of positions in the structural index. */
+  int indexSize() {
+    return indexSize;
+  }
+
+  /** @return the positions of the structural characters in the input. */
+  int[] structuralIndex() {
+    if (index == null) {
+      buildIndex();
+    }
+    return Arrays.copyOf(index, indexSize);
+  }
+
+  /** Stage one: find the positions of the structural characters. */
+  private void buildIndex() {
+    int[] index = new int[Math.max(16, (limit - offset) / 8)];
+    int size = 0;
+    long prevEscaped = 0;
+    long prevInString = 0;
+    long prevScalar = 0;
+    for (int block = offset; block < limit; block += BLOCK_SIZE) {
+      byte[] words = buf;
+      int start = block;
+      if (limit - block < BLOCK_SIZE) {
+        // Pad the last block with whitespace.
+        byte[] padded = new byte[BLOCK_SIZE];
+        Arrays.fill(padded, (byte) ' ');
+        System.arraycopy(buf, block, padded, 0, limit - block);
+        words = padded;
+        start = 0;
+      }
+
+      // Classify the bytes of the block. Bit i of each mask is set if
+      // byte i of the block is in the class.
+      long quote = 0;
+      long backslash = 0;
+      long op = 0;
+      long whitespace = 0;
+      for (int i = 0; i < 8; ++i) {
+        long word = load(words, start + 8 * i);
+        long lower = word | LOWER_CASE; // Maps '[' to '{' and ']' to '}'.
+        quote |= gather(equal(word, QUOTES)) << (8 * i);
+        backslash |= gather(equal(word, BACKSLASHES)) << (8 * i);
+        op |= gather(equal(lower, LEFT_BRACES) | equal(lower, RIGHT_BRACES)
+            | equal(word, COLONS) | equal(word, COMMAS)) << (8 * i);
+        long space = equal(word, SPACES);
+        if (lessThanSpace(word) != 0) {
+          space |= equal(word, TABS) | equal(word, LINE_FEEDS) | equal(word, CARRIAGE_RETURNS);
+        }
+        whitespace |= gather(space) << (8 * i);
+      }
+
+      // Find the characters that are escaped by an odd number of backslashes.
+      long escaped;
+      if (backslash == 0) {
+        escaped = prevEscaped;
+        prevEscaped = 0;
+      } else {
+        long potentialEscape = backslash & ~prevEscaped;
+        long code = (((potentialEscape << 1) | ODD_BITS) - potentialEscape) ^ ODD_BITS;
+        escaped = code ^ (backslash | prevEscaped);
+        prevEscaped = (code & backslash) >>> 63;
+      }
+
+      // The bits from each opening quote up to, but not including, the
+      // closing quote are set in inString.
+      quote &= ~escaped;
+      long inString = prefixXor(quote) ^ prevInString;
+      prevInString = inString >> 63;
+
+      // Numbers and literals start with a scalar character that does not
+      // follow another scalar character. The string tail is the string
+      // contents and the closing quote.
+      long scalar = ~(op | whitespace);
+      long nonQuoteScalar = scalar & ~quote;
+      long followsScalar = (nonQuoteScalar << 1) | prevScalar;
+      prevScalar = nonQuoteScalar >>> 63;
+      long stringTail = inString ^ quote;
+      long structural = (op | (scalar & ~followsScalar)) & ~stringTail;
+
+      while (structural != 0) {
+        if (size == index.length) {
+          index = Arrays.copyOf(index, index.length + (index.length >> 1));
+        }
+        index[size++] = block + Long.numberOfTrailingZeros(structural);
+        structural &= structural - 1;
+      }
+    }
+    this.index = index;
+    indexSize = size;
+  }
+
+  /** @return the little-endian word at the given position. */
+  private static long load(byte[] bytes, int i) {
+    return (bytes[i] & 0xFFL)
+        | (bytes[i + 1] & 0xFFL) << 8
+        | (bytes[i + 2] & 0xFFL) << 16
+        | (bytes[i + 3] & 0xFFL) << 24
+        | (bytes[i + 4] & 0xFFL) << 32
+        | (bytes[i + 5] & 0xFFL) << 40
+        | (bytes[i + 6] & 0xFFL) << 48
+        | (bytes[i + 7] & 0xFFL) << 56;
+  }
+
+  /** @return a word with the high bit set in each byte where the words are equal. */
+  private static long equal(long word, long pattern) {
+    long x = word ^ pattern;
+    return ~(((x & LOW_BITS) + LOW_BITS) | x) & HIGH_BITS;
+  }
+
+  /** @return a word with the high bit set in each byte that is less than 0x20. */
+  private static long lessThanSpace(long word) {
+    return ~(((word & LOW_BITS) + LESS_THAN_SPACE) | word) & HIGH_BITS;
+  }
+
+  /** @return the high bits of the bytes of the word, as an eight bit mask. */
+  static long gather(long highBits) {
+    return ((highBits >>> 7) * GATHER) >>> 56;
+  }
+
+  /** @return a mask where bit i is the parity of bits 0 to i of the argument. */
+  static long prefixXor(long bits) {
+    bits ^= bits << 1;
+    bits ^= bits << 2;
+    bits ^= bits << 4;
+    bits ^= bits << 8;
+    bits ^= bits << 16;
+    bits ^= bits << 32;
+    return bits;
+  }
+
+  /**
+   * Stage two: parse the value at the current index position.
+   *
+   * @param close the character that may follow a number or literal value.
+   * @return the parsed value, or {@code null} if the next structural character
+   * does not start a value.
+   */
+  private JsonValue parseValue(char close) throws IOException, SyntaxError {
+    switch (peek()) {
+      case Literal.BEGIN_OBJECT:
+        return parseObject();
+      case Literal.BEGIN_ARRAY:
+        return parseArray();
+      case '0':
+      case '1':
+      case '2':
+      case '3':
+      case '4':
+      case '5':
+      case '6':
+      case '7':
+      case '8':
+      case '9':
+      case '-':
+      case '+': {
+        int length = scanNumber(close);
+        return JsonNumber.fromLexeme(number, 0, length, numberScratch);
+      }
+      case Literal.QUOTE_MARK: {
+        String value = strings.stringAt(index[cursor++]);
+        checkEnd(strings.position(), close);
+        return new JsonString(value);
+      }
+      case 't':
+        acceptLiteral(Literal.TRUE, close);
+        return Json.TRUE;
+      case 'f':
+        acceptLiteral(Literal.FALSE, close);
+        return Json.FALSE;
+      case 'n':
+        acceptLiteral(Literal.NULL, close);
+        return Json.NULL;
+      default:
+        return null; // Not a JSON value.
+    }
+  }
+
+  private JsonArray parseArray() throws IOException, SyntaxError {
+    cursor += 1;
+    JsonArray array = new JsonArray();
+    if (peek() == Literal.END_ARRAY) {
+      cursor += 1;
+      return array;
+    }
+    while (true) {
+      int next = peek();
+      if (isNumberStart(next)) {
+        // Numbers are added directly, so that they can be packed.
+        int length = scanNumber(Literal.END_ARRAY);
+        array.addLexeme(number, 0, length, numberScratch);
+      } else {
+        JsonValue value = parseValue(Literal.END_ARRAY);
+        if (value == null) {
+          if (next == EOF || (array.isEmpty() && next != Literal.VALUE_SEPARATOR)) {
+            throw unexpected(next, Literal.END_ARRAY);
+          }
+          throw new SyntaxError("missing element in array");
+        }
+        array.add(value.owned());
+      }
+      next = pop();
+      if (next == Literal.END_ARRAY) {
+        return array;
+      }
+      if (next != Literal.VALUE_SEPARATOR) {
+        throw unexpected(next, Literal.END_ARRAY);
+      }
+    }
+  }
+
+  private JsonObject parseObject() throws IOException, SyntaxError {
+    cursor += 1;
+    JsonObject object = new JsonObject();
+    while (true) {
+      int next = peek();
+      if (next != Literal.QUOTE_MARK) {
+        if (next == Literal.END_OBJECT) {
+          // Like JsonParser, a comma is accepted after the last member.
+          cursor += 1;
+          return object;
+        }
+        if (next == EOF) {
+          throw unexpected(next, Literal.END_OBJECT);
+        }
+        throw new SyntaxError("missing member in object.");
+      }
+      String name = strings.nameAt(index[cursor++]);
+      checkEnd(strings.position(), Literal.NAME_SEPARATOR);
+      next = pop();
+      if (next != Literal.NAME_SEPARATOR) {
+        throw unexpected(next, Literal.NAME_SEPARATOR);
+      }
+      JsonValue value = parseValue(Literal.END_OBJECT);
+      if (value == null) {
+        throw new SyntaxError("missing value for object member");
+      }
+      object.add(new JsonMember(name, value.owned()));
+      next = pop();
+      if (next == Literal.END_OBJECT) {
+        return object;
+      }
+      if (next != Literal.VALUE_SEPARATOR) {
+        throw unexpected(next, Literal.END_OBJECT);
+      }
+    }
+  }
+
+  private static boolean isNumberStart(int c) {
+    return (c >= '0' && c <= '9') || c == '-' || c == '+';
+  }
+
+  /**
+   * Copies the characters of the number at the current index position into
+   * the number buffer.
+   *
+   * @return the number of characters.
+   */
+  private int scanNumber(char close) throws SyntaxError {
+    int start = index[cursor++];
+    int end = start;
+    while (true) {
+      if (end == limit) {
+        throw new SyntaxError("end of input while parsing JSON number.");
+      }
+      int c = buf[end];
+      if ((c < '0' || c > '9') && c != '-' && c != '+' && c != '.' && c != 'e' && c != 'E') {
+        break;
+      }
+      end += 1;
+    }
+    checkEnd(end, close);
+    int length = end - start;
+    if (length > number.length) {
+      number = new char[Math.max(length, number.length * 2)];
+    }
+    for (int i = 0; i < length; ++i) {
+      number[i] = (char) buf[start + i];
+    }
+    return length;
+  }
+
+  private void acceptLiteral(char[] literal, char close) throws SyntaxError {
+    int start = index[cursor++];
+    for (int i = 0; i < literal.length; ++i) {
+      if (start + i >= limit || buf[start + i] != literal[i]) {
+        throw new SyntaxError("encountered invalid JSON literal");
+      }
+    }
+    checkEnd(start + literal.length, close);
+  }
+
+  /**
+   * Checks that a value ending at the given position is followed by
+   * whitespace or the next structural character.
+   */
+  private void checkEnd(int end, char close) throws SyntaxError {
+    if (end < limit && (cursor == indexSize || end != index[cursor])) {
+      int c = buf[end] & 0xFF;
+      if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+        throw unexpected(c, close);
+      }
+    }
+  }
+
+  private static SyntaxError unexpected(int next, char expected) {
+    if (next == EOF) {
+      return new SyntaxError(String.format("unexpected end of input (expected '%c')", expected));
+    }
+    return new SyntaxError(
+        String.format("unexpected character (was '%c', expected '%c')", (char) next, expected));
+  }
+
+  /** @return the next structural character, or -1 at the end of the index. */
+  private int peek() {
+    return cursor < indexSize ? buf[index[cursor]] & 0xFF : EOF;
+  }
+
+  /** Consume the next structural character. */
+  private int pop() {
+    return cursor < indexSize ? buf[index[cursor++]] & 0xFF : EOF;
+  }
+}
@@ -0,0 +1,132 @@
+/* Copyright (c) 2017, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.json;
+
+/**
+ * A bounded table of member names, used by the parsers to share name strings.
+ *
+ * <p>When a parser has a symbol table, each member name is looked up
+ * directly from the parser's character buffer. A new string is only created
+ * the first time a name is seen, so repeated member names, for example in an
+ * array of records, all refer to the same string.
+ *
+ * <p>The same table can be used for several parses to share names between
+ * documents. Parsers in different threads may use the same table: concurrent
+ * updates can at worst add a name twice or drop a name, lookups still return
+ * correct strings.
+ *
+ * @see JsonParser#setSymbolTable(SymbolTable)
+ * @see Utf8JsonParser#setSymbolTable(SymbolTable)
+ */
+public final class SymbolTable {
+  /** Default maximum number of symbols. */
+  public static final int DEFAULT_CAPACITY = 4096;
+
+  /** Names longer than this are not added to the table. */
+  static final int MAX_LENGTH = 64;
+
+  /**
+   * Open addressing hash table of symbols. The table length is a power of two
+   * and at least twice the capacity.
+   */
+  private final String[] table;
+
+  private final int capacity;
+
+  private int size = 0;
+
+  /** Create a symbol table with the default capacity. */
+  public SymbolTable() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Create a symbol table that holds at most {@code capacity} symbols.
+   * When the table is full, new names are no longer shared.
+   */
+  public SymbolTable(int capacity) {
+    if (capacity < 0) {
+      throw new IllegalArgumentException("Illegal capacity: " + capacity);
+    }
+    int length = 16;
+    while (length < capacity * 2) {
+      length *= 2;
+    }
+    this.table = new String[length];
+    this.capacity = capacity;
+  }
+
+  /** @return the number of symbols in this table. */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Find the symbol with the given characters, or add a new symbol.
+   *
+   * @return a string equal to the given characters.
+   */
+  String lookup(char[] chars, int offset, int length) {
+    if (length > MAX_LENGTH) {
+      return new String(chars, offset, length);
+    }
+    int slot = NameHash.slot(table, chars, offset, length);
+    if (slot < 0) {
+      return new String(chars, offset, length);
+    }
+    String symbol = table[slot];
+    return symbol != null ? symbol : add(slot, new String(chars, offset, length));
+  }
+
+  /**
+   * Find the symbol with the given characters, or add a new symbol.
+   *
+   * @return a string equal to the given characters.
+   */
+  String lookup(CharSequence chars) {
+    if (chars.length() > MAX_LENGTH) {
+      return chars.toString();
+    }
+    int slot = NameHash.slot(table, chars);
+    if (slot < 0) {
+      return chars.toString();
+    }
+    String symbol = table[slot];
+    return symbol != null ? symbol : add(slot, chars.toString());
+  }
+
+  private String add(int slot, String symbol) {
+    if (size < capacity) {
+      table[slot] = symbol;
+      size += 1;
+    }
+    return symbol;
+  }
+}
@@ -0,0 +1,981 @@
+/* Copyright (c) 2017, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.json;
+
+import se.llbit.json.JsonParser.Literal;
+import se.llbit.json.JsonParser.SyntaxError;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Parses UTF-8 encoded JSON input.
+ *
+ * <p>This parser works directly on bytes and only decodes characters
+ * inside JSON strings. It accepts the same syntax and produces the same
+ * JSON trees as {@link JsonParser}, but avoids the character decoding and
+ * per-character reader calls of the {@code InputStream} based parser.
+ *
+ * <p>Byte arrays and byte buffers are parsed in place. Input streams are
+ * read through an internal buffer. Files are memory mapped, one window at
+ * a time, so that files larger than 2 GB can be parsed, and the mapped
+ * windows are parsed in place.
+ */
+public class Utf8JsonParser implements AutoCloseable {
+  private static final int EOF = -1;
+
+  /** Size of the read buffer used for streams. */
+  static final int BUFFER_SIZE = 8192;
+
+  /** Size of the mapped file windows. */
+  static final long MAP_WINDOW_SIZE = 1L << 30;
+
+  /** Unicode replacement character, used for malformed UTF-8 input. */
+  private static final char REPLACEMENT = '\uFFFD';
+
+  /** Returned by parseMember() for members that are skipped. */
+  private static final JsonMember SKIPPED_MEMBER = new JsonMember("", Json.UNKNOWN);
+
+  /** The input bytes, or {@code null} if reading from {@link #source}. */
+  private byte[] buf;
+
+  /** Current position in the input buffer. */
+  private int pos;
+
+  /** End of the valid bytes in the input buffer. */
+  private int limit;
+
+  /**
+   * The input bytes, for byte buffers that are not backed by an array and
+   * for mapped file windows, or {@code null} if reading from {@link #buf}.
+   * The bytes are read with absolute gets, from index zero.
+   */
+  private ByteBuffer source;
+
+  /** Remaining input, or {@code null} if all input is in the buffer. */
+  private InputStream stream;
+
+  /** Input file, or {@code null} if not parsing a file. */
+  private FileChannel channel;
+
+  /** Size of the mapped file windows. */
+  private long windowSize;
+
+  /** Offset of the next file window to map. */
+  private long fileOffset;
+
+  /** Scratch buffer for decoded strings. */
+  private char[] chars = new char[64];
+
+  /** Scratch buffer for number conversion. */
+  private final char[] numberScratch = new char[DoubleFormatter.MAX_CHARS];
+
+  /** Symbol table for member names, or {@code null} if names are not shared. */
+  private SymbolTable symbols = null;
+
+  /** Names of the members to skip, or {@code null} if no members are skipped. */
+  private NameSet ignoredMembers = null;
+
+  /** Parse JSON from the given UTF-8 encoded bytes. */
+  public Utf8JsonParser(byte[] input) {
+    this(input, 0, input.length);
+  }
+
+  /**
+   * Parse JSON from a range in the given byte array.
+   *
+   * @param input UTF-8 encoded input.
+   * @param offset index of the first input byte.
+   * @param length number of input bytes.
+   * @throws IndexOutOfBoundsException if the range is not valid.
+   */
+  public Utf8JsonParser(byte[] input, int offset, int length) {
+    if (offset < 0 || length < 0 || offset + length > input.length || offset + length < 0) {
+      throw new IndexOutOfBoundsException();
+    }
+    buf = input;
+    pos = offset;
+    limit = offset + length;
+  }
+
+  /**
+   * Parse JSON from the remaining bytes of the given buffer.
+   *
+   * <p>The position of the buffer is not modified.
+   */
+  public Utf8JsonParser(ByteBuffer input) {
+    if (input.hasArray()) {
+      buf = input.array();
+      pos = input.arrayOffset() + input.position();
+      limit = input.arrayOffset() + input.limit();
+    } else {
+      source = input.slice();
+      limit = source.limit();
+    }
+  }
+
+  /**
+   * Parse JSON from the given UTF-8 encoded input stream.
+   *
+   * <p>The input stream is not closed after being used.
+   */
+  public Utf8JsonParser(InputStream input) {
+    this(input, BUFFER_SIZE);
+  }
+
+  Utf8JsonParser(InputStream input, int bufferSize) {
+    buf = new byte[bufferSize];
+    stream = input;
+  }
+
+  /**
+   * Parse JSON from the given UTF-8 encoded file.
+   *
+   * <p>The file is memory mapped in windows of up to 1 GB, and input is
+   * read from the mapped windows without going through system calls.
+   * The file is closed when this parser is closed.
+   */
+  public Utf8JsonParser(Path file) throws IOException {
+    this(file, MAP_WINDOW_SIZE);
+  }
+
+  Utf8JsonParser(Path file, long windowSize) throws IOException {
+    channel = FileChannel.open(file, StandardOpenOption.READ);
+    this.windowSize = windowSize;
+  }
+
+  /**
+   * Use the given symbol table for member names. Equal member names are
+   * then represented by the same string, within a document and across all
+   * documents parsed with the same symbol table.
+   *
+   * @param symbols the symbol table to use, or {@code null} to not share names.
+   */
+  public void setSymbolTable(SymbolTable symbols) {
+    this.symbols = symbols;
+  }
+
+  /**
+   * Skip object members with the given names.
+   *
+   * @see JsonParser#setIgnoredMembers(Collection)
+   * @param names the names of the members to skip, or {@code null} to
+   * parse all members.
+   */
+  public void setIgnoredMembers(Collection<String> names) {
+    ignoredMembers = names == null || names.isEmpty() ? null : new NameSet(names);
+  }
+
+  /**
+   * Parses a JSON object or array.
+   *
+   * @return either a JsonObject or JsonArray, not null.
+   */
+  public JsonValue parse() throws IOException, SyntaxError {
+    JsonValue value = parseNext();
+    if (value == null) {
+      throw new SyntaxError("expected JSON object or array");
+    }
+    skipWhitespace();
+    if (peek() != EOF) {
+      throw new SyntaxError(
+          String.format("garbage at end of input (unexpected '%c')", (char) peek()));
+    }
+    return value;
+  }
+
+  /**
+   * Parses only the values selected by the given JSON Pointers.
+   *
+   * @see JsonParser#parse(List)
+   * @return the selected values, in the same order as the pointers. The
+   * unknown JSON literal is returned for pointers that do not match a value.
+   */
+  public List<JsonValue> parse(List<JsonPointer> pointers) throws IOException, SyntaxError {
+    PointerSelection selection = new PointerSelection(pointers);
+    skipWhitespace();
+    int next = peek();
+    if (next != Literal.BEGIN_OBJECT && next != Literal.BEGIN_ARRAY) {
+      throw new SyntaxError("expected JSON object or array");
+    }
+    PointerSelection.Node root = selection.root;
+    boolean complete;
+    if (root.isSelected()) {
+      selection.select(root, parseValue());
+      complete = true;
+    } else if (next == Literal.BEGIN_OBJECT) {
+      complete = selectObject(selection, root);
+    } else {
+      complete = selectArray(selection, root);
+    }
+    if (complete) {
+      skipWhitespace();
+      if (peek() != EOF) {
+        throw new SyntaxError(
+            String.format("garbage at end of input (unexpected '%c')", (char) peek()));
+      }
+    }
+    return selection.values();
+  }
+
+  /**
+   * Parses the next JSON object or array in a sequence of whitespace
+   * separated values.
+   *
+   * @return the next value, or {@code null} at the end of the input.
+   */
+  JsonValue parseNext() throws IOException, SyntaxError {
+    skipWhitespace();
+    switch (peek()) {
+      case Literal.BEGIN_OBJECT:
+        return parseObject();
+      case Literal.BEGIN_ARRAY:
+        return parseArray();
+      case EOF:
+        return null;
+      default:
+        throw new SyntaxError("expected JSON object or array");
+    }
+  }
+
+  /**
+   * Continue parsing from a range of the input array. Only for parsers
+   * created on a byte array.
+   */
+  void setRange(int offset, int length) {
+    pos = offset;
+    limit = offset + length;
+  }
+
+  /** @return the current position in the input buffer. */
+  int position() {
+    return pos;
+  }
+
+  /**
+   * Parses the JSON string that starts at the given position in the input
+   * buffer. The position is moved to just after the closing quote.
+   */
+  String stringAt(int offset) throws IOException, SyntaxError {
+    pos = offset;
+    return parseString();
+  }
+
+  /**
+   * Parses the member name that starts at the given position in the input
+   * buffer, like {@link #stringAt(int)}.
+   */
+  String nameAt(int offset) throws IOException, SyntaxError {
+    pos = offset;
+    return parseName();
+  }
+
+  private JsonArray parseArray() throws IOException, SyntaxError {
+    accept(Literal.BEGIN_ARRAY);
+    JsonArray array = new JsonArray();
+    do {
+      skipWhitespace();
+      if (isNumberStart(peek())) {
+        // Numbers are added directly, so that they can be packed.
+        int length = scanNumber();
+        array.addLexeme(chars, 0, length, numberScratch);
+        skipWhitespace();
+        continue;
+      }
+      JsonValue value = parseValue();
+      if (value == null) {
+        if (!array.isEmpty() || peek() == Literal.VALUE_SEPARATOR) {
+          throw new SyntaxError("missing element in array");
+        }
+        break;
+      }
+      array.add(value.owned());
+      skipWhitespace();
+    } while (skip(Literal.VALUE_SEPARATOR));
+    accept(Literal.END_ARRAY);
+    return array;
+  }
+
+  private static boolean isNumberStart(int c) {
+    return (c >= '0' && c <= '9') || c == '-' || c == '+';
+  }
+
+  private JsonObject parseObject() throws IOException, SyntaxError {
+    accept(Literal.BEGIN_OBJECT);
+    JsonObject object = new JsonObject();
+    do {
+      skipWhitespace();
+      JsonMember member = parseMember();
+      if (member == null) {
+        int next = peek();
+        if (next != EOF // EOF is handled by caller.
+            && (next == Literal.VALUE_SEPARATOR || next != Literal.END_OBJECT)) {
+          throw new SyntaxError("missing member in object.");
+        }
+        break;
+      }
+      if (member != SKIPPED_MEMBER) {
+        member.value.owned();
+        object.add(member);
+      }
+      skipWhitespace();
+    } while (skip(Literal.VALUE_SEPARATOR));
+    accept(Literal.END_OBJECT);
+    return object;
+  }
+
+  /**
+   * Parses an object member.
+   *
+   * @return the member, {@link #SKIPPED_MEMBER} if the member was skipped,
+   * or {@code null} if there is no member at the current position.
+   */
+  private JsonMember parseMember() throws IOException, SyntaxError {
+    if (peek() == Literal.QUOTE_MARK) {
+      int length = scanString();
+      if (ignoredMembers != null && ignoredMembers.contains(chars, length)) {
+        skipWhitespace();
+        accept(Literal.NAME_SEPARATOR);
+        skipWhitespace();
+        if (!isValueStart(peek())) {
+          throw new SyntaxError("missing value for object member");
+        }
+        skipValue();
+        return SKIPPED_MEMBER;
+      }
+      String name = name(length);
+      skipWhitespace();
+      accept(Literal.NAME_SEPARATOR);
+      skipWhitespace();
+      JsonValue value = parseValue();
+      if (value == null) {
+        throw new SyntaxError("missing value for object member");
+      }
+      return new JsonMember(name, value);
+    }
+    return null;
+  }
+
+  private JsonValue parseValue() throws IOException, SyntaxError {
+    switch (peek()) {
+      case Literal.BEGIN_OBJECT:
+        return parseObject();
+      case Literal.BEGIN_ARRAY:
+        return parseArray();
+      case '0':
+      case '1':
+      case '2':
+      case '3':
+      case '4':
+      case '5':
+      case '6':
+      case '7':
+      case '8':
+      case '9':
+      case '-':
+      case '+':
+        return parseNumber();
+      case Literal.QUOTE_MARK:
+        return new JsonString(parseString());
+      case 't':
+        acceptLiteral(Literal.TRUE);
+        return Json.TRUE;
+      case 'f':
+        acceptLiteral(Literal.FALSE);
+        return Json.FALSE;
+      case 'n':
+        acceptLiteral(Literal.NULL);
+        return Json.NULL;
+      default:
+        return null; // Not a JSON value.
+    }
+  }
+
+  /**
+   * Parses the next value if it is selected, walks into it if it contains
+   * selected values, and otherwise skips it. The caller must check that
+   * the next input byte starts a JSON value.
+   *
+   * @param node the pointer tree node for the value, or {@code null}.
+   * @return {@code false} if parsing stopped because all pointers were resolved.
+   */
+  private boolean select(PointerSelection selection, PointerSelection.Node node)
+      throws IOException, SyntaxError {
+    if (node == null) {
+      skipValue();
+      return true;
+    }
+    if (node.isSelected()) {
+      selection.select(node, parseValue());
+      return !selection.isDone();
+    }
+    switch (peek()) {
+      case Literal.BEGIN_OBJECT:
+        if (!selectObject(selection, node)) {
+          return false;
+        }
+        break;
+      case Literal.BEGIN_ARRAY:
+        if (!selectArray(selection, node)) {
+          return false;
+        }
+        break;
+      default:
+        skipValue();
+    }
+    selection.finish(node);
+    return !selection.isDone();
+  }
+
+  private boolean selectObject(PointerSelection selection, PointerSelection.Node node)
+      throws IOException, SyntaxError {
+    accept(Literal.BEGIN_OBJECT);
+    do {
+      skipWhitespace();
+      int next = peek();
+      if (next != Literal.QUOTE_MARK) {
+        if (next != EOF && next != Literal.END_OBJECT) { // EOF is handled by accept().
+          throw new SyntaxError("missing member in object.");
+        }
+        break;
+      }
+      int length = scanString(); // The name is matched in the scratch buffer.
+      PointerSelection.Node child = node.member(chars, length);
+      skipWhitespace();
+      accept(Literal.NAME_SEPARATOR);
+      skipWhitespace();
+      if (!isValueStart(peek())) {
+        throw new SyntaxError("missing value for object member");
+      }
+      if (!select(selection, child)) {
+        return false;
+      }
+      skipWhitespace();
+    } while (skip(Literal.VALUE_SEPARATOR));
+    accept(Literal.END_OBJECT);
+    return true;
+  }
+
+  private boolean selectArray(PointerSelection selection, PointerSelection.Node node)
+      throws IOException, SyntaxError {
+    accept(Literal.BEGIN_ARRAY);
+    int index = 0;
+    do {
+      skipWhitespace();
+      if (!isValueStart(peek())) {
+        if (index > 0 || peek() == Literal.VALUE_SEPARATOR) {
+          throw new SyntaxError("missing element in array");
+        }
+        break;
+      }
+      if (!select(selection, node.element(index))) {
+        return false;
+      }
+      index += 1;
+      skipWhitespace();
+    } while (skip(Literal.VALUE_SEPARATOR));
+    accept(Literal.END_ARRAY);
+    return true;
+  }
+
+  /** Test if a byte can start a JSON value. */
+  private static boolean isValueStart(int c) {
+    switch (c) {
+      case Literal.BEGIN_OBJECT:
+      case Literal.BEGIN_ARRAY:
+      case Literal.QUOTE_MARK:
+      case 't':
+      case 'f':
+      case 'n':
+        return true;
+      default:
+        return isNumberStart(c);
+    }
+  }
+
+  /**
+   * Skips the next value without building it. For objects and arrays, only
+   * the balance of brackets and string quotes is checked. The caller must
+   * check that the next input byte starts a JSON value.
+   */
+  private void skipValue() throws IOException, SyntaxError {
+    switch (peek()) {
+      case Literal.BEGIN_OBJECT:
+      case Literal.BEGIN_ARRAY:
+        skipStructure();
+        break;
+      case Literal.QUOTE_MARK:
+        skipString();
+        break;
+      case 't':
+        acceptLiteral(Literal.TRUE);
+        break;
+      case 'f':
+        acceptLiteral(Literal.FALSE);
+        break;
+      case 'n':
+        acceptLiteral(Literal.NULL);
+        break;
+      default:
+        scanNumber();
+    }
+  }
+
+  /** Skips an object or array by counting brackets. */
+  private void skipStructure() throws IOException, SyntaxError {
+    char close = peek() == Literal.BEGIN_OBJECT ? Literal.END_OBJECT : Literal.END_ARRAY;
+    int depth = 0;
+    while (true) {
+      if (pos >= limit && !fill()) {
+        throw new SyntaxError(String.format("unexpected end of input (expected '%c')", close));
+      }
+      byte[] buf = this.buf;
+      ByteBuffer source = this.source;
+      int end = limit;
+      int p = pos;
+      while (p < end) {
+        int b = buf != null ? buf[p] : source.get(p);
+        if (b == Literal.QUOTE_MARK) {
+          pos = p;
+          skipString();
+          p = pos;
+          end = limit;
+          buf = this.buf;
+          source = this.source;
+          continue;
+        }
+        p += 1;
+        if (b == Literal.BEGIN_OBJECT || b == Literal.BEGIN_ARRAY) {
+          depth += 1;
+        } else if (b == Literal.END_OBJECT || b == Literal.END_ARRAY) {
+          depth -= 1;
+          if (depth == 0) {
+            pos = p;
+            return;
+          }
+        }
+      }
+      pos = p;
+    }
+  }
+
+  /** Skips a JSON string without decoding it. */
+  private void skipString() throws IOException, SyntaxError {
+    accept(Literal.QUOTE_MARK);
+    while (true) {
+      if (pos >= limit && !fill()) {
+        throw new SyntaxError("end of input while parsing JSON string (expected '\"')");
+      }
+      byte[] buf = this.buf;
+      ByteBuffer source = this.source;
+      int end = limit;
+      int p = pos;
+      while (p < end) {
+        int b = buf != null ? buf[p++] : source.get(p++);
+        if (b == Literal.QUOTE_MARK) {
+          pos = p;
+          return;
+        }
+        if (b == Literal.ESCAPE) {
+          if (p == end) {
+            pos = p;
+            if (pop() == EOF) {
+              throw new SyntaxError("end of input in JSON string escape sequence.");
+            }
+            p = pos;
+            end = limit;
+            buf = this.buf;
+            source = this.source;
+          } else {
+            p += 1;
+          }
+        }
+      }
+      pos = p;
+    }
+  }
+
+  private String parseString() throws IOException, SyntaxError {
+    int length = scanString();
+    return new String(chars, 0, length);
+  }
+
+  /**
+   * Parses a member name. The name is looked up in the symbol table, if
+   * there is one.
+   */
+  private String parseName() throws IOException, SyntaxError {
+    return name(scanString());
+  }
+
+  /** @return the member name in the scratch buffer. */
+  private String name(int length) {
+    return symbols != null ? symbols.lookup(chars, 0, length) : new String(chars, 0, length);
+  }
+
+  /**
+   * Decodes a JSON string into the scratch buffer.
+   *
+   * @return the number of decoded characters.
+   */
+  private int scanString() throws IOException, SyntaxError {
+    accept(Literal.QUOTE_MARK);
+    int length = 0;
+    while (true) {
+      if (pos >= limit && !fill()) {
+        throw new SyntaxError("end of input while parsing JSON string (expected '\"')");
+      }
+      if (length == chars.length) {
+        growChars(length + 1);
+      }
+      // Fast path: copy a run of ASCII characters.
+      char[] chars = this.chars;
+      byte[] buf = this.buf;
+      ByteBuffer source = this.source;
+      int end = Math.min(limit, pos + (chars.length - length));
+      int p = pos;
+      int b = 0;
+      while (p < end) {
+        b = buf != null ? buf[p] : source.get(p);
+        if (b == Literal.QUOTE_MARK || b == Literal.ESCAPE || b < 0) {
+          break;
+        }
+        chars[length++] = (char) b;
+        p += 1;
+      }
+      pos = p;
+      if (p == end) {
+        continue; // The input buffer or the string buffer is exhausted.
+      }
+      pos += 1;
+      if (b == Literal.QUOTE_MARK) {
+        return length;
+      } else if (b == Literal.ESCAPE) {
+        chars[length++] = unescapeStringChar();
+      } else {
+        length = decodeMultiByte(b & 0xFF, length);
+      }
+    }
+  }
+
+  /**
+   * Decode a multi-byte UTF-8 sequence into the string scratch buffer.
+   * Malformed sequences are replaced by the Unicode replacement character.
+   *
+   * @param lead the first byte of the sequence, already consumed.
+   * @param length current length of the decoded string.
+   * @return the new length of the decoded string.
+   */
+  private int decodeMultiByte(int lead, int length) throws IOException {
+    if (chars.length - length < 2) {
+      growChars(length + 2);
+    }
+    int cp;
+    int min;
+    int max;
+    int more;
+    if (lead >= 0xC2 && lead <= 0xDF) {
+      cp = lead & 0x1F;
+      more = 1;
+      min = 0x80;
+      max = 0xBF;
+    } else if (lead >= 0xE0 && lead <= 0xEF) {
+      cp = lead & 0x0F;
+      more = 2;
+      // Reject overlong encodings and surrogates.
+      min = lead == 0xE0 ? 0xA0 : 0x80;
+      max = lead == 0xED ? 0x9F : 0xBF;
+    } else if (lead >= 0xF0 && lead <= 0xF4) {
+      cp = lead & 0x07;
+      more = 3;
+      // Reject overlong encodings and code points above U+10FFFF.
+      min = lead == 0xF0 ? 0x90 : 0x80;
+      max = lead == 0xF4 ? 0x8F : 0xBF;
+    } else {
+      chars[length++] = REPLACEMENT;
+      return length;
+    }
+    for (int i = 0; i < more; ++i) {
+      int next = peek();
+      if (next < min || next > max) {
+        // Malformed sequence: the offending byte is not consumed.
+        chars[length++] = REPLACEMENT;
+        return length;
+      }
+      pos += 1;
+      cp = (cp << 6) | (next & 0x3F);
+      min = 0x80;
+      max = 0xBF;
+    }
+    if (cp >= Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+      chars[length++] = Character.highSurrogate(cp);
+      chars[length++] = Character.lowSurrogate(cp);
+    } else {
+      chars[length++] = (char) cp;
+    }
+    return length;
+  }
+
+  private void growChars(int minCapacity) {
+    int capacity = chars.length * 2;
+    if (capacity < minCapacity) {
+      capacity = minCapacity;
+    }
+    char[] copy = new char[capacity];
+    System.arraycopy(chars, 0, copy, 0, chars.length);
+    chars = copy;
+  }
+
+  private char unescapeStringChar() throws IOException, SyntaxError {
+    int next = pop();
+    switch (next) {
+      case Literal.QUOTE_MARK:
+        return Literal.QUOTE_MARK;
+      case Literal.ESCAPE:
+        return Literal.ESCAPE;
+      case '/':
+        return '/';
+      case 'b':
+        return '\b';
+      case 'f':
+        return '\f';
+      case 'n':
+        return '\n';
+      case 'r':
+        return '\r';
+      case 't':
+        return '\t';
+      case 'u':
+        int[] u = {hexDigit(), hexDigit(), hexDigit(), hexDigit()};
+        return (char) ((u[0] << 12) | (u[1] << 8) | (u[2] << 4) | u[3]);
+      case EOF:
+        throw new SyntaxError("end of input in JSON string escape sequence.");
+      default:
+        throw new SyntaxError(String.format(
+            "illegal escape sequence in JSON string: \\%c. "
+             + "Expected one of \\n, \\r, \\t, etc.", (char) next));
+    }
+  }
+
+  private int hexDigit() throws IOException, SyntaxError {
+    int next = pop();
+    int v1 = next - '0';
+    int v2 = next - 'A' + 0xA;
+    int v3 = next - 'a' + 0xA;
+    if (v1 >= 0 && v1 <= 9) {
+      return v1;
+    }
+    if (v2 >= 0xA && v2 <= 0xF) {
+      return v2;
+    }
+    if (v3 >= 0xA && v3 <= 0xF) {
+      return v3;
+    }
+    throw new SyntaxError(String.format(
+        "in JSON string: non-hexadecimal digit '%c' in Unicode escape sequence.",
+        (char) next));
+  }
+
+  private JsonValue parseNumber() throws IOException, SyntaxError {
+    int length = scanNumber();
+    return JsonNumber.fromLexeme(chars, 0, length, numberScratch);
+  }
+
+  /**
+   * Reads the characters of a JSON number into the scratch buffer.
+   *
+   * @return the number of characters read.
+   */
+  private int scanNumber() throws IOException, SyntaxError {
+    int length = 0;
+    while (true) {
+      int next = peek();
+      switch (next) {
+        case EOF:
+          throw new SyntaxError("end of input while parsing JSON number.");
+        case '0':
+        case '1':
+        case '2':
+        case '3':
+        case '4':
+        case '5':
+        case '6':
+        case '7':
+        case '8':
+        case '9':
+        case '-':
+        case '+':
+        case '.':
+        case 'e':
+        case 'E':
+          if (length == chars.length) {
+            growChars(length + 1);
+          }
+          chars[length++] = (char) next;
+          pos += 1;
+          break;
+        default:
+          return length;
+      }
+    }
+  }
+
+  private void skipWhitespace() throws IOException {
+    while (true) {
+      while (pos < limit) {
+        byte b = buf != null ? buf[pos] : source.get(pos);
+        if (b != 0x20 && b != 0x0A && b != 0x0D && b != 0x09) {
+          return;
+        }
+        pos += 1;
+      }
+      if (!fill()) {
+        return;
+      }
+    }
+  }
+
+  private void acceptLiteral(char[] literal) throws IOException, SyntaxError {
+    for (char c : literal) {
+      if (pop() != c) {
+        throw new SyntaxError("encountered invalid JSON literal");
+      }
+    }
+  }
+
+  private boolean skip(char c) throws IOException {
+    boolean skip = peek() == c;
+    if (skip) {
+      pos += 1;
+    }
+    return skip;
+  }
+
+  private void accept(char c) throws IOException, SyntaxError {
+    int next = pop();
+    if (next == EOF) {
+      throw new SyntaxError(String.format("unexpected end of input (expected '%c')", c));
+    }
+    if (next != c) {
+      throw new SyntaxError(
+          String.format("unexpected character (was '%c', expected '%c')", (char) next, c));
+    }
+  }
+
+  /**
+   * @return the next input byte, or -1 if the end of the input has been reached.
+   */
+  private int peek() throws IOException {
+    if (pos < limit || fill()) {
+      return (buf != null ? buf[pos] : source.get(pos)) & 0xFF;
+    }
+    return EOF;
+  }
+
+  /**
+   * Consume the next input byte.
+   *
+   * @return the consumed byte, or -1 if the end of the input has been reached.
+   */
+  private int pop() throws IOException {
+    if (pos < limit || fill()) {
+      byte b = buf != null ? buf[pos] : source.get(pos);
+      pos += 1;
+      return b & 0xFF;
+    }
+    return EOF;
+  }
+
+  /**
+   * Refill the input buffer. Should only be called when all bytes
+   * in the buffer have been consumed.
+   *
+   * @return {@code false} if the end of the input has been reached.
+   */
+  private boolean fill() throws IOException {
+    if (channel != null) {
+      if (!mapWindow()) {
+        return false;
+      }
+      pos = 0;
+      limit = source.limit();
+      return true;
+    }
+    if (stream != null) {
+      int n;
+      do {
+        n = stream.read(buf, 0, buf.length);
+      } while (n == 0);
+      if (n < 0) {
+        return false;
+      }
+      pos = 0;
+      limit = n;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Map the next window of the input file.
+   *
+   * @return {@code false} if the whole file has been mapped.
+   */
+  private boolean mapWindow() throws IOException {
+    if (channel == null) {
+      return false;
+    }
+    long size = channel.size();
+    if (fileOffset >= size) {
+      return false;
+    }
+    // The previous window is unmapped when it is garbage collected.
+    long length = Math.min(windowSize, size - fileOffset);
+    source = channel.map(FileChannel.MapMode.READ_ONLY, fileOffset, length);
+    fileOffset += length;
+    return true;
+  }
+
+  @Override public void close() throws IOException {
+    if (stream != null) {
+      stream.close();
+    }
+    if (channel != null) {
+      source = null;
+      channel.close();
+    }
+  }
+}
@@ -0,0 +1,115 @@
+/* Copyright (c) 2017, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.json;
+
+/**
+ * Bounded tables of the JSON strings and object members created by
+ * {@link JsonParser#parseInto(JsonValue)}. Strings and members are
+ * immutable, so the same instances can be used in every tree parsed into.
+ * When a table is full, new values are no longer cached.
+ */
+final class ValueCache {
+  /** Maximum number of values in each table. */
+  static final int CAPACITY = 1024;
+
+  /** Strings longer than this are not cached. */
+  static final int MAX_LENGTH = 64;
+
+  /** Open addressing hash table of strings. */
+  private final JsonString[] strings = new JsonString[CAPACITY * 2];
+
+  private int stringCount = 0;
+
+  /** Open addressing hash table of members, hashed on name and value identity. */
+  private final JsonMember[] members = new JsonMember[CAPACITY * 2];
+
+  private int memberCount = 0;
+
+  /**
+   * Find the cached string with the given characters, or add a new string.
+   *
+   * @return a JSON string equal to the given characters.
+   */
+  JsonString string(CharSequence chars) {
+    int length = chars.length();
+    if (length > MAX_LENGTH) {
+      return new JsonString(chars.toString());
+    }
+    int hash = NameHash.hash(chars);
+    int mask = strings.length - 1;
+    int slot = NameHash.spread(hash) & mask;
+    while (true) {
+      JsonString string = strings[slot];
+      if (string == null) {
+        string = new JsonString(chars.toString());
+        if (stringCount < CAPACITY) {
+          strings[slot] = string;
+          stringCount += 1;
+        }
+        return string;
+      }
+      if (string.value.hashCode() == hash && string.value.contentEquals(chars)) {
+        return string;
+      }
+      slot = (slot + 1) & mask;
+    }
+  }
+
+  /**
+   * Find a cached member with the given name and value, or create a new
+   * member. Only members with frozen values are cached, because other
+   * values can only be in one place in a tree.
+   *
+   * @return a member with the given name and value.
+   */
+  JsonMember member(String name, JsonValue value) {
+    if (!value.isFrozen()) {
+      return new JsonMember(name, value);
+    }
+    int hash = 31 * System.identityHashCode(name) + System.identityHashCode(value);
+    int mask = members.length - 1;
+    int slot = NameHash.spread(hash) & mask;
+    while (true) {
+      JsonMember member = members[slot];
+      if (member == null) {
+        member = new JsonMember(name, value);
+        if (memberCount < CAPACITY) {
+          members[slot] = member;
+          memberCount += 1;
+        }
+        return member;
+      }
+      if (member.name == name && member.value == value) {
+        return member;
+      }
+      slot = (slot + 1) & mask;
+    }
+  }
+}
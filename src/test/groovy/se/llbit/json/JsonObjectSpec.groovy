@@ -298,4 +298,80 @@ class JsonObjectSpec extends Specification {
     then:
     thrown NullPointerException
   }
+
+  def "Wide objects find the first member with a given name."() {
+    when:
+    JsonObject object = new JsonObject()
+    (0..<1000).each { object.add("m" + it, it) }
+    object.add("m500", -1)
+
+    then:
+    object.size() == 1001
+    (0..<1000).every { object.get("m" + it).asInt(-1) == it }
+    object.get("m1000").isUnknown()
+  }
+
+  def "The name index is kept up to date when members are added, changed, and removed."() {
+    when:
+    JsonObject object = new JsonObject()
+    (0..<100).each { object.add("m" + it, it) }
+    object.get("m0")
+    object.add("m5", -5)
+    object.add("x", 1)
+    object.set("m7", Json.of(70))
+    object.remove("m5")
+    object.members.add(0, new JsonMember("x", Json.of(2)))
+    object.members.set(10, new JsonMember("y", Json.of(3)))
+
+    then:
+    object.get("m5").asInt(0) == -5
+    object.get("m7").asInt(0) == 70
+    object.get("x").asInt(0) == 2
+    object.get("y").asInt(0) == 3
+    object.get("m9").asInt(0) == 9
+    object.get("m10").isUnknown()
+    object.size() == 102
+    object.get(0).name == "x"
+    object.get(101).name == "x"
+  }
+
+  def "Removing from a wide object removes only the first occurrence."() {
+    when:
+    JsonObject object = new JsonObject()
+    (0..<20).each { object.add("a", it) }
+    object.remove("a")
+    object.remove("a")
+    def iterator = object.iterator()
+    iterator.next()
+    iterator.remove()
+
+    then:
+    object.size() == 17
+    object.get("a").asInt(0) == 3
+  }
+
+  def "Wide objects can be read from several threads."() {
+    when:
+    def misses = new java.util.concurrent.atomic.AtomicInteger()
+    100.times {
+      JsonObject object = new JsonObject()
+      (0..<2000).each { object.add("m" + it, it) }
+      def start = new java.util.concurrent.CountDownLatch(1)
+      def threads = (0..<8).collect {
+        Thread.start {
+          start.await()
+          (0..<2000).each {
+            if (object.get("m" + it).asInt(-1) != it) {
+              misses.incrementAndGet()
+            }
+          }
+        }
+      }
+      start.countDown()
+      threads*.join()
+    }
+
+    then:
+    misses.get() == 0
+  }
 }
@@ -33,6 +33,7 @@ import org.junit.Test;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.StringReader;
 import java.nio.charset.StandardCharsets;
 
 import static org.junit.Assert.assertEquals;
@@ -158,4 +159,57 @@ public class TestLookaheadReader {
     assertFalse(lookaheadReader(0, "").ready());
     assertFalse(lookaheadReader(4, "").ready());
   }
+
+  /** Lookahead must be smaller than a custom buffer size. */
+  @Test(expected = IllegalArgumentException.class)
+  public void testTooLargeLookahead2() throws IOException {
+    new LookaheadReader(new StringReader(""), 16, 16);
+  }
+
+  /** Block read larger than the read buffer. */
+  @Test public void testBlockRead6() throws IOException {
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 100; ++i) {
+      text.append((char) ('a' + i % 26));
+    }
+    LookaheadReader reader = new LookaheadReader(new StringReader(text.toString()), 2, 8);
+    assertEquals('a', reader.pop());
+    char[] buf = new char[200];
+    assertEquals(99, reader.read(buf, 0, 200));
+    assertEquals(text.substring(1), new String(buf, 0, 99));
+  }
+
+  @Test public void testSkipWhitespace1() throws IOException {
+    LookaheadReader reader = lookaheadReader(2, " \t\r\n x ");
+    reader.skipWhitespace();
+    assertEquals('x', reader.pop());
+    reader.skipWhitespace();
+    assertEquals(-1, reader.peek());
+  }
+
+  /** Skipping whitespace across buffer refills. */
+  @Test public void testSkipWhitespace2() throws IOException {
+    LookaheadReader reader = new LookaheadReader(new StringReader("                 x"), 1, 4);
+    reader.skipWhitespace();
+    assertEquals('x', reader.pop());
+  }
+
+  @Test public void testScanUntil1() throws IOException {
+    LookaheadReader reader = lookaheadReader(2, "abc\\def\"");
+    StringBuilder out = new StringBuilder();
+    assertEquals('\\', reader.scanUntil('"', '\\', out));
+    assertEquals("abc", out.toString());
+    assertEquals('\\', reader.pop());
+    assertEquals('"', reader.scanUntil('"', '\\', out));
+    assertEquals("abcdef", out.toString());
+    assertEquals('"', reader.pop());
+  }
+
+  /** Scanning across buffer refills until the end of input. */
+  @Test public void testScanUntil2() throws IOException {
+    LookaheadReader reader = new LookaheadReader(new StringReader("0123456789abcdef"), 1, 4);
+    StringBuilder out = new StringBuilder();
+    assertEquals(-1, reader.scanUntil('"', '\\', out));
+    assertEquals("0123456789abcdef", out.toString());
+  }
 }
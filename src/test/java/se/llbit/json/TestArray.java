@@ -30,9 +30,14 @@
 package se.llbit.json;
 
 import org.junit.Test;
+import se.llbit.json.JsonParser.SyntaxError;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.Iterator;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotSame;
@@ -214,4 +219,138 @@ public class TestArray {
     JsonArray array = new JsonArray();
     array.remove(-2);
   }
+
+  private static JsonArray parse(String json) throws IOException, SyntaxError {
+    byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+    try (JsonParser parser = new JsonParser(new ByteArrayInputStream(bytes))) {
+      return parser.parse().array();
+    }
+  }
+
+  private static JsonArray parseUtf8(String json) throws IOException, SyntaxError {
+    try (Utf8JsonParser parser = new Utf8JsonParser(json.getBytes(StandardCharsets.UTF_8))) {
+      return parser.parse().array();
+    }
+  }
+
+  private static boolean isPacked(JsonArray array) {
+    return ((ElementList) array.elements).isPacked();
+  }
+
+  /** Parsed arrays of numbers are packed. */
+  @Test public void testParsePacked() throws IOException, SyntaxError {
+    String json = "[1, 2.5, -3, 9223372036854775807, 0.1]";
+    JsonArray array = parse(json);
+    assertTrue(isPacked(array));
+    assertEquals(parseUtf8(json), array);
+    assertTrue(isPacked(parseUtf8(json)));
+    assertEquals(5, array.size());
+    assertEquals("[1,2.5,-3,9223372036854775807,0.1]", array.toCompactString());
+    assertEquals(Long.MAX_VALUE, array.get(3).longValue(0));
+    assertArrayEquals(new double[] { 1, 2.5, -3, 9223372036854775807.0, 0.1 },
+        array.toDoubleArray(0), 0);
+  }
+
+  /** Numbers that need their text are not packed. */
+  @Test public void testParseNotPacked() throws IOException, SyntaxError {
+    JsonArray array = parse("[1, 1e3, 2]");
+    assertFalse(isPacked(array));
+    assertEquals("[1,1e3,2]", array.toCompactString());
+    array = parseUtf8("[1, 2, \"x\", 3]");
+    assertFalse(isPacked(array));
+    assertEquals("[1,2,\"x\",3]", array.toCompactString());
+  }
+
+  /** Nested arrays are packed independently. */
+  @Test public void testParseNested() throws IOException, SyntaxError {
+    JsonArray array = parseUtf8("[[1, 2], [3, true], []]");
+    assertFalse(isPacked(array));
+    assertTrue(isPacked(array.get(0).array()));
+    assertFalse(isPacked(array.get(1).array()));
+    assertTrue(isPacked(array.get(2).array()));
+    assertEquals("[[1,2],[3,true],[]]", array.toCompactString());
+  }
+
+  /** Adding a JsonValue unpacks the array. */
+  @Test public void testUnpack() {
+    JsonArray array = new JsonArray();
+    array.add(1);
+    array.add(0.5);
+    assertTrue(isPacked(array));
+    array.add(Json.of("x"));
+    assertFalse(isPacked(array));
+    array.add(2);
+    assertEquals("[1,0.5,\"x\",2]", array.toCompactString());
+    assertEquals(0.5, array.get(1).doubleValue(0), 0);
+    assertEquals(2, array.get(3).longValue(0));
+
+    array = new JsonArray();
+    array.add(1);
+    array.set(0, Json.of(7));
+    assertFalse(isPacked(array));
+    assertEquals(7, array.get(0).intValue(0));
+  }
+
+  /** A cleared array can be packed again. */
+  @Test public void testClear() {
+    JsonArray array = new JsonArray();
+    array.add(true);
+    array.elements.clear();
+    array.add(3);
+    assertTrue(isPacked(array));
+    assertEquals("[3]", array.toCompactString());
+  }
+
+  /** Removing packed elements keeps the element kinds. */
+  @Test public void testRemovePacked() {
+    JsonArray array = new JsonArray();
+    for (int i = 0; i < 200; ++i) {
+      if (i % 3 == 0) {
+        array.add(i + 0.5);
+      } else {
+        array.add(i);
+      }
+    }
+    assertEquals(Json.of(9.5), array.remove(9));
+    assertEquals(Json.of(10), array.remove(9));
+    assertTrue(isPacked(array));
+    assertEquals(198, array.size());
+    for (int i = 0; i < 198; ++i) {
+      int n = i < 9 ? i : i + 2;
+      JsonValue expected = n % 3 == 0 ? Json.of(n + 0.5) : Json.of(n);
+      assertEquals(expected, array.get(i));
+    }
+  }
+
+  @Test public void testToLongArray() throws IOException, SyntaxError {
+    assertArrayEquals(new long[] { 1, -2, Long.MIN_VALUE },
+        parse("[1, -2, -9223372036854775808]").toLongArray(0));
+    assertArrayEquals(new long[] { 1, 9, 2 }, parse("[1, null, 2]").toLongArray(9));
+    assertArrayEquals(new long[0], new JsonArray().toLongArray(0));
+  }
+
+  /** Decimal numbers can not be converted to long. */
+  @Test(expected = NumberFormatException.class)
+  public void testToLongArrayErr() throws IOException, SyntaxError {
+    parse("[1, 2.5]").toLongArray(0);
+  }
+
+  @Test public void testToDoubleArray() throws IOException, SyntaxError {
+    assertArrayEquals(new double[] { 1, 1000, 0.5 }, parse("[1, 1e3, 0.5]").toDoubleArray(0), 0);
+    assertArrayEquals(new double[] { 1, -1, 2 }, parse("[1, \"x\", 2]").toDoubleArray(-1), 0);
+  }
+
+  /** Copies of packed arrays are independent. */
+  @Test public void testCopyPacked() {
+    JsonArray array = new JsonArray();
+    array.add(1);
+    array.add(2.5);
+    JsonArray copy = array.copy();
+    assertTrue(isPacked(copy));
+    assertEquals(array, copy);
+    copy.add(3);
+    array.remove(0);
+    assertEquals("[2.5]", array.toCompactString());
+    assertEquals("[1,2.5,3]", copy.toCompactString());
+  }
 }
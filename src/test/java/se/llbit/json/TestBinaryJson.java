@@ -0,0 +1,303 @@
+/* Copyright (c) 2017, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.json;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import se.llbit.json.JsonParser.SyntaxError;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestBinaryJson {
+  @Rule public ExpectedException thrown = ExpectedException.none();
+
+  private static JsonValue parse(String json) throws IOException, SyntaxError {
+    try (JsonParser parser = new JsonParser(new StringReader(json))) {
+      return parser.parse();
+    }
+  }
+
+  /** Encodes and decodes a value, and checks that it is unchanged. */
+  private static JsonValue roundTrip(JsonValue value) throws IOException {
+    JsonValue decoded = BinaryJson.decode(BinaryJson.encode(value));
+    assertEquals(value.toCompactString(), decoded.toCompactString());
+    assertEquals(value, decoded);
+    return decoded;
+  }
+
+  private static void roundTrip(String json) throws IOException, SyntaxError {
+    JsonValue decoded = roundTrip(parse(json));
+    assertEquals(json, decoded.toCompactString());
+  }
+
+  @Test public void testLiterals() throws IOException {
+    assertSame(Json.NULL, roundTrip(Json.NULL));
+    assertSame(Json.TRUE, roundTrip(Json.TRUE));
+    assertSame(Json.FALSE, roundTrip(Json.FALSE));
+    assertSame(Json.UNKNOWN, roundTrip(Json.UNKNOWN));
+  }
+
+  @Test public void testStrings() throws IOException, SyntaxError {
+    roundTrip(Json.of(""));
+    roundTrip(Json.of("hello"));
+    roundTrip(Json.of("\u00e5\u00e4\u00f6 \u20ac \ud83d\ude00"));
+    // Unpaired surrogates are not valid UTF-8, but still round trip.
+    roundTrip(Json.of("\ud83d x \ude00"));
+    roundTrip(Json.of("\ud83d"));
+    roundTrip(Json.of("\u0000\n\t\"\\"));
+    char[] chars = new char[1000];
+    Arrays.fill(chars, 'x');
+    roundTrip(Json.of(new String(chars)));
+    roundTrip("[\"a b\",\"\\\"\"]");
+  }
+
+  @Test public void testNumbers() throws IOException, SyntaxError {
+    roundTrip(Json.of(0));
+    roundTrip(Json.of(-1));
+    roundTrip(Json.of(Long.MAX_VALUE));
+    roundTrip(Json.of(Long.MIN_VALUE));
+    roundTrip(Json.of(1.5));
+    roundTrip(Json.of(-0.0));
+    roundTrip(Json.of(1e300));
+    roundTrip(new JsonNumber("12.0e-1"));
+  }
+
+  /** Numbers keep their text if it is not the shortest form of the number. */
+  @Test public void testNumberText() throws IOException, SyntaxError {
+    roundTrip("[1.50,1e3,-0,100000000000000000000000,0.1,2.0,1E+2]");
+    roundTrip("{\"a\":1.50,\"b\":1e3,\"c\":-0,\"d\":100000000000000000000000}");
+  }
+
+  @Test public void testPackedArray() throws IOException, SyntaxError {
+    JsonArray array = new JsonArray();
+    array.add(1);
+    array.add(-200000);
+    array.add(2.5);
+    array.add(Long.MIN_VALUE);
+    assertTrue(array.isPacked());
+    JsonArray decoded = roundTrip(array).array();
+    assertTrue(decoded.isPacked());
+
+    decoded = roundTrip(parse("[1,2.5,-3]")).array();
+    assertTrue(decoded.isPacked());
+  }
+
+  @Test public void testMixedArray() throws IOException, SyntaxError {
+    roundTrip("[1,\"two\",3.5,null,true,false,[],{},[1,[2]]]");
+  }
+
+  @Test public void testObjects() throws IOException, SyntaxError {
+    roundTrip("{}");
+    roundTrip("{\"a\":1,\"b\":{\"a\":2,\"c\":[{\"b\":3}]}}");
+    roundTrip("[{\"id\":1,\"name\":\"x\"},{\"id\":2,\"name\":\"y\"},{\"name\":\"z\",\"id\":3}]");
+  }
+
+  /** Duplicate member names are kept in order. */
+  @Test public void testDuplicateNames() throws IOException, SyntaxError {
+    roundTrip("{\"a\":1,\"a\":2,\"\":3,\"\u00e5\":4}");
+  }
+
+  /** Each name is stored once, so repeated names do not make the encoding longer. */
+  @Test public void testNameTable() throws IOException, SyntaxError {
+    byte[] one = BinaryJson.encode(parse("[{\"some_long_name\":1}]"));
+    byte[] two = BinaryJson.encode(parse("[{\"some_long_name\":1},{\"some_long_name\":1}]"));
+    assertEquals(one.length + 5, two.length);
+  }
+
+  @Test public void testPersistentAndFrozen() throws IOException, SyntaxError {
+    JsonObject object = parse("{\"a\":[1,2],\"b\":{\"c\":\"d\"}}").object();
+    roundTrip(object.copy().freeze());
+    roundTrip(PersistentJsonObject.from(object).with("e", Json.of(1.5)));
+    roundTrip(PersistentJsonArray.from(object.get("a").array()).with(Json.of("x")));
+  }
+
+  @Test public void testSmallerThanText() throws IOException, SyntaxError {
+    String json = "[{\"id\":1234,\"name\":\"abc\",\"score\":0.5,\"ok\":true},"
+        + "{\"id\":1235,\"name\":\"def\",\"score\":0.75,\"ok\":false}]";
+    byte[] encoded = BinaryJson.encode(parse(json));
+    assertTrue(encoded.length < json.length() * 0.8);
+  }
+
+  @Test public void testEncodeToStream() throws IOException, SyntaxError {
+    JsonValue value = parse("{\"a\":[1,2,3]}");
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    BinaryJson.encode(value, out);
+    assertArrayEquals(BinaryJson.encode(value), out.toByteArray());
+  }
+
+  @Test public void testDecodeRange() throws IOException, SyntaxError {
+    byte[] encoded = BinaryJson.encode(parse("{\"a\":[1,2,3]}"));
+    byte[] padded = new byte[encoded.length + 4];
+    System.arraycopy(encoded, 0, padded, 2, encoded.length);
+    assertEquals("{\"a\":[1,2,3]}",
+        BinaryJson.decode(padded, 2, encoded.length).toCompactString());
+  }
+
+  @Test public void testUnsupportedValue() {
+    thrown.expect(IllegalArgumentException.class);
+    BinaryJson.encode(new JsonValue() {
+      @Override public String toCompactString() {
+        return "custom";
+      }
+
+      @Override public JsonValue copy() {
+        return this;
+      }
+
+      @Override public void prettyPrint(PrettyPrinter out) {
+        out.print(toCompactString());
+      }
+    });
+  }
+
+  @Test public void testNotBinaryJson() throws IOException {
+    thrown.expect(IOException.class);
+    thrown.expectMessage("not binary JSON");
+    BinaryJson.decode("{}".getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Test public void testInvalidTag() throws IOException {
+    thrown.expect(IOException.class);
+    thrown.expectMessage("invalid binary JSON tag 42");
+    BinaryJson.decode(new byte[] { 'J', 'B', 1, 0, 42 });
+  }
+
+  @Test public void testInvalidNameIndex() throws IOException {
+    thrown.expect(IOException.class);
+    thrown.expectMessage("invalid member name index 1");
+    BinaryJson.decode(new byte[] { 'J', 'B', 1, 1, 1, 'a', 8, 1, 1, 0 });
+  }
+
+  /** A count larger than the remaining input is rejected before allocating. */
+  @Test public void testInvalidCount() throws IOException {
+    thrown.expect(IOException.class);
+    thrown.expectMessage("unexpected end of binary JSON");
+    BinaryJson.decode(new byte[] { 'J', 'B', 1, 0, 9, -1, -1, -1, -1, 7 });
+  }
+
+  @Test public void testTrailingBytes() throws IOException, SyntaxError {
+    byte[] encoded = BinaryJson.encode(parse("[1]"));
+    thrown.expect(IOException.class);
+    thrown.expectMessage("garbage at end of binary JSON");
+    BinaryJson.decode(Arrays.copyOf(encoded, encoded.length + 1));
+  }
+
+  /** Every truncation of a valid document is detected. */
+  @Test public void testTruncated() throws IOException, SyntaxError {
+    byte[] encoded = BinaryJson.encode(
+        parse("{\"a\":[1,2.5,\"x\",1.50],\"b\":{\"c\":null,\"d\":\"\u00e5\"}}"));
+    for (int length = 0; length < encoded.length; ++length) {
+      try {
+        BinaryJson.decode(encoded, 0, length);
+        throw new AssertionError("decoded truncated document of length " + length);
+      } catch (IOException e) {
+        // Expected.
+      }
+    }
+  }
+
+  @Test public void testInvalidNumberText() throws IOException {
+    thrown.expect(IOException.class);
+    thrown.expectMessage("invalid number in binary JSON");
+    BinaryJson.decode(new byte[] { 'J', 'B', 1, 0, 7, 3, 'a', 'b', 'c' });
+  }
+
+  @Test public void testEmptyNumberTextInArray() throws IOException {
+    thrown.expect(IOException.class);
+    thrown.expectMessage("invalid number in binary JSON");
+    BinaryJson.decode(new byte[] { 'J', 'B', 1, 0, 9, 1, 7, 0 });
+  }
+
+  @Test public void testEncodeInvalidNumberText() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("Not a valid JSON number: .5");
+    BinaryJson.encode(new JsonNumber(".5"));
+  }
+
+  @Test public void testIsNumberLexeme() {
+    for (String number : new String[] { "0", "-0", "12", "1.50", "-0.5e+10", "1E3", "2e-0",
+        "01", "1.", "1e", "1e+", "+1", "--1", "-", "1.5.2" }) {
+      assertTrue(number, BinaryJson.isNumberLexeme(number.toCharArray(), number.length()));
+    }
+    for (String text : new String[] { "", ".5", "e1", "1x", "abc", "NaN", "Infinity", "1 2" }) {
+      assertFalse(text, BinaryJson.isNumberLexeme(text.toCharArray(), text.length()));
+    }
+  }
+
+  /** Numbers in the lenient syntax accepted by the parsers keep their text. */
+  @Test public void testLenientNumbers() throws IOException, SyntaxError {
+    for (String json : new String[] { "[+1]", "[01]", "[1.]", "[1e]", "[--1]", "[1,-]",
+        "{\"a\":-01.e+}", "[[1.5.2],\"x\",+0]" }) {
+      roundTrip(json);
+      JsonValue value = new Utf8JsonParser(json.getBytes(StandardCharsets.UTF_8)).parse();
+      assertEquals(json, roundTrip(value).toCompactString());
+    }
+  }
+
+  /** Deeply nested input is rejected instead of overflowing the stack. */
+  @Test public void testDeepNesting() throws IOException {
+    byte[] data = new byte[3 + 1 + 200000 * 2];
+    data[0] = 'J';
+    data[1] = 'B';
+    data[2] = 1;
+    for (int i = 4; i < data.length; i += 2) {
+      data[i] = 9;
+      data[i + 1] = 1;
+    }
+    thrown.expect(IOException.class);
+    thrown.expectMessage("binary JSON nested deeper than 1000 levels");
+    BinaryJson.decode(data);
+  }
+
+  @Test public void testMaxDepth() throws IOException {
+    JsonArray root = new JsonArray();
+    JsonArray array = root;
+    for (int i = 1; i < BinaryJson.MAX_DEPTH; ++i) {
+      JsonArray next = new JsonArray();
+      array.add(next);
+      array = next;
+    }
+    roundTrip(root);
+    array.add(new JsonArray());
+    thrown.expect(IllegalArgumentException.class);
+    BinaryJson.encode(root);
+  }
+}
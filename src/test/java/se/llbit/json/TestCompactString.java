@@ -31,6 +31,9 @@ package se.llbit.json;
 
 import org.junit.Test;
 
+import java.io.IOException;
+import java.io.StringWriter;
+
 import static org.junit.Assert.assertEquals;
 
 public class TestCompactString {
@@ -66,4 +69,59 @@ public class TestCompactString {
     array.add(Json.NULL);
     assertEquals("[null]", array.toCompactString());
   }
+
+  /** writeTo gives the same output as toCompactString. */
+  @Test public void testWriteTo() throws IOException {
+    JsonArray packed = new JsonArray();
+    packed.add(-7);
+    packed.add(0.25);
+    packed.add(Long.MIN_VALUE);
+    JsonArray array = new JsonArray();
+    array.add("x\ty");
+    array.add(Json.TRUE);
+    array.add(Json.FALSE);
+    array.add(Json.NULL);
+    array.add(Json.UNKNOWN);
+    array.add(new JsonNumber("1e3"));
+    array.add(packed);
+    JsonObject object = new JsonObject();
+    object.add("a\"", array);
+    object.add("b", new JsonObject());
+    object.add("c", new JsonArray());
+
+    StringWriter out = new StringWriter();
+    object.writeTo(out);
+    assertEquals("{\"a\\\"\":[\"x\\ty\",true,false,null,\"<unknown>\",1e3,[-7,0.25,"
+        + "-9223372036854775808]],\"b\":{},\"c\":[]}", out.toString());
+    assertEquals(out.toString(), object.toCompactString());
+
+    StringBuilder sb = new StringBuilder("prefix:");
+    object.writeTo(sb);
+    assertEquals("prefix:" + object.toCompactString(), sb.toString());
+
+    out = new StringWriter();
+    object.get(0).writeTo(out);
+    assertEquals(object.get(0).toCompactString(), out.toString());
+  }
+
+  /** Values that only implement toCompactString can be written with writeTo. */
+  @Test public void testWriteToDefault() throws IOException {
+    JsonValue custom = new JsonValue() {
+      @Override public String toCompactString() {
+        return "\"custom\"";
+      }
+
+      @Override public JsonValue copy() {
+        return this;
+      }
+
+      @Override public void prettyPrint(PrettyPrinter out) {
+      }
+    };
+    JsonArray array = new JsonArray();
+    array.add(custom);
+    StringWriter out = new StringWriter();
+    array.writeTo(out);
+    assertEquals("[\"custom\"]", out.toString());
+  }
 }
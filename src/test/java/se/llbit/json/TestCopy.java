@@ -30,10 +30,29 @@
 package se.llbit.json;
 
 import org.junit.Test;
+import se.llbit.json.JsonParser.SyntaxError;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 public class TestCopy {
+  private static final String RECORD =
+      "{\"id\":1,\"tags\":[\"a\",{\"k\":true}],\"pos\":{\"x\":1.5,\"y\":[1,2,3]}}";
+
+  private static JsonObject parse(String json) throws IOException, SyntaxError {
+    try (JsonParser parser = new JsonParser(
+        new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)))) {
+      return parser.parse().object();
+    }
+  }
+
   /** Modifications to a copy do not affect the original, and vice versa. */
   @Test public void testIndependentArrayCopy() {
     JsonArray original = new JsonArray();
@@ -67,4 +86,184 @@ public class TestCopy {
     original.remove(0);
     assertEquals(4, copy.size()); // Removing from the original did not affect the copy.
   }
+
+  /** Modifying nested values of a copy does not affect the original. */
+  @Test public void testNestedCopyModified() throws IOException, SyntaxError {
+    JsonObject original = parse(RECORD);
+    JsonObject copy = original.copy();
+
+    copy.get("pos").object().set("x", Json.of(2));
+    copy.get("pos").object().get("y").array().set(0, Json.of("z"));
+    copy.get("tags").array().get(1).object().remove("k");
+    copy.get("tags").array().add(Json.NULL);
+
+    assertEquals(RECORD, original.toCompactString());
+    assertEquals("{\"id\":1,\"tags\":[\"a\",{},null],\"pos\":{\"x\":2,\"y\":[\"z\",2,3]}}",
+        copy.toCompactString());
+  }
+
+  /** Modifying nested values of the original does not affect a copy. */
+  @Test public void testNestedOriginalModified() throws IOException, SyntaxError {
+    JsonObject original = parse(RECORD);
+    JsonObject copy = original.copy();
+
+    original.get("pos").object().add("z", 0);
+    original.get("pos").object().get("y").array().remove(2);
+    original.get("tags").array().get(1).object().set("k", Json.FALSE);
+
+    assertEquals(RECORD, copy.toCompactString());
+    assertEquals(
+        "{\"id\":1,\"tags\":[\"a\",{\"k\":false}],\"pos\":{\"x\":1.5,\"y\":[1,2],\"z\":0}}",
+        original.toCompactString());
+  }
+
+  @Test public void testPackedArrayCopy() {
+    JsonArray original = new JsonArray();
+    original.add(1);
+    original.add(2.5);
+    JsonArray copy = original.copy();
+
+    copy.add(3);
+    original.set(0, Json.of(7));
+
+    assertEquals("[7,2.5]", original.toCompactString());
+    assertEquals("[1,2.5,3]", copy.toCompactString());
+  }
+
+  /** Copies of copies are independent of each other. */
+  @Test public void testCopyOfCopy() throws IOException, SyntaxError {
+    JsonObject original = parse(RECORD);
+    JsonObject first = original.copy();
+    JsonObject second = first.copy();
+
+    first.get("pos").object().set("x", Json.of(1));
+    second.get("pos").object().set("x", Json.of(2));
+
+    assertEquals(Json.of(1.5), original.get("pos").object().get("x"));
+    assertEquals(Json.of(1), first.get("pos").object().get("x"));
+    assertEquals(Json.of(2), second.get("pos").object().get("x"));
+  }
+
+  /** Values reached through the member list and iterators are unshared. */
+  @Test public void testIteratorModification() throws IOException, SyntaxError {
+    JsonObject original = parse(RECORD);
+    JsonObject copy = original.copy();
+
+    for (JsonMember member : copy) {
+      if (member.value.isArray()) {
+        member.value.array().elements.clear();
+      }
+    }
+    Iterator<JsonValue> elements = copy.get("pos").object().get("y").array().iterator();
+    elements.next();
+    elements.remove();
+    copy.members.set(0, new JsonMember("id", Json.of(9)));
+
+    assertEquals(RECORD, original.toCompactString());
+    assertEquals("{\"id\":9,\"tags\":[],\"pos\":{\"x\":1.5,\"y\":[2,3]}}",
+        copy.toCompactString());
+  }
+
+  @Test public void testFreezeCopy() throws IOException, SyntaxError {
+    JsonObject original = parse(RECORD);
+    JsonObject copy = original.copy().freeze();
+
+    original.get("tags").array().add(Json.NULL);
+
+    assertTrue(copy.get("tags").isFrozen());
+    assertEquals(RECORD, copy.toCompactString());
+  }
+
+  /** Reading and writing a copy does not copy its nested values. */
+  @Test public void testReadCopyWithoutUnsharing() throws IOException, SyntaxError {
+    JsonObject original = parse(RECORD);
+    JsonObject copy = original.copy();
+
+    assertEquals(RECORD, copy.toCompactString());
+    assertEquals(original, copy);
+    assertEquals(original.hashCode(), copy.hashCode());
+    copy.toString();
+    for (int i = 0; i < copy.size(); ++i) {
+      assertSame(original.member(i), copy.member(i));
+    }
+
+    copy.get("pos");
+    assertNotSame(original.member(2).value, copy.member(2).value);
+    assertEquals(original, copy);
+  }
+
+  /** Modifying an object read from the original before the copy does not affect the copy. */
+  @Test public void testObjectReadBeforeCopy() throws IOException, SyntaxError {
+    JsonObject original = parse("{\"a\":{\"x\":1}}");
+    JsonObject child = original.get("a").object();
+    JsonObject copy = original.copy();
+
+    child.set("x", Json.of(2));
+
+    assertEquals("{\"a\":{\"x\":2}}", original.toCompactString());
+    assertEquals("{\"a\":{\"x\":1}}", copy.toCompactString());
+    assertSame(child, original.get("a"));
+  }
+
+  /** Modifying values read from an array before the copy does not affect the copy. */
+  @Test public void testArrayReadBeforeCopy() throws IOException, SyntaxError {
+    JsonArray original = parse("{\"v\":[[1,2],{\"k\":1}]}").get("v").array();
+    JsonArray first = original.get(0).array();
+    JsonObject second = original.get(1).object();
+    JsonArray copy = original.copy();
+
+    first.add(3);
+    second.set("k", Json.of(2));
+
+    assertEquals("[[1,2,3],{\"k\":2}]", original.toCompactString());
+    assertEquals("[[1,2],{\"k\":1}]", copy.toCompactString());
+    assertSame(first, original.get(0));
+    assertSame(second, original.get(1));
+  }
+
+  /** Values nested below a value read before the copy are also isolated. */
+  @Test public void testNestedReadBeforeCopy() throws IOException, SyntaxError {
+    JsonObject original = parse(RECORD);
+    JsonArray y = original.get("pos").object().get("y").array();
+    JsonObject k = original.get("tags").array().get(1).object();
+    JsonObject copy = original.copy();
+
+    y.set(0, Json.of(9));
+    k.remove("k");
+
+    assertEquals(RECORD, copy.toCompactString());
+    assertEquals("{\"id\":1,\"tags\":[\"a\",{}],\"pos\":{\"x\":1.5,\"y\":[9,2,3]}}",
+        original.toCompactString());
+  }
+
+  /** Modifying a value read from the copy does not affect the original. */
+  @Test public void testCopySideReference() throws IOException, SyntaxError {
+    JsonObject original = parse(RECORD);
+    JsonObject pos = original.get("pos").object();
+    JsonObject copy = original.copy();
+    JsonObject copyPos = copy.get("pos").object();
+    JsonObject copyOfCopy = copy.copy();
+
+    copyPos.set("x", Json.of(2));
+    copyPos.get("y").array().add(4);
+
+    assertNotSame(pos, copyPos);
+    assertEquals(RECORD, original.toCompactString());
+    assertEquals(RECORD, copyOfCopy.toCompactString());
+    assertEquals("{\"id\":1,\"tags\":[\"a\",{\"k\":true}],\"pos\":{\"x\":2,\"y\":[1,2,3,4]}}",
+        copy.toCompactString());
+  }
+
+  /** Values added to an object are isolated from copies made afterwards. */
+  @Test public void testAddedValueModified() {
+    JsonArray list = new JsonArray();
+    JsonObject original = new JsonObject();
+    original.add("list", list);
+    JsonObject copy = original.copy();
+
+    list.add(1);
+
+    assertEquals("{\"list\":[1]}", original.toCompactString());
+    assertEquals("{\"list\":[]}", copy.toCompactString());
+  }
 }
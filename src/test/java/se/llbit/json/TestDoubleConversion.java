@@ -0,0 +1,185 @@
+/* Copyright (c) 2017, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.json;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/** Checks DoubleParser and DoubleFormatter against the JDK on random inputs. */
+public class TestDoubleConversion {
+  private static final int COUNT = 500000;
+
+  /** True if Double.toString gives the shortest representation (Java 19+). */
+  private static final boolean SHORTEST_TO_STRING = javaVersion() >= 19;
+
+  private static int javaVersion() {
+    String version = System.getProperty("java.specification.version");
+    return Integer.parseInt(version.startsWith("1.") ? version.substring(2) : version);
+  }
+
+  private static double parse(String s) {
+    char[] chars = ("xx" + s + "yy").toCharArray();
+    long bits = DoubleParser.parse(chars, 2, s.length());
+    assertTrue("invalid: " + s, bits != DoubleParser.INVALID);
+    return Double.longBitsToDouble(bits);
+  }
+
+  private static void checkParse(String s) {
+    assertEquals(s, Double.doubleToLongBits(Double.parseDouble(s)),
+        Double.doubleToLongBits(parse(s)));
+  }
+
+  private static void checkFormat(double d) {
+    String s = DoubleFormatter.toString(d);
+    String expected = Double.toString(d);
+    if (SHORTEST_TO_STRING) {
+      assertEquals(expected, s);
+    } else {
+      assertTrue(s + " longer than " + expected, s.length() <= expected.length());
+    }
+    if (!Double.isNaN(d)) {
+      assertEquals(s, Double.doubleToLongBits(d), Double.doubleToLongBits(Double.parseDouble(s)));
+    }
+  }
+
+  private static double randomDouble(Random random, int i) {
+    switch (i % 4) {
+      case 0:
+        return Double.longBitsToDouble(random.nextLong());
+      case 1:
+        return random.nextDouble() * Math.pow(10, random.nextInt(40) - 20);
+      case 2:
+        return random.nextInt(100000) / Math.pow(10, random.nextInt(10));
+      default:
+        // Subnormal.
+        return Double.longBitsToDouble(random.nextLong() & 0x000FFFFFFFFFFFFFL);
+    }
+  }
+
+  @Test public void testParseSpecialCases() {
+    String[] cases = {
+        "0", "-0", "0.0", "1", "-1", "1.5", "0.1", "0.3", "123456789012345678",
+        "9007199254740993", "9007199254740992.5", "18446744073709551615",
+        "1e23", "8.98846567431158e307", "1.7976931348623157e308", "1.7976931348623159e308",
+        "2.2250738585072011e-308", "2.2250738585072012e-308", "4.9e-324", "2.4703282292062328e-324",
+        "1e400", "1e-400", "-1e400", "00012.5000", "1E+2", "1e-2", "0.000000000000000000000000001",
+        "7.2057594037927933e16", "1.00000000000000011102230246251565404236316680908203125",
+        "1.00000000000000011102230246251565404236316680908203124",
+        "1.00000000000000011102230246251565404236316680908203126",
+        "123456789012345678901234567890e-10",
+    };
+    for (String s : cases) {
+      checkParse(s);
+    }
+  }
+
+  @Test public void testParseInvalid() {
+    String[] cases = { "", "-", "+1", "1.", ".5", "1e", "1e+", "1-2", "1.2.3", "--1", "1e5.5" };
+    for (String s : cases) {
+      char[] chars = s.toCharArray();
+      assertEquals(s, DoubleParser.INVALID, DoubleParser.parse(chars, 0, chars.length));
+    }
+  }
+
+  /** Parse the JDK representation of random doubles. */
+  @Test public void testParseRandomDoubles() {
+    Random random = new Random(1);
+    for (int i = 0; i < COUNT; ++i) {
+      double d = randomDouble(random, i);
+      if (!Double.isNaN(d) && !Double.isInfinite(d)) {
+        checkParse(Double.toString(d));
+        checkParse(String.format("%.17e", d).replace(',', '.'));
+      }
+    }
+  }
+
+  /** Parse random decimal numbers with long significands and large exponents. */
+  @Test public void testParseRandomDecimals() {
+    Random random = new Random(2);
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < COUNT; ++i) {
+      sb.setLength(0);
+      if (random.nextBoolean()) {
+        sb.append('-');
+      }
+      int digits = 1 + random.nextInt(25);
+      for (int j = 0; j < digits; ++j) {
+        sb.append((char) ('0' + random.nextInt(10)));
+      }
+      if (random.nextBoolean()) {
+        sb.append('.');
+        digits = 1 + random.nextInt(25);
+        for (int j = 0; j < digits; ++j) {
+          sb.append((char) ('0' + random.nextInt(10)));
+        }
+      }
+      if (random.nextBoolean()) {
+        sb.append(random.nextBoolean() ? 'e' : 'E');
+        sb.append(random.nextInt(700) - 350);
+      }
+      checkParse(sb.toString());
+    }
+  }
+
+  @Test public void testFormatSpecialCases() {
+    double[] cases = {
+        0.0, -0.0, 1.0, -1.0, 0.1, 0.3, 100.0, 1e7, 9999999.0, 1e-3, 9.99e-4, 2.0e-3,
+        1e23, 5e-324, Double.MIN_NORMAL, Double.MAX_VALUE, 4.35, 0.001, 1e21, 1234567.125,
+        Math.PI, Math.E, 9007199254740992.0, Long.MAX_VALUE, Long.MIN_VALUE,
+        Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+    };
+    for (double d : cases) {
+      checkFormat(d);
+    }
+    assertEquals("0.002", DoubleFormatter.toString(2.0e-3));
+    assertEquals("1.0E23", DoubleFormatter.toString(1e23));
+    assertEquals("-0.0", DoubleFormatter.toString(-0.0));
+    assertEquals("4.9E-324", DoubleFormatter.toString(Double.MIN_VALUE));
+    assertEquals("1.7976931348623157E308", DoubleFormatter.toString(Double.MAX_VALUE));
+  }
+
+  @Test public void testFormatRandomDoubles() {
+    Random random = new Random(3);
+    for (int i = 0; i < COUNT; ++i) {
+      checkFormat(randomDouble(random, i));
+    }
+  }
+
+  /** Formatting into a buffer at an offset. */
+  @Test public void testFormatOffset() {
+    char[] chars = new char[2 + DoubleFormatter.MAX_CHARS];
+    int end = DoubleFormatter.format(-2.2250738585072014E-308, chars, 2);
+    assertEquals("-2.2250738585072014E-308", new String(chars, 2, end - 2));
+  }
+}
@@ -0,0 +1,210 @@
+/* Copyright (c) 2017, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.json;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestFreeze {
+  @Rule public ExpectedException thrown = ExpectedException.none();
+
+  private static JsonObject record() {
+    JsonObject object = new JsonObject();
+    object.add("id", 7);
+    object.add("name", "x");
+    JsonArray tags = new JsonArray();
+    tags.add("a");
+    tags.add(new JsonObject());
+    object.add("tags", tags);
+    JsonArray numbers = new JsonArray();
+    numbers.add(1);
+    numbers.add(2.5);
+    object.add("numbers", numbers);
+    return object;
+  }
+
+  @Test public void testFreezeIsDeep() {
+    JsonObject object = record();
+    assertFalse(object.isFrozen());
+    assertSame(object, object.freeze());
+    assertTrue(object.isFrozen());
+    assertTrue(object.get("tags").isFrozen());
+    assertTrue(object.get("tags").array().get(1).isFrozen());
+    assertTrue(object.get("numbers").isFrozen());
+    assertTrue(Json.of("x").isFrozen());
+  }
+
+  @Test public void testCopyReturnsFrozenValue() {
+    JsonObject object = record().freeze();
+    assertSame(object, object.copy());
+    JsonArray array = object.get("numbers").array();
+    assertSame(array, array.copy());
+  }
+
+  /** Frozen trees are still readable. */
+  @Test public void testFrozenContent() {
+    JsonObject object = record();
+    String json = object.toCompactString();
+    object.freeze();
+    assertEquals(json, object.toCompactString());
+    assertEquals(record(), object);
+    assertEquals(object, record());
+    assertEquals(2.5, object.get("numbers").array().get(1).doubleValue(0), 0);
+  }
+
+  @Test public void testObjectAdd() {
+    JsonObject object = record().freeze();
+    thrown.expect(UnsupportedOperationException.class);
+    object.add("x", 1);
+  }
+
+  @Test public void testObjectSet() {
+    JsonObject object = record().freeze();
+    thrown.expect(UnsupportedOperationException.class);
+    object.set("id", Json.of(1));
+  }
+
+  @Test public void testObjectRemove() {
+    JsonObject object = record().freeze();
+    thrown.expect(UnsupportedOperationException.class);
+    object.remove("id");
+  }
+
+  @Test public void testObjectMemberList() {
+    JsonObject object = record().freeze();
+    thrown.expect(UnsupportedOperationException.class);
+    object.members.clear();
+  }
+
+  @Test public void testObjectIteratorRemove() {
+    JsonObject object = record().freeze();
+    Iterator<JsonMember> iterator = object.iterator();
+    iterator.next();
+    thrown.expect(UnsupportedOperationException.class);
+    iterator.remove();
+  }
+
+  @Test public void testNestedArrayAdd() {
+    JsonObject object = record().freeze();
+    thrown.expect(UnsupportedOperationException.class);
+    object.get("tags").array().add(Json.NULL);
+  }
+
+  @Test public void testNestedObjectAdd() {
+    JsonObject object = record().freeze();
+    thrown.expect(UnsupportedOperationException.class);
+    object.get("tags").array().get(1).object().add("y", true);
+  }
+
+  @Test public void testPackedArrayAdd() {
+    JsonArray numbers = record().freeze().get("numbers").array();
+    thrown.expect(UnsupportedOperationException.class);
+    numbers.add(3);
+  }
+
+  @Test public void testPackedArraySet() {
+    JsonArray numbers = record().freeze().get("numbers").array();
+    thrown.expect(UnsupportedOperationException.class);
+    numbers.set(0, Json.of(3));
+  }
+
+  @Test public void testArrayRemove() {
+    JsonArray numbers = record().freeze().get("numbers").array();
+    thrown.expect(UnsupportedOperationException.class);
+    numbers.remove(0);
+  }
+
+  /** Copies of frozen values are not frozen, if made before freezing. */
+  @Test public void testCopyBeforeFreeze() {
+    JsonObject object = record();
+    JsonObject copy = object.copy();
+    object.freeze();
+    assertFalse(copy.isFrozen());
+    copy.add("x", 1);
+    assertEquals(4, object.size());
+  }
+
+  @Test public void testHashCode() {
+    JsonObject object = record();
+    int hash = object.hashCode();
+    object.freeze();
+    assertEquals(hash, object.hashCode());
+    assertEquals(hash, object.hashCode());
+    JsonArray array = new JsonArray();
+    array.add(1);
+    array.add(object);
+    int arrayHash = array.hashCode();
+    assertEquals(arrayHash, array.freeze().hashCode());
+    assertEquals(arrayHash, array.hashCode());
+  }
+
+  /** Frozen values with different hash codes are not equal. */
+  @Test public void testNotEqual() {
+    JsonObject a = record().freeze();
+    JsonObject b = record();
+    b.set("id", Json.of(8));
+    b.freeze();
+    a.hashCode();
+    b.hashCode();
+    assertNotEquals(a, b);
+    assertNotEquals(b, a);
+  }
+
+  @Test public void testHashSet() {
+    Set<JsonValue> set = new HashSet<>();
+    set.add(record().freeze());
+    assertTrue(set.contains(record()));
+    assertTrue(set.contains(record().freeze()));
+  }
+
+  /** Member lookups in frozen wide objects use the name index. */
+  @Test public void testWideObject() {
+    JsonObject object = new JsonObject();
+    for (int i = 0; i < 100; ++i) {
+      object.add("m" + i, i);
+    }
+    object.freeze();
+    for (int i = 0; i < 100; ++i) {
+      assertEquals(i, object.get("m" + i).intValue(-1));
+    }
+    assertTrue(object.get("m100").isUnknown());
+  }
+}
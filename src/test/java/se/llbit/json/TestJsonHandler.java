@@ -0,0 +1,189 @@
+/* Copyright (c) 2017, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.json;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import se.llbit.json.JsonParser.SyntaxError;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestJsonHandler {
+  @Rule public ExpectedException thrown = ExpectedException.none();
+
+  /** Records events, and stops after a given number of events. */
+  static class RecordingHandler implements JsonHandler {
+    final List<String> events = new ArrayList<>();
+    private final int limit;
+
+    RecordingHandler(int limit) {
+      this.limit = limit;
+    }
+
+    private boolean event(String event) {
+      events.add(event);
+      return events.size() < limit;
+    }
+
+    @Override public boolean startObject() {
+      return event("{");
+    }
+
+    @Override public boolean endObject() {
+      return event("}");
+    }
+
+    @Override public boolean startArray() {
+      return event("[");
+    }
+
+    @Override public boolean endArray() {
+      return event("]");
+    }
+
+    @Override public boolean name(String name) {
+      return event("name:" + name);
+    }
+
+    @Override public boolean stringValue(String value) {
+      return event("string:" + value);
+    }
+
+    @Override public boolean numberValue(String value) {
+      return event("number:" + value);
+    }
+
+    @Override public boolean booleanValue(boolean value) {
+      return event("boolean:" + value);
+    }
+
+    @Override public boolean nullValue() {
+      return event("null");
+    }
+  }
+
+  private static boolean parse(String json, JsonHandler handler)
+      throws IOException, SyntaxError {
+    InputStream input = new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    try (JsonParser parser = new JsonParser(input)) {
+      return parser.parse(handler);
+    }
+  }
+
+  private static List<String> events(String json) throws IOException, SyntaxError {
+    RecordingHandler handler = new RecordingHandler(Integer.MAX_VALUE);
+    assertTrue(parse(json, handler));
+    return handler.events;
+  }
+
+  @Test public void testEmpty() throws IOException, SyntaxError {
+    assertEquals(Arrays.asList("{", "}"), events(" { } "));
+    assertEquals(Arrays.asList("[", "]"), events("[]"));
+  }
+
+  @Test public void testEvents() throws IOException, SyntaxError {
+    assertEquals(Arrays.asList(
+        "{",
+        "name:a", "[", "number:1", "string:x\n", "boolean:true", "boolean:false", "null", "]",
+        "name:b", "{", "name:c", "number:-3.5e2", "}",
+        "}"),
+        events("{\"a\": [1, \"x\\n\", true, false, null], \"b\": {\"c\": -3.5e2}}"));
+  }
+
+  /** Ignored members are not reported to the handler. */
+  @Test public void testIgnoredMembers() throws IOException, SyntaxError {
+    RecordingHandler handler = new RecordingHandler(Integer.MAX_VALUE);
+    InputStream input = new ByteArrayInputStream(
+        "{\"a\":1,\"b\":[{\"c\":2}],\"d\":{\"b\":\"}\",\"e\":null}}"
+        .getBytes(StandardCharsets.UTF_8));
+    try (JsonParser parser = new JsonParser(input)) {
+      parser.setIgnoredMembers(Arrays.asList("b"));
+      assertTrue(parser.parse(handler));
+    }
+    assertEquals(Arrays.asList("{", "name:a", "number:1", "name:d", "{", "name:e", "null", "}", "}"),
+        handler.events);
+  }
+
+  /** The handler can stop parsing before the end of the input. */
+  @Test public void testStopEarly() throws IOException, SyntaxError {
+    RecordingHandler handler = new RecordingHandler(3);
+    // The input after the third event is not parsed, so the syntax error is not detected.
+    assertFalse(parse("[ 1, 2, 3, 4, ]", handler));
+    assertEquals(Arrays.asList("[", "number:1", "number:2"), handler.events);
+  }
+
+  /** Stopping at the last event. */
+  @Test public void testStopAtEnd() throws IOException, SyntaxError {
+    RecordingHandler handler = new RecordingHandler(2);
+    assertFalse(parse("[] garbage", handler));
+    assertEquals(Arrays.asList("[", "]"), handler.events);
+  }
+
+  @Test public void testNotObjectOrArray() throws IOException, SyntaxError {
+    thrown.expect(SyntaxError.class);
+    thrown.expectMessage("Syntax Error: expected JSON object or array");
+    events("\"x\"");
+  }
+
+  @Test public void testTrailingGarbage() throws IOException, SyntaxError {
+    thrown.expect(SyntaxError.class);
+    thrown.expectMessage("Syntax Error: garbage at end of input (unexpected 'x')");
+    events("[ ] x");
+  }
+
+  @Test public void testMissingArrayElement() throws IOException, SyntaxError {
+    thrown.expect(SyntaxError.class);
+    thrown.expectMessage("Syntax Error: missing element in array");
+    events("[ 1, ]");
+  }
+
+  @Test public void testMissingMember() throws IOException, SyntaxError {
+    thrown.expect(SyntaxError.class);
+    thrown.expectMessage("Syntax Error: missing member in object.");
+    events("{ , }");
+  }
+
+  @Test public void testMissingValue() throws IOException, SyntaxError {
+    thrown.expect(SyntaxError.class);
+    thrown.expectMessage("Syntax Error: missing value for object member");
+    events("{ \"a\": }");
+  }
+}
@@ -0,0 +1,193 @@
+/* Copyright (c) 2017, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.json;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import se.llbit.json.JsonParser.SyntaxError;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestJsonLinesParser {
+  @Rule public ExpectedException thrown = ExpectedException.none();
+
+  @Rule public TemporaryFolder tmp = new TemporaryFolder();
+
+  private static ForkJoinPool pool;
+
+  @BeforeClass public static void startPool() {
+    pool = new ForkJoinPool(4);
+  }
+
+  @AfterClass public static void stopPool() {
+    pool.shutdown();
+  }
+
+  private Path write(String text) throws IOException {
+    Path file = tmp.newFile().toPath();
+    Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+    return file;
+  }
+
+  private static List<String> compact(List<JsonValue> values) {
+    List<String> result = new ArrayList<>();
+    for (JsonValue value : values) {
+      result.add(value.toCompactString());
+    }
+    return result;
+  }
+
+  private static String records(int count) {
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < count; ++i) {
+      text.append("{\"id\":").append(i).append(",\"name\":\"record å").append(i)
+          .append("\",\"tags\":[").append(i % 7).append(",1.5,true]}\n");
+    }
+    return text.toString();
+  }
+
+  private static List<String> expected(int count) {
+    List<String> result = new ArrayList<>();
+    for (int i = 0; i < count; ++i) {
+      result.add("{\"id\":" + i + ",\"name\":\"record å" + i + "\",\"tags\":["
+          + (i % 7) + ",1.5,true]}");
+    }
+    return result;
+  }
+
+  @Test public void testOrdered() throws IOException, SyntaxError {
+    Path file = write(records(500));
+    for (int chunkSize : new int[] { 1, 7, 64, 1000, JsonLinesParser.CHUNK_SIZE }) {
+      JsonLinesParser parser = new JsonLinesParser(pool, chunkSize);
+      assertEquals(expected(500), compact(parser.parse(file)));
+    }
+  }
+
+  @Test public void testUnordered() throws IOException, SyntaxError {
+    Path file = write(records(500));
+    final List<JsonValue> values = Collections.synchronizedList(new ArrayList<JsonValue>());
+    new JsonLinesParser(pool, 100).parseUnordered(file, new JsonLinesParser.RecordHandler() {
+      @Override public void record(JsonValue record) {
+        values.add(record);
+      }
+    });
+    List<String> actual = compact(values);
+    Collections.sort(actual);
+    List<String> expected = expected(500);
+    Collections.sort(expected);
+    assertEquals(expected, actual);
+  }
+
+  @Test public void testSymbolTable() throws IOException, SyntaxError {
+    Path file = write(records(100));
+    JsonLinesParser parser = new JsonLinesParser(pool, 50);
+    parser.setSymbolTable(new SymbolTable());
+    assertEquals(expected(100), compact(parser.parse(file)));
+  }
+
+  @Test public void testBlankLines() throws IOException, SyntaxError {
+    Path file = write("\n\n{\"a\":1}\r\n\n  \n[2]\n\n[]");
+    assertEquals(Arrays.asList("{\"a\":1}", "[2]", "[]"),
+        compact(new JsonLinesParser(pool, 3).parse(file)));
+  }
+
+  @Test public void testEmptyFile() throws IOException, SyntaxError {
+    assertTrue(new JsonLinesParser(pool).parse(write("")).isEmpty());
+    assertTrue(new JsonLinesParser(pool, 1).parse(write("\n \n")).isEmpty());
+  }
+
+  /** A record longer than the chunk size is parsed by a single task. */
+  @Test public void testLongLine() throws IOException, SyntaxError {
+    StringBuilder array = new StringBuilder("[");
+    for (int i = 0; i < 10000; ++i) {
+      array.append(i > 0 ? "," : "").append(i);
+    }
+    array.append("]");
+    Path file = write("[0]\n" + array + "\n[1]\n");
+    List<JsonValue> values = new JsonLinesParser(pool, 16).parse(file);
+    assertEquals(3, values.size());
+    assertEquals(10000, values.get(1).array().size());
+    assertEquals("[1]", values.get(2).toCompactString());
+  }
+
+  @Test public void testSyntaxErrorOffset() throws IOException, SyntaxError {
+    Path file = write(records(50) + "{\"a\":}\n" + records(50));
+    thrown.expect(SyntaxError.class);
+    int offset = records(50).getBytes(StandardCharsets.UTF_8).length + 5;
+    thrown.expectMessage("missing value for object member (at byte offset " + offset + ")");
+    new JsonLinesParser(pool, 64).parse(file);
+  }
+
+  /** A value that spans lines is rejected, whatever the chunk size. */
+  @Test public void testMultiLineValue() throws IOException, SyntaxError {
+    Path file = write("[1]\n{\"a\":\n1}\n[2]\n");
+    for (int chunkSize : new int[] { 1, 5, JsonLinesParser.CHUNK_SIZE }) {
+      try {
+        new JsonLinesParser(pool, chunkSize).parse(file);
+        fail("expected syntax error with chunk size " + chunkSize);
+      } catch (SyntaxError e) {
+        assertTrue(e.getMessage(), e.getMessage().contains("(at byte offset 9)"));
+      }
+    }
+  }
+
+  @Test public void testMultiLineValueUnordered() throws IOException, SyntaxError {
+    Path file = write("[1]\n[\n]\n");
+    thrown.expect(SyntaxError.class);
+    thrown.expectMessage("(at byte offset 5)");
+    new JsonLinesParser(pool).parseUnordered(file, new JsonLinesParser.RecordHandler() {
+      @Override public void record(JsonValue record) {
+      }
+    });
+  }
+
+  @Test public void testTwoValuesOnLine() throws IOException, SyntaxError {
+    Path file = write("[1]\n[2] {\"a\":3}\n");
+    thrown.expect(SyntaxError.class);
+    thrown.expectMessage("more than one JSON value on a line (at byte offset 8)");
+    new JsonLinesParser(pool).parse(file);
+  }
+}
@@ -30,8 +30,14 @@
 package se.llbit.json;
 
 import org.junit.Test;
+import se.llbit.json.JsonParser.SyntaxError;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
 
 public class TestJsonNumber {
   @Test public void testInt1() {
@@ -113,4 +119,79 @@ public class TestJsonNumber {
     assertEquals(Double.NaN, num.doubleValue(0), 0);
     assertEquals(Double.NaN, num.asDouble(0), 0);
   }
+
+  private static JsonArray parse(String json) throws IOException, SyntaxError {
+    try (Utf8JsonParser parser = new Utf8JsonParser(json.getBytes(StandardCharsets.UTF_8))) {
+      return parser.parse().array();
+    }
+  }
+
+  @Test public void testSmallIntCache() {
+    assertSame(JsonNumber.valueOf(-128), JsonNumber.valueOf(-128));
+    assertSame(JsonNumber.valueOf(1023), Json.of(1023));
+    assertEquals(JsonNumber.valueOf(1024), JsonNumber.valueOf(1024));
+  }
+
+  /** Parsed small integers use the shared instances. */
+  @Test public void testParsedSmallInt() throws IOException, SyntaxError {
+    JsonArray array = parse("[ 0, 17, -3, 100000 ]");
+    assertSame(Json.of(0), array.get(0));
+    assertSame(Json.of(17), array.get(1));
+    assertSame(Json.of(-3), array.get(2));
+    assertEquals(100000, array.get(3).intValue(0));
+  }
+
+  @Test public void testParsedLong() throws IOException, SyntaxError {
+    JsonArray array = parse("[ 9223372036854775807, -9223372036854775808 ]");
+    assertEquals(Long.MAX_VALUE, array.get(0).longValue(0));
+    assertEquals(Long.MIN_VALUE, array.get(1).longValue(0));
+    assertEquals("9223372036854775807", array.get(0).toCompactString());
+    assertEquals("-9223372036854775808", array.get(1).toCompactString());
+    assertEquals(Json.of(Long.MIN_VALUE), array.get(1));
+  }
+
+  /** Numbers that are not in canonical integer form are printed as parsed. */
+  @Test public void testLexemeRoundTrip() throws IOException, SyntaxError {
+    String json = "[-0,1.50,1e3,-2.5E-3,007,+1,9223372036854775808,123456789012345678901234567890]";
+    assertEquals(json, parse(json).toCompactString());
+  }
+
+  @Test public void testParsedDouble() throws IOException, SyntaxError {
+    JsonArray array = parse("[ 1.50, 1e3, -2.5E-3, 9223372036854775808 ]");
+    assertEquals(1.5, array.get(0).doubleValue(0), 0);
+    assertEquals(1000, array.get(1).doubleValue(0), 0);
+    assertEquals(-0.0025, array.get(2).doubleValue(0), 0);
+    assertEquals(9223372036854775808.0, array.get(3).doubleValue(0), 0);
+    assertEquals(1.5f, array.get(0).floatValue(0), 0);
+  }
+
+  @Test(expected = NumberFormatException.class)
+  public void testIntValueOfDecimal() throws IOException, SyntaxError {
+    parse("[ 1.5 ]").get(0).intValue(0);
+  }
+
+  @Test(expected = NumberFormatException.class)
+  public void testIntValueOverflow() {
+    new JsonNumber(1L << 40).intValue(0);
+  }
+
+  /** Numbers with equal text are equal and have equal hash codes. */
+  @Test public void testEqualText() throws IOException, SyntaxError {
+    long[] values = { 0, 1, -1, 9, 10, -10, 1234567, Long.MAX_VALUE, Long.MIN_VALUE };
+    for (long value : values) {
+      JsonNumber number = new JsonNumber(value);
+      JsonNumber text = new JsonNumber(Long.toString(value));
+      assertEquals(text, number);
+      assertEquals(number, text);
+      assertEquals(text.hashCode(), number.hashCode());
+      assertEquals(Long.toString(value).hashCode(), number.hashCode());
+    }
+    assertEquals(new JsonNumber("2.5"), parse("[2.5]").get(0));
+    assertEquals(new JsonNumber(2.5), parse("[2.5]").get(0));
+    assertEquals(new JsonNumber(2.5).hashCode(), parse("[2.5]").get(0).hashCode());
+    assertNotEquals(new JsonNumber(2.50), parse("[2.50]").get(0));
+    assertNotEquals(new JsonNumber(1), new JsonNumber(1.0));
+    assertNotEquals(new JsonNumber(0.0), new JsonNumber(-0.0));
+    assertEquals(new JsonNumber(Double.NaN), new JsonNumber(Double.NaN));
+  }
 }
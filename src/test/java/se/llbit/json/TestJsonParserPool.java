@@ -0,0 +1,131 @@
+/* Copyright (c) 2017, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.json;
+
+import org.junit.Test;
+import se.llbit.json.JsonParser.SyntaxError;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class TestJsonParserPool {
+  private static byte[] bytes(String json) {
+    return json.getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Test public void testParse() throws IOException, SyntaxError {
+    JsonParserPool pool = new JsonParserPool();
+    assertEquals("{\"a\":1}", pool.parse(bytes("{\"a\":1}")).toCompactString());
+    assertEquals("[2]", pool.parse(new ByteArrayInputStream(bytes(" [2] "))).toCompactString());
+    assertEquals("[3]", pool.parser(new StringReader("[3]")).parse().toCompactString());
+  }
+
+  /** The pooled parser does not keep the input after parsing it. */
+  @Test public void testInputReleased() throws IOException, SyntaxError {
+    JsonParserPool pool = new JsonParserPool();
+    byte[] input = new byte[1 << 20];
+    Arrays.fill(input, (byte) ' ');
+    input[0] = '[';
+    input[1] = ']';
+    ByteArrayInputStream in = new ByteArrayInputStream(input);
+    WeakReference<byte[]> array = new WeakReference<>(input);
+    WeakReference<ByteArrayInputStream> stream = new WeakReference<>(in);
+    pool.parse(input);
+    pool.parse(in);
+    input = null;
+    in = null;
+    for (int i = 0; i < 10 && array.get() != null; ++i) {
+      System.gc();
+    }
+    assertNull(array.get());
+    assertNull(stream.get());
+  }
+
+  @Test public void testSameParserInThread() {
+    JsonParserPool pool = new JsonParserPool();
+    JsonParser first = pool.parser(new ByteArrayInputStream(bytes("[]")));
+    assertSame(first, pool.parser(new StringReader("[]")));
+  }
+
+  @Test public void testParserPerThread() throws InterruptedException {
+    final JsonParserPool pool = new JsonParserPool();
+    final AtomicReference<JsonParser> other = new AtomicReference<>();
+    Thread thread = new Thread(new Runnable() {
+      @Override public void run() {
+        other.set(pool.parser(new StringReader("[]")));
+      }
+    });
+    thread.start();
+    thread.join();
+    assertNotSame(other.get(), pool.parser(new StringReader("[]")));
+  }
+
+  @Test public void testSettings() throws IOException, SyntaxError, InterruptedException {
+    SymbolTable symbols = new SymbolTable();
+    final JsonParserPool pool = new JsonParserPool(symbols, Arrays.asList("skip"));
+    final AtomicReference<JsonValue> other = new AtomicReference<>();
+    Thread thread = new Thread(new Runnable() {
+      @Override public void run() {
+        try {
+          other.set(pool.parse(bytes("{\"name\":2,\"skip\":[]}")));
+        } catch (IOException | SyntaxError e) {
+          throw new RuntimeException(e);
+        }
+      }
+    });
+    thread.start();
+    thread.join();
+    JsonObject object = pool.parse(bytes("{\"name\":1,\"skip\":{}}")).object();
+    assertEquals("{\"name\":1}", object.toCompactString());
+    assertEquals("{\"name\":2}", other.get().toCompactString());
+    // Member names are shared through the symbol table.
+    assertSame(object.get(0).name, other.get().object().get(0).name);
+  }
+
+  @Test public void testParseAfterSyntaxError() throws IOException, SyntaxError {
+    JsonParserPool pool = new JsonParserPool();
+    try {
+      pool.parse(bytes("{\"a\""));
+    } catch (SyntaxError e) {
+      // Expected.
+    }
+    assertEquals("[1]", pool.parse(bytes("[1]")).toCompactString());
+  }
+}
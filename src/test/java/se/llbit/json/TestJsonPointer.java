@@ -0,0 +1,222 @@
+/* Copyright (c) 2017, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.json;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import se.llbit.json.JsonParser.SyntaxError;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class TestJsonPointer {
+  @Rule public ExpectedException thrown = ExpectedException.none();
+
+  private static final String DOCUMENT = "{\"a\":{\"b\":[10,\"x\",{\"c\":true}]},"
+      + "\"a/b\":1,\"m~n\":2,\"\":3,\"s\":\"{[\\\"]}\",\"a\":{\"b\":\"duplicate\"}}";
+
+  private static List<JsonPointer> pointers(String... pointers) {
+    List<JsonPointer> result = new ArrayList<>();
+    for (String pointer : pointers) {
+      result.add(new JsonPointer(pointer));
+    }
+    return result;
+  }
+
+  private static List<String> compact(List<JsonValue> values) {
+    List<String> result = new ArrayList<>();
+    for (JsonValue value : values) {
+      result.add(value == Json.UNKNOWN ? "unknown" : value.toCompactString());
+    }
+    return result;
+  }
+
+  private static JsonParser parser(String json) {
+    return new JsonParser(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  /** Selects the values with both parsers, and checks that the results are equal. */
+  private static List<String> select(String json, List<JsonPointer> pointers)
+      throws IOException, SyntaxError {
+    List<String> values = compact(parser(json).parse(pointers));
+    byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+    assertEquals(values, compact(new Utf8JsonParser(bytes).parse(pointers)));
+    return values;
+  }
+
+  @Test public void testTokens() {
+    JsonPointer pointer = new JsonPointer("/a~1b/m~0n//0");
+    assertEquals(4, pointer.size());
+    assertEquals("a/b", pointer.token(0));
+    assertEquals("m~n", pointer.token(1));
+    assertEquals("", pointer.token(2));
+    assertEquals("0", pointer.token(3));
+    assertEquals("/a~1b/m~0n//0", pointer.toString());
+    assertEquals(0, new JsonPointer("").size());
+    assertEquals(1, new JsonPointer("/").size());
+  }
+
+  @Test public void testEquals() {
+    assertEquals(new JsonPointer("/a/0"), new JsonPointer("/a/0"));
+    assertEquals(new JsonPointer("/a/0").hashCode(), new JsonPointer("/a/0").hashCode());
+  }
+
+  @Test public void testMissingSlash() {
+    thrown.expect(IllegalArgumentException.class);
+    new JsonPointer("a/b");
+  }
+
+  @Test public void testInvalidEscape() {
+    thrown.expect(IllegalArgumentException.class);
+    new JsonPointer("/a~2");
+  }
+
+  @Test public void testGet() throws IOException, SyntaxError {
+    JsonValue document = parser(DOCUMENT).parse();
+    assertEquals("10", new JsonPointer("/a/b/0").get(document).toCompactString());
+    assertEquals("true", new JsonPointer("/a/b/2/c").get(document).toCompactString());
+    assertEquals("1", new JsonPointer("/a~1b").get(document).toCompactString());
+    assertEquals("2", new JsonPointer("/m~0n").get(document).toCompactString());
+    assertEquals("3", new JsonPointer("/").get(document).toCompactString());
+    assertSame(document, new JsonPointer("").get(document));
+    assertSame(Json.UNKNOWN, new JsonPointer("/a/b/3").get(document));
+    assertSame(Json.UNKNOWN, new JsonPointer("/a/b/-").get(document));
+    assertSame(Json.UNKNOWN, new JsonPointer("/a/b/01").get(document));
+    assertSame(Json.UNKNOWN, new JsonPointer("/a/b/0/x").get(document));
+    assertSame(Json.UNKNOWN, new JsonPointer("/x").get(document));
+  }
+
+  @Test public void testSelect() throws IOException, SyntaxError {
+    assertEquals(Arrays.asList("10", "true", "1", "2", "3", "\"{[\\\"]}\"", "unknown", "unknown"),
+        select(DOCUMENT, pointers("/a/b/0", "/a/b/2/c", "/a~1b", "/m~0n", "/", "/s", "/a/b/3",
+            "/a/b/1/x")));
+  }
+
+  /** Overlapping pointers share the parsed value. */
+  @Test public void testSelectNested() throws IOException, SyntaxError {
+    assertEquals(Arrays.asList("[10,\"x\",{\"c\":true}]", "{\"c\":true}", "true"),
+        select(DOCUMENT, pointers("/a/b", "/a/b/2", "/a/b/2/c")));
+  }
+
+  /** The first of several members with the same name is used. */
+  @Test public void testSelectDuplicate() throws IOException, SyntaxError {
+    assertEquals(Arrays.asList("\"x\"", "unknown"),
+        select(DOCUMENT, pointers("/a/b/1", "/a/c")));
+  }
+
+  @Test public void testSelectRoot() throws IOException, SyntaxError {
+    assertEquals(Arrays.asList("[1,{\"a\":2}]", "2"), select("[1,{\"a\":2}]", pointers("", "/1/a")));
+  }
+
+  @Test public void testSelectNone() throws IOException, SyntaxError {
+    assertEquals(Arrays.<String>asList(), select(DOCUMENT, pointers()));
+  }
+
+  /** Parsing stops when all pointers are resolved. */
+  @Test public void testStopEarly() throws IOException, SyntaxError {
+    assertEquals(Arrays.asList("1"), select("{\"a\":1, \"b\": [ invalid", pointers("/a")));
+    assertEquals(Arrays.asList("unknown"),
+        select("{\"a\":{\"x\":1}, \"b\": [ invalid", pointers("/a/y")));
+  }
+
+  /** Skipped values are only checked for balanced brackets. */
+  @Test public void testUnbalanced() throws IOException, SyntaxError {
+    thrown.expect(SyntaxError.class);
+    thrown.expectMessage("Syntax Error: unexpected end of input (expected '}')");
+    parser("{\"a\":[[1, \"]\"], \"b\":1}").parse(pointers("/b"));
+  }
+
+  @Test public void testUnbalancedUtf8() throws IOException, SyntaxError {
+    thrown.expect(SyntaxError.class);
+    thrown.expectMessage("Syntax Error: unexpected end of input (expected '}')");
+    new Utf8JsonParser("{\"a\":[[1, \"]\"], \"b\":1}".getBytes(StandardCharsets.UTF_8))
+        .parse(pointers("/b"));
+  }
+
+  @Test public void testGarbageAtEnd() throws IOException, SyntaxError {
+    thrown.expect(SyntaxError.class);
+    thrown.expectMessage("Syntax Error: garbage at end of input (unexpected 'x')");
+    parser("{\"a\":1} x").parse(pointers("/b"));
+  }
+
+  @Test public void testMissingValue() throws IOException, SyntaxError {
+    thrown.expect(SyntaxError.class);
+    thrown.expectMessage("Syntax Error: missing value for object member");
+    parser("{\"a\":}").parse(pointers("/b"));
+  }
+
+  /** All values of the test files, selected in random groups. */
+  @Test public void testTestFiles() throws IOException, SyntaxError {
+    Random random = new Random(1);
+    for (File file : new File("testfiles").listFiles()) {
+      String json = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+      JsonValue document = parser(json).parse();
+      List<JsonPointer> all = new ArrayList<>();
+      collect(document, "", all);
+      for (int n = 0; n < 10; ++n) {
+        List<JsonPointer> pointers = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        for (JsonPointer pointer : all) {
+          if (random.nextInt(10) == 0) {
+            pointers.add(pointer);
+            expected.add(pointer.get(document).toCompactString());
+          }
+        }
+        assertEquals(expected, select(json, pointers));
+      }
+    }
+  }
+
+  private static void collect(JsonValue value, String pointer, List<JsonPointer> pointers) {
+    pointers.add(new JsonPointer(pointer));
+    if (value.isObject()) {
+      for (JsonMember member : value.object()) {
+        collect(member.value,
+            pointer + "/" + member.name.replace("~", "~0").replace("/", "~1"), pointers);
+      }
+    } else if (value.isArray()) {
+      JsonArray array = value.array();
+      for (int i = 0; i < array.size(); ++i) {
+        collect(array.get(i), pointer + "/" + i, pointers);
+      }
+    }
+  }
+}
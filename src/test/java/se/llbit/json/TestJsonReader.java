@@ -0,0 +1,277 @@
+/* Copyright (c) 2017, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.json;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import se.llbit.json.JsonParser.SyntaxError;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static se.llbit.json.JsonToken.END_ARRAY;
+import static se.llbit.json.JsonToken.END_DOCUMENT;
+import static se.llbit.json.JsonToken.END_OBJECT;
+import static se.llbit.json.JsonToken.FALSE;
+import static se.llbit.json.JsonToken.FIELD_NAME;
+import static se.llbit.json.JsonToken.NULL;
+import static se.llbit.json.JsonToken.NUMBER;
+import static se.llbit.json.JsonToken.START_ARRAY;
+import static se.llbit.json.JsonToken.START_OBJECT;
+import static se.llbit.json.JsonToken.STRING;
+import static se.llbit.json.JsonToken.TRUE;
+
+public class TestJsonReader {
+  @Rule public ExpectedException thrown = ExpectedException.none();
+
+  private static JsonReader reader(String json) {
+    return new JsonReader(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  private static List<JsonToken> tokens(String json) throws IOException, SyntaxError {
+    List<JsonToken> tokens = new ArrayList<>();
+    try (JsonReader reader = reader(json)) {
+      JsonToken token;
+      do {
+        token = reader.next();
+        tokens.add(token);
+      } while (token != END_DOCUMENT);
+    }
+    return tokens;
+  }
+
+  @Test public void testEmptyObject() throws IOException, SyntaxError {
+    assertEquals(Arrays.asList(START_OBJECT, END_OBJECT, END_DOCUMENT), tokens(" { } "));
+  }
+
+  @Test public void testEmptyArray() throws IOException, SyntaxError {
+    assertEquals(Arrays.asList(START_ARRAY, END_ARRAY, END_DOCUMENT), tokens("[]"));
+  }
+
+  @Test public void testTokens() throws IOException, SyntaxError {
+    assertEquals(Arrays.asList(
+        START_OBJECT,
+        FIELD_NAME, START_ARRAY, NUMBER, STRING, TRUE, FALSE, NULL, END_ARRAY,
+        FIELD_NAME, START_OBJECT, FIELD_NAME, NUMBER, END_OBJECT,
+        END_OBJECT, END_DOCUMENT),
+        tokens("{\"a\": [1, \"x\", true, false, null], \"b\": {\"c\": -3.5}}"));
+  }
+
+  @Test public void testAccessors() throws IOException, SyntaxError {
+    try (JsonReader reader = reader("{\"name\": \"Alice\", \"age\": 10, \"ok\": true}")) {
+      assertEquals(START_OBJECT, reader.next());
+      assertEquals(FIELD_NAME, reader.next());
+      assertEquals("name", reader.getName());
+      assertEquals(STRING, reader.next());
+      assertEquals("Alice", reader.getString());
+      assertEquals(FIELD_NAME, reader.next());
+      assertEquals("age", reader.getName());
+      assertEquals(NUMBER, reader.next());
+      assertEquals(10, reader.getNumber().asInt(0));
+      assertEquals(FIELD_NAME, reader.next());
+      assertEquals(TRUE, reader.next());
+      assertTrue(reader.getBoolean());
+      assertEquals(END_OBJECT, reader.next());
+      assertEquals(END_DOCUMENT, reader.next());
+      assertEquals(END_DOCUMENT, reader.next());
+    }
+  }
+
+  @Test public void testDepth() throws IOException, SyntaxError {
+    try (JsonReader reader = reader("[[1]]")) {
+      assertEquals(0, reader.getDepth());
+      reader.next();
+      assertEquals(1, reader.getDepth());
+      reader.next();
+      assertEquals(2, reader.getDepth());
+      reader.next();
+      assertEquals(2, reader.getDepth());
+      reader.next();
+      assertEquals(1, reader.getDepth());
+      reader.next();
+      assertEquals(0, reader.getDepth());
+    }
+  }
+
+  /** Mixing streaming and tree access. */
+  @Test public void testReadValue() throws IOException, SyntaxError {
+    try (JsonReader reader = reader("[ {\"id\": 1}, {\"id\": 2, \"x\": [3]}, 4 ]")) {
+      assertEquals(START_ARRAY, reader.next());
+      assertEquals(START_OBJECT, reader.next());
+      assertEquals("{\"id\":1}", reader.readValue().toCompactString());
+      assertEquals(START_OBJECT, reader.next());
+      JsonObject object = reader.readValue().object();
+      assertEquals(2, object.get("id").asInt(0));
+      assertEquals(NUMBER, reader.next());
+      assertEquals(4, reader.readValue().asInt(0));
+      assertEquals(END_ARRAY, reader.next());
+      assertEquals(END_DOCUMENT, reader.next());
+    }
+  }
+
+  /** Reading a member value after its name. */
+  @Test public void testReadMemberValue() throws IOException, SyntaxError {
+    try (JsonReader reader = reader("{\"a\": {\"b\": [1, 2]}, \"c\": false}")) {
+      assertEquals(START_OBJECT, reader.next());
+      assertEquals(FIELD_NAME, reader.next());
+      assertEquals("{\"b\":[1,2]}", reader.readValue().toCompactString());
+      assertEquals(FIELD_NAME, reader.next());
+      assertEquals("c", reader.getName());
+      assertFalse(reader.readValue().boolValue(true));
+      assertEquals(END_OBJECT, reader.next());
+    }
+  }
+
+  /** Reading the whole document as a value. */
+  @Test public void testReadDocument() throws IOException, SyntaxError {
+    try (JsonReader reader = reader(" [1, 2] ")) {
+      assertEquals(START_ARRAY, reader.next());
+      assertEquals(2, reader.readValue().array().size());
+      assertEquals(END_DOCUMENT, reader.next());
+    }
+  }
+
+  @Test public void testReadValueAtEnd() throws IOException, SyntaxError {
+    thrown.expect(IllegalStateException.class);
+    try (JsonReader reader = reader("[]")) {
+      reader.next();
+      reader.next();
+      reader.readValue();
+    }
+  }
+
+  /** Streaming through a large document. */
+  @Test public void testLargeArray() throws IOException, SyntaxError {
+    StringBuilder json = new StringBuilder("[");
+    for (int i = 0; i < 10000; ++i) {
+      if (i > 0) {
+        json.append(',');
+      }
+      json.append("{\"i\":").append(i).append(",\"s\":[\"x\"]}");
+    }
+    json.append(']');
+    long sum = 0;
+    int count = 0;
+    try (JsonReader reader = reader(json.toString())) {
+      JsonToken token;
+      while ((token = reader.next()) != END_DOCUMENT) {
+        if (token == NUMBER) {
+          sum += reader.getNumber().asLong(0);
+          count += 1;
+        }
+      }
+    }
+    assertEquals(10000, count);
+    assertEquals(9999L * 10000 / 2, sum);
+  }
+
+  @Test public void testSkipValue() throws IOException, SyntaxError {
+    try (JsonReader reader = reader("{\"a\":[1,\"]\"],\"b\":{\"c\":{}},\"d\":true}")) {
+      assertEquals(START_OBJECT, reader.next());
+      assertEquals(FIELD_NAME, reader.next());
+      assertEquals(START_ARRAY, reader.next());
+      reader.skipValue();
+      assertEquals(FIELD_NAME, reader.next());
+      assertEquals("b", reader.getName());
+      reader.skipValue();
+      assertEquals(null, reader.currentToken());
+      assertEquals(FIELD_NAME, reader.next());
+      assertEquals("d", reader.getName());
+      assertEquals(TRUE, reader.next());
+      reader.skipValue();
+      assertEquals(END_OBJECT, reader.next());
+      assertEquals(END_DOCUMENT, reader.next());
+    }
+  }
+
+  @Test public void testSkipValueNotAtValue() throws IOException, SyntaxError {
+    JsonReader reader = reader("[ ]");
+    reader.next();
+    reader.next();
+    thrown.expect(IllegalStateException.class);
+    reader.skipValue();
+  }
+
+  @Test public void testNotObjectOrArray() throws IOException, SyntaxError {
+    thrown.expect(SyntaxError.class);
+    thrown.expectMessage("Syntax Error: expected JSON object or array");
+    tokens("true");
+  }
+
+  @Test public void testTrailingGarbage() throws IOException, SyntaxError {
+    thrown.expect(SyntaxError.class);
+    thrown.expectMessage("Syntax Error: garbage at end of input (unexpected '[')");
+    tokens("[ ] [ ]");
+  }
+
+  @Test public void testMissingArrayElement1() throws IOException, SyntaxError {
+    thrown.expect(SyntaxError.class);
+    thrown.expectMessage("Syntax Error: missing element in array");
+    tokens("[ 1, ]");
+  }
+
+  @Test public void testMissingArrayElement2() throws IOException, SyntaxError {
+    thrown.expect(SyntaxError.class);
+    thrown.expectMessage("Syntax Error: missing element in array");
+    tokens("[ , 1 ]");
+  }
+
+  @Test public void testMissingMember() throws IOException, SyntaxError {
+    thrown.expect(SyntaxError.class);
+    thrown.expectMessage("Syntax Error: missing member in object.");
+    tokens("{ , }");
+  }
+
+  @Test public void testMissingValue() throws IOException, SyntaxError {
+    thrown.expect(SyntaxError.class);
+    thrown.expectMessage("Syntax Error: missing value for object member");
+    tokens("{ \"a\": }");
+  }
+
+  @Test public void testMissingSeparator() throws IOException, SyntaxError {
+    thrown.expect(SyntaxError.class);
+    thrown.expectMessage("Syntax Error: unexpected character (was '2', expected ']')");
+    tokens("[ 1 2 ]");
+  }
+
+  @Test public void testUnexpectedEnd() throws IOException, SyntaxError {
+    thrown.expect(SyntaxError.class);
+    thrown.expectMessage("Syntax Error: unexpected end of input (expected '}')");
+    tokens("{ \"a\": true");
+  }
+}
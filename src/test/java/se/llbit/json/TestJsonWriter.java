@@ -0,0 +1,210 @@
+/* Copyright (c) 2017, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.json;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import se.llbit.json.JsonParser.SyntaxError;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestJsonWriter {
+  @Rule public ExpectedException thrown = ExpectedException.none();
+
+  private static JsonValue parse(String json) throws IOException, SyntaxError {
+    try (JsonParser parser = new JsonParser(
+        new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)))) {
+      return parser.parse();
+    }
+  }
+
+  private static String write(JsonValue value, String indentation) throws IOException {
+    StringWriter out = new StringWriter();
+    try (JsonWriter writer = new JsonWriter(out)) {
+      writer.setIndentation(indentation);
+      writer.value(value);
+    }
+    return out.toString();
+  }
+
+  private static String prettyPrint(JsonValue value) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (PrettyPrinter printer = new PrettyPrinter("  ", new PrintStream(out))) {
+      value.prettyPrint(printer);
+    }
+    return out.toString();
+  }
+
+  @Test public void testStreaming() throws IOException {
+    StringWriter out = new StringWriter();
+    try (JsonWriter writer = new JsonWriter(out)) {
+      writer.beginObject();
+      writer.name("id").value(12);
+      writer.name("name").value("x\"y\n");
+      writer.name("tags").beginArray().value(true).value(false).nullValue().endArray();
+      writer.name("empty").beginObject().endObject();
+      writer.name("values").beginArray().value(0.5).value(-3).value((String) null).endArray();
+      writer.endObject();
+    }
+    assertEquals("{\"id\":12,\"name\":\"x\\\"y\\n\",\"tags\":[true,false,null],"
+        + "\"empty\":{},\"values\":[0.5,-3,null]}", out.toString());
+  }
+
+  @Test public void testNumbers() throws IOException {
+    StringWriter out = new StringWriter();
+    try (JsonWriter writer = new JsonWriter(out)) {
+      writer.beginArray();
+      writer.value(0).value(-1).value(Long.MAX_VALUE).value(Long.MIN_VALUE);
+      writer.value(1.0).value(-0.0).value(1e-7).value(2.0e-3).value(Double.MAX_VALUE);
+      writer.endArray();
+    }
+    assertEquals("[0,-1,9223372036854775807,-9223372036854775808,"
+        + "1.0,-0.0,1.0E-7,0.002,1.7976931348623157E308]", out.toString());
+  }
+
+  /** Writing a tree gives the same output as toCompactString(). */
+  @Test public void testCompactTree() throws IOException, SyntaxError {
+    JsonValue value = parse("{\"a\": [1, 2.5, 1e3, \"s\\t\", {}, []], \"b\\\"\": {\"c\": null}}");
+    assertEquals(value.toCompactString(), write(value, null));
+  }
+
+  /** Pretty printed output has the same layout as PrettyPrinter. */
+  @Test public void testPrettyTree() throws IOException, SyntaxError {
+    JsonValue value = parse("{\"a\": [1, 2.5, [[]], {\"x\": [true]}], \"b\": {\"c\": null}, \"d\": {}}");
+    assertEquals(prettyPrint(value), write(value, "  "));
+    assertEquals(prettyPrint(value).replace("  ", "\t"), write(value, "\t"));
+  }
+
+  @Test public void testPrettyTestFiles() throws IOException, SyntaxError {
+    File[] files = new File("testfiles").listFiles();
+    for (File file : files) {
+      if (file.getName().endsWith(".json")) {
+        JsonValue value = parse(new String(Files.readAllBytes(file.toPath()), "UTF-8"));
+        assertEquals(file.getName(), prettyPrint(value), write(value, "  "));
+      }
+    }
+  }
+
+  /** UTF-8 output, with surrogate pairs split across buffer boundaries. */
+  @Test public void testOutputStream() throws IOException, SyntaxError {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < JsonWriter.BUFFER_SIZE; ++i) {
+      sb.append("\ud83d\ude00\u00e5x");
+    }
+    String[] strings = { sb.toString(), "a" + sb, "ab" + sb };
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (JsonWriter writer = new JsonWriter(out)) {
+      writer.beginArray();
+      for (String string : strings) {
+        writer.value(string);
+      }
+      writer.endArray();
+    }
+    JsonArray array = new Utf8JsonParser(out.toByteArray()).parse().array();
+    assertEquals(strings.length, array.size());
+    for (int i = 0; i < strings.length; ++i) {
+      assertEquals(strings[i], array.get(i).stringValue(""));
+    }
+  }
+
+  /** Unpaired surrogates are written as question marks. */
+  @Test public void testUnpairedSurrogate() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (JsonWriter writer = new JsonWriter(out)) {
+      writer.beginArray().value("a\ud83d").value("\ude00b\ud83d").endArray();
+    }
+    assertEquals("[\"a?\",\"?b?\"]", new String(out.toByteArray(), StandardCharsets.UTF_8));
+  }
+
+  @Test public void testValueWithoutName() throws IOException {
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("missing name for object member");
+    new JsonWriter(new StringWriter()).beginObject().value(1);
+  }
+
+  @Test public void testMissingValue() throws IOException {
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("missing value for object member");
+    new JsonWriter(new StringWriter()).beginObject().name("a").endObject();
+  }
+
+  @Test public void testNameTwice() throws IOException {
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("missing value for object member");
+    new JsonWriter(new StringWriter()).beginObject().name("a").name("b");
+  }
+
+  @Test public void testNameInArray() throws IOException {
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("member name outside of JSON object");
+    new JsonWriter(new StringWriter()).beginArray().name("a");
+  }
+
+  @Test public void testMismatchedEnd() throws IOException {
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("not in a JSON array");
+    new JsonWriter(new StringWriter()).beginObject().endArray();
+  }
+
+  @Test public void testTopLevelLiteral() throws IOException {
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("expected JSON object or array");
+    new JsonWriter(new StringWriter()).value("x");
+  }
+
+  @Test public void testSecondDocument() throws IOException {
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("JSON document already complete");
+    new JsonWriter(new StringWriter()).beginArray().endArray().beginArray();
+  }
+
+  @Test public void testIncomplete() throws IOException {
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("incomplete JSON document");
+    try (JsonWriter writer = new JsonWriter(new StringWriter())) {
+      writer.beginArray();
+    }
+  }
+
+  @Test public void testNaN() throws IOException {
+    thrown.expect(IllegalArgumentException.class);
+    new JsonWriter(new StringWriter()).beginArray().value(Double.NaN);
+  }
+}
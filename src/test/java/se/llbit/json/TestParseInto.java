@@ -0,0 +1,239 @@
+/* Copyright (c) 2017, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.json;
+
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import se.llbit.json.JsonParser.SyntaxError;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestParseInto {
+  @Rule public ExpectedException thrown = ExpectedException.none();
+
+  private static final String[] TICKS = {
+      "{\"symbol\":\"AAPL\",\"price\":101.25,\"size\":300,\"bid\":[101.2,101.3],"
+          + "\"flags\":{\"halted\":false,\"venue\":\"X\"},\"trades\":[{\"id\":1,\"px\":1.5}]}",
+      "{\"symbol\":\"MSFT\",\"price\":55.5,\"size\":12000,\"bid\":[55.25,55.75],"
+          + "\"flags\":{\"halted\":true,\"venue\":\"Y\"},\"trades\":[{\"id\":2,\"px\":7}]}",
+      "{\"symbol\":\"AAPL\",\"price\":101.5,\"size\":-4,\"bid\":[101.4,1000],"
+          + "\"flags\":{\"halted\":false,\"venue\":\"Y\"},\"trades\":[{\"id\":3,\"px\":0.25}]}",
+  };
+
+  private static byte[] bytes(String json) {
+    return json.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static JsonValue parse(String json) throws IOException, SyntaxError {
+    try (JsonParser parser = new JsonParser(new ByteArrayInputStream(bytes(json)))) {
+      return parser.parse();
+    }
+  }
+
+  private static JsonValue parseInto(JsonParser parser, JsonValue tree, String json)
+      throws IOException, SyntaxError {
+    parser.reset(bytes(json));
+    return parser.parseInto(tree);
+  }
+
+  @Test public void testSameShapeReusesTree() throws IOException, SyntaxError {
+    JsonParser parser = new JsonParser(new ByteArrayInputStream(new byte[0]));
+    JsonObject tree = parseInto(parser, null, TICKS[0]).object();
+    JsonValue flags = tree.get("flags");
+    JsonValue trade = tree.get("trades").array().get(0);
+    parseInto(parser, tree, TICKS[1]);
+    JsonValue price = tree.get("price");
+    JsonMember symbol = null;
+    for (int i = 0; i < 10; ++i) {
+      String json = TICKS[i % TICKS.length];
+      assertSame(tree, parseInto(parser, tree, json));
+      assertEquals(parse(json), tree);
+      assertEquals(json, tree.toCompactString());
+      assertSame(flags, tree.get("flags"));
+      assertSame(trade, tree.get("trades").array().get(0));
+      assertSame(price, tree.get("price"));
+      if (i == 0) {
+        symbol = tree.get(0);
+      }
+    }
+    // Members with equal string values are shared.
+    assertSame(symbol, tree.get(0));
+  }
+
+  @Test public void testShapeChanges() throws IOException, SyntaxError {
+    String[] documents = {
+        "{\"a\":1,\"b\":[1,2,3],\"c\":{\"x\":\"y\"}}",
+        "{\"a\":\"s\",\"b\":[1,\"two\",3.5,null],\"d\":true}",
+        "{\"b\":[],\"a\":{\"x\":[{}]},\"c\":{\"x\":\"z\",\"y\":2}}",
+        "{\"a\":1.50,\"b\":[[1],[2,[3]]],\"c\":false,\"c\":null}",
+        "{}",
+        "{\"a\":1,\"b\":[1,2,3],\"c\":{\"x\":\"y\"}}",
+        "{\"b\":[1,2,3,4,5,6,7,8,9,10],\"a\":[true,false],}",
+    };
+    JsonParser parser = new JsonParser(new ByteArrayInputStream(new byte[0]));
+    JsonValue tree = null;
+    for (int pass = 0; pass < 2; ++pass) {
+      for (String json : documents) {
+        tree = parseInto(parser, tree, json);
+        assertEquals(parse(json), tree);
+        assertEquals(parse(json).toCompactString(), tree.toCompactString());
+      }
+    }
+  }
+
+  @Test public void testTopLevelTypeChange() throws IOException, SyntaxError {
+    JsonParser parser = new JsonParser(new ByteArrayInputStream(new byte[0]));
+    JsonValue object = parseInto(parser, null, "{\"a\":1}");
+    JsonValue array = parseInto(parser, object, "[1,2]");
+    assertTrue(array.isArray());
+    assertEquals("[1,2]", array.toCompactString());
+    assertSame(array, parseInto(parser, array, "[{}]"));
+    assertEquals("[{}]", array.toCompactString());
+  }
+
+  @Test public void testFrozenTreeIsNotOverwritten() throws IOException, SyntaxError {
+    JsonParser parser = new JsonParser(new ByteArrayInputStream(new byte[0]));
+    JsonObject tree = parseInto(parser, null, TICKS[0]).object();
+    tree.freeze();
+    JsonValue next = parseInto(parser, tree, TICKS[1]);
+    assertNotSame(tree, next);
+    assertEquals(TICKS[0], tree.toCompactString());
+    assertEquals(TICKS[1], next.toCompactString());
+  }
+
+  @Test public void testFrozenValueIsNotOverwritten() throws IOException, SyntaxError {
+    JsonParser parser = new JsonParser(new ByteArrayInputStream(new byte[0]));
+    JsonObject tree = parseInto(parser, null, TICKS[0]).object();
+    JsonValue price = tree.get("price").freeze();
+    parseInto(parser, tree, TICKS[1]);
+    assertEquals(Json.of(101.25), price);
+    assertEquals(Json.of(55.5), tree.get("price"));
+  }
+
+  @Test public void testCopyIsNotOverwritten() throws IOException, SyntaxError {
+    JsonParser parser = new JsonParser(new ByteArrayInputStream(new byte[0]));
+    JsonObject tree = parseInto(parser, null, TICKS[0]).object();
+    parseInto(parser, tree, TICKS[0]);
+    JsonObject copy = tree.copy();
+    JsonValue size = tree.get("size").copy();
+    JsonValue persistent = PersistentJsonObject.from(tree);
+    parseInto(parser, tree, TICKS[1]);
+    assertEquals(TICKS[0], copy.toCompactString());
+    assertEquals(TICKS[0], persistent.toCompactString());
+    assertEquals(Json.of(300), size);
+    assertTrue(size.isFrozen());
+    assertFalse(tree.get("size").isFrozen());
+    assertEquals(TICKS[1], tree.toCompactString());
+  }
+
+  @Test public void testIgnoredMembers() throws IOException, SyntaxError {
+    JsonParser parser = new JsonParser(new ByteArrayInputStream(new byte[0]));
+    parser.setIgnoredMembers(Arrays.asList("bid", "trades"));
+    JsonObject tree = parseInto(parser, null, TICKS[0]).object();
+    parseInto(parser, tree, TICKS[1]);
+    assertEquals("{\"symbol\":\"MSFT\",\"price\":55.5,\"size\":12000,"
+        + "\"flags\":{\"halted\":true,\"venue\":\"Y\"}}", tree.toCompactString());
+  }
+
+  @Test public void testMissingValue() throws IOException, SyntaxError {
+    JsonParser parser = new JsonParser(new ByteArrayInputStream(new byte[0]));
+    JsonObject tree = parseInto(parser, null, "{\"a\":1}").object();
+    thrown.expect(SyntaxError.class);
+    thrown.expectMessage("Syntax Error: missing value for object member");
+    parseInto(parser, tree, "{\"a\":}");
+  }
+
+  @Test public void testMissingElement() throws IOException, SyntaxError {
+    JsonParser parser = new JsonParser(new ByteArrayInputStream(new byte[0]));
+    JsonValue tree = parseInto(parser, null, "[\"a\",\"b\"]");
+    thrown.expect(SyntaxError.class);
+    thrown.expectMessage("Syntax Error: missing element in array");
+    parseInto(parser, tree, "[\"a\",,\"b\"]");
+  }
+
+  @Test public void testGarbageAtEnd() throws IOException, SyntaxError {
+    JsonParser parser = new JsonParser(new ByteArrayInputStream(new byte[0]));
+    thrown.expect(SyntaxError.class);
+    thrown.expectMessage("Syntax Error: garbage at end of input (unexpected '[')");
+    parseInto(parser, null, "{} []");
+  }
+
+  /** Parsing documents with the same shape into the same tree allocates no memory. */
+  @Test public void testNoAllocation() throws IOException, SyntaxError {
+    java.lang.management.ThreadMXBean mxBean = ManagementFactory.getThreadMXBean();
+    Assume.assumeTrue(mxBean instanceof com.sun.management.ThreadMXBean);
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) mxBean;
+    Assume.assumeTrue(threads.isThreadAllocatedMemorySupported()
+        && threads.isThreadAllocatedMemoryEnabled());
+    long thread = Thread.currentThread().getId();
+
+    byte[][] documents = new byte[TICKS.length][];
+    for (int i = 0; i < TICKS.length; ++i) {
+      documents[i] = bytes(TICKS[i]);
+    }
+    JsonParser parser = new JsonParser(new ByteArrayInputStream(new byte[0]));
+    JsonValue tree = null;
+    for (int i = 0; i < 20000; ++i) {
+      parser.reset(documents[i % documents.length]);
+      tree = parser.parseInto(tree);
+    }
+
+    // Measure the allocations made by reading the counter itself.
+    long start = threads.getThreadAllocatedBytes(thread);
+    long overhead = threads.getThreadAllocatedBytes(thread) - start;
+
+    // The virtual machine may allocate memory in the thread during a run,
+    // for example when compiling code, so the least allocating run is used.
+    int iterations = 10000;
+    long allocated = Long.MAX_VALUE;
+    for (int run = 0; run < 5; ++run) {
+      start = threads.getThreadAllocatedBytes(thread);
+      for (int i = 0; i < iterations; ++i) {
+        parser.reset(documents[i % documents.length]);
+        parser.parseInto(tree);
+      }
+      allocated = Math.min(allocated,
+          threads.getThreadAllocatedBytes(thread) - start - overhead);
+    }
+    assertTrue("allocated " + allocated + " bytes", allocated < iterations);
+  }
+}
@@ -37,11 +37,18 @@ import se.llbit.json.JsonParser.SyntaxError;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.StringReader;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class TestParsing {
   @Rule public ExpectedException thrown = ExpectedException.none();
@@ -117,14 +124,14 @@ public class TestParsing {
     JsonArray array = (JsonArray) parse("[ 0 ]");
     assertTrue(array.get(0) instanceof JsonNumber);
     JsonNumber number = (JsonNumber) array.get(0);
-    assertEquals("0", number.value);
+    assertEquals("0", number.toString());
   }
 
   @Test public void testNumber_2() throws IOException, SyntaxError {
     JsonArray array = (JsonArray) parse("[ -13 ]");
     assertTrue(array.get(0) instanceof JsonNumber);
     JsonNumber number = (JsonNumber) array.get(0);
-    assertEquals("-13", number.value);
+    assertEquals("-13", number.toString());
   }
 
   @Test public void testTrue() throws IOException, SyntaxError {
@@ -234,6 +241,177 @@ public class TestParsing {
     parse("[ \"abc\\");
   }
 
+  private static JsonParser parser(String json) {
+    return new JsonParser(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  @Test public void testParseNextLines() throws IOException, SyntaxError {
+    try (JsonParser parser = parser("{\"a\":1}\n[2,3]\r\n\n{}\n")) {
+      assertEquals("{\"a\":1}", parser.parseNext().toCompactString());
+      assertEquals("[2,3]", parser.parseNext().toCompactString());
+      assertEquals("{}", parser.parseNext().toCompactString());
+      assertNull(parser.parseNext());
+      assertNull(parser.parseNext());
+    }
+  }
+
+  @Test public void testParseNextConcatenated() throws IOException, SyntaxError {
+    try (JsonParser parser = parser("{\"a\":[]}[1]{}  []")) {
+      assertEquals("{\"a\":[]}", parser.parseNext().toCompactString());
+      assertEquals("[1]", parser.parseNext().toCompactString());
+      assertEquals("{}", parser.parseNext().toCompactString());
+      assertEquals("[]", parser.parseNext().toCompactString());
+      assertNull(parser.parseNext());
+    }
+  }
+
+  @Test public void testParseNextEmpty() throws IOException, SyntaxError {
+    assertNull(parser("").parseNext());
+    assertNull(parser(" \n\t ").parseNext());
+  }
+
+  /** Only objects and arrays are accepted as top-level values. */
+  @Test public void testParseNextScalar() throws IOException, SyntaxError {
+    JsonParser parser = parser("{} 1");
+    parser.parseNext();
+    thrown.expect(JsonParser.SyntaxError.class);
+    thrown.expectMessage("Syntax Error: expected JSON object or array");
+    parser.parseNext();
+  }
+
+  /** Many values that together are larger than the read buffer. */
+  @Test public void testValuesIterator() throws IOException, SyntaxError {
+    StringBuilder json = new StringBuilder();
+    for (int i = 0; i < 10000; ++i) {
+      json.append("{\"id\":").append(i).append("}\n");
+    }
+    Iterator<JsonValue> values = parser(json.toString()).values();
+    for (int i = 0; i < 10000; ++i) {
+      assertTrue(values.hasNext());
+      assertEquals(i, values.next().object().get("id").intValue(-1));
+    }
+    assertFalse(values.hasNext());
+  }
+
+  @Test public void testValuesNoSuchElement() {
+    Iterator<JsonValue> values = parser("[]").values();
+    values.next();
+    thrown.expect(NoSuchElementException.class);
+    values.next();
+  }
+
+  @Test public void testValuesSyntaxError() {
+    Iterator<JsonValue> values = parser("[1] [2,]").values();
+    assertEquals("[1]", values.next().toCompactString());
+    try {
+      values.next();
+      fail("expected exception");
+    } catch (JsonParser.UncheckedParseException e) {
+      assertTrue(e.getCause() instanceof SyntaxError);
+    }
+    assertFalse(values.hasNext());
+  }
+
+  @Test public void testSkipNext() throws IOException, SyntaxError {
+    try (JsonParser parser = parser("{\"a\":[1,{\"b\":\"]}\\\"\"}]}\n[2,\n[3]]\n{\"c\":4}\n")) {
+      assertTrue(parser.skipNext());
+      assertTrue(parser.skipNext());
+      assertEquals("{\"c\":4}", parser.parseNext().toCompactString());
+      assertFalse(parser.skipNext());
+    }
+  }
+
+  @Test public void testSkipNextUnbalanced() throws IOException, SyntaxError {
+    thrown.expect(JsonParser.SyntaxError.class);
+    thrown.expectMessage("Syntax Error: unexpected end of input (expected ']')");
+    parser("[[1], {\"a\":\"]\"}").skipNext();
+  }
+
+  @Test public void testIgnoredMembers() throws IOException, SyntaxError {
+    try (JsonParser parser = parser(
+        "{\"id\":1,\"blob\":{\"x\":[1,2,\"}\"]},\"name\":\"a\",\"tags\":[\"t\"],"
+        + "\"child\":{\"id\":2,\"blob\":\"\\\"\"}}")) {
+      parser.setIgnoredMembers(Arrays.asList("blob", "tags"));
+      assertEquals("{\"id\":1,\"name\":\"a\",\"child\":{\"id\":2}}",
+          parser.parse().toCompactString());
+    }
+  }
+
+  @Test public void testIgnoredMemberMissingValue() throws IOException, SyntaxError {
+    JsonParser parser = parser("{\"a\": }");
+    parser.setIgnoredMembers(Arrays.asList("a"));
+    thrown.expect(JsonParser.SyntaxError.class);
+    thrown.expectMessage("Syntax Error: missing value for object member");
+    parser.parse();
+  }
+
+  @Test public void testReset() throws IOException, SyntaxError {
+    JsonParser parser = parser("[1] [2]");
+    assertEquals("[1]", parser.parseNext().toCompactString());
+    // Buffered input from the previous stream is discarded.
+    parser.reset("{\"a\":\"b\"}".getBytes(StandardCharsets.UTF_8));
+    assertEquals("{\"a\":\"b\"}", parser.parse().toCompactString());
+    parser.reset(new StringReader("[true]"));
+    assertEquals("[true]", parser.parse().toCompactString());
+    parser.reset(new ByteArrayInputStream("[\"x\"]".getBytes(StandardCharsets.UTF_8)));
+    assertEquals("[\"x\"]", parser.parse().toCompactString());
+  }
+
+  @Test public void testResetAfterSyntaxError() throws IOException, SyntaxError {
+    JsonParser parser = parser("{\"a\":[1,}");
+    try {
+      parser.parse();
+      fail("expected syntax error");
+    } catch (SyntaxError e) {
+      // Expected.
+    }
+    parser.reset("[{}]".getBytes(StandardCharsets.UTF_8));
+    assertEquals("[{}]", parser.parse().toCompactString());
+  }
+
+  @Test public void testResetKeepsIgnoredMembers() throws IOException, SyntaxError {
+    JsonParser parser = parser("{\"a\":1,\"b\":2}");
+    parser.setIgnoredMembers(Arrays.asList("a"));
+    assertEquals("{\"b\":2}", parser.parse().toCompactString());
+    parser.reset("{\"a\":3,\"c\":4}".getBytes(StandardCharsets.UTF_8));
+    assertEquals("{\"c\":4}", parser.parse().toCompactString());
+  }
+
+  /** Multi-byte characters are decoded when split across stream reads. */
+  @Test public void testSplitMultiByteCharacters() throws IOException {
+    final byte[] bytes = "a\u00e5\u20ac\ud83d\ude00b".getBytes(StandardCharsets.UTF_8);
+    InputStream input = new InputStream() {
+      int pos = 0;
+
+      @Override public int read() {
+        return pos < bytes.length ? bytes[pos++] & 0xFF : -1;
+      }
+
+      @Override public int read(byte[] b, int off, int len) {
+        if (pos >= bytes.length) {
+          return -1;
+        }
+        b[off] = bytes[pos++];
+        return 1;
+      }
+    };
+    InputDecoder decoder = new InputDecoder(StandardCharsets.UTF_8, 4);
+    decoder.reset(input);
+    StringBuilder decoded = new StringBuilder();
+    char[] buffer = new char[3];
+    int count;
+    while ((count = decoder.read(buffer, 0, buffer.length)) != -1) {
+      decoded.append(buffer, 0, count);
+    }
+    assertEquals("a\u00e5\u20ac\ud83d\ude00b", decoded.toString());
+    assertEquals(-1, decoder.read(buffer, 0, buffer.length));
+  }
+
+  @Test public void testReaderInput() throws IOException, SyntaxError {
+    JsonParser parser = new JsonParser(new StringReader("{\"x\":[1.5]}"));
+    assertEquals("{\"x\":[1.5]}", parser.parse().toCompactString());
+  }
+
   private static void testArray(JsonValue value, Class<?>... elementTypes) {
     assertTrue(value instanceof JsonArray);
     JsonArray array = (JsonArray) value;
@@ -0,0 +1,304 @@
+/* Copyright (c) 2017, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.json;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestPersistent {
+  @Rule public ExpectedException thrown = ExpectedException.none();
+
+  @Test public void testObjectWith() {
+    PersistentJsonObject v1 = PersistentJsonObject.empty().with("a", 1).with("b", "x");
+    PersistentJsonObject v2 = v1.with("a", 2).with("c", true);
+    assertEquals("{\"a\":1,\"b\":\"x\"}", v1.toCompactString());
+    assertEquals("{\"a\":2,\"b\":\"x\",\"c\":true}", v2.toCompactString());
+    assertEquals(2, v2.get("a").intValue(0));
+    assertTrue(v2.get("d").isUnknown());
+  }
+
+  @Test public void testObjectWithout() {
+    PersistentJsonObject v1 = PersistentJsonObject.empty().with("a", 1).with("b", 2).with("c", 3);
+    PersistentJsonObject v2 = v1.without("b");
+    assertEquals("{\"a\":1,\"b\":2,\"c\":3}", v1.toCompactString());
+    assertEquals("{\"a\":1,\"c\":3}", v2.toCompactString());
+    assertSame(v2, v2.without("b"));
+    assertEquals("{\"a\":1,\"c\":3,\"b\":4}", v2.with("b", 4).toCompactString());
+    assertEquals("{}", v2.without("a").without("c").toCompactString());
+  }
+
+  /** Untouched values are shared between versions. */
+  @Test public void testSharing() {
+    JsonObject config = new JsonObject();
+    JsonObject server = new JsonObject();
+    server.add("port", 80);
+    config.add("server", server);
+    config.add("name", "x");
+    PersistentJsonObject v1 = PersistentJsonObject.from(config);
+    PersistentJsonObject v2 = v1.with("name", "y");
+    assertSame(v1.get("server"), v2.get("server"));
+    assertTrue(v1.get("server") instanceof PersistentJsonObject);
+    assertSame(v1, v1.with("server", v1.get("server")));
+  }
+
+  /** Converting a mutable tree copies it. */
+  @Test public void testFromCopies() {
+    JsonObject object = new JsonObject();
+    JsonArray array = new JsonArray();
+    array.add(1);
+    object.add("array", array);
+    PersistentJsonObject persistent = PersistentJsonObject.from(object);
+    array.add(2);
+    object.add("b", true);
+    assertEquals("{\"array\":[1]}", persistent.toCompactString());
+  }
+
+  /** Only the first member of duplicate names is kept. */
+  @Test public void testFromDuplicates() {
+    JsonObject object = new JsonObject();
+    object.add("a", 1);
+    object.add("a", 2);
+    object.add("b", 3);
+    assertEquals("{\"a\":1,\"b\":3}", PersistentJsonObject.from(object).toCompactString());
+  }
+
+  @Test public void testInterop() {
+    JsonObject object = new JsonObject();
+    object.add("a", 1);
+    JsonArray array = new JsonArray();
+    array.add("x");
+    array.add(Json.NULL);
+    object.add("b", array);
+    PersistentJsonObject persistent = PersistentJsonObject.from(object);
+    assertEquals(object, persistent);
+    assertEquals(persistent, object);
+    assertEquals(object.hashCode(), persistent.hashCode());
+    assertSame(persistent, persistent.copy());
+    assertSame(persistent, persistent.freeze());
+    assertTrue(persistent.isFrozen());
+    assertEquals(object.toString(), persistent.toString());
+    assertEquals(1, persistent.toMap().get("a").intValue(0));
+    assertEquals("x", new JsonPointer("/b/0").get(persistent).stringValue(""));
+  }
+
+  @Test public void testPrettyPrint() {
+    JsonObject object = new JsonObject();
+    object.add("a", 1);
+    JsonArray array = new JsonArray();
+    array.add(2.5);
+    object.add("b", array);
+    StringWriter expected = new StringWriter();
+    try (PrettyPrinter out = new PrettyPrinter("  ", expected)) {
+      object.prettyPrint(out);
+    }
+    StringWriter actual = new StringWriter();
+    try (PrettyPrinter out = new PrettyPrinter("  ", actual)) {
+      PersistentJsonObject.from(object).prettyPrint(out);
+    }
+    assertEquals(expected.toString(), actual.toString());
+  }
+
+  @Test public void testObjectMutator() {
+    PersistentJsonObject object = PersistentJsonObject.empty().with("a", 1);
+    thrown.expect(UnsupportedOperationException.class);
+    object.add("b", 2);
+  }
+
+  @Test public void testObjectMemberListMutator() {
+    PersistentJsonObject object = PersistentJsonObject.empty().with("a", 1);
+    thrown.expect(UnsupportedOperationException.class);
+    object.members.remove(0);
+  }
+
+  @Test public void testArrayMutator() {
+    PersistentJsonArray array = PersistentJsonArray.empty().with(Json.of(1));
+    thrown.expect(UnsupportedOperationException.class);
+    array.add(2);
+  }
+
+  @Test public void testArray() {
+    PersistentJsonArray v1 = PersistentJsonArray.empty().with(Json.of(1)).with(Json.of(2));
+    PersistentJsonArray v2 = v1.with(0, Json.of("x")).withInserted(1, Json.TRUE);
+    PersistentJsonArray v3 = v2.without(2);
+    assertEquals("[1,2]", v1.toCompactString());
+    assertEquals("[\"x\",true,2]", v2.toCompactString());
+    assertEquals("[\"x\",true]", v3.toCompactString());
+    assertEquals(2, v1.toLongArray(0)[1]);
+    assertEquals(Double.NaN, v2.toDoubleArray(Double.NaN)[1], 0);
+  }
+
+  @Test public void testArrayIndex() {
+    thrown.expect(IndexOutOfBoundsException.class);
+    PersistentJsonArray.empty().with(Json.of(1)).with(1, Json.NULL);
+  }
+
+  /** Nested mutable values are converted to persistent values. */
+  @Test public void testArrayConvertsValues() {
+    JsonArray inner = new JsonArray();
+    inner.add(1);
+    PersistentJsonArray array = PersistentJsonArray.empty().with(inner);
+    inner.add(2);
+    assertTrue(array.get(0) instanceof PersistentJsonArray);
+    assertEquals("[[1]]", array.toCompactString());
+  }
+
+  @Test public void testJsonWriter() throws Exception {
+    JsonArray array = new JsonArray();
+    array.add(1);
+    array.add("a");
+    JsonObject object = new JsonObject();
+    object.add("x", array);
+    StringWriter expected = new StringWriter();
+    try (JsonWriter writer = new JsonWriter(expected)) {
+      writer.value(object);
+    }
+    StringWriter actual = new StringWriter();
+    try (JsonWriter writer = new JsonWriter(actual)) {
+      writer.value(PersistentJsonObject.from(object));
+    }
+    assertEquals(expected.toString(), actual.toString());
+  }
+
+  /** Random edits, compared to a mutable array. */
+  @Test public void testRandomArrayEdits() {
+    Random random = new Random(1);
+    List<PersistentJsonArray> versions = new ArrayList<>();
+    List<String> expected = new ArrayList<>();
+    PersistentJsonArray array = PersistentJsonArray.empty();
+    JsonArray model = new JsonArray();
+    for (int i = 0; i < 3000; ++i) {
+      int op = random.nextInt(4);
+      if (op == 0 && !model.isEmpty()) {
+        int index = random.nextInt(model.size());
+        array = array.without(index);
+        model.remove(index);
+      } else if (op == 1 && !model.isEmpty()) {
+        int index = random.nextInt(model.size());
+        array = array.with(index, Json.of(i));
+        model.set(index, Json.of(i));
+      } else if (op == 2) {
+        int index = random.nextInt(model.size() + 1);
+        array = array.withInserted(index, Json.of(i));
+        model.elements.add(index, Json.of(i));
+      } else {
+        array = array.with(Json.of(i));
+        model.add(Json.of(i));
+      }
+      assertEquals(model.size(), array.size());
+      if (i % 100 == 0) {
+        versions.add(array);
+        expected.add(model.toCompactString());
+      }
+    }
+    assertEquals(model, array);
+    for (int i = 0; i < versions.size(); ++i) {
+      assertEquals(expected.get(i), versions.get(i).toCompactString());
+    }
+  }
+
+  /** Random edits, compared to a mutable object. Some names have equal hash codes. */
+  @Test public void testRandomObjectEdits() {
+    Random random = new Random(2);
+    String[] names = new String[300];
+    for (int i = 0; i < names.length; ++i) {
+      // "Aa" and "BB" have the same hash code.
+      names[i] = (i % 2 == 0 ? "Aa" : "BB") + (i / 2);
+    }
+    PersistentJsonObject object = PersistentJsonObject.empty();
+    JsonObject model = new JsonObject();
+    for (int i = 0; i < 5000; ++i) {
+      String name = names[random.nextInt(names.length)];
+      if (random.nextInt(3) == 0) {
+        object = object.without(name);
+        model.remove(name);
+      } else {
+        object = object.with(name, i);
+        model.set(name, Json.of(i));
+      }
+      assertEquals(model.size(), object.size());
+    }
+    assertEquals(model, object);
+    for (String name : names) {
+      assertEquals(model.get(name), object.get(name));
+    }
+  }
+
+  @Test public void testTreeBalance() {
+    IndexTree tree = null;
+    Random random = new Random(3);
+    for (int i = 0; i < 2000; ++i) {
+      if (random.nextInt(3) == 0 && tree != null) {
+        tree = IndexTree.remove(tree, random.nextInt(tree.size));
+      } else {
+        tree = IndexTree.insert(tree, random.nextInt(IndexTree.size(tree) + 1), i, i);
+      }
+      assertBalanced(tree);
+    }
+  }
+
+  private static void assertBalanced(IndexTree tree) {
+    if (tree != null) {
+      int left = IndexTree.size(tree.left);
+      int right = IndexTree.size(tree.right);
+      assertTrue(left + right <= 1 || (left <= 3 * right && right <= 3 * left));
+      assertBalanced(tree.left);
+      assertBalanced(tree.right);
+    }
+  }
+
+  @Test public void testNameTrie() {
+    NameTrie trie = NameTrie.EMPTY;
+    for (int i = 0; i < 1000; ++i) {
+      trie = trie.put("n" + i, i);
+    }
+    NameTrie removed = trie;
+    for (int i = 0; i < 1000; i += 2) {
+      removed = removed.remove("n" + i);
+    }
+    assertEquals(1000, trie.size());
+    assertEquals(500, removed.size());
+    for (int i = 0; i < 1000; ++i) {
+      assertEquals(i, trie.get("n" + i));
+      assertEquals(i % 2 == 0 ? -1 : i, removed.get("n" + i));
+    }
+    assertSame(removed, removed.remove("n0"));
+    assertSame(trie, trie.put("n1", 1));
+  }
+}
@@ -0,0 +1,136 @@
+/* Copyright (c) 2017, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.json;
+
+import org.junit.Test;
+import se.llbit.json.JsonParser.SyntaxError;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestPrettyPrinter {
+  private static String printStream(JsonValue value, String indentation) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (PrettyPrinter printer = new PrettyPrinter(indentation, new PrintStream(out))) {
+      value.prettyPrint(printer);
+    }
+    return out.toString();
+  }
+
+  private static String printWriter(JsonValue value, String indentation) {
+    StringWriter out = new StringWriter();
+    try (PrettyPrinter printer = new PrettyPrinter(indentation, out)) {
+      value.prettyPrint(printer);
+    }
+    return out.toString();
+  }
+
+  private static JsonValue parse(String json) throws IOException, SyntaxError {
+    try (Utf8JsonParser parser = new Utf8JsonParser(json.getBytes("UTF-8"))) {
+      return parser.parse();
+    }
+  }
+
+  /** Printing to a Writer gives the same output as printing to a PrintStream. */
+  @Test public void testWriterTestFiles() throws IOException, SyntaxError {
+    for (File file : new File("testfiles").listFiles()) {
+      if (file.getName().endsWith(".json")) {
+        JsonValue value = parse(new String(Files.readAllBytes(file.toPath()), "UTF-8"));
+        assertEquals(file.getName(), printStream(value, "  "), printWriter(value, "  "));
+        assertEquals(file.getName(), printStream(value, "\t"), printWriter(value, "\t"));
+      }
+    }
+  }
+
+  /** Deep nesting grows the indentation stack and the indentation table. */
+  @Test public void testDeep() throws IOException, SyntaxError {
+    StringBuilder json = new StringBuilder();
+    for (int i = 0; i < 100; ++i) {
+      json.append("{\"a\": [1, ");
+    }
+    json.append("2");
+    for (int i = 0; i < 100; ++i) {
+      json.append("]}");
+    }
+    JsonValue value = parse(json.toString());
+    assertEquals(printStream(value, "   "), printWriter(value, "   "));
+    assertEquals(printStream(value, ""), printWriter(value, ""));
+  }
+
+  /** Output to a StringBuilder is written on flush. */
+  @Test public void testFlush() throws IOException, SyntaxError {
+    StringBuilder out = new StringBuilder();
+    PrettyPrinter printer = new PrettyPrinter(" ", out);
+    printer.print(parse("[1, {}]"));
+    assertEquals("", out.toString());
+    printer.flush();
+    String nl = System.getProperty("line.separator");
+    assertEquals("[" + nl + " 1," + nl + " {}" + nl + "]", out.toString());
+  }
+
+  @Test public void testGetIndentation() {
+    PrettyPrinter printer = new PrettyPrinter("ab", new StringBuilder());
+    assertEquals("", printer.getIndentation(0));
+    assertEquals("abab", printer.getIndentation(2));
+    assertEquals("ababababababababababab", printer.getIndentation(11));
+    assertEquals("ab", printer.getIndentation(1));
+  }
+
+  /** Write errors are reported by checkError. */
+  @Test public void testCheckError() {
+    Writer failing = new Writer() {
+      @Override public void write(char[] buf, int off, int len) throws IOException {
+        throw new IOException("write failed");
+      }
+
+      @Override public void flush() {
+      }
+
+      @Override public void close() {
+      }
+    };
+    PrettyPrinter printer = new PrettyPrinter("  ", failing);
+    printer.print(Json.NULL);
+    assertTrue(printer.checkError());
+
+    printer = new PrettyPrinter("  ", new StringWriter());
+    printer.print(Json.NULL);
+    assertFalse(printer.checkError());
+  }
+}
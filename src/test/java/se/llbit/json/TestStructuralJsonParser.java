@@ -0,0 +1,284 @@
+/* Copyright (c) 2017, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.json;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import se.llbit.json.JsonParser.SyntaxError;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class TestStructuralJsonParser {
+  @Rule public ExpectedException thrown = ExpectedException.none();
+
+  private static JsonValue parse(String json) throws SyntaxError {
+    return new StructuralJsonParser(json.getBytes(StandardCharsets.UTF_8)).parse();
+  }
+
+  /** Parses with both parsers and checks that the results are equal. */
+  private static void checkSame(byte[] json) throws IOException, SyntaxError {
+    String expected = new Utf8JsonParser(json).parse().toCompactString();
+    assertEquals(expected, new StructuralJsonParser(json).parse().toCompactString());
+  }
+
+  /** Checks that both parsers report a syntax error. */
+  private static void checkError(String json) throws IOException {
+    byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+    try {
+      new Utf8JsonParser(bytes).parse();
+      fail("Utf8JsonParser accepted " + json);
+    } catch (SyntaxError expected) {
+      // Expected.
+    }
+    try {
+      new StructuralJsonParser(bytes).parse();
+      fail("StructuralJsonParser accepted " + json);
+    } catch (SyntaxError expected) {
+      // Expected.
+    }
+  }
+
+  /**
+   * Computes the structural index one byte at a time. Like in JSON strings,
+   * backslashes outside strings escape the next character.
+   */
+  private static int[] simpleIndex(byte[] json) {
+    List<Integer> index = new ArrayList<>();
+    boolean inString = false;
+    boolean escaped = false;
+    boolean scalar = false;
+    for (int i = 0; i < json.length; ++i) {
+      byte b = json[i];
+      if (inString) {
+        if (escaped) {
+          escaped = false;
+        } else if (b == '\\') {
+          escaped = true;
+        } else if (b == '"') {
+          inString = false;
+        }
+        continue;
+      }
+      boolean quote = b == '"' && !escaped;
+      escaped = b == '\\' && !escaped;
+      if (b == '"' && !quote) {
+        // An escaped quote is an ordinary character.
+        if (!scalar) {
+          index.add(i);
+        }
+        scalar = true;
+        continue;
+      }
+      switch (b) {
+        case '{': case '}': case '[': case ']': case ':': case ',':
+          index.add(i);
+          scalar = false;
+          break;
+        case ' ': case '\t': case '\n': case '\r':
+          scalar = false;
+          break;
+        case '"':
+          if (!scalar) {
+            index.add(i);
+          }
+          inString = true;
+          scalar = false;
+          break;
+        default:
+          if (!scalar) {
+            index.add(i);
+          }
+          scalar = true;
+      }
+    }
+    int[] result = new int[index.size()];
+    for (int i = 0; i < result.length; ++i) {
+      result[i] = index.get(i);
+    }
+    return result;
+  }
+
+  @Test public void testGather() {
+    for (int bits = 0; bits < 256; ++bits) {
+      long word = 0;
+      for (int i = 0; i < 8; ++i) {
+        if ((bits & (1 << i)) != 0) {
+          word |= 0x80L << (8 * i);
+        }
+      }
+      assertEquals(bits, StructuralJsonParser.gather(word));
+    }
+  }
+
+  @Test public void testPrefixXor() {
+    Random random = new Random(1);
+    for (int n = 0; n < 1000; ++n) {
+      long bits = random.nextLong();
+      long expected = 0;
+      boolean parity = false;
+      for (int i = 0; i < 64; ++i) {
+        parity ^= (bits & (1L << i)) != 0;
+        if (parity) {
+          expected |= 1L << i;
+        }
+      }
+      assertEquals(expected, StructuralJsonParser.prefixXor(bits));
+    }
+  }
+
+  @Test public void testIndex() {
+    byte[] json = "{\"a\\\"\": [1, true,\"x,y\"], \"b\" :null}".getBytes(StandardCharsets.UTF_8);
+    assertArrayEquals(new int[] { 0, 1, 6, 8, 9, 10, 12, 16, 17, 22, 23, 25, 29, 30, 34 },
+        new StructuralJsonParser(json).structuralIndex());
+  }
+
+  /** Random runs of backslashes, quotes and structural characters. */
+  @Test public void testIndexRandom() {
+    Random random = new Random(2);
+    byte[] alphabet = "\\\\\\\"\" {}[]:,a1\n".getBytes(StandardCharsets.UTF_8);
+    for (int n = 0; n < 2000; ++n) {
+      byte[] json = new byte[random.nextInt(300)];
+      for (int i = 0; i < json.length; ++i) {
+        json[i] = alphabet[random.nextInt(alphabet.length)];
+      }
+      assertArrayEquals(new String(json, StandardCharsets.UTF_8),
+          simpleIndex(json), new StructuralJsonParser(json).structuralIndex());
+    }
+  }
+
+  @Test public void testIndexOffset() {
+    byte[] json = "xx[1, \"2\"]yy".getBytes(StandardCharsets.UTF_8);
+    assertArrayEquals(new int[] { 2, 3, 4, 6, 9 },
+        new StructuralJsonParser(json, 2, 8).structuralIndex());
+  }
+
+  @Test public void testTestFiles() throws IOException, SyntaxError {
+    File[] files = new File("testfiles").listFiles();
+    Arrays.sort(files);
+    for (File file : files) {
+      checkSame(Files.readAllBytes(file.toPath()));
+    }
+  }
+
+  @Test public void testValues() throws IOException, SyntaxError {
+    checkSame("[]".getBytes(StandardCharsets.UTF_8));
+    checkSame(" { } ".getBytes(StandardCharsets.UTF_8));
+    checkSame("[1,-2.5e3,true,false,null,\"\",{},[[]]]".getBytes(StandardCharsets.UTF_8));
+    checkSame("{\"a\":1,\"b\":{\"c\":[\"d\"]},\"e\":-0}".getBytes(StandardCharsets.UTF_8));
+    checkSame("[\"\\\\\",\"\\\"\",\"\\u00e5\\n\",\"åäö \uD83D\uDE00\"]"
+        .getBytes(StandardCharsets.UTF_8));
+    checkSame("{\"a\":1,}".getBytes(StandardCharsets.UTF_8));
+    checkSame(new byte[] { '[', '"', (byte) 0xC3, '"', ']' });
+  }
+
+  /** Documents with strings and numbers that cross block boundaries. */
+  @Test public void testRandomDocuments() throws IOException, SyntaxError {
+    Random random = new Random(3);
+    String[] strings = { "", "a", "\\\\", "\\\"", "x\\\\\\\"y", "å", "\uD83D\uDE00", "{[,:]}",
+        "\\u0041", "                                                          " };
+    for (int n = 0; n < 200; ++n) {
+      StringBuilder json = new StringBuilder("[");
+      int count = random.nextInt(50);
+      for (int i = 0; i < count; ++i) {
+        if (i > 0) {
+          json.append(random.nextBoolean() ? "," : " ,\n ");
+        }
+        switch (random.nextInt(5)) {
+          case 0:
+            json.append(random.nextLong());
+            break;
+          case 1:
+            json.append(random.nextDouble());
+            break;
+          case 2:
+            json.append('"').append(strings[random.nextInt(strings.length)])
+                .append(strings[random.nextInt(strings.length)]).append('"');
+            break;
+          case 3:
+            json.append("{\"").append(strings[random.nextInt(strings.length)])
+                .append("\":[null,true, false]}");
+            break;
+          default:
+            json.append("[]");
+        }
+      }
+      json.append("]");
+      checkSame(json.toString().getBytes(StandardCharsets.UTF_8));
+    }
+  }
+
+  @Test public void testSymbolTable() throws SyntaxError {
+    StructuralJsonParser parser = new StructuralJsonParser(
+        "[{\"name\":1},{\"name\":2}]".getBytes(StandardCharsets.UTF_8));
+    parser.setSymbolTable(new SymbolTable());
+    JsonArray array = parser.parse().array();
+    assertEquals(array.get(0).object().get(0).name, array.get(1).object().get(0).name);
+  }
+
+  @Test public void testErrors() throws IOException {
+    String[] invalid = { "", " ", "1", "\"a\"", "{", "[", "[1", "[1,", "[1,]", "[,1]", "[1 2]",
+        "{\"a\"}", "{\"a\":}", "{\"a\" 1}", "{\"a\":1 \"b\":2}", "{1:2}", "{,}", "[tru]",
+        "[truex]", "[nul]", "[\"abc]", "[\"a\"x]", "[1]x", "{}{}", "[1.5x]", "[\"\\x\"]",
+        "[\"\\u00g0\"]", "[1]]", "[}" };
+    for (String json : invalid) {
+      checkError(json);
+    }
+  }
+
+  @Test public void testGarbageAtEnd() throws SyntaxError {
+    thrown.expect(SyntaxError.class);
+    thrown.expectMessage("Syntax Error: garbage at end of input (unexpected 'x')");
+    parse("{} x");
+  }
+
+  @Test public void testMissingElement() throws SyntaxError {
+    thrown.expect(SyntaxError.class);
+    thrown.expectMessage("Syntax Error: missing element in array");
+    parse("[1,]");
+  }
+
+  @Test public void testUnterminatedString() throws SyntaxError {
+    thrown.expect(SyntaxError.class);
+    thrown.expectMessage("Syntax Error: end of input while parsing JSON string (expected '\"')");
+    parse("[\"abc\\\"]");
+  }
+}
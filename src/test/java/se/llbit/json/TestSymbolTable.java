@@ -0,0 +1,156 @@
+/* Copyright (c) 2017, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.json;
+
+import org.junit.Test;
+import se.llbit.json.JsonParser.SyntaxError;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class TestSymbolTable {
+  private static final String RECORDS =
+      "[ {\"id\": 1, \"name\": \"x\"}, {\"id\": 2, \"name\": \"y\"}, {\"name\": \"id\", \"id\": 3} ]";
+
+  private static JsonArray parse(String json, SymbolTable symbols)
+      throws IOException, SyntaxError {
+    byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+    try (JsonParser parser = new JsonParser(new ByteArrayInputStream(bytes))) {
+      parser.setSymbolTable(symbols);
+      return parser.parse().array();
+    }
+  }
+
+  private static JsonArray parseUtf8(String json, SymbolTable symbols)
+      throws IOException, SyntaxError {
+    try (Utf8JsonParser parser = new Utf8JsonParser(json.getBytes(StandardCharsets.UTF_8))) {
+      parser.setSymbolTable(symbols);
+      return parser.parse().array();
+    }
+  }
+
+  private static String name(JsonArray array, int element, int member) {
+    return array.get(element).object().get(member).name;
+  }
+
+  @Test public void testSharedNames() throws IOException, SyntaxError {
+    SymbolTable symbols = new SymbolTable();
+    JsonArray array = parse(RECORDS, symbols);
+    assertEquals("id", name(array, 0, 0));
+    assertSame(name(array, 0, 0), name(array, 1, 0));
+    assertSame(name(array, 0, 0), name(array, 2, 1));
+    assertSame(name(array, 0, 1), name(array, 2, 0));
+    assertEquals(2, symbols.size());
+  }
+
+  @Test public void testSharedNamesUtf8() throws IOException, SyntaxError {
+    SymbolTable symbols = new SymbolTable();
+    JsonArray array = parseUtf8(RECORDS, symbols);
+    assertEquals("id", name(array, 0, 0));
+    assertSame(name(array, 0, 0), name(array, 1, 0));
+    assertSame(name(array, 0, 0), name(array, 2, 1));
+    assertSame(name(array, 0, 1), name(array, 2, 0));
+    assertEquals(2, symbols.size());
+  }
+
+  /** String values are not added to the symbol table. */
+  @Test public void testValuesNotShared() throws IOException, SyntaxError {
+    SymbolTable symbols = new SymbolTable();
+    JsonArray array = parseUtf8(RECORDS, symbols);
+    assertEquals("id", array.get(2).object().get(0).value.stringValue(""));
+    assertNotSame(name(array, 0, 0), array.get(2).object().get(0).value.stringValue(""));
+  }
+
+  /** Names are shared across parses using the same table. */
+  @Test public void testAcrossParses() throws IOException, SyntaxError {
+    SymbolTable symbols = new SymbolTable();
+    JsonArray first = parse(RECORDS, symbols);
+    JsonArray second = parseUtf8(RECORDS, symbols);
+    assertSame(name(first, 0, 0), name(second, 0, 0));
+    assertSame(name(first, 0, 1), name(second, 0, 1));
+  }
+
+  /** Escaped and non-ASCII names. */
+  @Test public void testDecodedNames() throws IOException, SyntaxError {
+    SymbolTable symbols = new SymbolTable();
+    JsonArray array = parseUtf8("[ {\"å\\n\": 1}, {\"\\u00e5\\u000a\": 2} ]", symbols);
+    assertEquals("å\n", name(array, 0, 0));
+    assertSame(name(array, 0, 0), name(array, 1, 0));
+  }
+
+  /** Names are not shared when the table is full. */
+  @Test public void testCapacity() throws IOException, SyntaxError {
+    SymbolTable symbols = new SymbolTable(1);
+    JsonArray array = parse(RECORDS, symbols);
+    assertEquals(1, symbols.size());
+    assertSame(name(array, 0, 0), name(array, 1, 0));
+    assertEquals(name(array, 0, 1), name(array, 1, 1));
+    assertNotSame(name(array, 0, 1), name(array, 1, 1));
+  }
+
+  /** Long names are not added to the table. */
+  @Test public void testLongNames() throws IOException, SyntaxError {
+    StringBuilder name = new StringBuilder();
+    for (int i = 0; i <= SymbolTable.MAX_LENGTH; ++i) {
+      name.append('x');
+    }
+    String json = "[ {\"" + name + "\": 1}, {\"" + name + "\": 2} ]";
+    SymbolTable symbols = new SymbolTable();
+    JsonArray array = parseUtf8(json, symbols);
+    assertEquals(name.toString(), name(array, 0, 0));
+    assertEquals(name(array, 0, 0), name(array, 1, 0));
+    assertEquals(0, symbols.size());
+  }
+
+  /** Many distinct names, to exercise probing. */
+  @Test public void testManyNames() throws IOException, SyntaxError {
+    StringBuilder json = new StringBuilder("[ {");
+    for (int i = 0; i < 1000; ++i) {
+      json.append(i == 0 ? "" : ",").append("\"n").append(i).append("\":").append(i);
+    }
+    json.append("}, {");
+    for (int i = 0; i < 1000; ++i) {
+      json.append(i == 0 ? "" : ",").append("\"n").append(i).append("\":").append(i);
+    }
+    json.append("} ]");
+    SymbolTable symbols = new SymbolTable();
+    JsonArray array = parse(json.toString(), symbols);
+    assertEquals(1000, symbols.size());
+    for (int i = 0; i < 1000; ++i) {
+      assertEquals("n" + i, name(array, 0, i));
+      assertSame(name(array, 0, i), name(array, 1, i));
+    }
+  }
+}
@@ -0,0 +1,275 @@
+/* Copyright (c) 2017, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.json;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import se.llbit.json.JsonParser.SyntaxError;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class TestUtf8JsonParser {
+  @Rule public ExpectedException thrown = ExpectedException.none();
+
+  @Rule public TemporaryFolder tmp = new TemporaryFolder();
+
+  private static JsonValue parse(String json) throws IOException, SyntaxError {
+    return parse(json.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static JsonValue parse(byte[] json) throws IOException, SyntaxError {
+    try (Utf8JsonParser parser = new Utf8JsonParser(json)) {
+      return parser.parse();
+    }
+  }
+
+  /** Parse with the character based parser, for comparison. */
+  private static JsonValue parseChars(byte[] json) throws IOException, SyntaxError {
+    try (JsonParser parser = new JsonParser(new ByteArrayInputStream(json))) {
+      return parser.parse();
+    }
+  }
+
+  @Test public void testSimpleDocument() throws IOException, SyntaxError {
+    JsonObject object = parse("{ \"a\": [1, -2.5e3, true, false, null], \"b\": {} }").object();
+    assertEquals(2, object.size());
+    JsonArray array = object.get("a").array();
+    assertEquals("1", array.get(0).toCompactString());
+    assertEquals("-2.5e3", array.get(1).toCompactString());
+    assertSame(Json.TRUE, array.get(2));
+    assertSame(Json.FALSE, array.get(3));
+    assertSame(Json.NULL, array.get(4));
+    assertEquals(0, object.get("b").object().size());
+  }
+
+  @Test public void testEscapes() throws IOException, SyntaxError {
+    JsonArray array = parse("[ \"\\r\\n\", \"\\u0041\\u0062\\u002B\\u002e\", \"1\\/0\" ]").array();
+    assertEquals("\r\n", array.get(0).asString(""));
+    assertEquals("Ab+.", array.get(1).asString(""));
+    assertEquals("1/0", array.get(2).asString(""));
+  }
+
+  /** Two, three and four byte UTF-8 sequences. */
+  @Test public void testMultiByteCharacters() throws IOException, SyntaxError {
+    String text = "\u00e5\u00e4\u00f6 \u2603 \ud83d\ude00 x";
+    JsonArray array = parse("[\"" + text + "\"]").array();
+    assertEquals(text, array.get(0).asString(""));
+  }
+
+  @Test public void testMalformedUtf8() throws IOException, SyntaxError {
+    byte[] json = { '[', '"', 'a', (byte) 0xC3, 'b', (byte) 0xFF, '"', ']' };
+    assertEquals("a\uFFFDb\uFFFD", parse(json).array().get(0).asString(""));
+  }
+
+  @Test public void testOverlongEncoding() throws IOException, SyntaxError {
+    // Overlong encoding of '/'.
+    byte[] json = { '[', '"', (byte) 0xC0, (byte) 0xAF, '"', ']' };
+    assertEquals("\uFFFD\uFFFD", parse(json).array().get(0).asString(""));
+  }
+
+  @Test public void testLongString() throws IOException, SyntaxError {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 10000; ++i) {
+      sb.append((char) ('a' + i % 26));
+      if (i % 1000 == 0) {
+        sb.append('\u00e5');
+      }
+    }
+    String text = sb.toString();
+    assertEquals(text, parse("[\"" + text + "\"]").array().get(0).asString(""));
+  }
+
+  @Test public void testByteRange() throws IOException, SyntaxError {
+    byte[] bytes = "xx[1,2]yy".getBytes(StandardCharsets.UTF_8);
+    JsonValue value = new Utf8JsonParser(bytes, 2, 5).parse();
+    assertEquals("[1,2]", value.toCompactString());
+  }
+
+  @Test public void testInvalidByteRange() {
+    thrown.expect(IndexOutOfBoundsException.class);
+    new Utf8JsonParser(new byte[4], 2, 3);
+  }
+
+  @Test public void testHeapByteBuffer() throws IOException, SyntaxError {
+    ByteBuffer buffer = ByteBuffer.wrap("  [1,{\"a\":\"b\"}]".getBytes(StandardCharsets.UTF_8));
+    buffer.position(2);
+    JsonValue value = new Utf8JsonParser(buffer.slice()).parse();
+    assertEquals("[1,{\"a\":\"b\"}]", value.toCompactString());
+  }
+
+  @Test public void testDirectByteBuffer() throws IOException, SyntaxError {
+    byte[] bytes = "[\"\u00e5\",{\"a\":\"b\"}]".getBytes(StandardCharsets.UTF_8);
+    ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+    buffer.put(bytes);
+    buffer.flip();
+    JsonValue value = new Utf8JsonParser(buffer).parse();
+    assertEquals("[\"\u00e5\",{\"a\":\"b\"}]", value.toCompactString());
+    assertEquals(0, buffer.position());
+  }
+
+  /** A direct buffer is parsed from its position, in place. */
+  @Test public void testDirectByteBufferRange() throws IOException, SyntaxError {
+    byte[] bytes = "xx[\"\u00e5\", 1.5]yy".getBytes(StandardCharsets.UTF_8);
+    ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+    buffer.put(bytes);
+    buffer.position(2);
+    buffer.limit(bytes.length - 2);
+    JsonValue value = new Utf8JsonParser(buffer).parse();
+    assertEquals("[\"\u00e5\",1.5]", value.toCompactString());
+    assertEquals(2, buffer.position());
+  }
+
+  /** Tokens and multi-byte characters split across buffer refills. */
+  @Test public void testSmallBuffer() throws IOException, SyntaxError {
+    String json = "{ \"na\\u00e5me\": [ true, false, null, -12.5e-3, \"\u2603\ud83d\ude00\" ] }";
+    byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+    JsonValue expected = parse(bytes);
+    JsonValue string = expected.object().get("na\u00e5me").array().get(4);
+    assertEquals("\u2603\ud83d\ude00", string.asString(""));
+    for (int size = 1; size < 8; ++size) {
+      Utf8JsonParser parser = new Utf8JsonParser(new ByteArrayInputStream(bytes), size);
+      assertEquals(expected, parser.parse());
+    }
+  }
+
+  /** The UTF-8 parser and the character parser produce equal trees. */
+  @Test public void testTestfiles() throws IOException, SyntaxError {
+    for (int i = 1; i <= 7; ++i) {
+      File file = new File("testfiles", i + ".json");
+      byte[] bytes = new byte[(int) file.length()];
+      try (FileInputStream in = new FileInputStream(file)) {
+        assertEquals(bytes.length, in.read(bytes));
+      }
+      assertEquals(parseChars(bytes), parse(bytes));
+    }
+  }
+
+  /** Parsing memory mapped files. */
+  @Test public void testMappedFile() throws IOException, SyntaxError {
+    for (int i = 1; i <= 7; ++i) {
+      Path file = new File("testfiles", i + ".json").toPath();
+      assertEquals(parse(Files.readAllBytes(file)), JsonParser.parse(file));
+    }
+  }
+
+  /** Tokens and multi-byte characters crossing mapped window boundaries. */
+  @Test public void testMappedFileWindows() throws IOException, SyntaxError {
+    String json = "{ \"k\u00f6ttbullar\": [123456, \"\u00e5\u00e4\u20ac\ud83d\ude00\", true, null] }";
+    Path file = tmp.newFile().toPath();
+    Files.write(file, json.getBytes(StandardCharsets.UTF_8));
+    for (long window = 1; window <= 11; ++window) {
+      try (Utf8JsonParser parser = new Utf8JsonParser(file, window)) {
+        assertEquals(parse(json), parser.parse());
+      }
+    }
+  }
+
+  @Test public void testEmptyFile() throws IOException, SyntaxError {
+    thrown.expect(SyntaxError.class);
+    thrown.expectMessage("Syntax Error: expected JSON object or array");
+    JsonParser.parse(tmp.newFile().toPath());
+  }
+
+  @Test public void testMissingArrayElement() throws IOException, SyntaxError {
+    thrown.expect(SyntaxError.class);
+    thrown.expectMessage("Syntax Error: missing element in array");
+    parse("[ false, ]");
+  }
+
+  @Test public void testTrailingGarbage() throws IOException, SyntaxError {
+    thrown.expect(SyntaxError.class);
+    thrown.expectMessage("Syntax Error: garbage at end of input (unexpected 'x')");
+    parse("[ ] x");
+  }
+
+  @Test public void testUnterminatedString() throws IOException, SyntaxError {
+    thrown.expect(SyntaxError.class);
+    thrown.expectMessage(
+        "Syntax Error: end of input while parsing JSON string (expected '\"')");
+    parse("[ \"abc");
+  }
+
+  @Test public void testIllegalEscape() throws IOException, SyntaxError {
+    thrown.expect(SyntaxError.class);
+    thrown.expectMessage("Syntax Error: illegal escape sequence in JSON string: \\?. "
+        + "Expected one of \\n, \\r, \\t, etc.");
+    parse("[ \"\\?\" ]");
+  }
+
+  @Test public void testInvalidLiteral() throws IOException, SyntaxError {
+    thrown.expect(SyntaxError.class);
+    thrown.expectMessage("Syntax Error: encountered invalid JSON literal");
+    parse("[ nul ]");
+  }
+
+  @Test public void testMissingMember() throws IOException, SyntaxError {
+    thrown.expect(SyntaxError.class);
+    thrown.expectMessage("Syntax Error: missing member in object.");
+    parse("{ , }");
+  }
+
+  @Test public void testNotObjectOrArray() throws IOException, SyntaxError {
+    thrown.expect(SyntaxError.class);
+    thrown.expectMessage("Syntax Error: expected JSON object or array");
+    parse("\"x\"");
+  }
+
+  /** Ignored members are skipped across read buffer boundaries. */
+  @Test public void testIgnoredMembers() throws IOException, SyntaxError {
+    StringBuilder json = new StringBuilder("[");
+    for (int i = 0; i < 200; ++i) {
+      json.append(i > 0 ? "," : "").append("{\"id\":").append(i)
+          .append(",\"blob\":[\"\u00e5\\\"]\",{\"id\":-1}],\"name\":\"n").append(i).append("\"}");
+    }
+    json.append("]");
+    byte[] bytes = json.toString().getBytes(StandardCharsets.UTF_8);
+    JsonValue expected = parseChars(bytes);
+    for (JsonValue record : expected.array()) {
+      record.object().remove("blob");
+    }
+    try (Utf8JsonParser parser = new Utf8JsonParser(new ByteArrayInputStream(bytes), 16)) {
+      parser.setIgnoredMembers(Arrays.asList("blob"));
+      assertEquals(expected, parser.parse());
+    }
+  }
+}